@@ -0,0 +1,371 @@
+package dev.simonit.gdx.cbor.processor;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.annotation.processing.SupportedAnnotationTypes;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.AnnotationMirror;
+import javax.lang.model.element.AnnotationValue;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.NestingKind;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.element.VariableElement;
+import javax.lang.model.type.ArrayType;
+import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.util.ElementFilter;
+import javax.tools.Diagnostic;
+import javax.tools.JavaFileObject;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+/** Generates a {@code CborCodec} for every class annotated with {@code GenerateCodec}. The codec is placed in the package of the
+ * class and accesses its fields directly: primitive fields are written and read without reflection or boxing, all other fields
+ * are passed to {@code Cbor.writeValue} and {@code Cbor.readValue} with the same types that reflection would use.
+ * <p>
+ * The runtime classes are only referred to by name, so the processor does not depend on gdx-cbor. */
+@SupportedAnnotationTypes(CodecProcessor.ANNOTATION)
+public class CodecProcessor extends AbstractProcessor {
+	static final String ANNOTATION = "dev.simonit.gdx.cbor.GenerateCodec";
+	static final String FIELD_ID = "dev.simonit.gdx.cbor.FieldId";
+	static final String SUFFIX = "_CborCodec";
+
+	@Override
+	public SourceVersion getSupportedSourceVersion () {
+		return SourceVersion.latestSupported();
+	}
+
+	@Override
+	public boolean process (Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
+		for (TypeElement annotation : annotations) {
+			for (Element element : roundEnv.getElementsAnnotatedWith(annotation)) {
+				if (element.getKind() != ElementKind.CLASS) {
+					error(element, "Only classes can have a generated codec.");
+					continue;
+				}
+				TypeElement type = (TypeElement)element;
+				if (!check(type)) continue;
+				List<VariableElement> fields = getFields(type);
+				if (fields == null) continue;
+				try {
+					write(type, fields);
+				} catch (IOException ex) {
+					error(type, "Error writing the codec: " + ex.getMessage());
+				}
+			}
+		}
+		return true;
+	}
+
+	/** @return false if the codec cannot access the class. */
+	private boolean check (TypeElement type) {
+		for (Element element = type; element instanceof TypeElement; element = element.getEnclosingElement()) {
+			if (element.getModifiers().contains(Modifier.PRIVATE)) {
+				error(type, "Classes with a generated codec must not be private.");
+				return false;
+			}
+			NestingKind nesting = ((TypeElement)element).getNestingKind();
+			if (nesting == NestingKind.LOCAL || nesting == NestingKind.ANONYMOUS) {
+				error(type, "Classes with a generated codec must not be local or anonymous.");
+				return false;
+			}
+			if (nesting == NestingKind.MEMBER && !element.getModifiers().contains(Modifier.STATIC)) {
+				error(type, "Nested classes with a generated codec must be static.");
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/** Collects the fields in the order of Json: the fields of the super classes first, each class in declaration order.
+	 * @return null if a field cannot be accessed by the codec. */
+	private List<VariableElement> getFields (TypeElement type) {
+		List<TypeElement> classHierarchy = new ArrayList<>();
+		for (TypeElement next = type; next != null && !next.getQualifiedName().contentEquals("java.lang.Object");) {
+			classHierarchy.add(next);
+			TypeMirror superclass = next.getSuperclass();
+			next = superclass.getKind() == TypeKind.DECLARED ? (TypeElement)((DeclaredType)superclass).asElement() : null;
+		}
+		String packageName = getPackageName(type);
+		List<VariableElement> fields = new ArrayList<>();
+		Set<String> names = new HashSet<>();
+		boolean valid = true;
+		for (int i = classHierarchy.size() - 1; i >= 0; i--) {
+			TypeElement declaringType = classHierarchy.get(i);
+			boolean samePackage = getPackageName(declaringType).equals(packageName);
+			for (VariableElement field : ElementFilter.fieldsIn(declaringType.getEnclosedElements())) {
+				Set<Modifier> modifiers = field.getModifiers();
+				if (modifiers.contains(Modifier.STATIC) || modifiers.contains(Modifier.TRANSIENT)) continue;
+				String problem = null;
+				if (modifiers.contains(Modifier.PRIVATE))
+					problem = "must not be private";
+				else if (modifiers.contains(Modifier.FINAL))
+					problem = "must not be final";
+				else if (!samePackage && !modifiers.contains(Modifier.PUBLIC))
+					problem = "must be public, as it is declared in another package";
+				else if (!names.add(field.getSimpleName().toString())) problem = "must not hide a field of a super class";
+				if (problem != null) {
+					error(field, "Field " + field.getSimpleName() + " of a class with a generated codec " + problem + ": "
+						+ type.getQualifiedName());
+					valid = false;
+				}
+				fields.add(field);
+			}
+		}
+		return valid ? fields : null;
+	}
+
+	private void write (TypeElement type, List<VariableElement> fields) throws IOException {
+		String packageName = getPackageName(type);
+		String binaryName = processingEnv.getElementUtils().getBinaryName(type).toString();
+		String codecName = (packageName.isEmpty() ? binaryName : binaryName.substring(packageName.length() + 1)).replace('$', '_')
+			+ SUFFIX;
+		String typeName = type.getQualifiedName().toString();
+
+		StringBuilder out = new StringBuilder(2048);
+		if (!packageName.isEmpty()) out.append("package ").append(packageName).append(";\n\n");
+		out.append("import com.badlogic.gdx.utils.JsonValue;\n");
+		out.append("import dev.simonit.gdx.cbor.Cbor;\n");
+		out.append("import dev.simonit.gdx.cbor.CborCodec;\n");
+		out.append("import dev.simonit.gdx.cbor.CborInput;\n");
+		out.append("import dev.simonit.gdx.cbor.CborWriter;\n\n");
+		out.append("import java.io.IOException;\n\n");
+		out.append("/** Generated by gdx-cbor-processor for {@link ").append(typeName).append("}, do not edit. */\n");
+		out.append("@SuppressWarnings({\"rawtypes\", \"unchecked\"})\n");
+		out.append("public final class ").append(codecName).append(" extends CborCodec<").append(typeName).append("> {\n");
+
+		out.append("\t@Override\n");
+		out.append("\tpublic Class<").append(typeName).append("> getType () {\n");
+		out.append("\t\treturn ").append(typeName).append(".class;\n");
+		out.append("\t}\n");
+
+		if (hasDefaultConstructor(type)) {
+			out.append("\n\t@Override\n");
+			out.append("\tpublic ").append(typeName).append(" newInstance () {\n");
+			out.append("\t\treturn new ").append(typeName).append("();\n");
+			out.append("\t}\n");
+		}
+
+		out.append("\n\t@Override\n");
+		out.append("\tpublic void write (Cbor cbor, CborWriter writer, ").append(typeName)
+			.append(" object) throws IOException {\n");
+		out.append("\t\t").append(typeName).append(" defaults = getDefaults(cbor);\n");
+		for (VariableElement field : fields)
+			writeField(out, field);
+		out.append("\t}\n");
+
+		for (int tree = 0; tree < 2; tree++) {
+			String source = tree == 0 ? "CborInput input" : "JsonValue value";
+			out.append("\n\t@Override\n");
+			out.append("\tpublic boolean read (Cbor cbor, ").append(typeName).append(" object, String name, ").append(source)
+				.append(") {\n");
+			if (!fields.isEmpty()) {
+				out.append("\t\tswitch (name) {\n");
+				for (VariableElement field : fields)
+					readField(out, field, tree == 1);
+				out.append("\t\t}\n");
+			}
+			out.append("\t\treturn false;\n");
+			out.append("\t}\n");
+		}
+		out.append("}\n");
+
+		String qualifiedName = packageName.isEmpty() ? codecName : packageName + "." + codecName;
+		JavaFileObject file = processingEnv.getFiler().createSourceFile(qualifiedName, type);
+		try (Writer writer = file.openWriter()) {
+			writer.write(out.toString());
+		}
+	}
+
+	private void writeField (StringBuilder out, VariableElement field) {
+		String name = field.getSimpleName().toString();
+		TypeMirror type = field.asType();
+		String value = "object." + name, defaultValue = "defaults." + name;
+		boolean deprecated = isDeprecated(field);
+		out.append("\t\tif (");
+		if (deprecated) out.append("!cbor.getIgnoreDeprecated() && (");
+		out.append("defaults == null || ");
+		switch (type.getKind()) {
+		case FLOAT:
+			out.append("Float.floatToIntBits(").append(value).append(") != Float.floatToIntBits(").append(defaultValue).append(")");
+			break;
+		case DOUBLE:
+			out.append("Double.doubleToLongBits(").append(value).append(") != Double.doubleToLongBits(").append(defaultValue)
+				.append(")");
+			break;
+		default:
+			if (type.getKind().isPrimitive())
+				out.append(value).append(" != ").append(defaultValue);
+			else
+				out.append("!isDefault(").append(value).append(", ").append(defaultValue).append(")");
+		}
+		out.append(deprecated ? ")) " : ") ");
+		int id = fieldId(field);
+		String key = id == -1 ? '"' + name + '"' : Integer.toString(id);
+		switch (type.getKind()) {
+		case INT:
+		case LONG:
+		case FLOAT:
+		case DOUBLE:
+		case BOOLEAN:
+			if (id == -1)
+				out.append("writer.set(").append(key).append(", ").append(value).append(");\n");
+			else
+				out.append("writer.name(").append(key).append(").value(").append(value).append(");\n");
+			return;
+		case BYTE:
+		case SHORT:
+			if (id == -1)
+				out.append("writer.set(").append(key).append(", (int)").append(value).append(");\n");
+			else
+				out.append("writer.name(").append(key).append(").value((int)").append(value).append(");\n");
+			return;
+		case CHAR:
+			// Characters are written as string or number, depending on the writer.
+			out.append("writer.name(").append(key).append(").value((Object)").append(value).append(");\n");
+			return;
+		default:
+			if (isSimple(type)) {
+				// Json writes these types as they are, without looking for a serializer.
+				out.append("writer.name(").append(key).append(").value((Object)").append(value).append(");\n");
+				return;
+			}
+			out.append("{\n");
+			out.append("\t\t\twriter.name(").append(key).append(");\n");
+			out.append("\t\t\tcbor.writeValue((Object)").append(value).append(", ").append(classLiteral(type)).append(", ")
+				.append(elementType(type)).append(");\n");
+			out.append("\t\t}\n");
+		}
+	}
+
+	private void readField (StringBuilder out, VariableElement field, boolean tree) {
+		String name = field.getSimpleName().toString();
+		TypeMirror type = field.asType();
+		String source = tree ? "value" : "input";
+		String read;
+		switch (type.getKind()) {
+		case INT:
+			read = "cbor.readInt(" + source + ")";
+			break;
+		case LONG:
+			read = "cbor.readLong(" + source + ")";
+			break;
+		case FLOAT:
+			read = "cbor.readFloat(" + source + ")";
+			break;
+		case DOUBLE:
+			read = "cbor.readDouble(" + source + ")";
+			break;
+		case BOOLEAN:
+			read = "cbor.readBoolean(" + source + ")";
+			break;
+		default:
+			read = "cbor.readValue(" + classLiteral(type) + ", " + elementType(type) + ", " + source + ")";
+		}
+		out.append("\t\tcase \"").append(name).append("\":\n");
+		if (isDeprecated(field)) {
+			if (tree)
+				out.append("\t\t\tif (!skipDeprecated(cbor)) object.").append(name).append(" = ").append(read).append(";\n");
+			else {
+				out.append("\t\t\tif (skipDeprecated(cbor))\n");
+				out.append("\t\t\t\tinput.skipItem();\n");
+				out.append("\t\t\telse\n");
+				out.append("\t\t\t\tobject.").append(name).append(" = ").append(read).append(";\n");
+			}
+		} else
+			out.append("\t\t\tobject.").append(name).append(" = ").append(read).append(";\n");
+		out.append("\t\t\treturn true;\n");
+	}
+
+	/** @return the class literal of the erased type, which is the type reflection reports for the field. */
+	private String classLiteral (TypeMirror type) {
+		return erasedName(processingEnv.getTypeUtils().erasure(type)) + ".class";
+	}
+
+	/** Builds the name from the elements, as the string of a type mirror may contain type annotations. */
+	private String erasedName (TypeMirror type) {
+		switch (type.getKind()) {
+		case DECLARED:
+			return ((TypeElement)((DeclaredType)type).asElement()).getQualifiedName().toString();
+		case ARRAY:
+			return erasedName(((ArrayType)type).getComponentType()) + "[]";
+		default:
+			return type.getKind().name().toLowerCase(Locale.ROOT);
+		}
+	}
+
+	/** @return the class literal of the element type, like {@code Field.getElementType} finds it, or {@code null}. */
+	private String elementType (TypeMirror type) {
+		if (type.getKind() != TypeKind.DECLARED) return "null";
+		List<? extends TypeMirror> arguments = ((DeclaredType)type).getTypeArguments();
+		int index = isAssignable(type, "com.badlogic.gdx.utils.ObjectMap") || isAssignable(type, "java.util.Map") ? 1 : 0;
+		if (arguments.size() <= index) return "null";
+		TypeMirror argument = arguments.get(index);
+		if (argument.getKind() != TypeKind.DECLARED && argument.getKind() != TypeKind.ARRAY) return "null";
+		return classLiteral(argument);
+	}
+
+	private boolean isAssignable (TypeMirror type, String className) {
+		TypeElement element = processingEnv.getElementUtils().getTypeElement(className);
+		if (element == null) return false;
+		return processingEnv.getTypeUtils().isAssignable(processingEnv.getTypeUtils().erasure(type),
+			processingEnv.getTypeUtils().erasure(element.asType()));
+	}
+
+	/** @return true for strings and boxed primitives. */
+	private boolean isSimple (TypeMirror type) {
+		if (type.getKind() != TypeKind.DECLARED) return false;
+		switch (erasedName(type)) {
+		case "java.lang.String":
+		case "java.lang.Integer":
+		case "java.lang.Boolean":
+		case "java.lang.Float":
+		case "java.lang.Long":
+		case "java.lang.Double":
+		case "java.lang.Short":
+		case "java.lang.Byte":
+		case "java.lang.Character":
+			return true;
+		}
+		return false;
+	}
+
+	private boolean isDeprecated (VariableElement field) {
+		return field.getAnnotation(Deprecated.class) != null;
+	}
+
+	/** @return the value of the {@code FieldId} annotation, or -1. Cbor reads the key of the id as the field name. */
+	private int fieldId (VariableElement field) {
+		for (AnnotationMirror annotation : field.getAnnotationMirrors()) {
+			if (!((TypeElement)annotation.getAnnotationType().asElement()).getQualifiedName().contentEquals(FIELD_ID)) continue;
+			for (Map.Entry<? extends ExecutableElement, ? extends AnnotationValue> entry : annotation.getElementValues().entrySet())
+				if (entry.getKey().getSimpleName().contentEquals("value")) return (Integer)entry.getValue().getValue();
+		}
+		return -1;
+	}
+
+	private boolean hasDefaultConstructor (TypeElement type) {
+		if (type.getModifiers().contains(Modifier.ABSTRACT)) return false;
+		for (ExecutableElement constructor : ElementFilter.constructorsIn(type.getEnclosedElements()))
+			if (constructor.getParameters().isEmpty() && !constructor.getModifiers().contains(Modifier.PRIVATE)) return true;
+		return false;
+	}
+
+	private String getPackageName (TypeElement type) {
+		return processingEnv.getElementUtils().getPackageOf(type).getQualifiedName().toString();
+	}
+
+	private void error (Element element, String message) {
+		processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR, message, element);
+	}
+}
@@ -0,0 +1,93 @@
+package dev.simonit.gdx.cbor.processor;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import javax.tools.Diagnostic;
+import javax.tools.DiagnosticCollector;
+import javax.tools.JavaCompiler;
+import javax.tools.JavaFileObject;
+import javax.tools.SimpleJavaFileObject;
+import javax.tools.ToolProvider;
+import java.io.IOException;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CodecProcessorTest {
+	@TempDir Path output;
+
+	@Test
+	void testGenerate () throws IOException {
+		DiagnosticCollector<JavaFileObject> diagnostics = compile("game.Player", "package game;\n" //
+			+ "import com.badlogic.gdx.utils.Array;\n" //
+			+ "@dev.simonit.gdx.cbor.GenerateCodec\n" //
+			+ "public class Player {\n" //
+			+ "	public static class Item { int count; }\n" //
+			+ "	int score;\n" //
+			+ "	@dev.simonit.gdx.cbor.FieldId(2) long id;\n" //
+			+ "	String name;\n" //
+			+ "	Array<Item> items;\n" //
+			+ "	transient int cached;\n" //
+			+ "	static int instances;\n" //
+			+ "	@dev.simonit.gdx.cbor.GenerateCodec public static class Inner { public float x; }\n" //
+			+ "}\n");
+		assertTrue(diagnostics.getDiagnostics().stream().noneMatch(d -> d.getKind() == Diagnostic.Kind.ERROR),
+			diagnostics.getDiagnostics().toString());
+		assertTrue(Files.exists(output.resolve("game/Player_CborCodec.class")));
+		assertTrue(Files.exists(output.resolve("game/Player_Inner_CborCodec.class")));
+
+		String source = new String(Files.readAllBytes(output.resolve("game/Player_CborCodec.java")), StandardCharsets.UTF_8);
+		assertTrue(source.contains("writer.set(\"score\", object.score);"));
+		assertTrue(source.contains("object.score = cbor.readInt(input);"));
+		assertTrue(source.contains("writer.name(2).value(object.id);"));
+		assertTrue(source.contains("cbor.writeValue((Object)object.items, com.badlogic.gdx.utils.Array.class, game.Player.Item.class);"));
+		assertFalse(source.contains("cached"));
+		assertFalse(source.contains("instances"));
+	}
+
+	@Test
+	void testInaccessibleField () {
+		DiagnosticCollector<JavaFileObject> diagnostics = compile("game.Secret", "package game;\n" //
+			+ "@dev.simonit.gdx.cbor.GenerateCodec\n" //
+			+ "public class Secret {\n" //
+			+ "	private int code;\n" //
+			+ "	final int id = 1;\n" //
+			+ "}\n");
+		assertEquals(2, diagnostics.getDiagnostics().stream().filter(d -> d.getKind() == Diagnostic.Kind.ERROR).count());
+		assertFalse(Files.exists(output.resolve("game/Secret_CborCodec.java")));
+	}
+
+	@Test
+	void testInnerClass () {
+		DiagnosticCollector<JavaFileObject> diagnostics = compile("game.Outer", "package game;\n" //
+			+ "public class Outer {\n" //
+			+ "	@dev.simonit.gdx.cbor.GenerateCodec public class Inner { int value; }\n" //
+			+ "}\n");
+		assertTrue(diagnostics.getDiagnostics().stream()
+			.anyMatch(d -> d.getKind() == Diagnostic.Kind.ERROR && d.getMessage(null).contains("must be static")));
+	}
+
+	private DiagnosticCollector<JavaFileObject> compile (String className, String code) {
+		JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+		DiagnosticCollector<JavaFileObject> diagnostics = new DiagnosticCollector<>();
+		URI uri = URI.create("string:///" + className.replace('.', '/') + JavaFileObject.Kind.SOURCE.extension);
+		JavaFileObject source = new SimpleJavaFileObject(uri, JavaFileObject.Kind.SOURCE) {
+			@Override
+			public CharSequence getCharContent (boolean ignoreEncodingErrors) {
+				return code;
+			}
+		};
+		JavaCompiler.CompilationTask task = compiler.getTask(null, null, diagnostics,
+			Arrays.asList("-d", output.toString(), "-s", output.toString(), "-classpath", System.getProperty("java.class.path")), null,
+			Collections.singletonList(source));
+		task.setProcessors(Collections.singletonList(new CodecProcessor()));
+		task.call();
+		return diagnostics;
+	}
+}
@@ -13,7 +13,8 @@ public class CborSerializer extends AbstractBinarySerializer {
 	 *           class data will not be preserved. Default to true. Note that if you set this value to false, deserialization might
 	 *           fail or return {@link com.badlogic.gdx.utils.JsonValue} instead of instance of the actual serialized object. Set
 	 *           to false only if you don't need the class data or your server is not using the same serialization and does not
-	 *           need class data. */
+	 *           need class data. Register the classes sent often with {@link Cbor#addClassId(int, Class)} on both sides to write
+	 *           a small id instead of the class name. */
 	public void setPreserveClassName (final boolean preserveClassName) {
 		cbor.setTypeName(preserveClassName ? "class" : null);
 	}
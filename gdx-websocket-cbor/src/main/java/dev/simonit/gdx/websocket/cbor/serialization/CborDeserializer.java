@@ -1,25 +1,24 @@
 
 package dev.simonit.gdx.websocket.cbor.serialization;
 
-import co.nstant.in.cbor.CborDecoder;
-import co.nstant.in.cbor.CborException;
-import co.nstant.in.cbor.model.*;
+import com.badlogic.gdx.utils.Bits;
 import com.github.czyzby.websocket.serialization.ArrayProvider;
 import com.github.czyzby.websocket.serialization.SerializationException;
 import com.github.czyzby.websocket.serialization.Transferable;
 import com.github.czyzby.websocket.serialization.impl.Deserializer;
 import com.github.czyzby.websocket.serialization.impl.Size;
+import dev.simonit.gdx.cbor.CborInput;
 
-import java.util.List;
-
-import static co.nstant.in.cbor.model.MajorType.SPECIAL;
-import static co.nstant.in.cbor.model.SimpleValueType.NULL;
-import static co.nstant.in.cbor.model.SpecialType.SIMPLE_VALUE;
+import static dev.simonit.gdx.cbor.CborConstants.*;
 
+/** Deserializes the CBOR written by {@link CborSerializer}. Only a cursor over the serialized bytes is kept: every value is
+ * decoded from the bytes when it is requested, so nothing but the returned values is allocated. The serialized array is read in
+ * place and must not be modified while it is deserialized. */
 public class CborDeserializer extends Deserializer {
-	// Package-private as most deserialization methods are in Size enum.
-	List<DataItem> serializedData;
-	int currentByteArrayIndex;
+	/** Returned by {@link #readArrayLength()} for a null array. */
+	private static final int NULL_LENGTH = -1;
+
+	private final CborInput input = new CborInput();
 
 	public CborDeserializer () {
 		this(null);
@@ -27,11 +26,7 @@ public class CborDeserializer extends Deserializer {
 
 	public CborDeserializer (final byte[] serializedData) {
 		if (serializedData == null) return;
-		try {
-			this.serializedData = CborDecoder.decode(serializedData);
-		} catch (CborException e) {
-			throw new RuntimeException(e);
-		}
+		setSerializedData(serializedData);
 	}
 
 	/** Resets the deserializer, allowing to use it for another serialized object.
@@ -39,39 +34,36 @@ public class CborDeserializer extends Deserializer {
 	 * @param serializedData will replace current serialized object.
 	 * @return this, for chaining. */
 	public Deserializer setSerializedData (final byte[] serializedData) {
-		try {
-			this.serializedData = CborDecoder.decode(serializedData);
-		} catch (CborException e) {
-			throw new RuntimeException(e);
-		}
-		currentByteArrayIndex = 0;
+		input.setInput(serializedData, 0, serializedData.length);
 		return this;
 	}
 
 	/** @param currentByteArrayIndex byte index at which the deserializer should read values. Can be set manually if many
 	 *           serialized objects are merged into one byte array. */
 	public void setCurrentByteArrayIndex (final int currentByteArrayIndex) {
-		this.currentByteArrayIndex = currentByteArrayIndex;
+		input.setPosition(currentByteArrayIndex);
+	}
+
+	/** @return byte index of the next value to read. */
+	public int getCurrentByteArrayIndex () {
+		return input.getPosition();
 	}
 
 	/** @return value deserialized from 1 byte.
 	 * @throws SerializationException if too few bytes to deserialize the value. */
 	public boolean deserializeBoolean () throws SerializationException {
-		return ((SimpleValue)serializedData.get(currentByteArrayIndex++)).getSimpleValueType() == SimpleValueType.TRUE;
+		int initialByte = readHeader();
+		if (initialByte == TRUE) return true;
+		if (initialByte == FALSE) return false;
+		throw invalidItem(initialByte);
 	}
 
 	/** @return value deserialized from 1 byte.
 	 * @throws SerializationException if too few bytes to deserialize the value. */
 	public byte deserializeByte () throws SerializationException {
-		switch (serializedData.get(currentByteArrayIndex).getMajorType()) {
-		case UNSIGNED_INTEGER:
-			return ((UnsignedInteger)serializedData.get(currentByteArrayIndex++)).getValue().byteValueExact();
-		case NEGATIVE_INTEGER:
-			return ((NegativeInteger)serializedData.get(currentByteArrayIndex++)).getValue().byteValueExact();
-		default:
-			throw new SerializationException("Invalid major type: " + serializedData.get(currentByteArrayIndex).getMajorType());
-
-		}
+		long value = readInteger();
+		if (value < Byte.MIN_VALUE || value > Byte.MAX_VALUE) throw outOfRange(value);
+		return (byte)value;
 	}
 
 	/** @return value deserialized from 2 bytes.
@@ -85,15 +77,7 @@ public class CborDeserializer extends Deserializer {
 	 * @return deserialized value.
 	 * @throws SerializationException if too few bytes to deserialize the value. */
 	public short deserializeShort (final Size size) throws SerializationException {
-		switch (serializedData.get(currentByteArrayIndex).getMajorType()) {
-		case UNSIGNED_INTEGER:
-			return ((UnsignedInteger)serializedData.get(currentByteArrayIndex++)).getValue().shortValueExact();
-		case NEGATIVE_INTEGER:
-			return ((NegativeInteger)serializedData.get(currentByteArrayIndex++)).getValue().shortValueExact();
-		default:
-			throw new SerializationException("Invalid major type: " + serializedData.get(currentByteArrayIndex).getMajorType());
-
-		}
+		return readShort();
 	}
 
 	/** @return value deserialized from 4 bytes.
@@ -107,15 +91,7 @@ public class CborDeserializer extends Deserializer {
 	 * @return deserialized value.
 	 * @throws SerializationException if too few bytes to deserialize the value. */
 	public int deserializeInt (final Size size) throws SerializationException {
-		switch (serializedData.get(currentByteArrayIndex).getMajorType()) {
-		case UNSIGNED_INTEGER:
-			return ((UnsignedInteger)serializedData.get(currentByteArrayIndex++)).getValue().intValueExact();
-		case NEGATIVE_INTEGER:
-			return ((NegativeInteger)serializedData.get(currentByteArrayIndex++)).getValue().intValueExact();
-		default:
-			throw new SerializationException("Invalid major type: " + serializedData.get(currentByteArrayIndex).getMajorType());
-
-		}
+		return readInt();
 	}
 
 	/** @return value deserialized from 8 bytes.
@@ -128,15 +104,7 @@ public class CborDeserializer extends Deserializer {
 	 * @return deserialized value.
 	 * @throws SerializationException if too few bytes to deserialize the value. */
 	public long deserializeLong (final Size size) throws SerializationException {
-		switch (serializedData.get(currentByteArrayIndex).getMajorType()) {
-		case UNSIGNED_INTEGER:
-			return ((UnsignedInteger)serializedData.get(currentByteArrayIndex++)).getValue().longValue();
-		case NEGATIVE_INTEGER:
-			return ((NegativeInteger)serializedData.get(currentByteArrayIndex++)).getValue().longValue();
-		default:
-			throw new SerializationException("Invalid major type: " + serializedData.get(currentByteArrayIndex).getMajorType());
-
-		}
+		return readInteger();
 	}
 
 	/** @return value deserialized from 4 bytes.
@@ -149,16 +117,7 @@ public class CborDeserializer extends Deserializer {
 	 * @return deserialized value.
 	 * @throws SerializationException if too few bytes to deserialize the value or size too small to store the number. */
 	public float deserializeFloat (final Size size) throws SerializationException {
-		switch (size) {
-		case SHORT:
-			return ((HalfPrecisionFloat)serializedData.get(currentByteArrayIndex++)).getValue();
-		case INT:
-			return ((SinglePrecisionFloat)serializedData.get(currentByteArrayIndex++)).getValue();
-		case LONG:
-			return (float)((DoublePrecisionFloat)serializedData.get(currentByteArrayIndex++)).getValue();
-		default:
-			throw new SerializationException("Invalid size: " + size);
-		}
+		return (float)readFloat();
 	}
 
 	/** @return value deserialized from 8 bytes.
@@ -171,16 +130,7 @@ public class CborDeserializer extends Deserializer {
 	 * @return deserialized value.
 	 * @throws SerializationException if too few bytes to deserialize the value or size too small to store the number. */
 	public double deserializeDouble (final Size size) throws SerializationException {
-		switch (size) {
-		case SHORT:
-			return ((HalfPrecisionFloat)serializedData.get(currentByteArrayIndex++)).getValue();
-		case INT:
-			return ((SinglePrecisionFloat)serializedData.get(currentByteArrayIndex++)).getValue();
-		case LONG:
-			return ((DoublePrecisionFloat)serializedData.get(currentByteArrayIndex++)).getValue();
-		default:
-			throw new SerializationException("Invalid size: " + size);
-		}
+		return readFloat();
 	}
 
 	/** @param enumValues all values of the enum. Should be retrieved with {@link java.lang.Enum}.values().
@@ -219,10 +169,13 @@ public class CborDeserializer extends Deserializer {
 	 * @return deserialized array of values, each stored in 1 byte.
 	 * @throws SerializationException if too few bytes to deserialize the array. */
 	public boolean[] deserializeBooleanArray (final Size arrayLengthSize) throws SerializationException {
-		Array array = getArray();
-		boolean[] booleans = new boolean[array.getDataItems().size()];
-		for (int i = 0; i < booleans.length; i++) {
-			booleans[i] = ((SimpleValue)array.getDataItems().get(i)).getSimpleValueType() == SimpleValueType.TRUE;
+		int length = readArrayLength();
+		if (length == NULL_LENGTH) return null;
+		final int packedLength = readPackedLength(length);
+		if (packedLength != NULL_LENGTH) return readBits(new boolean[packedLength], packedLength);
+		boolean[] booleans = new boolean[length];
+		for (int i = 0; i < length; i++) {
+			booleans[i] = deserializeBoolean();
 		}
 		return booleans;
 	}
@@ -243,11 +196,51 @@ public class CborDeserializer extends Deserializer {
 	 * @return length of the deserialized array. 0 if the serialized array was empty or null.
 	 * @throws SerializationException if unable to deserialize array or the passed result array was too small. */
 	public int deserializeBooleanArray (final boolean[] result, final Size arrayLengthSize) throws SerializationException {
-		Array array = getArray();
-		for (int i = 0; i < array.getDataItems().size(); i++) {
-			result[i] = ((SimpleValue)array.getDataItems().get(i)).getSimpleValueType() == SimpleValueType.TRUE;
+		int length = readArrayLength();
+		if (length == NULL_LENGTH) return 0;
+		final int packedLength = readPackedLength(length);
+		if (packedLength != NULL_LENGTH) {
+			if (packedLength > result.length) throw tooSmall(packedLength, result.length);
+			readBits(result, packedLength);
+			return packedLength;
+		}
+		if (length > result.length) throw tooSmall(length, result.length);
+		for (int i = 0; i < length; i++) {
+			result[i] = deserializeBoolean();
+		}
+		return length;
+	}
+
+	/** @return bits deserialized from {@link CborSerializer#serializeBits(Bits)} or a boolean array, packed or not. Null if the
+	 *         serialized bits were null.
+	 * @throws SerializationException if unable to deserialize the bits. */
+	public Bits deserializeBits () throws SerializationException {
+		if (readNull()) return null;
+		final Bits bits = new Bits();
+		deserializeBits(bits);
+		return bits;
+	}
+
+	/** @param result cached bits. Will be cleared and then set to the deserialized values.
+	 * @return amount of deserialized values. 0 if the serialized bits were null.
+	 * @throws SerializationException if unable to deserialize the bits. */
+	public int deserializeBits (final Bits result) throws SerializationException {
+		result.clear();
+		int length = readArrayLength();
+		if (length == NULL_LENGTH) return 0;
+		final int packedLength = readPackedLength(length);
+		if (packedLength != NULL_LENGTH) {
+			try {
+				input.readBits(result, packedLength);
+			} catch (com.badlogic.gdx.utils.SerializationException ex) {
+				throw invalidData(ex);
+			}
+			return packedLength;
+		}
+		for (int i = 0; i < length; i++) {
+			if (deserializeBoolean()) result.set(i);
 		}
-		return array.getDataItems().size();
+		return length;
 	}
 
 	/** @return deserialized array of value, with length serialized with 4 bytes and each element serialized with 1 byte.
@@ -260,7 +253,14 @@ public class CborDeserializer extends Deserializer {
 	 * @return deserialized array of values, each stored in 1 byte.
 	 * @throws SerializationException if too few bytes to deserialize the array. */
 	public byte[] deserializeByteArray (final Size arrayLengthSize) throws SerializationException {
-		return ((ByteString)serializedData.get(currentByteArrayIndex++)).getBytes();
+		int initialByte = readHeader();
+		if (initialByte == NULL) return null;
+		if (initialByte >>> 5 != MAJOR_TYPE_BYTE_STRING) throw invalidItem(initialByte);
+		try {
+			return input.readBytes();
+		} catch (com.badlogic.gdx.utils.SerializationException ex) {
+			throw invalidData(ex);
+		}
 	}
 
 	/** @param result cached array. Will be filled with deserialized values; note that values above the original serialized index
@@ -279,9 +279,22 @@ public class CborDeserializer extends Deserializer {
 	 * @return length of the deserialized array. 0 if the serialized array was empty or null.
 	 * @throws SerializationException if unable to deserialize array or the passed result array was too small. */
 	public int deserializeByteArray (final byte[] result, final Size arrayLengthSize) throws SerializationException {
-		byte[] bytes = deserializeByteArray(arrayLengthSize);
-		System.arraycopy(bytes, 0, result, 0, bytes.length);
-		return bytes.length;
+		int initialByte = readHeader();
+		if (initialByte == NULL) return 0;
+		if (initialByte >>> 5 != MAJOR_TYPE_BYTE_STRING) throw invalidItem(initialByte);
+		try {
+			if (input.isIndefinite()) {
+				byte[] bytes = input.readBytes();
+				checkLength(bytes.length, result);
+				System.arraycopy(bytes, 0, result, 0, bytes.length);
+				return bytes.length;
+			}
+			int length = checkLength(input.getLength(), result);
+			input.readBytes(result, 0, length);
+			return length;
+		} catch (com.badlogic.gdx.utils.SerializationException ex) {
+			throw invalidData(ex);
+		}
 	}
 
 	/** @return deserialized array of value, with length serialized with 4 bytes and each element serialized with 2 bytes.
@@ -303,19 +316,11 @@ public class CborDeserializer extends Deserializer {
 	 * @return deserialized array of values.
 	 * @throws SerializationException if too few bytes to deserialize the array. */
 	public short[] deserializeShortArray (final Size arrayLengthSize, final Size elementSize) throws SerializationException {
-		Array array = getArray();
-		short[] shorts = new short[array.getDataItems().size()];
-		for (int i = 0; i < shorts.length; i++) {
-			switch (array.getDataItems().get(i).getMajorType()) {
-			case UNSIGNED_INTEGER:
-				shorts[i] = ((UnsignedInteger)array.getDataItems().get(i)).getValue().shortValueExact();
-				break;
-			case NEGATIVE_INTEGER:
-				shorts[i] = ((NegativeInteger)array.getDataItems().get(i)).getValue().shortValueExact();
-				break;
-			default:
-				throw new SerializationException("Invalid major type: " + array.getDataItems().get(i).getMajorType());
-			}
+		int length = readArrayLength();
+		if (length == NULL_LENGTH) return null;
+		short[] shorts = new short[length];
+		for (int i = 0; i < length; i++) {
+			shorts[i] = readShort();
 		}
 		return shorts;
 	}
@@ -349,20 +354,11 @@ public class CborDeserializer extends Deserializer {
 	 * @throws SerializationException if unable to deserialize array or the passed result array was too small. */
 	public int deserializeShortArray (final short[] result, final Size arrayLengthSize, final Size elementSize)
 		throws SerializationException {
-		Array array = getArray();
-		for (int i = 0; i < array.getDataItems().size(); i++) {
-			switch (array.getDataItems().get(i).getMajorType()) {
-			case UNSIGNED_INTEGER:
-				result[i] = ((UnsignedInteger)array.getDataItems().get(i)).getValue().shortValueExact();
-				break;
-			case NEGATIVE_INTEGER:
-				result[i] = ((NegativeInteger)array.getDataItems().get(i)).getValue().shortValueExact();
-				break;
-			default:
-				throw new SerializationException("Invalid major type: " + array.getDataItems().get(i).getMajorType());
-			}
+		int length = readArrayLength(result.length);
+		for (int i = 0; i < length; i++) {
+			result[i] = readShort();
 		}
-		return array.getDataItems().size();
+		return length;
 	}
 
 	/** @return deserialized array of value, with length serialized with 4 bytes and each element serialized with 4 bytes.
@@ -384,19 +380,11 @@ public class CborDeserializer extends Deserializer {
 	 * @return deserialized array of values.
 	 * @throws SerializationException if too few bytes to deserialize the array. */
 	public int[] deserializeIntArray (final Size arrayLengthSize, final Size elementSize) throws SerializationException {
-		Array array = getArray();
-		int[] ints = new int[array.getDataItems().size()];
-		for (int i = 0; i < ints.length; i++) {
-			switch (array.getDataItems().get(i).getMajorType()) {
-			case UNSIGNED_INTEGER:
-				ints[i] = ((UnsignedInteger)array.getDataItems().get(i)).getValue().intValueExact();
-				break;
-			case NEGATIVE_INTEGER:
-				ints[i] = ((NegativeInteger)array.getDataItems().get(i)).getValue().intValueExact();
-				break;
-			default:
-				throw new SerializationException("Invalid major type: " + array.getDataItems().get(i).getMajorType());
-			}
+		int length = readArrayLength();
+		if (length == NULL_LENGTH) return null;
+		int[] ints = new int[length];
+		for (int i = 0; i < length; i++) {
+			ints[i] = readInt();
 		}
 		return ints;
 	}
@@ -430,20 +418,11 @@ public class CborDeserializer extends Deserializer {
 	 * @throws SerializationException if unable to deserialize array or the passed result array was too small. */
 	public int deserializeIntArray (final int[] result, final Size arrayLengthSize, final Size elementSize)
 		throws SerializationException {
-		Array array = getArray();
-		for (int i = 0; i < array.getDataItems().size(); i++) {
-			switch (array.getDataItems().get(i).getMajorType()) {
-			case UNSIGNED_INTEGER:
-				result[i] = ((UnsignedInteger)array.getDataItems().get(i)).getValue().intValueExact();
-				break;
-			case NEGATIVE_INTEGER:
-				result[i] = ((NegativeInteger)array.getDataItems().get(i)).getValue().intValueExact();
-				break;
-			default:
-				throw new SerializationException("Invalid major type: " + array.getDataItems().get(i).getMajorType());
-			}
+		int length = readArrayLength(result.length);
+		for (int i = 0; i < length; i++) {
+			result[i] = readInt();
 		}
-		return array.getDataItems().size();
+		return length;
 	}
 
 	/** @return deserialized array of value, with length serialized with 4 bytes and each element serialized with 8 bytes.
@@ -464,19 +443,11 @@ public class CborDeserializer extends Deserializer {
 	 * @return deserialized array of values.
 	 * @throws SerializationException if too few bytes to deserialize the array. */
 	public long[] deserializeLongArray (final Size arrayLengthSize, final Size elementSize) throws SerializationException {
-		Array array = getArray();
-		long[] longs = new long[array.getDataItems().size()];
-		for (int i = 0; i < longs.length; i++) {
-			switch (array.getDataItems().get(i).getMajorType()) {
-			case UNSIGNED_INTEGER:
-				longs[i] = ((UnsignedInteger)array.getDataItems().get(i)).getValue().longValueExact();
-				break;
-			case NEGATIVE_INTEGER:
-				longs[i] = ((NegativeInteger)array.getDataItems().get(i)).getValue().longValueExact();
-				break;
-			default:
-				throw new SerializationException("Invalid major type: " + array.getDataItems().get(i).getMajorType());
-			}
+		int length = readArrayLength();
+		if (length == NULL_LENGTH) return null;
+		long[] longs = new long[length];
+		for (int i = 0; i < length; i++) {
+			longs[i] = readInteger();
 		}
 		return longs;
 	}
@@ -510,24 +481,11 @@ public class CborDeserializer extends Deserializer {
 	 * @throws SerializationException if unable to deserialize array or the passed result array was too small. */
 	public int deserializeLongArray (final long[] result, final Size arrayLengthSize, final Size elementSize)
 		throws SerializationException {
-		Array array = getArray();
-		for (int i = 0; i < array.getDataItems().size(); i++) {
-			switch (array.getDataItems().get(i).getMajorType()) {
-			case UNSIGNED_INTEGER:
-				result[i] = ((UnsignedInteger)array.getDataItems().get(i)).getValue().longValueExact();
-				break;
-			case NEGATIVE_INTEGER:
-				result[i] = ((NegativeInteger)array.getDataItems().get(i)).getValue().longValueExact();
-				break;
-			default:
-				throw new SerializationException("Invalid major type: " + array.getDataItems().get(i).getMajorType());
-			}
+		int length = readArrayLength(result.length);
+		for (int i = 0; i < length; i++) {
+			result[i] = readInteger();
 		}
-		return array.getDataItems().size();
-	}
-
-	private Array getArray () {
-		return (Array)serializedData.get(currentByteArrayIndex++);
+		return length;
 	}
 
 	/** @return deserialized array of value, with length serialized with 4 bytes and each element serialized with 4 bytes.
@@ -548,22 +506,11 @@ public class CborDeserializer extends Deserializer {
 	 * @return deserialized array of values.
 	 * @throws SerializationException if too few bytes to deserialize the array or element size is to small to store the number. */
 	public float[] deserializeFloatArray (final Size arrayLengthSize, final Size elementSize) throws SerializationException {
-		Array array = getArray();
-		float[] floats = new float[array.getDataItems().size()];
-		for (int i = 0; i < array.getDataItems().size(); i++) {
-			switch (elementSize) {
-			case SHORT:
-				floats[i] = ((HalfPrecisionFloat)array.getDataItems().get(i)).getValue();
-				break;
-			case INT:
-				floats[i] = ((SinglePrecisionFloat)array.getDataItems().get(i)).getValue();
-				break;
-			case LONG:
-				floats[i] = (float)((DoublePrecisionFloat)array.getDataItems().get(i)).getValue();
-				break;
-			default:
-				throw new SerializationException("Invalid size: " + elementSize);
-			}
+		int length = readArrayLength();
+		if (length == NULL_LENGTH) return null;
+		float[] floats = new float[length];
+		for (int i = 0; i < length; i++) {
+			floats[i] = (float)readFloat();
 		}
 		return floats;
 	}
@@ -597,23 +544,11 @@ public class CborDeserializer extends Deserializer {
 	 * @throws SerializationException if unable to deserialize array or the passed result array was too small. */
 	public int deserializeFloatArray (final float[] result, final Size arrayLengthSize, final Size elementSize)
 		throws SerializationException {
-		Array array = getArray();
-		for (int i = 0; i < array.getDataItems().size(); i++) {
-			switch (elementSize) {
-			case SHORT:
-				result[i] = ((HalfPrecisionFloat)array.getDataItems().get(i)).getValue();
-				break;
-			case INT:
-				result[i] = ((SinglePrecisionFloat)array.getDataItems().get(i)).getValue();
-				break;
-			case LONG:
-				result[i] = (float)((DoublePrecisionFloat)array.getDataItems().get(i)).getValue();
-				break;
-			default:
-				throw new SerializationException("Invalid size: " + elementSize);
-			}
+		int length = readArrayLength(result.length);
+		for (int i = 0; i < length; i++) {
+			result[i] = (float)readFloat();
 		}
-		return array.getDataItems().size();
+		return length;
 	}
 
 	/** @return deserialized array of value, with length serialized with 4 bytes and each element serialized with 8 bytes.
@@ -634,22 +569,11 @@ public class CborDeserializer extends Deserializer {
 	 * @return deserialized array of values.
 	 * @throws SerializationException if too few bytes to deserialize the array or element size is to small to store the number. */
 	public double[] deserializeDoubleArray (final Size arrayLengthSize, final Size elementSize) throws SerializationException {
-		Array array = getArray();
-		double[] doubles = new double[array.getDataItems().size()];
-		for (int i = 0; i < array.getDataItems().size(); i++) {
-			switch (elementSize) {
-			case SHORT:
-				doubles[i] = ((HalfPrecisionFloat)array.getDataItems().get(i)).getValue();
-				break;
-			case INT:
-				doubles[i] = ((SinglePrecisionFloat)array.getDataItems().get(i)).getValue();
-				break;
-			case LONG:
-				doubles[i] = ((DoublePrecisionFloat)array.getDataItems().get(i)).getValue();
-				break;
-			default:
-				throw new SerializationException("Invalid size: " + elementSize);
-			}
+		int length = readArrayLength();
+		if (length == NULL_LENGTH) return null;
+		double[] doubles = new double[length];
+		for (int i = 0; i < length; i++) {
+			doubles[i] = readFloat();
 		}
 		return doubles;
 	}
@@ -683,23 +607,11 @@ public class CborDeserializer extends Deserializer {
 	 * @throws SerializationException if unable to deserialize array or the passed result array was too small. */
 	public int deserializeDoubleArray (final double[] result, final Size arrayLengthSize, final Size elementSize)
 		throws SerializationException {
-		Array array = getArray();
-		for (int i = 0; i < array.getDataItems().size(); i++) {
-			switch (elementSize) {
-			case SHORT:
-				result[i] = ((HalfPrecisionFloat)array.getDataItems().get(i)).getValue();
-				break;
-			case INT:
-				result[i] = ((SinglePrecisionFloat)array.getDataItems().get(i)).getValue();
-				break;
-			case LONG:
-				result[i] = ((DoublePrecisionFloat)array.getDataItems().get(i)).getValue();
-				break;
-			default:
-				throw new SerializationException("Invalid size: " + elementSize);
-			}
+		int length = readArrayLength(result.length);
+		for (int i = 0; i < length; i++) {
+			result[i] = readFloat();
 		}
-		return array.getDataItems().size();
+		return length;
 	}
 
 	/** @return string deserialized from byte array, with 4 bytes used to deserialize array length.
@@ -713,7 +625,14 @@ public class CborDeserializer extends Deserializer {
 	 * @return string deserialized from byte array.
 	 * @throws SerializationException if too few bytes to deserialize the string. */
 	public String deserializeString (final Size stringLengthSize) throws SerializationException {
-		return ((UnicodeString)serializedData.get(currentByteArrayIndex++)).getString();
+		int initialByte = readHeader();
+		if (initialByte == NULL) return null;
+		if (initialByte >>> 5 != MAJOR_TYPE_UNICODE_STRING) throw invalidItem(initialByte);
+		try {
+			return input.readString();
+		} catch (com.badlogic.gdx.utils.SerializationException ex) {
+			throw invalidData(ex);
+		}
 	}
 
 	/** @return string array deserialized from array of byte arrays, using 4 bytes to determine main array length and 4 bytes for
@@ -737,10 +656,11 @@ public class CborDeserializer extends Deserializer {
 	 * @throws SerializationException if too few bytes to deserialize the array; */
 	public String[] deserializeStringArray (final Size arrayLengthSize, final Size stringLengthSize)
 		throws SerializationException {
-		Array array = getArray();
-		String[] strings = new String[array.getDataItems().size()];
-		for (int i = 0; i < strings.length; i++) {
-			strings[i] = ((UnicodeString)array.getDataItems().get(i)).getString();
+		int length = readArrayLength();
+		if (length == NULL_LENGTH) return null;
+		String[] strings = new String[length];
+		for (int i = 0; i < length; i++) {
+			strings[i] = deserializeString(stringLengthSize);
 		}
 		return strings;
 	}
@@ -771,11 +691,14 @@ public class CborDeserializer extends Deserializer {
 	 * @throws SerializationException if unable to deserialize of the passed array was too small. */
 	public int deserializeStringArray (final String[] result, final Size arrayLengthSize, final Size stringLengthSize)
 		throws SerializationException {
-		Array array = getArray();
-		for (int i = 0; i < array.getDataItems().size(); i++) {
-			result[i] = ((UnicodeString)array.getDataItems().get(i)).getString();
+		int length = readArrayLength(result.length);
+		for (int i = 0; i < length; i++) {
+			result[i] = deserializeString(stringLengthSize);
+		}
+		for (int i = length; i < result.length; i++) {
+			result[i] = null;
 		}
-		return array.getDataItems().size();
+		return length;
 	}
 
 	/** @param transferable example instance of transferable, used to invoke deserialization method.
@@ -784,15 +707,14 @@ public class CborDeserializer extends Deserializer {
 	 * @param <Type> type of transferable. */
 	public <Type extends Transferable<Type>> Type deserializeTransferable (final Transferable<Type> transferable)
 		throws SerializationException {
-		List<DataItem> previousDataItems = serializedData;
-		Array array = getArray();
-		int previousCurrentByteArrayIndex = currentByteArrayIndex;
-		currentByteArrayIndex = 0;
-		serializedData = array.getDataItems();
-		Type t = transferable.deserialize(this);
-		serializedData = previousDataItems;
-		currentByteArrayIndex = previousCurrentByteArrayIndex;
-		return t;
+		final int start = input.getPosition();
+		if (readArrayLength() == NULL_LENGTH)
+			throw new SerializationException("Cannot deserialize transferable: null object received.");
+		final Type result = transferable.deserialize(this);
+		// Continues after the whole array, whatever amount of its elements the transferable read.
+		input.setPosition(start);
+		skipItem();
+		return result;
 	}
 
 	/** @param transferable example instance of transferable, used to invoke deserialization method.
@@ -815,21 +737,12 @@ public class CborDeserializer extends Deserializer {
 	 * @throws SerializationException if too few bytes to deserialize array or unable to deserialize any of its elements. */
 	public <Type extends Transferable<Type>> Type[] deserializeTransferableArray (final Transferable<Type> transferable,
 		final ArrayProvider<Type> arrayProvider, final Size arrayLengthSize) throws SerializationException {
-		Array array = getArray();
-		final int arraySize = array.getDataItems().size();
-		final Type[] transferables = arrayProvider.getArray(arraySize);
-		if (arraySize == 0) {
-			return transferables;
-		}
-		List<DataItem> previousDataItems = serializedData;
-		int previousCurrentByteArrayIndex = currentByteArrayIndex;
-		serializedData = array.getDataItems();
-		for (int i = 0; i < arraySize; i++) {
-			currentByteArrayIndex = i;
+		int length = readArrayLength();
+		if (length == NULL_LENGTH) return null;
+		final Type[] transferables = arrayProvider.getArray(length);
+		for (int i = 0; i < length; i++) {
 			transferables[i] = deserializeTransferable(transferable);
 		}
-		serializedData = previousDataItems;
-		currentByteArrayIndex = previousCurrentByteArrayIndex;
 		return transferables;
 	}
 
@@ -851,15 +764,14 @@ public class CborDeserializer extends Deserializer {
 	 * @throws SerializationException if unable to deserialize of the passed array was too small. */
 	public int deserializeTransferableArray (final Transferable<?>[] result, final Transferable<?> transferable,
 		final Size arrayLengthSize) throws SerializationException {
-		Array array = getArray();
-		final int arraySize = array.getDataItems().size();
-		if (arraySize == 0) {
-			return arraySize;
+		int length = readArrayLength(result.length);
+		for (int i = 0; i < length; i++) {
+			result[i] = (Transferable<?>)deserializeTransferable((Transferable)transferable);
 		}
-		for (int index = 0; index < arraySize; index++) {
-			result[index] = deserializeTransferable(transferable);
+		for (int i = length; i < result.length; i++) {
+			result[i] = null;
 		}
-		return arraySize;
+		return length;
 	}
 
 	/** @param transferable example instance of transferable, used to invoke deserialization method.
@@ -883,27 +795,12 @@ public class CborDeserializer extends Deserializer {
 	public <Type extends Transferable<Type>> Type[] deserializeTransferableArrayWithPossibleNulls (
 		final Transferable<Type> transferable, final ArrayProvider<Type> arrayProvider, final Size arrayLengthSize)
 		throws SerializationException {
-		Array array = getArray();
-		final int arraySize = array.getDataItems().size();
-		final Type[] transferables = arrayProvider.getArray(arraySize);
-		if (arraySize == 0) {
-			return transferables;
-		}
-		List<DataItem> previousDataItems = serializedData;
-		int previousCurrentByteArrayIndex = currentByteArrayIndex;
-		serializedData = array.getDataItems();
-		for (int index = 0; index < arraySize; index++) {
-			DataItem dataItem = array.getDataItems().get(index);
-			if (dataItem.getMajorType() == SPECIAL && ((Special)dataItem).getSpecialType() == SIMPLE_VALUE
-				&& ((SimpleValue)dataItem).getSimpleValueType() == NULL) {
-				transferables[index] = null;
-			} else {
-				currentByteArrayIndex = index;
-				transferables[index] = deserializeTransferable(transferable);
-			}
+		int length = readArrayLength();
+		if (length == NULL_LENGTH) return null;
+		final Type[] transferables = arrayProvider.getArray(length);
+		for (int i = 0; i < length; i++) {
+			transferables[i] = readNull() ? null : deserializeTransferable(transferable);
 		}
-		serializedData = previousDataItems;
-		currentByteArrayIndex = previousCurrentByteArrayIndex;
 		return transferables;
 	}
 
@@ -925,26 +822,145 @@ public class CborDeserializer extends Deserializer {
 	 * @throws SerializationException if unable to deserialize of the passed array was too small. */
 	public int deserializeTransferableArrayWithPossibleNulls (final Transferable<?>[] result, final Transferable<?> transferable,
 		final Size arrayLengthSize) throws SerializationException {
-		Array array = getArray();
-		final int arraySize = array.getDataItems().size();
-		if (arraySize == 0) {
-			return 0;
-		}
-		List<DataItem> previousDataItems = serializedData;
-		int previousCurrentByteArrayIndex = currentByteArrayIndex;
-		serializedData = array.getDataItems();
-		for (int index = 0; index < arraySize; index++) {
-			DataItem dataItem = array.getDataItems().get(index);
-			if (dataItem.getMajorType() == SPECIAL && ((Special)dataItem).getSpecialType() == SIMPLE_VALUE
-				&& ((SimpleValue)dataItem).getSimpleValueType() == NULL) {
-				result[index] = null;
-			} else {
-				currentByteArrayIndex = index;
-				result[index] = deserializeTransferable(transferable);
-			}
+		int length = readArrayLength(result.length);
+		for (int i = 0; i < length; i++) {
+			result[i] = readNull() ? null : (Transferable<?>)deserializeTransferable((Transferable)transferable);
+		}
+		for (int i = length; i < result.length; i++) {
+			result[i] = null;
+		}
+		return length;
+	}
+
+	private int readHeader () throws SerializationException {
+		try {
+			return input.readHeader();
+		} catch (com.badlogic.gdx.utils.SerializationException ex) {
+			throw invalidData(ex);
+		}
+	}
+
+	private void skipItem () throws SerializationException {
+		try {
+			input.skipItem();
+		} catch (com.badlogic.gdx.utils.SerializationException ex) {
+			throw invalidData(ex);
+		}
+	}
+
+	/** Consumes the next data item if it is null.
+	 * @return true if it was null. */
+	private boolean readNull () throws SerializationException {
+		if (input.peek() != NULL) return false;
+		readHeader();
+		return true;
+	}
+
+	private long readInteger () throws SerializationException {
+		int initialByte = readHeader();
+		long argument = input.getArgument();
+		switch (initialByte >>> 5) {
+		case MAJOR_TYPE_UNSIGNED_INTEGER:
+			if (argument < 0) throw new SerializationException("Integer is too large for a long.");
+			return argument;
+		case MAJOR_TYPE_NEGATIVE_INTEGER:
+			if (argument < 0) throw new SerializationException("Integer is too small for a long.");
+			return ~argument;
+		default:
+			throw invalidItem(initialByte);
+		}
+	}
+
+	/** Reads the length and the header of the bitset of a boolean array packed by {@link CborSerializer#serializeBits(Bits)} or
+	 * {@link CborSerializer#setPackedBooleanArrays(boolean)}, whose array header was read with the given length. A packed array
+	 * starts with an integer, while the elements of a plain boolean array are booleans.
+	 * @return the amount of booleans, or {@link #NULL_LENGTH} if the array is not packed. */
+	private int readPackedLength (final int arrayLength) throws SerializationException {
+		if (arrayLength != 2 || input.peek() >>> 5 != MAJOR_TYPE_UNSIGNED_INTEGER) return NULL_LENGTH;
+		final long length = readInteger();
+		if (length > Integer.MAX_VALUE) throw outOfRange(length);
+		final int initialByte = readHeader();
+		if (initialByte >>> 5 != MAJOR_TYPE_BYTE_STRING || input.isIndefinite() || input.getLength() != (length + 7 >>> 3)
+			|| !input.hasRemaining(input.getLength()))
+			throw new SerializationException("Invalid bitset of " + length + " booleans.");
+		return (int)length;
+	}
+
+	private boolean[] readBits (final boolean[] result, final int length) throws SerializationException {
+		try {
+			return input.readBits(result, 0, length);
+		} catch (com.badlogic.gdx.utils.SerializationException ex) {
+			throw invalidData(ex);
 		}
-		serializedData = previousDataItems;
-		currentByteArrayIndex = previousCurrentByteArrayIndex;
-		return arraySize;
+	}
+
+	private int readInt () throws SerializationException {
+		long value = readInteger();
+		if (value < Integer.MIN_VALUE || value > Integer.MAX_VALUE) throw outOfRange(value);
+		return (int)value;
+	}
+
+	private short readShort () throws SerializationException {
+		long value = readInteger();
+		if (value < Short.MIN_VALUE || value > Short.MAX_VALUE) throw outOfRange(value);
+		return (short)value;
+	}
+
+	/** Reads a half, single or double precision float, whichever was written. */
+	private double readFloat () throws SerializationException {
+		int initialByte = readHeader();
+		switch (initialByte) {
+		case HALF_PRECISION_FLOAT:
+			return CborInput.halfToFloat((int)input.getArgument());
+		case SINGLE_PRECISION_FLOAT:
+			return Float.intBitsToFloat((int)input.getArgument());
+		case DOUBLE_PRECISION_FLOAT:
+			return Double.longBitsToDouble(input.getArgument());
+		default:
+			throw invalidItem(initialByte);
+		}
+	}
+
+	/** Reads the header of an array.
+	 * @return the amount of elements, or {@link #NULL_LENGTH} if the array is null. */
+	private int readArrayLength () throws SerializationException {
+		int initialByte = readHeader();
+		if (initialByte == NULL) return NULL_LENGTH;
+		if (initialByte >>> 5 != MAJOR_TYPE_ARRAY) throw invalidItem(initialByte);
+		if (input.isIndefinite()) throw new SerializationException("Indefinite length arrays are not supported.");
+		final int length = input.getLength();
+		// Every element takes at least one byte, which rules out lengths the data cannot hold before allocating for them.
+		if (!input.hasRemaining(length)) throw new SerializationException("Array length exceeds the serialized data: " + length);
+		return length;
+	}
+
+	/** Reads the header of an array whose elements are stored in the result array.
+	 * @return the amount of elements, 0 if the array is null. */
+	private int readArrayLength (final int resultLength) throws SerializationException {
+		int length = readArrayLength();
+		if (length == NULL_LENGTH) return 0;
+		if (length > resultLength) throw tooSmall(length, resultLength);
+		return length;
+	}
+
+	private static int checkLength (final int length, final byte[] result) throws SerializationException {
+		if (length > result.length) throw tooSmall(length, result.length);
+		return length;
+	}
+
+	private static SerializationException tooSmall (final int length, final int resultLength) {
+		return new SerializationException("Result array is too small: " + resultLength + ", serialized length: " + length);
+	}
+
+	private static SerializationException outOfRange (final long value) {
+		return new SerializationException("Value out of range: " + value);
+	}
+
+	private static SerializationException invalidItem (final int initialByte) {
+		return new SerializationException("Invalid data item: 0x" + Integer.toHexString(initialByte));
+	}
+
+	private static SerializationException invalidData (final Exception cause) {
+		return new SerializationException("Invalid serialized data: " + cause.getMessage(), cause);
 	}
 }
@@ -1,28 +1,26 @@
 
 package dev.simonit.gdx.websocket.cbor.serialization;
 
-import co.nstant.in.cbor.CborBuilder;
-import co.nstant.in.cbor.CborEncoder;
-import co.nstant.in.cbor.CborException;
-import co.nstant.in.cbor.builder.AbstractBuilder;
-import co.nstant.in.cbor.builder.ArrayBuilder;
-import co.nstant.in.cbor.model.DoublePrecisionFloat;
-import co.nstant.in.cbor.model.HalfPrecisionFloat;
-import co.nstant.in.cbor.model.SimpleValue;
-import co.nstant.in.cbor.model.SinglePrecisionFloat;
+import com.badlogic.gdx.utils.Bits;
 import com.github.czyzby.websocket.serialization.Transferable;
 import com.github.czyzby.websocket.serialization.impl.Serializer;
 import com.github.czyzby.websocket.serialization.impl.Size;
 import com.github.czyzby.websocket.serialization.SerializationException;
+import dev.simonit.gdx.cbor.CborOutput;
 
-import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
 
+/** Serializes values as CBOR. Every value is encoded into a growable buffer as soon as it is passed, arrays and transferables
+ * are written with definite lengths that {@link CborOutput} patches when they end. Apart from the buffer nothing is allocated
+ * while serializing. */
 public class CborSerializer extends Serializer {
 	private static final int DEFAULT_BYTES_AMOUNT_ESTIMATION = 32;
 
 	// Package private, as most serialization methods are in Size enum.
-	ByteArrayOutputStream serializedData;
-	AbstractBuilder<?> builder;
+	final CborOutput serializedData;
+	private boolean shortestFloats;
+	private boolean fixedWidthIntegers;
+	private boolean packedBooleanArrays;
 
 	public CborSerializer () {
 		this(DEFAULT_BYTES_AMOUNT_ESTIMATION);
@@ -32,25 +30,60 @@ public class CborSerializer extends Serializer {
 	 *           the array will be resized. If it has less - the relevant bytes will be copied to a new, shorter array upon final
 	 *           serializing method. Has to be positive. */
 	public CborSerializer (final int estimatedBytesAmount) {
-		serializedData = new ByteArrayOutputStream(estimatedBytesAmount);
-		builder = new CborBuilder();
+		serializedData = new CborOutput(estimatedBytesAmount);
 	}
 
-	/** Changes current byte index, effectively using current wrapped byte array to serialize another object. */
+	public boolean isShortestFloats () {
+		return shortestFloats;
+	}
+
+	/** @param shortestFloats if true, {@link #serializeFloat(float)} and {@link #serializeDouble(double)} use the shortest of
+	 *           half, single and double precision that keeps the exact value, see
+	 *           {@link dev.simonit.gdx.cbor.CborOutput#setShortestFloats(boolean)}. NaNs keep their payload, so only NaNs like
+	 *           {@link Float#NaN} and {@link Double#NaN} take 2 bytes, others keep their size. Methods with an explicit size are
+	 *           not affected. Defaults to false. */
+	public void setShortestFloats (final boolean shortestFloats) {
+		this.shortestFloats = shortestFloats;
+	}
+
+	public boolean isFixedWidthIntegers () {
+		return fixedWidthIntegers;
+	}
+
+	/** @param fixedWidthIntegers if true, integers are written with exactly the amount of bytes of their {@link Size} instead of
+	 *           the shortest encoding, see {@link CborOutput#writeInteger(long, int)}. Every integer then takes the same space
+	 *           regardless of its value, so frames have a predictable layout and an integer can be overwritten in a serialized
+	 *           frame with {@link CborOutput#patchInteger(byte[], int, long)}, for example a sequence number. Its offset is
+	 *           {@link #getSerializedLength()} before it is serialized. Array and transferable lengths are written with 4 bytes
+	 *           then, see {@link CborOutput#startArray(int)}, so the offset stays valid when the array ends. Values that do not
+	 *           fit into their size throw a {@link SerializationException}. Defaults to false. */
+	public void setFixedWidthIntegers (final boolean fixedWidthIntegers) {
+		this.fixedWidthIntegers = fixedWidthIntegers;
+	}
+
+	public boolean isPackedBooleanArrays () {
+		return packedBooleanArrays;
+	}
+
+	/** @param packedBooleanArrays if true, boolean arrays are written as an array of their length and a byte string holding 8
+	 *           booleans per byte, see {@link CborOutput#writeBits(boolean[], int, int)}. Arrays of many booleans then take about
+	 *           an eighth of the space. {@link CborDeserializer} reads both forms. Defaults to false. */
+	public void setPackedBooleanArrays (final boolean packedBooleanArrays) {
+		this.packedBooleanArrays = packedBooleanArrays;
+	}
+
+	/** Changes current byte index, effectively using current wrapped byte array to serialize another object. The array is kept,
+	 * so once it has grown to the size of the largest object, serializing allocates nothing but the copy returned by
+	 * {@link #serialize()}. */
 	public void reset () {
 		serializedData.reset();
-		((CborBuilder)builder).reset();
 	}
 
 	/** @param value will be serialized with 1 byte. Custom, more efficient boolean serializations must be implemented manually.
 	 * @return this (for chaining). */
 	@Override
 	public CborSerializer serializeBoolean (final boolean value) {
-		if (builder instanceof CborBuilder) {
-			((CborBuilder)builder).add(value);
-		} else if (builder instanceof ArrayBuilder) {
-			((ArrayBuilder<?>)builder).add(value);
-		}
+		serializedData.writeBoolean(value);
 		return this;
 	}
 
@@ -58,12 +91,7 @@ public class CborSerializer extends Serializer {
 	 * @return this (for chaining). */
 	@Override
 	public CborSerializer serializeByte (final byte value) {
-		if (builder instanceof CborBuilder) {
-			((CborBuilder)builder).add(value);
-		} else if (builder instanceof ArrayBuilder) {
-			((ArrayBuilder<?>)builder).add(value);
-		}
-		return this;
+		return serializeInteger(value, Size.BYTE);
 	}
 
 	/** @param value will be serialized with 2 bytes.
@@ -75,12 +103,7 @@ public class CborSerializer extends Serializer {
 
 	@Override
 	public CborSerializer serializeShort (final short value, final Size size) {
-		if (builder instanceof CborBuilder) {
-			((CborBuilder)builder).add(value);
-		} else if (builder instanceof ArrayBuilder) {
-			((ArrayBuilder<?>)builder).add(value);
-		}
-		return this;
+		return serializeInteger(value, size);
 	}
 
 	/** @param value will be serialized with 4 bytes.
@@ -91,18 +114,12 @@ public class CborSerializer extends Serializer {
 	}
 
 	/** @param value will be serialized.
-	 * @param size amount of bytes used to serialize the number. If smaller than actual number size, will truncate. If bigger than
-	 *           actual number size, will ignore the size and serialize with the actual size needed to store all bytes of number
-	 *           data.
+	 * @param size amount of bytes used to serialize the number. Ignored unless {@link #setFixedWidthIntegers(boolean) fixed width
+	 *           integers} are enabled, which throw a {@link SerializationException} if the number does not fit.
 	 * @return this (for chaining). */
 	@Override
 	public CborSerializer serializeInt (final int value, final Size size) {
-		if (builder instanceof CborBuilder) {
-			builder = ((CborBuilder)builder).add(value);
-		} else if (builder instanceof ArrayBuilder) {
-			builder = ((ArrayBuilder<?>)builder).add(value);
-		}
-		return this;
+		return serializeInteger(value, size);
 	}
 
 	/** @param value will be serialized with 8 bytes.
@@ -113,24 +130,21 @@ public class CborSerializer extends Serializer {
 	}
 
 	/** @param value will be serialized.
-	 * @param size amount of bytes used to serialize the number. If smaller than actual number size, will truncate.
+	 * @param size amount of bytes used to serialize the number. Ignored unless {@link #setFixedWidthIntegers(boolean) fixed width
+	 *           integers} are enabled, which throw a {@link SerializationException} if the number does not fit.
 	 * @return this (for chaining). */
 	@Override
 	public CborSerializer serializeLong (final long value, final Size size) {
-		if (builder instanceof CborBuilder) {
-			((CborBuilder)builder).add(value);
-		} else if (builder instanceof ArrayBuilder) {
-			((ArrayBuilder<?>)builder).add(value);
-		}
-		return this;
+		return serializeInteger(value, size);
 	}
 
-	/** @param value will be serialized with 4 bytes.
+	/** @param value will be serialized with 4 bytes, or 2 if {@link #setShortestFloats(boolean) shortest floats} are enabled
+	 *           and the value fits.
 	 * @return this (for chaining). */
 	@Override
 	public CborSerializer serializeFloat (final float value) {
 		try {
-			return serializeFloat(value, Size.INT);
+			return serializeFloat(value, shortestFloats && CborOutput.floatToHalf(value) != -1 ? Size.SHORT : Size.INT);
 		} catch (final SerializationException exception) {
 			// Should never happen, INT is big enough to store a float.
 			throw new RuntimeException("Unexpected serialization exception.", exception);
@@ -143,43 +157,31 @@ public class CborSerializer extends Serializer {
 	 * @return this (for chaining). */
 	@Override
 	public CborSerializer serializeFloat (final float value, final Size size) throws SerializationException {
-		if (builder instanceof CborBuilder) {
-			switch (size) {
-			case BYTE:
-				throw new SerializationException("Byte is too small to store float data. Cannot truncate.");
-			case SHORT:
-				((CborBuilder)builder).add(new HalfPrecisionFloat(value));
-				break;
-			case INT:
-				((CborBuilder)builder).add(new SinglePrecisionFloat(value));
-				break;
-			case LONG:
-				((CborBuilder)builder).add(new DoublePrecisionFloat(value));
-				break;
-			}
-		} else if (builder instanceof ArrayBuilder) {
-			switch (size) {
-			case BYTE:
-				throw new SerializationException("Byte is too small to store float data. Cannot truncate.");
-			case SHORT:
-				((ArrayBuilder<?>)builder).add(new HalfPrecisionFloat(value));
-				break;
-			case INT:
-				((ArrayBuilder<?>)builder).add(new SinglePrecisionFloat(value));
-				break;
-			case LONG:
-				((ArrayBuilder<?>)builder).add(new DoublePrecisionFloat(value));
-				break;
-			}
+		switch (size) {
+		case BYTE:
+			throw new SerializationException("Byte is too small to store float data. Cannot truncate.");
+		case SHORT:
+			serializedData.writeHalf(value);
+			break;
+		case INT:
+			serializedData.writeFloat(value);
+			break;
+		case LONG:
+			serializedData.writeDouble(value);
+			break;
 		}
 		return this;
 	}
 
-	/** @param value will be serialized with 8 bytes.
+	/** @param value will be serialized with 8 bytes, or 4 or 2 if {@link #setShortestFloats(boolean) shortest floats} are
+	 *           enabled and the value fits.
 	 * @return this (for chaining). */
 	@Override
 	public CborSerializer serializeDouble (final double value) {
 		try {
+			// Of the NaNs only Double.NaN is cast, as the cast may change the payload of others.
+			if (shortestFloats && ((float)value == value || Double.doubleToRawLongBits(value) == 0x7FF8000000000000L))
+				return serializeFloat((float)value);
 			return serializeDouble(value, Size.LONG);
 		} catch (final SerializationException exception) {
 			// Should never happen, LONG is big enough to store a double.
@@ -188,39 +190,24 @@ public class CborSerializer extends Serializer {
 	}
 
 	/** @param value will be serialized.
-	 * @param size amount of bytes used to serialize the number. If smaller than actual number size, will truncate.
+	 * @param size amount of bytes used to serialize the number. The value is rounded to single or half precision if it is
+	 *           smaller than 8 bytes, regardless of {@link #setFixedWidthIntegers(boolean) fixed width integers}.
 	 * @throws SerializationException if the size is too small to store this number.
 	 * @return this (for chaining). */
 	@Override
 	public CborSerializer serializeDouble (final double value, final Size size) throws SerializationException {
-		if (builder instanceof CborBuilder) {
-			switch (size) {
-			case BYTE:
-				throw new SerializationException("Byte is too small to store double data. Cannot truncate");
-			case SHORT:
-				((CborBuilder)builder).add(new HalfPrecisionFloat((float)value));
-				break;
-			case INT:
-				((CborBuilder)builder).add(new SinglePrecisionFloat((float)value));
-				break;
-			case LONG:
-				((CborBuilder)builder).add(new DoublePrecisionFloat(value));
-				break;
-			}
-		} else if (builder instanceof ArrayBuilder) {
-			switch (size) {
-			case BYTE:
-				throw new SerializationException("Byte is too small to store double data. Cannot truncate");
-			case SHORT:
-				((ArrayBuilder<?>)builder).add(new HalfPrecisionFloat((float)value));
-				break;
-			case INT:
-				((ArrayBuilder<?>)builder).add(new SinglePrecisionFloat((float)value));
-				break;
-			case LONG:
-				((ArrayBuilder<?>)builder).add(new DoublePrecisionFloat(value));
-				break;
-			}
+		switch (size) {
+		case BYTE:
+			throw new SerializationException("Byte is too small to store double data. Cannot truncate");
+		case SHORT:
+			serializedData.writeHalf((float)value);
+			break;
+		case INT:
+			serializedData.writeFloat((float)value);
+			break;
+		case LONG:
+			serializedData.writeDouble(value);
+			break;
 		}
 		return this;
 	}
@@ -262,6 +249,13 @@ public class CborSerializer extends Serializer {
 	 * @return this (for chaining). */
 	@Override
 	public CborSerializer serializeBooleanArray (final boolean[] array, final Size arrayLengthSize) throws SerializationException {
+		if (packedBooleanArrays) {
+			startArray();
+			serializedData.writeLong(array.length);
+			serializedData.writeBits(array, 0, array.length);
+			endArray();
+			return this;
+		}
 		startArray();
 		for (final boolean value : array) {
 			serializeBoolean(value);
@@ -270,6 +264,23 @@ public class CborSerializer extends Serializer {
 		return this;
 	}
 
+	/** @param bits will be serialized packed, like boolean arrays with {@link #setPackedBooleanArrays(boolean) packed boolean
+	 *           arrays}, which do not have to be enabled. The bits up to {@link Bits#length()} are stored, that is up to the highest
+	 *           set bit. Can be deserialized with {@link CborDeserializer#deserializeBits()} or as boolean array. Might be null.
+	 * @return this (for chaining). */
+	public CborSerializer serializeBits (final Bits bits) {
+		if (bits == null) {
+			serializedData.writeNull();
+			return this;
+		}
+		final int length = bits.length();
+		startArray();
+		serializedData.writeLong(length);
+		serializedData.writeBits(bits, length);
+		endArray();
+		return this;
+	}
+
 	/** @param array will be serialized, using 1 byte to store each value and 4 bytes to store array size.
 	 * @return this (for chaining). */
 	@Override
@@ -289,11 +300,7 @@ public class CborSerializer extends Serializer {
 	 * @return this (for chaining). */
 	@Override
 	public CborSerializer serializeByteArray (final byte[] array, final Size arrayLengthSize) throws SerializationException {
-		if (builder instanceof CborBuilder) {
-			((CborBuilder)builder).add(array);
-		} else if (builder instanceof ArrayBuilder) {
-			((ArrayBuilder<?>)builder).add(array);
-		}
+		serializedData.writeBytes(array);
 		return this;
 	}
 
@@ -322,9 +329,10 @@ public class CborSerializer extends Serializer {
 	/** @param array will be serialized.
 	 * @param arrayLengthSize amount of bytes used to serialized array length. Array length cannot exceed
 	 *           {@link Size#getMaxArrayLength()} .
-	 * @param elementSize amount of bytes used to serialize each array element. If smaller than actual number size, will truncate.
-	 *           If bigger than actual number size, will ignore the size and serialize with the actual size needed to store all
-	 *           bytes of number data.
+	 * @param elementSize amount of bytes used to serialize each array element. Ignored unless
+	 *           {@link #setFixedWidthIntegers(boolean) fixed width integers} are enabled, which throw a
+	 *           {@link SerializationException} if an element does not fit. Otherwise each element takes the bytes it needs, numbers
+	 *           are never truncated.
 	 * @throws SerializationException if array length is longer than the maximum expected array length.
 	 * @return this (for chaining). */
 	@Override
@@ -363,9 +371,10 @@ public class CborSerializer extends Serializer {
 	/** @param array will be serialized.
 	 * @param arrayLengthSize amount of bytes used to serialized array length. Array length cannot exceed
 	 *           {@link Size#getMaxArrayLength()} .
-	 * @param elementSize amount of bytes used to serialize each array element. If smaller than actual number size, will truncate.
-	 *           If bigger than actual number size, will ignore the size and serialize with the actual size needed to store all
-	 *           bytes of number data.
+	 * @param elementSize amount of bytes used to serialize each array element. Ignored unless
+	 *           {@link #setFixedWidthIntegers(boolean) fixed width integers} are enabled, which throw a
+	 *           {@link SerializationException} if an element does not fit. Otherwise each element takes the bytes it needs, numbers
+	 *           are never truncated.
 	 * @throws SerializationException if array length is longer than the maximum expected array length.
 	 * @return this (for chaining). */
 	@Override
@@ -404,7 +413,10 @@ public class CborSerializer extends Serializer {
 	/** @param array will be serialized.
 	 * @param arrayLengthSize amount of bytes used to serialized array length. Array length cannot exceed
 	 *           {@link Size#getMaxArrayLength()} .
-	 * @param elementSize amount of bytes used to serialize each array element. If smaller than actual number size, will truncate.
+	 * @param elementSize amount of bytes used to serialize each array element. Ignored unless
+	 *           {@link #setFixedWidthIntegers(boolean) fixed width integers} are enabled, which throw a
+	 *           {@link SerializationException} if an element does not fit. Otherwise each element takes the bytes it needs, numbers
+	 *           are never truncated.
 	 * @throws SerializationException if array length is longer than the maximum expected array length.
 	 * @return this (for chaining). */
 	@Override
@@ -483,7 +495,8 @@ public class CborSerializer extends Serializer {
 	/** @param array will be serialized.
 	 * @param arrayLengthSize amount of bytes used to serialized array length. Array length cannot exceed
 	 *           {@link Size#getMaxArrayLength()} .
-	 * @param elementSize amount of bytes used to serialize each array element. If smaller than actual number size, will truncate.
+	 * @param elementSize amount of bytes used to serialize each array element. Elements are rounded to single or half precision
+	 *           if it is smaller than 8 bytes, regardless of {@link #setFixedWidthIntegers(boolean) fixed width integers}.
 	 * @throws SerializationException if array length is longer than the maximum expected array length or selected element size is
 	 *            to small to store the number.
 	 * @return this (for chaining). */
@@ -512,11 +525,7 @@ public class CborSerializer extends Serializer {
 	 * @return this (for chaining). */
 	@Override
 	public CborSerializer serializeString (final String value, final Size stringLengthSize) throws SerializationException {
-		if (builder instanceof CborBuilder) {
-			((CborBuilder)builder).add(value);
-		} else if (builder instanceof ArrayBuilder) {
-			((ArrayBuilder<?>)builder).add(value);
-		}
+		serializedData.writeString(value);
 		return this;
 	}
 
@@ -623,11 +632,7 @@ public class CborSerializer extends Serializer {
 	public CborSerializer serializeTransferableArray (final Transferable<?>[] transferables, final int start, final int count,
 		final Size arrayLengthSize) throws SerializationException {
 		if (transferables == null) {
-			if (builder instanceof CborBuilder) {
-				((CborBuilder)builder).add(SimpleValue.NULL);
-			} else if (builder instanceof ArrayBuilder) {
-				((ArrayBuilder<?>)builder).add(SimpleValue.NULL);
-			}
+			serializedData.writeNull();
 			return this;
 		}
 		final int length = start + count;
@@ -671,11 +676,7 @@ public class CborSerializer extends Serializer {
 	public CborSerializer serializeTransferableArrayWithPossibleNulls (final Transferable<?>[] transferables, final int start,
 		final int count, final Size arrayLengthSize) throws SerializationException {
 		if (transferables == null) {
-			if (builder instanceof CborBuilder) {
-				((CborBuilder)builder).add(SimpleValue.NULL);
-			} else if (builder instanceof ArrayBuilder) {
-				((ArrayBuilder<?>)builder).add(SimpleValue.NULL);
-			}
+			serializedData.writeNull();
 			return this;
 		}
 		startArray();
@@ -683,11 +684,7 @@ public class CborSerializer extends Serializer {
 			if (transferables[i] != null) {
 				serializeTransferable(transferables[i]);
 			} else {
-				if (builder instanceof CborBuilder) {
-					((CborBuilder)builder).add(SimpleValue.NULL);
-				} else if (builder instanceof ArrayBuilder) {
-					((ArrayBuilder<?>)builder).add(SimpleValue.NULL);
-				}
+				serializedData.writeNull();
 			}
 		}
 		endArray();
@@ -699,33 +696,79 @@ public class CborSerializer extends Serializer {
 	 * @return serialized object as byte array. */
 	@Override
 	public byte[] serialize () {
-		try {
-			new CborEncoder(serializedData).encode(((CborBuilder)builder).build());
-			return serializedData.toByteArray();
-		} catch (CborException e) {
-			throw new SerializationException(e);
-		}
+		return serializedData.toByteArray();
 	}
 
 	/** Finishes serialization, returning the object as a byte array. Contrary to {@link #serialize()}, this method might return
 	 * the internal serializer's byte array reference, which might get modified if the serializer is reset and used to serialize
-	 * another object. Safe to use if a new instance of Serializer is used for each serialization.
+	 * another object. Safe to use if a new instance of Serializer is used for each serialization. The internal array is returned
+	 * when the serialized object fills it exactly, see {@link #getSerializedData()} to avoid the copy in any case.
 	 *
 	 * @return serialized object as byte array. Might be the internal serializer's byte array. */
 	@Override
 	public byte[] serializeUnsafe () {
+		final byte[] buffer = serializedData.getBuffer();
+		if (serializedData.getStart() == 0 && serializedData.size() == buffer.length) return buffer;
 		return serialize();
 	}
 
-	private void startArray () {
-		if (builder instanceof CborBuilder) {
-			builder = ((CborBuilder)builder).addArray();
-		} else if (builder instanceof ArrayBuilder) {
-			builder = ((ArrayBuilder<?>)builder).addArray();
+	/** Finishes serialization, writing the object into the buffer from its position, which is advanced. Nothing is allocated, so
+	 * together with {@link #reset()} one serializer can fill the frames of a connection without garbage.
+	 * @return amount of bytes written.
+	 * @throws SerializationException if the remaining bytes of the buffer are too few. Nothing is written then. */
+	public int serializeTo (final ByteBuffer buffer) throws SerializationException {
+		final int length = serializedData.size();
+		if (buffer.remaining() < length)
+			throw new SerializationException("Buffer is too small: " + length + " bytes needed, " + buffer.remaining() + " remaining.");
+		buffer.put(serializedData.getBuffer(), serializedData.getStart(), length);
+		return length;
+	}
+
+	/** @return the internal byte array holding the serialized object from index 0 to {@link #getSerializedLength()}. It is
+	 *         modified when the serializer is reset and used again, and replaced when it has to grow. */
+	public byte[] getSerializedData () {
+		return serializedData.getBuffer();
+	}
+
+	/** @return amount of bytes serialized so far. */
+	public int getSerializedLength () {
+		return serializedData.size();
+	}
+
+	private CborSerializer serializeInteger (final long value, final Size size) {
+		if (!fixedWidthIntegers || size == null) {
+			serializedData.writeLong(value);
+			return this;
 		}
+		try {
+			switch (size) {
+			case BYTE:
+				serializedData.writeInteger(value, 1);
+				break;
+			case SHORT:
+				serializedData.writeInteger(value, 2);
+				break;
+			case INT:
+				serializedData.writeInteger(value, 4);
+				break;
+			default:
+				serializedData.writeInteger(value, 8);
+				break;
+			}
+		} catch (final IllegalArgumentException exception) {
+			throw new SerializationException(exception.getMessage(), exception);
+		}
+		return this;
+	}
+
+	private void startArray () {
+		if (fixedWidthIntegers)
+			serializedData.startArray(4);
+		else
+			serializedData.startArray();
 	}
 
 	private void endArray () {
-		builder = ((ArrayBuilder<?>)builder).end();
+		serializedData.end();
 	}
 }
@@ -1,6 +1,8 @@
 
 package dev.simonit.gdx.websocket.cbor.serialization;
 
+import com.badlogic.gdx.utils.Bits;
+import com.github.czyzby.websocket.serialization.SerializationException;
 import org.junit.jupiter.api.Test;
 
 import static org.junit.jupiter.api.Assertions.*;
@@ -59,6 +61,34 @@ class CborDeserializerTest {
 		assertEquals(1.1, cborDeserializer.deserializeDouble());
 	}
 
+	@Test
+	void testCurrentByteArrayIndex () {
+		byte[] data = new byte[] {0x01, 0x02, (byte)0xF9, 0x3C, 0x00};
+		cborDeserializer.setSerializedData(data);
+		assertEquals(1, cborDeserializer.deserializeInt());
+		assertEquals(1, cborDeserializer.getCurrentByteArrayIndex());
+		cborDeserializer.setCurrentByteArrayIndex(2);
+		// Floats are read with the precision they were written with.
+		assertEquals(1f, cborDeserializer.deserializeFloat());
+	}
+
+	@Test
+	void testDeserializeInvalid () {
+		cborDeserializer.setSerializedData(new byte[] {0x19, 0x01, 0x00});
+		assertThrows(SerializationException.class, () -> cborDeserializer.deserializeByte());
+		cborDeserializer.setSerializedData(new byte[] {(byte)0x82, 0x01, 0x02});
+		assertThrows(SerializationException.class, () -> cborDeserializer.deserializeIntArray(new int[1]));
+		cborDeserializer.setSerializedData(new byte[] {0x1A, 0x00});
+		assertThrows(SerializationException.class, () -> cborDeserializer.deserializeInt());
+		// Lengths the data cannot hold are rejected before anything is allocated for them.
+		cborDeserializer.setSerializedData(new byte[] {(byte)0x9A, 0x7F, (byte)0xFF, (byte)0xFF, (byte)0xFF});
+		assertThrows(SerializationException.class, () -> cborDeserializer.deserializeLongArray());
+		cborDeserializer.setSerializedData(new byte[] {0x5A, 0x7F, (byte)0xFF, (byte)0xFF, (byte)0xFF});
+		assertThrows(SerializationException.class, () -> cborDeserializer.deserializeByteArray());
+		cborDeserializer.setSerializedData(new byte[] {(byte)0x82, 0x1A, 0x7F, (byte)0xFF, (byte)0xFF, (byte)0xFF, 0x40});
+		assertThrows(SerializationException.class, () -> cborDeserializer.deserializeBooleanArray());
+	}
+
 	@Test
 	void testDeserializeEnum () {
 		byte[] data = new byte[] {0x00};
@@ -74,6 +104,32 @@ class CborDeserializerTest {
 		assertArrayEquals(new boolean[] {true, false, true}, result);
 	}
 
+	@Test
+	void testDeserializePackedBooleanArray () {
+		byte[] data = new byte[] {(byte)0x82, 0x0A, 0x42, 0x06, 0x03, (byte)0x82, 0x02, 0x41, 0x01, (byte)0x82, (byte)0xF4,
+			(byte)0xF5, (byte)0x82, 0x03, 0x41, 0x05, (byte)0xF6};
+		cborDeserializer.setSerializedData(data);
+		assertArrayEquals(new boolean[] {false, true, true, false, false, false, false, false, true, true},
+			cborDeserializer.deserializeBooleanArray());
+		boolean[] result = {false, false, true};
+		assertEquals(2, cborDeserializer.deserializeBooleanArray(result));
+		assertArrayEquals(new boolean[] {true, false, true}, result);
+
+		Bits bits = cborDeserializer.deserializeBits();
+		assertEquals(2, bits.length());
+		assertTrue(bits.get(1));
+		assertEquals(3, cborDeserializer.deserializeBits(bits));
+		assertTrue(bits.get(0));
+		assertFalse(bits.get(1));
+		assertTrue(bits.get(2));
+		assertNull(cborDeserializer.deserializeBits());
+
+		cborDeserializer.setSerializedData(new byte[] {(byte)0x82, 0x09, 0x41, 0x01});
+		assertThrows(SerializationException.class, () -> cborDeserializer.deserializeBooleanArray());
+		cborDeserializer.setSerializedData(new byte[] {(byte)0x82, 0x03, 0x41, 0x05});
+		assertThrows(SerializationException.class, () -> cborDeserializer.deserializeBooleanArray(new boolean[2]));
+	}
+
 	@Test
 	void testDeserializeByteArray () {
 		byte[] data = new byte[] {(byte)0x43, 0x01, 0x02, 0x03};
@@ -170,6 +226,19 @@ class CborDeserializerTest {
 		assertFalse(result[1].isClient());
 	}
 
+	@Test
+	void testDeserializeTransferableWithUnreadFields () {
+		// The first ping was written with a third field that this version does not read.
+		byte[] data = new byte[] {(byte)0x82, (byte)0x83, 0x07, (byte)0xF5, 0x63, 0x61, 0x62, 0x63, (byte)0x82, 0x08, (byte)0xF4};
+		cborDeserializer.setSerializedData(data);
+		Ping[] result = cborDeserializer.deserializeTransferableArray(new Ping(), Ping[]::new);
+		assertEquals(7, result[0].getValue());
+		assertTrue(result[0].isClient());
+		assertEquals(8, result[1].getValue());
+		assertFalse(result[1].isClient());
+		assertEquals(data.length, cborDeserializer.getCurrentByteArrayIndex());
+	}
+
 	@Test
 	void testDeserializeTransferableArrayWithPossibleNulls () {
 		byte[] data = new byte[] {(byte)0x82, (byte)0x82, 0x07, (byte)0xF5, (byte)0xF6};
@@ -1,10 +1,16 @@
 
 package dev.simonit.gdx.websocket.cbor.serialization;
 
+import com.badlogic.gdx.utils.Bits;
+import com.github.czyzby.websocket.serialization.SerializationException;
 import com.github.czyzby.websocket.serialization.impl.Size;
+import dev.simonit.gdx.cbor.CborOutput;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.Test;
 
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
 import static org.junit.jupiter.api.Assertions.*;
 
 class CborSerializerTest {
@@ -92,6 +98,15 @@ class CborSerializerTest {
 		assertArrayEquals(new byte[] {(byte)0xfb, 0x40, 0x09, 0x21, (byte)0xfb, 0x54, 0x44, 0x2D, 0x18}, serialized);
 	}
 
+	@Test
+	void testSerializeShortestFloats () {
+		cborSerializer.setShortestFloats(true);
+		cborSerializer.serializeFloat(1.0f).serializeDouble(0.5).serializeDouble(1.1f).serializeFloat(1.1f);
+		byte[] serialized = cborSerializer.serialize();
+		assertArrayEquals(new byte[] {(byte)0xF9, 0x3C, 0x00, (byte)0xF9, 0x38, 0x00, (byte)0xFA, 0x3F, (byte)0x8C,
+			(byte)0xCC, (byte)0xCD, (byte)0xFA, 0x3F, (byte)0x8C, (byte)0xCC, (byte)0xCD}, serialized);
+	}
+
 	@Test
 	void testSerializeEnum () {
 		Enum<?> value = SomeEnum.b;
@@ -211,4 +226,112 @@ class CborSerializerTest {
 		byte[] serialized = cborSerializer.serialize();
 		assertArrayEquals(new byte[] {(byte)0x82, (byte)0x82, 0x07, (byte)0xF5, (byte)0xF6}, serialized);
 	}
+
+	@Test
+	void testSerializeArrayLengthHeader () {
+		boolean[] value = new boolean[24];
+		cborSerializer.serializeBooleanArray(new boolean[0]).serializeBooleanArray(value);
+		byte[] serialized = cborSerializer.serialize();
+		assertEquals(1 + 2 + 24, serialized.length);
+		assertArrayEquals(new byte[] {(byte)0x80, (byte)0x98, 24, (byte)0xF4}, Arrays.copyOf(serialized, 4));
+	}
+
+	@Test
+	void testSerializeFloatRounded () {
+		cborSerializer.serializeFloat(1.1f, Size.SHORT).serializeDouble(1.1, Size.INT);
+		byte[] serialized = cborSerializer.serialize();
+		assertArrayEquals(new byte[] {(byte)0xF9, 0x3C, 0x66, (byte)0xFA, 0x3F, (byte)0x8C, (byte)0xCC, (byte)0xCD}, serialized);
+	}
+
+	@Test
+	void testReset () {
+		cborSerializer.serializeTransferable(new Ping(7, true));
+		cborSerializer.reset();
+		cborSerializer.serializeTransferable(new Ping(8, false));
+		assertArrayEquals(new byte[] {(byte)0x82, 0x08, (byte)0xF4}, cborSerializer.serialize());
+	}
+
+	@Test
+	void testSerializeUnsafe () {
+		CborSerializer serializer = new CborSerializer(16);
+		serializer.serializeString("fifteen letters");
+		byte[] serialized = serializer.serializeUnsafe();
+		assertSame(serializer.getSerializedData(), serialized);
+		assertEquals(0x6F, serialized[0]);
+		serializer.reset();
+		serializer.serializeInt(1);
+		assertArrayEquals(new byte[] {0x01}, serializer.serializeUnsafe());
+		assertEquals(1, serializer.getSerializedLength());
+	}
+
+	@Test
+	void testSerializeTo () {
+		cborSerializer.serializeTransferable(new Ping(7, true));
+		ByteBuffer buffer = ByteBuffer.allocate(5);
+		buffer.put((byte)1);
+		assertEquals(3, cborSerializer.serializeTo(buffer));
+		assertArrayEquals(new byte[] {1, (byte)0x82, 0x07, (byte)0xF5, 0}, buffer.array());
+		assertThrows(SerializationException.class, () -> cborSerializer.serializeTo(buffer));
+		assertEquals(4, buffer.position());
+	}
+
+	@Test
+	void testFixedWidthIntegers () {
+		cborSerializer.setFixedWidthIntegers(true);
+		cborSerializer.serializeByte((byte)1).serializeShort((short)-1).serializeInt(2, Size.BYTE);
+		int sequenceOffset = cborSerializer.getSerializedLength();
+		cborSerializer.serializeInt(0).serializeLong(3, Size.SHORT);
+		byte[] serialized = cborSerializer.serialize();
+		assertArrayEquals(new byte[] {0x18, 0x01, 0x39, 0x00, 0x00, 0x18, 0x02, 0x1A, 0x00, 0x00, 0x00, 0x00, 0x19, 0x00, 0x03},
+			serialized);
+		assertThrows(SerializationException.class, () -> cborSerializer.serializeInt(256, Size.BYTE));
+
+		CborOutput.patchInteger(serialized, sequenceOffset, 70000);
+		CborDeserializer deserializer = new CborDeserializer(serialized);
+		assertEquals(1, deserializer.deserializeByte());
+		assertEquals(-1, deserializer.deserializeShort());
+		assertEquals(2, deserializer.deserializeInt());
+		assertEquals(70000, deserializer.deserializeInt());
+		assertEquals(3, deserializer.deserializeLong());
+	}
+
+	@Test
+	void testFixedWidthArrayLength () {
+		cborSerializer.setFixedWidthIntegers(true);
+		cborSerializer.serializeInt(1);
+		// The array header has a fixed width too, so the offset of an element is known before serializing.
+		int lastOffset = cborSerializer.getSerializedLength() + 5 + 29 * 5;
+		cborSerializer.serializeIntArray(new int[30]);
+		byte[] serialized = cborSerializer.serialize();
+		assertEquals(5 + 5 + 30 * 5, serialized.length);
+		assertArrayEquals(new byte[] {(byte)0x9A, 0x00, 0x00, 0x00, 30}, Arrays.copyOfRange(serialized, 5, 10));
+
+		CborOutput.patchInteger(serialized, lastOffset, 42);
+		CborDeserializer deserializer = new CborDeserializer(serialized);
+		assertEquals(1, deserializer.deserializeInt());
+		int[] array = deserializer.deserializeIntArray();
+		assertEquals(30, array.length);
+		assertEquals(42, array[29]);
+	}
+
+	@Test
+	void testSerializePackedBooleanArray () {
+		boolean[] value = new boolean[100];
+		value[0] = value[99] = true;
+		cborSerializer.setPackedBooleanArrays(true);
+		cborSerializer.serializeBooleanArray(value).serializeBooleanArray(new boolean[0]);
+		Bits bits = new Bits();
+		bits.set(9);
+		cborSerializer.serializeBits(bits).serializeBits(null);
+		byte[] serialized = cborSerializer.serialize();
+		assertEquals(4 + 13 + 3 + 5 + 1, serialized.length);
+		assertArrayEquals(new byte[] {(byte)0x82, 0x18, 100, 0x4D, 0x01}, Arrays.copyOf(serialized, 5));
+		assertEquals(0x08, serialized[16]);
+
+		CborDeserializer deserializer = new CborDeserializer(serialized);
+		assertArrayEquals(value, deserializer.deserializeBooleanArray());
+		assertArrayEquals(new boolean[0], deserializer.deserializeBooleanArray());
+		assertEquals(bits, deserializer.deserializeBits());
+		assertNull(deserializer.deserializeBits());
+	}
 }
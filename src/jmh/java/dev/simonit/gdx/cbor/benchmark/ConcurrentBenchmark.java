@@ -0,0 +1,38 @@
+package dev.simonit.gdx.cbor.benchmark;
+
+import dev.simonit.gdx.cbor.ConcurrentCbor;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/** Serializes small messages with one {@link ConcurrentCbor} shared by all benchmark threads. Compare the scores of runs with
+ * different thread counts, for example with {@code -t 1} and {@code -t 4}, to see how it scales. */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@Threads(4)
+public class ConcurrentBenchmark {
+	private ConcurrentCbor cbor;
+	private Object message;
+	private byte[] bytes;
+
+	@Setup
+	public void setUp () {
+		cbor = new ConcurrentCbor();
+		message = Payloads.create(Payloads.SMALL);
+		bytes = cbor.toCbor(message);
+	}
+
+	@Benchmark
+	public byte[] write () {
+		return cbor.toCbor(message);
+	}
+
+	@Benchmark
+	public Object read () {
+		return cbor.fromCbor(Payloads.Message.class, bytes);
+	}
+}
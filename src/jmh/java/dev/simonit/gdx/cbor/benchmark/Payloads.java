@@ -0,0 +1,132 @@
+package dev.simonit.gdx.cbor.benchmark;
+
+import com.badlogic.gdx.utils.Array;
+import com.badlogic.gdx.utils.ObjectMap;
+
+import java.util.Random;
+
+/** The objects serialized by the benchmarks. Every workload is built from a fixed seed, so all runs and all formats encode the
+ * same data. */
+public final class Payloads {
+	/** Names of the workloads, to be used as JMH parameter values. */
+	public static final String SMALL = "small", NESTED = "nested", NUMERIC = "numeric", STRINGS = "strings";
+	/** The classes of the payloads. */
+	public static final Class[] TYPES = {Message.class, Save.class, Node.class, Numbers.class, Strings.class};
+
+	private Payloads () {
+	}
+
+	public static Object create (String workload) {
+		Random random = new Random(42);
+		switch (workload) {
+		case SMALL:
+			return message(random);
+		case NESTED:
+			return save(random);
+		case NUMERIC:
+			return numbers(random);
+		case STRINGS:
+			return strings(random);
+		}
+		throw new IllegalArgumentException("Unknown workload: " + workload);
+	}
+
+	/** A network message as sent many times per second: a handful of primitive fields and a short string. */
+	static Message message (Random random) {
+		Message message = new Message();
+		message.id = random.nextInt(100000);
+		message.tick = random.nextLong() & 0xFFFFFFL;
+		message.x = random.nextFloat() * 1000;
+		message.y = random.nextFloat() * 1000;
+		message.rotation = random.nextFloat() * 360;
+		message.type = "move";
+		message.active = true;
+		return message;
+	}
+
+	/** A game save with a deep object graph of entities. */
+	static Save save (Random random) {
+		Save save = new Save();
+		save.name = "Slot 1";
+		save.seed = random.nextLong();
+		save.world = node(random, "world", 0, 6, 3);
+		return save;
+	}
+
+	private static Node node (Random random, String name, int level, int depth, int branches) {
+		Node node = new Node();
+		node.name = name;
+		node.level = level;
+		node.x = random.nextFloat() * 100;
+		node.y = random.nextFloat() * 100;
+		node.health = random.nextInt(100);
+		node.visible = random.nextBoolean();
+		if (level < depth) {
+			node.children = new Array<>(branches);
+			for (int i = 0; i < branches; i++)
+				node.children.add(node(random, name + "/" + i, level + 1, depth, branches));
+		}
+		return node;
+	}
+
+	/** Large primitive arrays, like height maps or replay samples. */
+	static Numbers numbers (Random random) {
+		Numbers numbers = new Numbers();
+		numbers.floats = new float[4096];
+		numbers.ints = new int[4096];
+		numbers.doubles = new double[1024];
+		for (int i = 0; i < numbers.floats.length; i++)
+			numbers.floats[i] = random.nextFloat();
+		for (int i = 0; i < numbers.ints.length; i++)
+			numbers.ints[i] = random.nextInt();
+		for (int i = 0; i < numbers.doubles.length; i++)
+			numbers.doubles[i] = random.nextDouble();
+		return numbers;
+	}
+
+	/** A map of localized texts, dominated by string encoding. */
+	static Strings strings (Random random) {
+		Strings strings = new Strings();
+		strings.entries = new ObjectMap<>(512);
+		for (int i = 0; i < 512; i++) {
+			StringBuilder builder = new StringBuilder();
+			for (int j = 0, n = 16 + random.nextInt(48); j < n; j++)
+				builder.append(j % 16 == 15 ? '\u00e9' : (char)('a' + random.nextInt(26)));
+			strings.entries.put("text.key." + i, builder.toString());
+		}
+		return strings;
+	}
+
+	static public class Message {
+		public int id;
+		public long tick;
+		public float x, y, rotation;
+		public String type;
+		public boolean active;
+	}
+
+	static public class Save {
+		public String name;
+		public long seed;
+		public Node world;
+	}
+
+	static public class Node {
+		public String name;
+		public int level;
+		public float x, y;
+		public int health;
+		public boolean visible;
+		public Array<Node> children;
+	}
+
+	static public class Numbers {
+		public float[] floats;
+		public int[] ints;
+		public double[] doubles;
+	}
+
+	static public class Strings {
+		public ObjectMap<String, String> entries;
+	}
+}
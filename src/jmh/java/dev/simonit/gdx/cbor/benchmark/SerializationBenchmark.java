@@ -0,0 +1,119 @@
+package dev.simonit.gdx.cbor.benchmark;
+
+import com.badlogic.gdx.utils.Json;
+import com.badlogic.gdx.utils.JsonReader;
+import com.badlogic.gdx.utils.JsonWriter.OutputType;
+import com.badlogic.gdx.utils.UBJsonReader;
+import com.badlogic.gdx.utils.UBJsonWriter;
+import dev.simonit.gdx.cbor.Cbor;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/** Serializes and deserializes whole objects with {@link Cbor}, compared to libGDX {@link Json} and UBJSON.
+ * <p>
+ * libGDX can only write UBJSON from a {@link com.badlogic.gdx.utils.JsonValue} tree, so {@link #ubjsonWrite()} builds the tree
+ * with {@link Json} first, which is how objects are written to UBJSON with libGDX. The positional benchmarks write every payload
+ * class as an array of its field values, see {@link Cbor#setPositional(Class, boolean)}. */
+@State(Scope.Thread)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SerializationBenchmark {
+	@Param({Payloads.SMALL, Payloads.NESTED, Payloads.NUMERIC, Payloads.STRINGS}) public String workload;
+
+	private Object payload;
+	private Class<?> type;
+	private Cbor cbor, cborTree, cborPositional;
+	private Json json;
+	private JsonReader jsonReader;
+	private UBJsonReader ubjsonReader;
+	private ByteArrayOutputStream ubjsonOutput;
+	private byte[] cborBytes, positionalBytes, ubjsonBytes, cborBuffer;
+	private String jsonString;
+
+	@Setup
+	public void setUp () {
+		payload = Payloads.create(workload);
+		type = payload.getClass();
+		cbor = new Cbor();
+		cborTree = new Cbor();
+		cborTree.setDirectBinding(false);
+		cborPositional = new Cbor();
+		for (Class positionalType : Payloads.TYPES)
+			cborPositional.setPositional(positionalType, true);
+		json = new Json(OutputType.json);
+		jsonReader = new JsonReader();
+		ubjsonReader = new UBJsonReader();
+		ubjsonReader.oldFormat = false;
+		ubjsonOutput = new ByteArrayOutputStream();
+		cborBytes = cbor.toCbor(payload, type);
+		positionalBytes = cborPositional.toCbor(payload, type);
+		cborBuffer = new byte[cborBytes.length];
+		jsonString = json.toJson(payload, type);
+		ubjsonBytes = ubjsonWrite();
+	}
+
+	@Benchmark
+	public byte[] cborWrite () {
+		return cbor.toCbor(payload, type);
+	}
+
+	@Benchmark
+	public int cborWriteArray () {
+		return cbor.toCbor(payload, type, null, cborBuffer, 0);
+	}
+
+	@Benchmark
+	public Object cborRead () {
+		return cbor.fromCbor(type, cborBytes);
+	}
+
+	@Benchmark
+	public Object cborReadTree () {
+		return cborTree.fromCbor(type, cborBytes);
+	}
+
+	@Benchmark
+	public byte[] cborWritePositional () {
+		return cborPositional.toCbor(payload, type);
+	}
+
+	@Benchmark
+	public Object cborReadPositional () {
+		return cborPositional.fromCbor(type, positionalBytes);
+	}
+
+	@Benchmark
+	public String jsonWrite () {
+		return json.toJson(payload, type);
+	}
+
+	@Benchmark
+	public Object jsonRead () {
+		return json.fromJson(type, jsonString);
+	}
+
+	@Benchmark
+	public byte[] ubjsonWrite () {
+		ubjsonOutput.reset();
+		try {
+			UBJsonWriter writer = new UBJsonWriter(ubjsonOutput);
+			writer.value(jsonReader.parse(json.toJson(payload, type)));
+			writer.flush();
+		} catch (IOException ex) {
+			throw new RuntimeException(ex);
+		}
+		return ubjsonOutput.toByteArray();
+	}
+
+	@Benchmark
+	public Object ubjsonRead () {
+		return json.readValue(type, null, ubjsonReader.parse(new ByteArrayInputStream(ubjsonBytes)));
+	}
+}
@@ -0,0 +1,96 @@
+package dev.simonit.gdx.cbor.benchmark;
+
+import com.badlogic.gdx.utils.Json;
+import com.badlogic.gdx.utils.JsonReader;
+import com.badlogic.gdx.utils.JsonValue;
+import com.badlogic.gdx.utils.JsonWriter.OutputType;
+import com.badlogic.gdx.utils.UBJsonReader;
+import com.badlogic.gdx.utils.UBJsonWriter;
+import dev.simonit.gdx.cbor.Cbor;
+import dev.simonit.gdx.cbor.CborDocument;
+import dev.simonit.gdx.cbor.CborInput;
+import dev.simonit.gdx.cbor.CborReader;
+import dev.simonit.gdx.cbor.CborValue;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/** Parses encoded workloads into trees and encodes the trees again, with {@link CborReader} and {@link CborValue} compared to
+ * libGDX {@link JsonReader} and UBJSON. {@link #cborParseDocument()} parses into a reused {@link CborDocument} instead. */
+@State(Scope.Thread)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class TreeBenchmark {
+	@Param({Payloads.SMALL, Payloads.NESTED, Payloads.NUMERIC, Payloads.STRINGS}) public String workload;
+
+	private CborReader cborReader;
+	private JsonReader jsonReader;
+	private UBJsonReader ubjsonReader;
+	private ByteArrayOutputStream ubjsonOutput;
+	private byte[] cborBytes, ubjsonBytes;
+	private String jsonString;
+	private CborValue cborValue;
+	private CborDocument cborDocument;
+	private JsonValue jsonValue;
+
+	@Setup
+	public void setUp () throws IOException {
+		Object payload = Payloads.create(workload);
+		cborReader = new CborReader();
+		cborDocument = new CborDocument();
+		jsonReader = new JsonReader();
+		ubjsonReader = new UBJsonReader();
+		ubjsonReader.oldFormat = false;
+		ubjsonOutput = new ByteArrayOutputStream();
+		cborBytes = new Cbor().toCbor(payload);
+		jsonString = new Json(OutputType.json).toJson(payload);
+		cborValue = cborReader.parse(cborBytes);
+		jsonValue = jsonReader.parse(jsonString);
+		ubjsonBytes = ubjsonWrite();
+	}
+
+	@Benchmark
+	public CborValue cborParse () {
+		return cborReader.parse(cborBytes);
+	}
+
+	@Benchmark
+	public CborDocument cborParseDocument () {
+		return cborReader.parseDocument(new CborInput(cborBytes), cborDocument);
+	}
+
+	@Benchmark
+	public byte[] cborWrite () {
+		return cborValue.toCbor(OutputType.json);
+	}
+
+	@Benchmark
+	public JsonValue jsonParse () {
+		return jsonReader.parse(jsonString);
+	}
+
+	@Benchmark
+	public String jsonWrite () {
+		return jsonValue.toJson(OutputType.json);
+	}
+
+	@Benchmark
+	public JsonValue ubjsonParse () {
+		return ubjsonReader.parse(new ByteArrayInputStream(ubjsonBytes));
+	}
+
+	@Benchmark
+	public byte[] ubjsonWrite () throws IOException {
+		ubjsonOutput.reset();
+		UBJsonWriter writer = new UBJsonWriter(ubjsonOutput);
+		writer.value(jsonValue);
+		writer.flush();
+		return ubjsonOutput.toByteArray();
+	}
+}
@@ -0,0 +1,98 @@
+package dev.simonit.gdx.cbor.benchmark;
+
+import com.badlogic.gdx.utils.JsonWriter;
+import com.badlogic.gdx.utils.JsonWriter.OutputType;
+import com.badlogic.gdx.utils.UBJsonWriter;
+import dev.simonit.gdx.cbor.CborWriter;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.util.concurrent.TimeUnit;
+
+/** Writes a frame of entity updates by calling the writers directly, without reflection, so only the encoding is measured. */
+@State(Scope.Thread)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class WriterBenchmark {
+	@Param({"16", "256"}) public int entities;
+
+	private ByteArrayOutputStream output;
+	private CborWriter cborWriter;
+
+	@Setup
+	public void setUp () {
+		output = new ByteArrayOutputStream();
+		cborWriter = new CborWriter(output);
+	}
+
+	@Benchmark
+	public byte[] cborWriter () throws IOException {
+		output.reset();
+		CborWriter writer = cborWriter;
+		writer.object();
+		writer.set("tick", 1234567L);
+		writer.array("entities");
+		for (int i = 0; i < entities; i++) {
+			writer.object();
+			writer.set("id", i);
+			writer.set("x", i * 1.5f);
+			writer.set("y", i * 0.5f);
+			writer.set("name", "entity");
+			writer.set("active", (i & 1) == 0);
+			writer.pop();
+		}
+		writer.pop();
+		writer.pop();
+		writer.flush();
+		return output.toByteArray();
+	}
+
+	@Benchmark
+	public String jsonWriter () throws IOException {
+		StringWriter stringWriter = new StringWriter();
+		JsonWriter writer = new JsonWriter(stringWriter);
+		writer.setOutputType(OutputType.json);
+		writer.object();
+		writer.set("tick", 1234567L);
+		writer.array("entities");
+		for (int i = 0; i < entities; i++) {
+			writer.object();
+			writer.name("id").value(i);
+			writer.name("x").value(i * 1.5f);
+			writer.name("y").value(i * 0.5f);
+			writer.name("name").value("entity");
+			writer.name("active").value((i & 1) == 0);
+			writer.pop();
+		}
+		writer.pop();
+		writer.pop();
+		return stringWriter.toString();
+	}
+
+	@Benchmark
+	public byte[] ubjsonWriter () throws IOException {
+		output.reset();
+		UBJsonWriter writer = new UBJsonWriter(output);
+		writer.object();
+		writer.set("tick", 1234567L);
+		writer.array("entities");
+		for (int i = 0; i < entities; i++) {
+			writer.object();
+			writer.set("id", i);
+			writer.set("x", i * 1.5f);
+			writer.set("y", i * 0.5f);
+			writer.set("name", "entity");
+			writer.set("active", (i & 1) == 0);
+			writer.pop();
+		}
+		writer.pop();
+		writer.pop();
+		writer.flush();
+		return output.toByteArray();
+	}
+}
@@ -0,0 +1,112 @@
+package dev.simonit.gdx.cbor;
+
+import com.badlogic.gdx.utils.Null;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+
+/** Decodes Base64 text from a {@link Reader} or a {@link CharSequence} while it is read, without copying the text or the decoded
+ * bytes into an intermediate array. Whitespace is ignored, so line wrapped text can be read, and the URL safe alphabet is
+ * accepted as well. The stream ends at the padding or at the end of the text. */
+public class Base64InputStream extends InputStream {
+	private static final byte[] DECODE = new byte[128];
+
+	static {
+		for (int i = 0; i < DECODE.length; i++)
+			DECODE[i] = -1;
+		char[] alphabet = Base64OutputStream.ALPHABET;
+		for (int i = 0; i < alphabet.length; i++)
+			DECODE[alphabet[i]] = (byte)i;
+		DECODE['-'] = 62;
+		DECODE['_'] = 63;
+	}
+
+	private @Null Reader reader;
+	private @Null CharSequence text;
+	private char[] chars;
+	private int position, limit;
+	/** Holds at most 14 bits, the rest of the previous byte and the last value. */
+	private int bits, bitCount;
+	private boolean end;
+
+	/** Reads the text from the reader in chunks. The reader is closed by {@link #close()}. */
+	public Base64InputStream (Reader reader) {
+		this.reader = reader;
+		chars = new char[1024];
+	}
+
+	/** Reads the text by index. */
+	public Base64InputStream (CharSequence text) {
+		this.text = text;
+		limit = text.length();
+	}
+
+	@Override
+	public int read () throws IOException {
+		while (bitCount < 8) {
+			int value = nextValue();
+			if (value == -1) return -1;
+			bits = (bits << 6 | value) & 0x3FFF;
+			bitCount += 6;
+		}
+		bitCount -= 8;
+		return bits >>> bitCount & 0xFF;
+	}
+
+	@Override
+	public int read (byte[] bytes, int offset, int length) throws IOException {
+		if (offset < 0 || length < 0 || offset + length > bytes.length)
+			throw new IndexOutOfBoundsException("offset: " + offset + ", length: " + length + ", array length: " + bytes.length);
+		int count = 0;
+		while (count < length) {
+			if (bitCount >= 8) {
+				bitCount -= 8;
+				bytes[offset + count++] = (byte)(bits >>> bitCount);
+				continue;
+			}
+			int value = nextValue();
+			if (value == -1) break;
+			bits = (bits << 6 | value) & 0x3FFF;
+			bitCount += 6;
+		}
+		return count == 0 && length > 0 ? -1 : count;
+	}
+
+	/** @return the next 6 bit value, or -1 at the padding or the end of the text. */
+	private int nextValue () throws IOException {
+		if (end) return -1;
+		while (true) {
+			if (position == limit && !fill()) {
+				end = true;
+				return -1;
+			}
+			char c = text != null ? text.charAt(position++) : chars[position++];
+			if (c == '=') {
+				end = true;
+				return -1;
+			}
+			if (c == ' ' || c == '\n' || c == '\r' || c == '\t') continue;
+			int value = c < 128 ? DECODE[c] : -1;
+			if (value == -1) throw new IOException("Illegal character in Base64 data: " + c);
+			return value;
+		}
+	}
+
+	private boolean fill () throws IOException {
+		if (reader == null) return false;
+		int count;
+		do {
+			count = reader.read(chars, 0, chars.length);
+		} while (count == 0);
+		if (count == -1) return false;
+		position = 0;
+		limit = count;
+		return true;
+	}
+
+	@Override
+	public void close () throws IOException {
+		if (reader != null) reader.close();
+	}
+}
@@ -0,0 +1,94 @@
+package dev.simonit.gdx.cbor;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.Writer;
+
+/** Encodes the written bytes as Base64 and writes the characters to a {@link Writer} in chunks, without building the encoded
+ * text in memory first. {@link #finish()} or {@link #close()} must be called after the last byte to write the padding. */
+public class Base64OutputStream extends OutputStream {
+	static final char[] ALPHABET = "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789+/".toCharArray();
+
+	private final Writer writer;
+	private final char[] chars = new char[1024];
+	private int charCount, group, groupSize;
+
+	public Base64OutputStream (Writer writer) {
+		this.writer = writer;
+	}
+
+	@Override
+	public void write (int b) throws IOException {
+		group = group << 8 | b & 0xFF;
+		if (++groupSize == 3) writeGroup();
+	}
+
+	@Override
+	public void write (byte[] bytes, int offset, int length) throws IOException {
+		if (offset < 0 || length < 0 || offset + length > bytes.length)
+			throw new IndexOutOfBoundsException("offset: " + offset + ", length: " + length + ", array length: " + bytes.length);
+		int end = offset + length;
+		while (groupSize != 0 && offset < end)
+			write(bytes[offset++]);
+		char[] chars = this.chars;
+		for (; end - offset >= 3; offset += 3) {
+			if (charCount + 4 > chars.length) flushChars();
+			int group = (bytes[offset] & 0xFF) << 16 | (bytes[offset + 1] & 0xFF) << 8 | bytes[offset + 2] & 0xFF;
+			chars[charCount++] = ALPHABET[group >>> 18];
+			chars[charCount++] = ALPHABET[group >>> 12 & 63];
+			chars[charCount++] = ALPHABET[group >>> 6 & 63];
+			chars[charCount++] = ALPHABET[group & 63];
+		}
+		while (offset < end)
+			write(bytes[offset++]);
+	}
+
+	private void writeGroup () throws IOException {
+		if (charCount + 4 > chars.length) flushChars();
+		int group = this.group;
+		chars[charCount++] = ALPHABET[group >>> 18 & 63];
+		chars[charCount++] = ALPHABET[group >>> 12 & 63];
+		chars[charCount++] = ALPHABET[group >>> 6 & 63];
+		chars[charCount++] = ALPHABET[group & 63];
+		this.group = 0;
+		groupSize = 0;
+	}
+
+	/** Writes the remaining bytes with padding. Bytes written afterwards start a new Base64 text. The writer is not closed. */
+	public void finish () throws IOException {
+		if (groupSize == 1) {
+			group <<= 16;
+			writeGroup();
+			chars[charCount - 2] = '=';
+			chars[charCount - 1] = '=';
+		} else if (groupSize == 2) {
+			group <<= 8;
+			writeGroup();
+			chars[charCount - 1] = '=';
+		}
+		flushChars();
+	}
+
+	/** Flushes the characters of all complete groups of three bytes. */
+	@Override
+	public void flush () throws IOException {
+		flushChars();
+		writer.flush();
+	}
+
+	private void flushChars () throws IOException {
+		if (charCount == 0) return;
+		writer.write(chars, 0, charCount);
+		charCount = 0;
+	}
+
+	/** Finishes the Base64 text and closes the writer. */
+	@Override
+	public void close () throws IOException {
+		try {
+			finish();
+		} finally {
+			writer.close();
+		}
+	}
+}
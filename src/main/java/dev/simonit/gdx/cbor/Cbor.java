@@ -3,26 +3,89 @@ package dev.simonit.gdx.cbor;
 
 import com.badlogic.gdx.files.FileHandle;
 import com.badlogic.gdx.utils.*;
+import com.badlogic.gdx.utils.reflect.Annotation;
+import com.badlogic.gdx.utils.reflect.ArrayReflection;
+import com.badlogic.gdx.utils.reflect.ClassReflection;
+import com.badlogic.gdx.utils.reflect.Field;
+import com.badlogic.gdx.utils.reflect.ReflectionException;
 
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
+import java.io.IOException;
 import java.io.OutputStream;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Map;
+
+import static dev.simonit.gdx.cbor.CborConstants.*;
 
 public class Cbor extends Json {
 	protected ByteArrayOutputStream output = new ByteArrayOutputStream();
 	protected CborWriter writer = new CborWriter(output);
 
+	private final ObjectMap<Class, OrderedMap<String, FieldMetadata>> typeToFields = new ObjectMap<>();
+	private final ObjectMap<Class, IntMap<FieldMetadata>> typeToIds = new ObjectMap<>();
+	private final ObjectMap<Class, Object> prototypes = new ObjectMap<>();
+	private @Null String typeName = "class";
+	private boolean ignoreDeprecated, readDeprecated;
+	private boolean usePrototypes = true;
+	private boolean directBinding = true;
+	private boolean typedArrays;
+	private boolean sortFields;
+	private final ObjectMap<Class, CborCodec> codecs = new ObjectMap<>();
+	private final ObjectMap<Class, CborCodec> generatedCodecs = new ObjectMap<>();
+	private final ObjectSet<Class> configuredTypes = new ObjectSet<>();
+	private final ObjectSet<Class> positionalTypes = new ObjectSet<>();
+	private final Array<Class> idToClass = new Array<>();
+	private final ObjectIntMap<Class> classToId = new ObjectIntMap<>();
+	private final CborValue scalar = new CborValue(JsonValue.ValueType.nullValue);
+	static private final int LONG_NUMBER = 1, DOUBLE_NUMBER = 2;
+	private long longNumber;
+	private double doubleNumber;
+
 	public Cbor () {
 		setReader(new CborReader());
 		setWriter(writer);
 	}
 
-	/** @param knownType May be null if the type is unknown.
+	/** Only for APIs that require text. {@link #toCbor(Object, Class, Class)} returns the CBOR bytes without the overhead of
+	 * base64.
+	 * @param knownType May be null if the type is unknown.
 	 * @param elementType May be null if the type is unknown.
 	 * @return CBOR representation of the object encoded as a base64 string. */
 	@Override
 	public String toJson (@Null Object object, @Null Class knownType, @Null Class elementType) {
-		return new String(Base64Coder.encode(toCbor(object, knownType, elementType)));
+		CborOutput output = encode(object, knownType, elementType);
+		try {
+			return new String(Base64Coder.encode(output.getBuffer(), output.getStart(), output.size(), Base64Coder.regularMap));
+		} finally {
+			output.reset();
+		}
+	}
+
+	/** Writes the CBOR bytes if the writer is a {@link CborWriter}. Any other writer receives the CBOR representation encoded as
+	 * base64, which is streamed into it. The writer is closed.
+	 * @param knownType May be null if the type is unknown.
+	 * @param elementType May be null if the type is unknown. */
+	@Override
+	public void toJson (@Null Object object, @Null Class knownType, @Null Class elementType, Writer writer) {
+		if (writer instanceof CborWriter) {
+			super.toJson(object, knownType, elementType, writer);
+			return;
+		}
+		CborOutput output = encode(object, knownType, elementType);
+		Base64OutputStream base64 = new Base64OutputStream(writer);
+		try {
+			output.writeTo(base64);
+		} catch (IOException ex) {
+			throw new SerializationException("Error writing base64.", ex);
+		} finally {
+			output.reset();
+			StreamUtils.closeQuietly(base64);
+		}
 	}
 
 	/** @param knownType May be null if the type is unknown.
@@ -31,6 +94,8 @@ public class Cbor extends Json {
 	public void toJson (@Null Object object, @Null Class knownType, @Null Class elementType, FileHandle file) {
 		try (OutputStream out = file.write(false)) {
 			CborWriter writer = new CborWriter(out);
+			writer.shortestFloats(this.writer.isShortestFloats());
+			writer.sortedKeys(this.writer.isSortedKeys());
 			toJson(object, knownType, elementType, writer);
 		} catch (Exception ex) {
 			throw new SerializationException("Error writing file: " + file, ex);
@@ -56,16 +121,1186 @@ public class Cbor extends Json {
 	/** @param knownType May be null if the type is unknown.
 	 * @param elementType May be null if the type is unknown. */
 	public byte[] toCbor (@Null Object object, @Null Class knownType, @Null Class elementType) {
-		toJson(object, knownType, elementType, writer);
+		CborOutput output = encode(object, knownType, elementType);
 		byte[] bytes = output.toByteArray();
 		output.reset();
 		return bytes;
 	}
 
+	/** Encodes the object directly into the array.
+	 * @return the amount of bytes written.
+	 * @throws SerializationException if the encoded object does not fit. */
+	public int toCbor (@Null Object object, byte[] buffer, int offset) {
+		return toCbor(object, object == null ? null : object.getClass(), null, buffer, offset);
+	}
+
+	/** Encodes the object directly into the array.
+	 * @param knownType May be null if the type is unknown.
+	 * @param elementType May be null if the type is unknown.
+	 * @return the amount of bytes written.
+	 * @throws SerializationException if the encoded object does not fit. */
+	public int toCbor (@Null Object object, @Null Class knownType, @Null Class elementType, byte[] buffer, int offset) {
+		return toCbor(object, knownType, elementType, buffer, offset, buffer.length - offset);
+	}
+
+	/** Encodes the object into the remaining space of the buffer and advances its position. Heap buffers are encoded in place.
+	 * Direct buffers are not: the object is encoded into the internal buffer first and then copied into the buffer as a whole,
+	 * so they cost one full copy of the encoded bytes.
+	 * @return the amount of bytes written.
+	 * @throws SerializationException if the encoded object does not fit. The position of the buffer is not changed then. */
+	public int toCbor (@Null Object object, ByteBuffer buffer) {
+		return toCbor(object, object == null ? null : object.getClass(), null, buffer);
+	}
+
+	/** Encodes the object into the remaining space of the buffer and advances its position. Heap buffers are encoded in place.
+	 * Direct buffers are not: the object is encoded into the internal buffer first and then copied into the buffer as a whole,
+	 * so they cost one full copy of the encoded bytes.
+	 * @param knownType May be null if the type is unknown.
+	 * @param elementType May be null if the type is unknown.
+	 * @return the amount of bytes written.
+	 * @throws SerializationException if the encoded object does not fit. The position of the buffer is not changed then. */
+	public int toCbor (@Null Object object, @Null Class knownType, @Null Class elementType, ByteBuffer buffer) {
+		if (buffer.hasArray()) {
+			int length = toCbor(object, knownType, elementType, buffer.array(), buffer.arrayOffset() + buffer.position(),
+				buffer.remaining());
+			buffer.position(buffer.position() + length);
+			return length;
+		}
+		CborOutput output = encode(object, knownType, elementType);
+		try {
+			int length = output.size();
+			if (length > buffer.remaining()) throw new SerializationException(
+				"The buffer is too small, " + buffer.remaining() + " bytes are available but " + length + " are required.");
+			buffer.put(output.getBuffer(), output.getStart(), length);
+			return length;
+		} finally {
+			output.reset();
+		}
+	}
+
+	private int toCbor (@Null Object object, @Null Class knownType, @Null Class elementType, byte[] buffer, int offset,
+		int length) {
+		CborOutput output = writer.getOutput();
+		output.setBuffer(buffer, offset, length);
+		try {
+			return encode(object, knownType, elementType).size();
+		} finally {
+			output.useInternalBuffer();
+		}
+	}
+
+	/** Encodes the object into the {@link CborOutput} of the writer, where it is left for the caller. */
+	private CborOutput encode (@Null Object object, @Null Class knownType, @Null Class elementType) {
+		CborOutput output = writer.getOutput();
+		output.reset();
+		setWriter(writer);
+		writeValue(object, knownType, elementType);
+		return output;
+	}
+
 	/** @param type May be null if the type is unknown.
 	 * @return May be null. */
 	@Null
 	public <T> T fromCbor (Class<T> type, byte[] cbor) {
-		return fromJson(type, new ByteArrayInputStream(cbor));
+		return fromCbor(type, cbor, 0, cbor.length);
+	}
+
+	/** Decodes the slice of the array in place. The objects are bound directly to the CBOR, see
+	 * {@link #setDirectBinding(boolean)}.
+	 * @param type May be null if the type is unknown.
+	 * @return May be null. */
+	public @Null <T> T fromCbor (Class<T> type, byte[] cbor, int offset, int length) {
+		JsonReader reader = getReader();
+		if (reader instanceof CborReader) {
+			if (canBind()) return bind(type, null, new CborInput(cbor, offset, length));
+			return readValue(type, null, ((CborReader)reader).parse(cbor, offset, length));
+		}
+		return fromJson(type, new ByteArrayInputStream(cbor, offset, length));
+	}
+
+	/** Decodes the remaining bytes of the buffer without changing its position. Heap buffers are decoded in place and bound
+	 * directly, see {@link #setDirectBinding(boolean)}. Direct buffers are copied in chunks.
+	 * @param type May be null if the type is unknown.
+	 * @return May be null. */
+	public @Null <T> T fromCbor (Class<T> type, ByteBuffer cbor) {
+		JsonReader reader = getReader();
+		if (reader instanceof CborReader) {
+			if (cbor.hasArray() && canBind()) return bind(type, null, new CborInput(cbor));
+			return readValue(type, null, ((CborReader)reader).parse(cbor));
+		}
+		if (cbor.hasArray()) return fromCbor(type, cbor.array(), cbor.arrayOffset() + cbor.position(), cbor.remaining());
+		byte[] bytes = new byte[cbor.remaining()];
+		cbor.duplicate().get(bytes);
+		return fromJson(type, new ByteArrayInputStream(bytes));
+	}
+
+	/** Writes floats and doubles with the shortest precision that keeps their value, see
+	 * {@link CborOutput#setShortestFloats(boolean)}. The default is false. */
+	public void setShortestFloats (boolean shortestFloats) {
+		writer.shortestFloats(shortestFloats);
+	}
+
+	public boolean getShortestFloats () {
+		return writer.isShortestFloats();
+	}
+
+	/** Sorts the entries of maps by their keys, so equal objects give equal bytes whatever the order of their fields or of the
+	 * entries of their maps, see {@link CborOutput#setSortedKeys(boolean)}. The default is false. */
+	public void setSortedKeys (boolean sortedKeys) {
+		writer.sortedKeys(sortedKeys);
+	}
+
+	public boolean getSortedKeys () {
+		return writer.isSortedKeys();
+	}
+
+	/** @param typedArrays If true, float[], int[], short[], long[] and double[] are written as
+	 *           <a href="https://www.rfc-editor.org/rfc/rfc8746.html">RFC 8746</a> typed arrays: a tag followed by a byte string
+	 *           holding the elements in little endian order, which is written and read in bulk instead of item by item.
+	 *           {@link FloatArray} and {@link IntArray} are written the same way if they are the known type, without their
+	 *           ordered flag. Typed arrays of both byte orders are always read, regardless of this setting. Default is false. */
+	public void setTypedArrays (boolean typedArrays) {
+		this.typedArrays = typedArrays;
+	}
+
+	public boolean getTypedArrays () {
+		return typedArrays;
+	}
+
+	/** @param directBinding If true, which is the default, {@link #fromCbor(Class, byte[], int, int)} and
+	 *           {@link #fromCbor(Class, ByteBuffer)} with a heap buffer set the fields of the objects while the CBOR is decoded,
+	 *           without building a {@link CborValue} tree first. The result is the same as reading the tree: the field
+	 *           metadata, the type name, {@link #setIgnoreUnknownFields(boolean)} and the deprecation settings are honored. Items
+	 *           read by a {@link Json.Serializer} or {@link Json.Serializable}, sets, bignums and maps whose class name is not
+	 *           their first entry are parsed into a tree, which is read as usual. Binding is only used if the reader is a
+	 *           {@link CborReader} and not a subclass of it. */
+	public void setDirectBinding (boolean directBinding) {
+		this.directBinding = directBinding;
+	}
+
+	public boolean getDirectBinding () {
+		return directBinding;
+	}
+
+	private boolean canBind () {
+		return directBinding && getReader().getClass() == CborReader.class;
+	}
+
+	/** Writes objects of the type as an array of their field values, without keys, and reads them back by position. This is
+	 * smaller and faster to read than a map, but the fields of the type must not change, except that fields may be appended:
+	 * values missing at the end keep their default, extra values are ignored if unknown fields are ignored. All fields are
+	 * written, in the order of the map written otherwise, so deprecated fields, prototypes and field ids are not used.
+	 * <p>
+	 * An object is only written as array if its class is the known type, or if there is no type name, because the array has
+	 * no room for the class name. The type itself, not its subclasses, has to be registered on both sides. Serializers take
+	 * precedence. */
+	public void setPositional (Class type, boolean positional) {
+		if (positional)
+			positionalTypes.add(type);
+		else
+			positionalTypes.remove(type);
+	}
+
+	public boolean isPositional (Class type) {
+		return positionalTypes.contains(type);
+	}
+
+	/** Registers a codec that writes and reads the fields of the type instead of reflection.
+	 * @param codec May be null to use reflection for the type, even if there is a generated codec. */
+	public <T> void setCodec (Class<T> type, @Null CborCodec<T> codec) {
+		codecs.put(type, codec);
+	}
+
+	/** Returns the codec registered for the type. If none is registered, the codec generated for a class annotated with
+	 * {@link GenerateCodec} is looked up once. The generated codec is not used if the fields are sorted or the type has fields
+	 * configured at runtime, with {@link #setElementType(Class, String, Class)}, {@link #setDeprecated(Class, String, boolean)}
+	 * or {@link #setFieldId(Class, String, int)}, or is positional, because the codec only knows the annotations.
+	 * @return May be null. */
+	public @Null <T> CborCodec<T> getCodec (Class<T> type) {
+		if (codecs.containsKey(type)) return codecs.get(type);
+		if (sortFields || configuredTypes.contains(type) || positionalTypes.contains(type)) return null;
+		CborCodec codec = generatedCodecs.get(type);
+		if (codec == null && !generatedCodecs.containsKey(type)) {
+			try {
+				String name = type.getName().replace('$', '_') + "_CborCodec";
+				Object instance = ClassReflection.newInstance(ClassReflection.forName(name));
+				// Different classes can map to the same name, eg a.B$C and a.B_C.
+				if (instance instanceof CborCodec && ((CborCodec)instance).getType() == type) codec = (CborCodec)instance;
+			} catch (ReflectionException ignored) {
+			}
+			generatedCodecs.put(type, codec);
+		}
+		return codec;
+	}
+
+	@Override
+	public void setUsePrototypes (boolean usePrototypes) {
+		super.setUsePrototypes(usePrototypes);
+		this.usePrototypes = usePrototypes;
+	}
+
+	public boolean getUsePrototypes () {
+		return usePrototypes;
+	}
+
+	public boolean getIgnoreDeprecated () {
+		return ignoreDeprecated;
+	}
+
+	public boolean getReadDeprecated () {
+		return readDeprecated;
+	}
+
+	@Override
+	public void setTypeName (@Null String typeName) {
+		super.setTypeName(typeName);
+		this.typeName = typeName;
+	}
+
+	/** Registers a small id for the class, which is written as the value of the {@link #setTypeName(String) type name} in place
+	 * of the class name, so the type costs one byte for ids up to 23 instead of the length of the class name. The class is found
+	 * by the id with an array index. Both sides must register the same ids. The decimal string of the id is also registered as
+	 * the {@link #addClassTag(String, Class) class tag}, which is written instead by other writers. A short type name saves the
+	 * most, like {@code setTypeName("@")}.
+	 * @param id The id, which should be small, as an array of the size of the largest id is used. */
+	public void addClassId (int id, Class type) {
+		if (id < 0) throw new IllegalArgumentException("id must be >= 0: " + id);
+		if (id >= idToClass.size) idToClass.setSize(id + 1);
+		Class previous = idToClass.get(id);
+		if (previous != null) classToId.remove(previous, -1);
+		idToClass.set(id, type);
+		classToId.put(type, id);
+		addClassTag(Integer.toString(id), type);
+	}
+
+	/** @return the class registered for the id, or null. */
+	public @Null Class getClass (int id) {
+		return id >= 0 && id < idToClass.size ? idToClass.get(id) : null;
+	}
+
+	/** @return the id registered for the class, or -1. */
+	public int getClassId (Class type) {
+		return classToId.get(type, -1);
+	}
+
+	/** Writes the id of the class if it has one, see {@link #addClassId(int, Class)}. */
+	@Override
+	public void writeType (Class type) {
+		int id = classToId.size == 0 || typeName == null ? -1 : classToId.get(type, -1);
+		JsonWriter writer = getWriter();
+		if (id == -1 || !(writer instanceof CborWriter)) {
+			super.writeType(type);
+			return;
+		}
+		try {
+			((CborWriter)writer).name(typeName).value(id);
+		} catch (IOException ex) {
+			throw new SerializationException(ex);
+		}
+	}
+
+	@Override
+	public void setIgnoreDeprecated (boolean ignoreDeprecated) {
+		super.setIgnoreDeprecated(ignoreDeprecated);
+		this.ignoreDeprecated = ignoreDeprecated;
+	}
+
+	@Override
+	public void setReadDeprecated (boolean readDeprecated) {
+		super.setReadDeprecated(readDeprecated);
+		this.readDeprecated = readDeprecated;
+	}
+
+	@Override
+	public void setSortFields (boolean sortFields) {
+		super.setSortFields(sortFields);
+		this.sortFields = sortFields;
+	}
+
+	@Override
+	public void setElementType (Class type, String fieldName, Class elementType) {
+		super.setElementType(type, fieldName, elementType);
+		configuredTypes.add(type);
+		getFieldMetadata(type).get(fieldName).elementType = elementType;
+	}
+
+	@Override
+	public void setDeprecated (Class type, String fieldName, boolean deprecated) {
+		super.setDeprecated(type, fieldName, deprecated);
+		configuredTypes.add(type);
+		getFieldMetadata(type).get(fieldName).deprecated = deprecated;
+	}
+
+	/** Sets the id of the field, like the {@link FieldId} annotation does. The field is then written with the id as key.
+	 * @param id The id, which must be unique for the type, or -1 to write the field with its name again. */
+	public void setFieldId (Class type, String fieldName, int id) {
+		if (id < -1) throw new IllegalArgumentException("id must be >= 0, or -1 to clear it: " + id);
+		FieldMetadata metadata = getFieldMetadata(type).get(fieldName);
+		if (metadata == null) throw new SerializationException("Field not found: " + fieldName + " (" + type.getName() + ")");
+		IntMap<FieldMetadata> ids = typeToIds.get(type);
+		FieldMetadata other = id == -1 ? null : ids.get(id);
+		if (other != null && other != metadata) throw new IllegalArgumentException(
+			"id " + id + " of field " + fieldName + " is already used by " + other.field.getName() + " (" + type.getName() + ")");
+		if (metadata.id != -1) ids.remove(metadata.id);
+		metadata.id = id;
+		if (id != -1) ids.put(id, metadata);
+		configuredTypes.add(type);
+	}
+
+	/** @return the field with the id, if the key is the decimal string of an integer key, see {@link CborWriter#name(long)}. */
+	private @Null FieldMetadata getField (Class type, String key) {
+		char first = key.isEmpty() ? 0 : key.charAt(0);
+		if (first < '0' || first > '9') return null;
+		IntMap<FieldMetadata> ids = typeToIds.get(type);
+		if (ids == null) {
+			getFieldMetadata(type);
+			ids = typeToIds.get(type);
+		}
+		if (ids.size == 0) return null;
+		try {
+			return ids.get(Integer.parseInt(key));
+		} catch (NumberFormatException ex) {
+			return null;
+		}
+	}
+
+	/** Returns the fields that are written and read for the type, like the private field cache of {@link Json}. */
+	protected OrderedMap<String, FieldMetadata> getFieldMetadata (Class type) {
+		OrderedMap<String, FieldMetadata> fields = typeToFields.get(type);
+		if (fields != null) return fields;
+
+		Array<Class> classHierarchy = new Array<>();
+		for (Class nextClass = type; nextClass != Object.class; nextClass = nextClass.getSuperclass())
+			classHierarchy.add(nextClass);
+		ArrayList<Field> allFields = new ArrayList<>();
+		for (int i = classHierarchy.size - 1; i >= 0; i--)
+			Collections.addAll(allFields, ClassReflection.getDeclaredFields(classHierarchy.get(i)));
+
+		fields = new OrderedMap<>(allFields.size());
+		for (int i = 0, n = allFields.size(); i < n; i++) {
+			Field field = allFields.get(i);
+			if (field.isTransient() || field.isStatic() || field.isSynthetic()) continue;
+			if (!field.isAccessible()) {
+				try {
+					field.setAccessible(true);
+				} catch (RuntimeException ex) {
+					continue;
+				}
+			}
+			fields.put(field.getName(), new FieldMetadata(field));
+		}
+		sortFields(type, fields.orderedKeys());
+
+		IntMap<FieldMetadata> ids = new IntMap<>();
+		for (FieldMetadata metadata : fields.values()) {
+			if (metadata.id == -1) continue;
+			FieldMetadata other = ids.get(metadata.id);
+			if (other != null) throw new SerializationException("Duplicate field id " + metadata.id + ": " + other.field.getName()
+				+ " and " + metadata.field.getName() + " (" + type.getName() + ")");
+			ids.put(metadata.id, metadata);
+		}
+		typeToFields.put(type, fields);
+		typeToIds.put(type, ids);
+		return fields;
+	}
+
+	/** Returns the instance holding the default values of the fields of the type, which are not written. It is created once.
+	 * @return null if {@link #setUsePrototypes(boolean) prototypes} are disabled or the instance cannot be created. */
+	@Null
+	Object getPrototype (Class type) {
+		if (!usePrototypes) return null;
+		if (prototypes.containsKey(type)) return prototypes.get(type);
+		Object prototype;
+		try {
+			prototype = newInstance(type);
+		} catch (Exception ex) {
+			prototype = null;
+		}
+		prototypes.put(type, prototype);
+		return prototype;
+	}
+
+	private CborWriter writeName (CborWriter writer, String name, FieldMetadata metadata) throws IOException {
+		return metadata.id == -1 ? writer.name(name) : writer.name(metadata.id);
+	}
+
+	/** Uses the codec of the type if there is one, see {@link #getCodec(Class)}. Otherwise the fields are accessed through
+	 * cached method handles where available, and primitive fields are written without boxing. */
+	@Override
+	public void writeFields (Object object) {
+		JsonWriter writer = getWriter();
+		if (!(writer instanceof CborWriter)) {
+			super.writeFields(object);
+			return;
+		}
+		CborCodec codec = getCodec(object.getClass());
+		try {
+			if (codec != null)
+				codec.write(this, (CborWriter)writer, object);
+			else
+				writeFields(object, (CborWriter)writer);
+		} catch (IOException ex) {
+			throw new SerializationException(ex);
+		}
+	}
+
+	private void writeFields (Object object, CborWriter writer) throws IOException {
+		Class type = object.getClass();
+		Object defaults = getPrototype(type);
+		OrderedMap<String, FieldMetadata> fields = getFieldMetadata(type);
+		Array<String> fieldNames = fields.orderedKeys();
+		for (int i = 0, n = fieldNames.size; i < n; i++) {
+			String name = fieldNames.get(i);
+			FieldMetadata metadata = fields.get(name);
+			if (ignoreDeprecated && metadata.deprecated) continue;
+			FieldAccessor accessor = metadata.getAccessor();
+			try {
+				switch (metadata.kind) {
+				case FieldMetadata.INT:
+				case FieldMetadata.SHORT_INT: {
+					int value = accessor.getInt(object);
+					if (defaults == null || value != accessor.getInt(defaults)) writeName(writer, name, metadata).value(value);
+					continue;
+				}
+				case FieldMetadata.LONG: {
+					long value = accessor.getLong(object);
+					if (defaults == null || value != accessor.getLong(defaults)) writeName(writer, name, metadata).value(value);
+					continue;
+				}
+				case FieldMetadata.FLOAT: {
+					float value = accessor.getFloat(object);
+					if (defaults == null || Float.floatToIntBits(value) != Float.floatToIntBits(accessor.getFloat(defaults)))
+						writeName(writer, name, metadata).value(value);
+					continue;
+				}
+				case FieldMetadata.DOUBLE: {
+					double value = accessor.getDouble(object);
+					if (defaults == null || Double.doubleToLongBits(value) != Double.doubleToLongBits(accessor.getDouble(defaults)))
+						writeName(writer, name, metadata).value(value);
+					continue;
+				}
+				case FieldMetadata.BOOLEAN: {
+					boolean value = accessor.getBoolean(object);
+					if (defaults == null || value != accessor.getBoolean(defaults)) writeName(writer, name, metadata).value(value);
+					continue;
+				}
+				}
+				Object value = accessor.get(object);
+				if (defaults != null && CborCodec.isDefault(value, accessor.get(defaults))) continue;
+				writeName(writer, name, metadata);
+				writeValue(value, metadata.field.getType(), metadata.elementType);
+			} catch (RuntimeException ex) {
+				throw fieldException(ex, name, type);
+			}
+		}
+	}
+
+	/** Uses the codec of the type if there is one, see {@link #getCodec(Class)}. */
+	@Override
+	public void readFields (Object object, JsonValue jsonMap) {
+		Class type = object.getClass();
+		CborCodec codec = getCodec(type);
+		OrderedMap<String, FieldMetadata> fields = codec == null ? getFieldMetadata(type) : null;
+		for (JsonValue child = jsonMap.child; child != null; child = child.next) {
+			String name = child.name.indexOf(' ') == -1 ? child.name : child.name.replace(' ', '_');
+			try {
+				if (codec != null) {
+					if (codec.read(this, object, name, child)) continue;
+					FieldMetadata metadata = getField(type, name);
+					if (metadata != null && codec.read(this, object, metadata.field.getName(), child)) continue;
+				} else {
+					FieldMetadata metadata = fields.get(name);
+					if (metadata == null) metadata = getField(type, name);
+					if (metadata != null) {
+						if (!ignoreDeprecated || readDeprecated || !metadata.deprecated) readField(object, metadata, child);
+						continue;
+					}
+				}
+			} catch (RuntimeException ex) {
+				throw fieldException(ex, name, type);
+			}
+			if (child.name.equals(typeName) || getIgnoreUnknownFields() || ignoreUnknownField(type, child.name)) continue;
+			SerializationException ex = new SerializationException("Field not found: " + child.name + " (" + type.getName() + ")");
+			ex.addTrace(child.trace());
+			throw ex;
+		}
+	}
+
+	private void readField (Object object, FieldMetadata metadata, JsonValue value) {
+		FieldAccessor accessor = metadata.getAccessor();
+		switch (metadata.kind) {
+		case FieldMetadata.INT:
+			accessor.setInt(object, readInt(value));
+			break;
+		case FieldMetadata.LONG:
+			accessor.setLong(object, readLong(value));
+			break;
+		case FieldMetadata.FLOAT:
+			accessor.setFloat(object, readFloat(value));
+			break;
+		case FieldMetadata.DOUBLE:
+			accessor.setDouble(object, readDouble(value));
+			break;
+		case FieldMetadata.BOOLEAN:
+			accessor.setBoolean(object, readBoolean(value));
+			break;
+		default:
+			accessor.set(object, readValue(metadata.field.getType(), metadata.elementType, value));
+		}
+	}
+
+	private void readField (Object object, FieldMetadata metadata, CborInput input) {
+		FieldAccessor accessor = metadata.getAccessor();
+		switch (metadata.kind) {
+		case FieldMetadata.INT:
+			accessor.setInt(object, readInt(input));
+			break;
+		case FieldMetadata.LONG:
+			accessor.setLong(object, readLong(input));
+			break;
+		case FieldMetadata.FLOAT:
+			accessor.setFloat(object, readFloat(input));
+			break;
+		case FieldMetadata.DOUBLE:
+			accessor.setDouble(object, readDouble(input));
+			break;
+		case FieldMetadata.BOOLEAN:
+			accessor.setBoolean(object, readBoolean(input));
+			break;
+		default:
+			accessor.set(object, bindItem(metadata.field.getType(), metadata.elementType, input));
+		}
+	}
+
+	/** Creates the instance with the codec of the type if it can. */
+	@Override
+	protected Object newInstance (Class type) {
+		CborCodec codec = getCodec(type);
+		if (codec != null) {
+			Object object = codec.newInstance();
+			if (object != null) return object;
+		}
+		return super.newInstance(type);
+	}
+
+	/** Reads the next data item of the input like {@link #readValue(Class, Class, JsonValue)} reads it after parsing. Only for
+	 * array input, as used by {@link CborCodec#read(Cbor, Object, String, CborInput)}.
+	 * @param type May be null if the type is unknown.
+	 * @param elementType May be null if the type is unknown.
+	 * @return May be null. */
+	public @Null <T> T readValue (@Null Class<T> type, @Null Class elementType, CborInput input) {
+		return (T)bindItem(type, elementType, input);
+	}
+
+	/** Reads the next data item as int, without boxing if it is a number. Only for array input. */
+	public int readInt (CborInput input) {
+		int start = input.getPosition();
+		switch (readNumber(input)) {
+		case LONG_NUMBER:
+			return (int)longNumber;
+		case DOUBLE_NUMBER:
+			return (int)doubleNumber;
+		}
+		input.setPosition(start);
+		return (Integer)bindItem(int.class, null, input);
+	}
+
+	/** Reads the next data item as long, without boxing if it is a number. Only for array input. */
+	public long readLong (CborInput input) {
+		int start = input.getPosition();
+		switch (readNumber(input)) {
+		case LONG_NUMBER:
+			return longNumber;
+		case DOUBLE_NUMBER:
+			return (long)doubleNumber;
+		}
+		input.setPosition(start);
+		return (Long)bindItem(long.class, null, input);
+	}
+
+	/** Reads the next data item as float, without boxing if it is a number. Only for array input. */
+	public float readFloat (CborInput input) {
+		int start = input.getPosition();
+		switch (readNumber(input)) {
+		case LONG_NUMBER:
+			return longNumber;
+		case DOUBLE_NUMBER:
+			return (float)doubleNumber;
+		}
+		input.setPosition(start);
+		return (Float)bindItem(float.class, null, input);
+	}
+
+	/** Reads the next data item as double, without boxing if it is a number. Only for array input. */
+	public double readDouble (CborInput input) {
+		int start = input.getPosition();
+		switch (readNumber(input)) {
+		case LONG_NUMBER:
+			return longNumber;
+		case DOUBLE_NUMBER:
+			return doubleNumber;
+		}
+		input.setPosition(start);
+		return (Double)bindItem(double.class, null, input);
+	}
+
+	/** Reads the next data item as boolean, without boxing if it is a boolean. Only for array input. */
+	public boolean readBoolean (CborInput input) {
+		int start = input.getPosition();
+		int initialByte = input.readHeader();
+		if (initialByte == TRUE) return true;
+		if (initialByte == FALSE) return false;
+		input.setPosition(start);
+		return (Boolean)bindItem(boolean.class, null, input);
+	}
+
+	public int readInt (JsonValue value) {
+		return value.isNumber() ? value.asInt() : readValue(int.class, null, value);
+	}
+
+	public long readLong (JsonValue value) {
+		return value.isNumber() ? value.asLong() : readValue(long.class, null, value);
+	}
+
+	public float readFloat (JsonValue value) {
+		return value.isNumber() ? value.asFloat() : readValue(float.class, null, value);
+	}
+
+	public double readDouble (JsonValue value) {
+		return value.isNumber() ? value.asDouble() : readValue(double.class, null, value);
+	}
+
+	public boolean readBoolean (JsonValue value) {
+		return value.isBoolean() ? value.asBoolean() : readValue(boolean.class, null, value);
+	}
+
+	/** Reads an integer or float that needs no conversion into {@link #longNumber} or {@link #doubleNumber}.
+	 * @return the kind of number, or 0 if the data item is something else. */
+	private int readNumber (CborInput input) {
+		int initialByte = input.readHeader();
+		long argument = input.getArgument();
+		switch (initialByte >>> 5) {
+		case MAJOR_TYPE_UNSIGNED_INTEGER:
+			if (argument < 0) return 0;
+			longNumber = argument;
+			return LONG_NUMBER;
+		case MAJOR_TYPE_NEGATIVE_INTEGER:
+			if (argument < 0) return 0;
+			longNumber = ~argument;
+			return LONG_NUMBER;
+		}
+		switch (initialByte) {
+		case HALF_PRECISION_FLOAT:
+			doubleNumber = CborInput.halfToFloat((int)argument);
+			return DOUBLE_NUMBER;
+		case SINGLE_PRECISION_FLOAT:
+			doubleNumber = Float.intBitsToFloat((int)argument);
+			return DOUBLE_NUMBER;
+		case DOUBLE_PRECISION_FLOAT:
+			doubleNumber = Double.longBitsToDouble(argument);
+			return DOUBLE_NUMBER;
+		}
+		return 0;
+	}
+
+	/** Binds the first data item of the input. */
+	private @Null <T> T bind (@Null Class<T> type, @Null Class elementType, CborInput input) {
+		if (!input.hasNext()) return null;
+		return (T)bindItem(type, elementType, input);
+	}
+
+	/** Reads the next data item of the input as the type, with the same result as {@link #readValue(Class, Class, JsonValue)}
+	 * for the parsed item. */
+	private @Null Object bindItem (@Null Class type, @Null Class elementType, CborInput input) {
+		int start = input.getPosition();
+		int initialByte = input.readHeader();
+		long tag = -1;
+		while (initialByte >>> 5 == MAJOR_TYPE_TAG && input.getArgument() != TAG_POSITIVE_BIGNUM
+			&& input.getArgument() != TAG_NEGATIVE_BIGNUM) {
+			tag = input.getArgument();
+			initialByte = input.readHeader();
+		}
+		int majorType = initialByte >>> 5;
+		if (majorType == MAJOR_TYPE_MAP) return bindMap(type, elementType, input, start);
+		// Serializers may keep the value they read, so they get a tree of their own.
+		if (type != null && (getSerializer(type) != null || ClassReflection.isAssignableFrom(Serializable.class, type)))
+			return readTree(type, elementType, input, start);
+		CborValue scalar = this.scalar;
+		switch (majorType) {
+		case MAJOR_TYPE_ARRAY:
+			if (type != null && positionalTypes.contains(type)) return bindPositional(type, input);
+			return bindArray(type, elementType, input, start);
+		case MAJOR_TYPE_BYTE_STRING:
+			if (TypedArrays.isSupported(tag)) return bindTypedArray(type, elementType, (int)tag, input, start);
+			if ((type == byte[].class || type == null || type == Object.class) && getSerializer(byte[].class) == null)
+				return input.readBytes();
+			return readTree(type, elementType, input, start);
+		case MAJOR_TYPE_UNSIGNED_INTEGER:
+		case MAJOR_TYPE_NEGATIVE_INTEGER:
+			long argument = input.getArgument();
+			// Integers that do not fit into a long.
+			if (argument < 0) return readTree(type, elementType, input, start);
+			scalar.set(majorType == MAJOR_TYPE_UNSIGNED_INTEGER ? argument : ~argument, null);
+			break;
+		case MAJOR_TYPE_UNICODE_STRING:
+			scalar.set(input.readString());
+			break;
+		case MAJOR_TYPE_TAG:
+			return readTree(type, elementType, input, start);
+		default:
+			switch (initialByte) {
+			case FALSE:
+				scalar.set(false);
+				break;
+			case TRUE:
+				scalar.set(true);
+				break;
+			case NULL:
+			case UNDEFINED:
+				scalar.set((String)null);
+				break;
+			case HALF_PRECISION_FLOAT:
+				scalar.set(CborInput.halfToFloat((int)input.getArgument()), null);
+				break;
+			case SINGLE_PRECISION_FLOAT:
+				scalar.set(Float.intBitsToFloat((int)input.getArgument()), null);
+				break;
+			case DOUBLE_PRECISION_FLOAT:
+				scalar.set(Double.longBitsToDouble(input.getArgument()), null);
+				break;
+			default:
+				return readTree(type, elementType, input, start);
+			}
+		}
+		return readValue(type, elementType, scalar);
+	}
+
+	/** Decodes the elements of the typed array straight from the input if the type is one of
+	 * {@link #readTypedArray(Class, int, byte[], int, int)}. */
+	private @Null Object bindTypedArray (@Null Class type, @Null Class elementType, int tag, CborInput input, int start) {
+		if (input.isIndefinite()) return readTree(type, elementType, input, start);
+		int offset = input.getPosition(), length = input.getLength();
+		Object array = readTypedArray(type, tag, input.getBuffer(), offset, length);
+		if (array == null) return readTree(type, elementType, input, start);
+		input.skip(length);
+		return array;
+	}
+
+	private @Null Object bindMap (@Null Class type, @Null Class elementType, CborInput input, int start) {
+		int length = input.getLength(), count = 0;
+		String typeName = this.typeName;
+		boolean hasClassName = false;
+		if (typeName != null && length != 0 && input.peek() != BREAK) {
+			int entry = input.getPosition();
+			if (typeName.equals(readKey(input))) {
+				int initialByte = input.readHeader();
+				if (initialByte >>> 5 == MAJOR_TYPE_UNSIGNED_INTEGER && input.getArgument() >= 0) {
+					long id = input.getArgument();
+					type = id < idToClass.size ? idToClass.get((int)id) : null;
+					if (type == null) throw new SerializationException("Unknown class id: " + id);
+				} else if (initialByte >>> 5 == MAJOR_TYPE_UNICODE_STRING) {
+					String className = input.readString();
+					type = getClass(className);
+					if (type == null) {
+						try {
+							type = ClassReflection.forName(className);
+						} catch (ReflectionException ex) {
+							throw new SerializationException(ex);
+						}
+					}
+				} else
+					return readTree(type, elementType, input, start);
+				hasClassName = true;
+				count = 1;
+			} else
+				input.setPosition(entry);
+		}
+
+		if (type == null || typeName != null && ClassReflection.isAssignableFrom(Collection.class, type)
+			|| getSerializer(type) != null || type == String.class || type == Integer.class || type == Boolean.class
+			|| type == Float.class || type == Long.class || type == Double.class || type == Short.class || type == Byte.class
+			|| type == Character.class || ClassReflection.isAssignableFrom(Enum.class, type)
+			|| ClassReflection.isAssignableFrom(Serializable.class, type) || ClassReflection.isAssignableFrom(ObjectSet.class, type)
+			|| ClassReflection.isAssignableFrom(IntSet.class, type)) return readTree(type, elementType, input, start);
+
+		boolean map = ClassReflection.isAssignableFrom(ObjectMap.class, type)
+			|| ClassReflection.isAssignableFrom(ObjectIntMap.class, type) || ClassReflection.isAssignableFrom(ObjectFloatMap.class, type)
+			|| ClassReflection.isAssignableFrom(IntMap.class, type) || ClassReflection.isAssignableFrom(LongMap.class, type)
+			|| ClassReflection.isAssignableFrom(ArrayMap.class, type) || ClassReflection.isAssignableFrom(Map.class, type);
+		// Json reads the class name of a map as one of its entries.
+		if (map && hasClassName) return readTree(type, elementType, input, start);
+
+		Object object = newInstance(type);
+		Class objectType = object.getClass();
+		CborCodec codec = map ? null : getCodec(objectType);
+		OrderedMap<String, FieldMetadata> fields = map || codec != null ? null : getFieldMetadata(objectType);
+		for (; length == -1 ? !input.readBreak() : count < length; count++) {
+			String name = readKey(input);
+			// A class name after other entries changes the type, so the map is read again as tree.
+			if (name == null || name.equals(typeName)) return readTree(type, elementType, input, start);
+
+			if (map) {
+				if (object instanceof ObjectMap)
+					((ObjectMap)object).put(name, bindItem(elementType, null, input));
+				else if (object instanceof ObjectIntMap)
+					((ObjectIntMap)object).put(name, (Integer)bindItem(Integer.class, null, input));
+				else if (object instanceof ObjectFloatMap)
+					((ObjectFloatMap)object).put(name, (Float)bindItem(Float.class, null, input));
+				else if (object instanceof IntMap)
+					((IntMap)object).put(Integer.parseInt(name), bindItem(elementType, null, input));
+				else if (object instanceof LongMap)
+					((LongMap)object).put(Long.parseLong(name), bindItem(elementType, null, input));
+				else if (object instanceof ArrayMap)
+					((ArrayMap)object).put(name, bindItem(elementType, null, input));
+				else
+					((Map)object).put(name, bindItem(elementType, null, input));
+				continue;
+			}
+
+			String fieldName = name.indexOf(' ') == -1 ? name : name.replace(' ', '_');
+			if (codec != null) {
+				try {
+					if (codec.read(this, object, fieldName, input)) continue;
+					FieldMetadata metadata = getField(objectType, fieldName);
+					if (metadata != null && codec.read(this, object, metadata.field.getName(), input)) continue;
+				} catch (RuntimeException ex) {
+					throw fieldException(ex, fieldName, objectType);
+				}
+			} else {
+				FieldMetadata metadata = fields.get(fieldName);
+				if (metadata == null) metadata = getField(objectType, fieldName);
+				if (metadata != null) {
+					if (ignoreDeprecated && !readDeprecated && metadata.deprecated)
+						input.skipItem();
+					else {
+						try {
+							readField(object, metadata, input);
+						} catch (RuntimeException ex) {
+							throw fieldException(ex, fieldName, objectType);
+						}
+					}
+					continue;
+				}
+			}
+			if (getIgnoreUnknownFields() || ignoreUnknownField(objectType, name)) {
+				input.skipItem();
+				continue;
+			}
+			// The field may belong to a subclass named by a later class name, which the tree finds first.
+			if (typeName != null && !hasClassName) return readTree(type, elementType, input, start);
+			throw new SerializationException("Field not found: " + name + " (" + objectType.getName() + ")");
+		}
+		return object;
+	}
+
+	private SerializationException fieldException (RuntimeException runtimeEx, String fieldName, Class type) {
+		SerializationException ex = runtimeEx instanceof SerializationException ? (SerializationException)runtimeEx
+			: new SerializationException(runtimeEx);
+		ex.addTrace(fieldName + " (" + type.getName() + ")");
+		return ex;
+	}
+
+	private Object bindArray (@Null Class type, @Null Class elementType, CborInput input, int start) {
+		int length = input.getLength();
+		if (type == null || type == Object.class) type = Array.class;
+		if (ClassReflection.isAssignableFrom(Array.class, type)) {
+			Array result = type == Array.class ? new Array() : (Array)newInstance(type);
+			for (int i = 0; length == -1 ? !input.readBreak() : i < length; i++)
+				result.add(bindItem(elementType, null, input));
+			return result;
+		}
+		if (ClassReflection.isAssignableFrom(Queue.class, type)) {
+			Queue result = type == Queue.class ? new Queue() : (Queue)newInstance(type);
+			for (int i = 0; length == -1 ? !input.readBreak() : i < length; i++)
+				result.addLast(bindItem(elementType, null, input));
+			return result;
+		}
+		if (ClassReflection.isAssignableFrom(Collection.class, type)) {
+			Collection result = type.isInterface() ? new ArrayList() : (Collection)newInstance(type);
+			for (int i = 0; length == -1 ? !input.readBreak() : i < length; i++)
+				result.add(bindItem(elementType, null, input));
+			return result;
+		}
+		// Every item takes at least one byte, so a larger length is an error that the tree reports.
+		if (type.isArray() && length != -1 && length <= input.limit - input.getPosition()) {
+			Class componentType = type.getComponentType();
+			if (elementType == null) elementType = componentType;
+			Object result = ArrayReflection.newInstance(componentType, length);
+			for (int i = 0; i < length; i++)
+				ArrayReflection.set(result, i, bindItem(elementType, null, input));
+			return result;
+		}
+		return readTree(type, elementType, input, start);
+	}
+
+	/** Reads an object written by {@link #setPositional(Class, boolean)}, whose array header was read: the items are the values
+	 * of the fields in the order of {@link #getFieldMetadata(Class)}. Missing items at the end keep the default, extra items
+	 * are skipped if unknown fields are ignored. */
+	private Object bindPositional (Class type, CborInput input) {
+		Object object = newInstance(type);
+		OrderedMap<String, FieldMetadata> fields = getFieldMetadata(type);
+		Array<String> fieldNames = fields.orderedKeys();
+		int length = input.getLength();
+		for (int index = 0; length == -1 ? !input.readBreak() : index < length; index++) {
+			if (index >= fieldNames.size) {
+				if (!getIgnoreUnknownFields())
+					throw new SerializationException("Field not found: " + index + " (" + type.getName() + ")");
+				input.skipItem();
+				continue;
+			}
+			FieldMetadata metadata = fields.get(fieldNames.get(index));
+			if (ignoreDeprecated && !readDeprecated && metadata.deprecated) {
+				input.skipItem();
+				continue;
+			}
+			try {
+				readField(object, metadata, input);
+			} catch (RuntimeException ex) {
+				throw fieldException(ex, fieldNames.get(index), type);
+			}
+		}
+		return object;
+	}
+
+	/** Reads the key of a map entry. An unsigned integer key is returned as its decimal string.
+	 * @return null if the key is neither a text string nor an unsigned integer. */
+	private @Null String readKey (CborInput input) {
+		int initialByte = input.readHeader();
+		while (initialByte >>> 5 == MAJOR_TYPE_TAG)
+			initialByte = input.readHeader();
+		if (initialByte >>> 5 == MAJOR_TYPE_UNICODE_STRING) return input.readString();
+		if (initialByte >>> 5 == MAJOR_TYPE_UNSIGNED_INTEGER && input.getArgument() >= 0)
+			return CborReader.idName(input.getArgument());
+		return null;
+	}
+
+	/** Parses the data item at the start position into a tree and reads it. */
+	private @Null Object readTree (@Null Class type, @Null Class elementType, CborInput input, int start) {
+		input.setPosition(start);
+		return readValue(type, elementType, ((CborReader)getReader()).parse(input));
+	}
+
+	/** Writes byte arrays as byte strings if the writer is a {@link CborWriter}. */
+	@Override
+	public void writeValue (@Null Object value, @Null Class knownType, @Null Class elementType) {
+		if (value instanceof byte[] && getWriter() instanceof CborWriter && getSerializer(byte[].class) == null) {
+			try {
+				getWriter().value(value);
+			} catch (IOException ex) {
+				throw new SerializationException(ex);
+			}
+			return;
+		}
+		if (value != null && positionalTypes.size > 0 && getWriter() instanceof CborWriter) {
+			Class type = value.getClass();
+			if (positionalTypes.contains(type) && (knownType == type || typeName == null) && getSerializer(type) == null) {
+				try {
+					writePositional(value, (CborWriter)getWriter());
+				} catch (IOException ex) {
+					throw new SerializationException(ex);
+				}
+				return;
+			}
+		}
+		if (typedArrays && value != null && getWriter() instanceof CborWriter) {
+			try {
+				if (writeTypedArray(value, knownType, (CborWriter)getWriter())) return;
+			} catch (IOException ex) {
+				throw new SerializationException(ex);
+			}
+		}
+		super.writeValue(value, knownType, elementType);
+	}
+
+	/** @return false if the value is not written as typed array. */
+	private boolean writeTypedArray (Object value, @Null Class knownType, CborWriter writer) throws IOException {
+		Class type = value.getClass();
+		if (getSerializer(type) != null) return false;
+		if (type == float[].class)
+			writer.value((float[])value, 0, ((float[])value).length);
+		else if (type == int[].class)
+			writer.value((int[])value, 0, ((int[])value).length);
+		else if (type == short[].class)
+			writer.value((short[])value, 0, ((short[])value).length);
+		else if (type == long[].class)
+			writer.value((long[])value, 0, ((long[])value).length);
+		else if (type == double[].class)
+			writer.value((double[])value, 0, ((double[])value).length);
+		else if (type == FloatArray.class && knownType == type)
+			writer.value(((FloatArray)value).items, 0, ((FloatArray)value).size);
+		else if (type == IntArray.class && knownType == type)
+			writer.value(((IntArray)value).items, 0, ((IntArray)value).size);
+		else
+			return false;
+		return true;
+	}
+
+	/** Decodes the elements of a typed array into float[], int[], short[], long[], double[], {@link FloatArray} or
+	 * {@link IntArray}, converting them if their type differs. Without a type the array type matching the elements is used.
+	 * @return null if the type is none of these or has a serializer. */
+	private @Null Object readTypedArray (@Null Class type, int tag, byte[] bytes, int offset, int length) {
+		if (type == null || type == Object.class) return TypedArrays.toArray(tag, bytes, offset, length);
+		if (getSerializer(type) != null) return null;
+		if (type == float[].class) return TypedArrays.toFloatArray(tag, bytes, offset, length);
+		if (type == int[].class) return TypedArrays.toIntArray(tag, bytes, offset, length);
+		if (type == short[].class) return TypedArrays.toShortArray(tag, bytes, offset, length);
+		if (type == long[].class) return TypedArrays.toLongArray(tag, bytes, offset, length);
+		if (type == double[].class) return TypedArrays.toDoubleArray(tag, bytes, offset, length);
+		if (type == FloatArray.class) {
+			FloatArray array = new FloatArray(0);
+			array.items = TypedArrays.toFloatArray(tag, bytes, offset, length);
+			array.size = array.items.length;
+			return array;
+		}
+		if (type == IntArray.class) {
+			IntArray array = new IntArray(0);
+			array.items = TypedArrays.toIntArray(tag, bytes, offset, length);
+			array.size = array.items.length;
+			return array;
+		}
+		return null;
+	}
+
+	private void writePositional (Object object, CborWriter writer) throws IOException {
+		Class type = object.getClass();
+		OrderedMap<String, FieldMetadata> fields = getFieldMetadata(type);
+		Array<String> fieldNames = fields.orderedKeys();
+		writer.array();
+		for (int i = 0, n = fieldNames.size; i < n; i++) {
+			FieldMetadata metadata = fields.get(fieldNames.get(i));
+			FieldAccessor accessor = metadata.getAccessor();
+			try {
+				switch (metadata.kind) {
+				case FieldMetadata.INT:
+				case FieldMetadata.SHORT_INT:
+					writer.value(accessor.getInt(object));
+					break;
+				case FieldMetadata.LONG:
+					writer.value(accessor.getLong(object));
+					break;
+				case FieldMetadata.FLOAT:
+					writer.value(accessor.getFloat(object));
+					break;
+				case FieldMetadata.DOUBLE:
+					writer.value(accessor.getDouble(object));
+					break;
+				case FieldMetadata.BOOLEAN:
+					writer.value(accessor.getBoolean(object));
+					break;
+				default:
+					writeValue(accessor.get(object), metadata.field.getType(), metadata.elementType);
+				}
+			} catch (RuntimeException ex) {
+				throw fieldException(ex, fieldNames.get(i), type);
+			}
+		}
+		writer.pop();
+	}
+
+	/** Byte strings are read into byte arrays without turning every byte into a value first. For any other type the bytes are
+	 * read like an array. Typed arrays are decoded straight into primitive arrays, {@link FloatArray} and {@link IntArray}, and
+	 * like an array of numbers otherwise. Views of a {@link CborDocument} create their children before they are read. Arrays are read by
+	 * position for the types registered with {@link #setPositional(Class, boolean)}. */
+	@Override
+	public @Null <T> T readValue (@Null Class<T> type, @Null Class elementType, JsonValue jsonData) {
+		if (jsonData instanceof CborValue) {
+			CborValue value = (CborValue)jsonData;
+			if (value.isBinary() && (type == byte[].class || type == null || type == Object.class)
+				&& getSerializer(byte[].class) == null) {
+				byte[] binary = value.getBinary();
+				if (value.getBinaryOffset() == 0 && value.size == binary.length) return (T)binary;
+				return (T)value.asByteArray();
+			}
+			if (value.isTypedArray()) {
+				Object array = readTypedArray(type, value.getTypedArrayTag(), value.getBinary(), value.getBinaryOffset(),
+					value.getBinaryLength());
+				if (array != null) return (T)array;
+			}
+			value.expand();
+		}
+		if (type != null && jsonData != null && jsonData.isArray() && positionalTypes.contains(type)
+			&& getSerializer(type) == null) return (T)readPositional(type, jsonData);
+		return super.readValue(type, elementType, jsonData);
+	}
+
+	private Object readPositional (Class type, JsonValue array) {
+		Object object = newInstance(type);
+		OrderedMap<String, FieldMetadata> fields = getFieldMetadata(type);
+		Array<String> fieldNames = fields.orderedKeys();
+		int index = 0;
+		for (JsonValue child = array.child; child != null; child = child.next, index++) {
+			if (index >= fieldNames.size) {
+				if (getIgnoreUnknownFields()) break;
+				SerializationException ex = new SerializationException("Field not found: " + index + " (" + type.getName() + ")");
+				ex.addTrace(child.trace());
+				throw ex;
+			}
+			FieldMetadata metadata = fields.get(fieldNames.get(index));
+			if (ignoreDeprecated && !readDeprecated && metadata.deprecated) continue;
+			try {
+				readField(object, metadata, child);
+			} catch (RuntimeException ex) {
+				throw fieldException(ex, fieldNames.get(index), type);
+			}
+		}
+		return object;
+	}
+
+	/** Reads the document without creating a {@link CborValue} for every node at once.
+	 * @param type May be null if the type is unknown.
+	 * @return May be null. */
+	public @Null <T> T readValue (@Null Class<T> type, CborDocument document) {
+		CborValue value = document.getValue();
+		return value == null ? null : readValue(type, null, value);
+	}
+
+	static protected class FieldMetadata {
+		static final int OBJECT = 0, INT = 1, SHORT_INT = 2, LONG = 3, FLOAT = 4, DOUBLE = 5, BOOLEAN = 6;
+
+		final Field field;
+		@Null Class elementType;
+		boolean deprecated;
+		/** The primitive type of the field, which is written and read without boxing. Byte and short fields are only written
+		 * without boxing. Char fields are written like objects, as they are either a string or a number. */
+		final int kind;
+		/** The key the field is written with in place of its name, or -1. See {@link FieldId}. */
+		int id = -1;
+		private @Null FieldAccessor accessor;
+
+		public FieldMetadata (Field field) {
+			this.field = field;
+			Class type = field.getType();
+			int index = ClassReflection.isAssignableFrom(ObjectMap.class, type) || ClassReflection.isAssignableFrom(Map.class, type)
+				? 1
+				: 0;
+			elementType = field.getElementType(index);
+			deprecated = field.isAnnotationPresent(Deprecated.class);
+			Annotation fieldId = field.getDeclaredAnnotation(FieldId.class);
+			if (fieldId != null) {
+				id = fieldId.getAnnotation(FieldId.class).value();
+				if (id < 0) throw new SerializationException(
+					"Field id must be >= 0: " + field.getName() + " (" + field.getDeclaringClass().getName() + ")");
+			}
+			if (type == int.class)
+				kind = INT;
+			else if (type == byte.class || type == short.class)
+				kind = SHORT_INT;
+			else if (type == long.class)
+				kind = LONG;
+			else if (type == float.class)
+				kind = FLOAT;
+			else if (type == double.class)
+				kind = DOUBLE;
+			else if (type == boolean.class)
+				kind = BOOLEAN;
+			else
+				kind = OBJECT;
+		}
+
+		/** Creates the accessor on first use, so only fields that are written or read get one. */
+		FieldAccessor getAccessor () {
+			if (accessor == null) accessor = FieldAccessor.create(field);
+			return accessor;
+		}
 	}
 }
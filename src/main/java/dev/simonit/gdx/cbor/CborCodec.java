@@ -0,0 +1,54 @@
+package dev.simonit.gdx.cbor;
+
+import com.badlogic.gdx.utils.JsonValue;
+import com.badlogic.gdx.utils.Null;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+/** Writes and reads the fields of one class without reflection. {@link Cbor} uses it in place of the reflection based
+ * {@link Cbor#writeFields(Object)} and {@link Cbor#readFields(Object, JsonValue)}, with the same result: the type name, the
+ * prototypes, unknown fields and deprecated fields are handled like before.
+ * <p>
+ * Codecs are usually generated for classes annotated with {@link GenerateCodec}, but can also be written by hand and registered
+ * with {@link Cbor#setCodec(Class, CborCodec)}. A codec instance belongs to one {@link Cbor}. */
+public abstract class CborCodec<T> {
+	public abstract Class<T> getType ();
+
+	/** @return a new instance without reflection, or null to let {@link Cbor} create it with reflection. */
+	public @Null T newInstance () {
+		return null;
+	}
+
+	/** Writes the fields of the object as entries of the map, which was started by the caller. */
+	public abstract void write (Cbor cbor, CborWriter writer, T object) throws IOException;
+
+	/** Sets the field with the name from the next data item of the input, see {@link Cbor#readValue(Class, Class, CborInput)}.
+	 * @param name The key of the entry, with spaces replaced by underscores.
+	 * @return false if there is no field with the name. The data item is not read then. */
+	public abstract boolean read (Cbor cbor, T object, String name, CborInput input);
+
+	/** Sets the field with the name from the value.
+	 * @param name The name of the value, with spaces replaced by underscores.
+	 * @return false if there is no field with the name. */
+	public abstract boolean read (Cbor cbor, T object, String name, JsonValue value);
+
+	/** @return an instance holding the default values of the fields, or null if the prototypes are disabled or the instance
+	 *         cannot be created. Fields that have their default value are not written. */
+	protected @Null T getDefaults (Cbor cbor) {
+		return (T)cbor.getPrototype(getType());
+	}
+
+	/** @return true if the value equals the default value, compared like {@link Cbor#writeFields(Object)} does. */
+	static protected boolean isDefault (@Null Object value, @Null Object defaultValue) {
+		if (value == null || defaultValue == null) return value == defaultValue;
+		if (value.equals(defaultValue)) return true;
+		return value.getClass().isArray() && defaultValue.getClass().isArray()
+			&& Arrays.deepEquals(new Object[] {value}, new Object[] {defaultValue});
+	}
+
+	/** @return true if a deprecated field is not read. */
+	static protected boolean skipDeprecated (Cbor cbor) {
+		return cbor.getIgnoreDeprecated() && !cbor.getReadDeprecated();
+	}
+}
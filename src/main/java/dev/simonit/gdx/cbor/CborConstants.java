@@ -0,0 +1,34 @@
+package dev.simonit.gdx.cbor;
+
+/** Major types, additional information values and initial bytes defined by
+ * <a href="https://www.rfc-editor.org/rfc/rfc8949.html">RFC 8949</a>. */
+public final class CborConstants {
+	public static final int MAJOR_TYPE_UNSIGNED_INTEGER = 0;
+	public static final int MAJOR_TYPE_NEGATIVE_INTEGER = 1;
+	public static final int MAJOR_TYPE_BYTE_STRING = 2;
+	public static final int MAJOR_TYPE_UNICODE_STRING = 3;
+	public static final int MAJOR_TYPE_ARRAY = 4;
+	public static final int MAJOR_TYPE_MAP = 5;
+	public static final int MAJOR_TYPE_TAG = 6;
+	public static final int MAJOR_TYPE_SPECIAL = 7;
+
+	/** Additional information values announcing the width of the argument that follows the initial byte. */
+	public static final int ONE_BYTE = 24, TWO_BYTES = 25, FOUR_BYTES = 26, EIGHT_BYTES = 27;
+	/** Additional information value of indefinite length strings, arrays and maps. */
+	public static final int INDEFINITE = 31;
+
+	/** Initial bytes of the major type 7 items. */
+	public static final int FALSE = 0xF4, TRUE = 0xF5, NULL = 0xF6, UNDEFINED = 0xF7, HALF_PRECISION_FLOAT = 0xF9,
+		SINGLE_PRECISION_FLOAT = 0xFA, DOUBLE_PRECISION_FLOAT = 0xFB, BREAK = 0xFF;
+
+	/** Tags of unsigned and negative bignums. */
+	public static final int TAG_POSITIVE_BIGNUM = 2, TAG_NEGATIVE_BIGNUM = 3;
+
+	/** Tags of <a href="https://www.rfc-editor.org/rfc/rfc8746.html">RFC 8746</a> typed arrays of signed integers and floats with
+	 * big endian elements. Adding {@link #TAG_LITTLE_ENDIAN} gives the tag of the little endian variant. */
+	public static final int TAG_INT16_ARRAY = 73, TAG_INT32_ARRAY = 74, TAG_INT64_ARRAY = 75, TAG_FLOAT16_ARRAY = 80,
+		TAG_FLOAT32_ARRAY = 81, TAG_FLOAT64_ARRAY = 82, TAG_LITTLE_ENDIAN = 4;
+
+	private CborConstants () {
+	}
+}
@@ -0,0 +1,369 @@
+package dev.simonit.gdx.cbor;
+
+import com.badlogic.gdx.utils.JsonValue.ValueType;
+import com.badlogic.gdx.utils.Null;
+import com.badlogic.gdx.utils.ObjectIntMap;
+
+/** A parsed CBOR tree stored in parallel arrays instead of one {@link CborValue} per node, created by
+ * {@link CborReader#parseDocument(byte[])}.
+ * <p>
+ * A node is an int, its index in the arrays. The nodes are stored in document order, so the first child of a map or array
+ * directly follows it and {@link #getNext(int)} links the siblings. Names and text values are kept once in a string table, byte
+ * strings in a single byte array. A node takes about 21 bytes, while a {@link CborValue} takes several times that, and walking
+ * the arrays is cache friendly.
+ * <p>
+ * {@link #getValue(int)} returns a {@link CborValue} view of a node, which can be passed to {@link Cbor#readValue(Class, Class,
+ * com.badlogic.gdx.utils.JsonValue)}. The children of a view are only created when they are accessed, so the views only exist
+ * while they are in use. */
+public class CborDocument {
+	static private final byte OBJECT = 0, ARRAY = 1, STRING = 2, DOUBLE = 3, LONG = 4, BOOLEAN = 5, NULL = 6, BINARY = 7;
+
+	private byte[] types = new byte[16];
+	/** Index in {@link #strings}, or -1 for nodes without name. Names of unsigned integer keys are stored as -2 - index. */
+	private int[] names = new int[16];
+	/** The long value, the bits of the double value, the index in {@link #strings} or the offset in {@link #bytes}. */
+	private long[] values = new long[16];
+	/** The number of children or bytes. For numbers the index in {@link #strings} of their exact text, or -1. */
+	private int[] sizes = new int[16];
+	private int[] nexts = new int[16];
+	private int nodeCount;
+
+	private String[] strings = new String[16];
+	private int stringCount;
+	private final ObjectIntMap<String> stringIndices = new ObjectIntMap<>();
+	private byte[] bytes = new byte[0];
+	private int byteCount;
+
+	private int[] parents = new int[8], lastChildren = new int[8];
+	private int depth;
+	/** Whether the name of the next node was an unsigned integer key, set by {@link CborReader}. */
+	boolean integerKey;
+
+	/** @return the amount of nodes. */
+	public int getNodeCount () {
+		return nodeCount;
+	}
+
+	/** @return the root node, or -1 if the document is empty. */
+	public int getRoot () {
+		return nodeCount > 0 ? 0 : -1;
+	}
+
+	/** Byte strings have the type {@link ValueType#array}, see {@link #isBinary(int)}. */
+	public ValueType getType (int node) {
+		switch (types[node]) {
+		case OBJECT:
+			return ValueType.object;
+		case ARRAY:
+		case BINARY:
+			return ValueType.array;
+		case STRING:
+			return ValueType.stringValue;
+		case DOUBLE:
+			return ValueType.doubleValue;
+		case LONG:
+			return ValueType.longValue;
+		case BOOLEAN:
+			return ValueType.booleanValue;
+		default:
+			return ValueType.nullValue;
+		}
+	}
+
+	public boolean isObject (int node) {
+		return types[node] == OBJECT;
+	}
+
+	public boolean isArray (int node) {
+		return types[node] == ARRAY || types[node] == BINARY;
+	}
+
+	public boolean isBinary (int node) {
+		return types[node] == BINARY;
+	}
+
+	public boolean isNull (int node) {
+		return types[node] == NULL;
+	}
+
+	/** @return May be null. */
+	public @Null String getName (int node) {
+		int name = names[node];
+		return name == -1 ? null : strings[name < -1 ? -2 - name : name];
+	}
+
+	/** @return true if the name is the decimal string of an unsigned integer key, see {@link CborValue#isIntegerKey()}. */
+	public boolean isIntegerKey (int node) {
+		return names[node] < -1;
+	}
+
+	/** @return the number of children of a map or array, the number of bytes of a byte string, else 0. */
+	public int getSize (int node) {
+		byte type = types[node];
+		return type == OBJECT || type == ARRAY || type == BINARY ? sizes[node] : 0;
+	}
+
+	/** @return the first child, or -1. The bytes of a byte string are not nodes. */
+	public int getChild (int node) {
+		byte type = types[node];
+		return (type == OBJECT || type == ARRAY) && sizes[node] > 0 ? node + 1 : -1;
+	}
+
+	/** @return the next sibling, or -1. */
+	public int getNext (int node) {
+		return nexts[node];
+	}
+
+	/** @return the first child with the name, or -1. */
+	public int get (int node, String name) {
+		for (int child = getChild(node); child != -1; child = nexts[child]) {
+			int childName = names[child];
+			if (childName != -1 && strings[childName < -1 ? -2 - childName : childName].equals(name)) return child;
+		}
+		return -1;
+	}
+
+	/** @return the child at the index, or -1. */
+	public int get (int node, int index) {
+		int child = getChild(node);
+		for (; child != -1 && index > 0; index--)
+			child = nexts[child];
+		return child;
+	}
+
+	/** @return May be null. */
+	public @Null String asString (int node) {
+		switch (types[node]) {
+		case STRING:
+			return strings[(int)values[node]];
+		case DOUBLE:
+			return sizes[node] != -1 ? strings[sizes[node]] : Double.toString(Double.longBitsToDouble(values[node]));
+		case LONG:
+			return sizes[node] != -1 ? strings[sizes[node]] : Long.toString(values[node]);
+		case BOOLEAN:
+			return values[node] != 0 ? "true" : "false";
+		case NULL:
+			return null;
+		}
+		throw new IllegalStateException("Value cannot be converted to string: " + getType(node));
+	}
+
+	public double asDouble (int node) {
+		switch (types[node]) {
+		case STRING:
+			return Double.parseDouble(strings[(int)values[node]]);
+		case DOUBLE:
+			return Double.longBitsToDouble(values[node]);
+		case LONG:
+		case BOOLEAN:
+			return values[node];
+		}
+		throw new IllegalStateException("Value cannot be converted to double: " + getType(node));
+	}
+
+	public float asFloat (int node) {
+		return (float)asDouble(node);
+	}
+
+	public long asLong (int node) {
+		switch (types[node]) {
+		case STRING:
+			return Long.parseLong(strings[(int)values[node]]);
+		case DOUBLE:
+			return (long)Double.longBitsToDouble(values[node]);
+		case LONG:
+		case BOOLEAN:
+			return values[node];
+		}
+		throw new IllegalStateException("Value cannot be converted to long: " + getType(node));
+	}
+
+	public int asInt (int node) {
+		return (int)asLong(node);
+	}
+
+	public boolean asBoolean (int node) {
+		switch (types[node]) {
+		case STRING:
+			return strings[(int)values[node]].equalsIgnoreCase("true");
+		case DOUBLE:
+			return Double.longBitsToDouble(values[node]) != 0;
+		case LONG:
+		case BOOLEAN:
+			return values[node] != 0;
+		}
+		throw new IllegalStateException("Value cannot be converted to boolean: " + getType(node));
+	}
+
+	/** @return a copy of the bytes of a byte string. */
+	public byte[] asByteArray (int node) {
+		if (types[node] != BINARY) throw new IllegalStateException("Value is not a byte string: " + getType(node));
+		byte[] value = new byte[sizes[node]];
+		System.arraycopy(bytes, (int)values[node], value, 0, value.length);
+		return value;
+	}
+
+	/** @return a view of the root node, or null if the document is empty. */
+	public @Null CborValue getValue () {
+		return nodeCount > 0 ? getValue(0) : null;
+	}
+
+	/** Creates a view of the node. Maps and arrays create the views of their children when they are first accessed, byte strings
+	 * reference the bytes of the document. */
+	public CborValue getValue (int node) {
+		CborValue value;
+		switch (types[node]) {
+		case OBJECT:
+		case ARRAY:
+			value = new CborValue(this, node, types[node] == OBJECT ? ValueType.object : ValueType.array, sizes[node]);
+			break;
+		case BINARY:
+			value = new CborValue(bytes, (int)values[node], sizes[node]);
+			break;
+		case STRING:
+			value = new CborValue(strings[(int)values[node]]);
+			break;
+		case DOUBLE:
+			value = new CborValue(Double.longBitsToDouble(values[node]), sizes[node] == -1 ? null : strings[sizes[node]]);
+			break;
+		case LONG:
+			value = new CborValue(values[node], sizes[node] == -1 ? null : strings[sizes[node]]);
+			break;
+		case BOOLEAN:
+			value = new CborValue(values[node] != 0);
+			break;
+		default:
+			value = new CborValue(ValueType.nullValue);
+		}
+		value.name = getName(node);
+		value.integerKey = isIntegerKey(node);
+		return value;
+	}
+
+	/** Removes all nodes, keeping the arrays for the next document. Views created before must not be used anymore. */
+	public void clear () {
+		nodeCount = 0;
+		for (int i = 0; i < stringCount; i++)
+			strings[i] = null;
+		stringCount = 0;
+		stringIndices.clear();
+		byteCount = 0;
+		depth = 0;
+	}
+
+	void startObject (@Null String name) {
+		start(add(OBJECT, name));
+	}
+
+	void startArray (@Null String name) {
+		start(add(ARRAY, name));
+	}
+
+	private void start (int node) {
+		sizes[node] = 0;
+		if (depth == parents.length) {
+			int[] newParents = new int[depth << 1], newLastChildren = new int[depth << 1];
+			System.arraycopy(parents, 0, newParents, 0, depth);
+			System.arraycopy(lastChildren, 0, newLastChildren, 0, depth);
+			parents = newParents;
+			lastChildren = newLastChildren;
+		}
+		parents[depth] = node;
+		lastChildren[depth] = -1;
+		depth++;
+	}
+
+	void end () {
+		depth--;
+		// The string table is only needed to share strings while the document is built.
+		if (depth == 0) stringIndices.clear(32);
+	}
+
+	void string (@Null String name, @Null String value) {
+		if (value == null)
+			add(NULL, name);
+		else {
+			// add() may replace the arrays, so the node is added before the array is read.
+			int node = add(STRING, name);
+			values[node] = string(value);
+		}
+	}
+
+	void number (@Null String name, double value, @Null String stringValue) {
+		int node = add(DOUBLE, name);
+		values[node] = Double.doubleToLongBits(value);
+		sizes[node] = stringValue == null ? -1 : string(stringValue);
+	}
+
+	void number (@Null String name, long value, @Null String stringValue) {
+		int node = add(LONG, name);
+		values[node] = value;
+		sizes[node] = stringValue == null ? -1 : string(stringValue);
+	}
+
+	void bool (@Null String name, boolean value) {
+		int node = add(BOOLEAN, name);
+		values[node] = value ? 1 : 0;
+	}
+
+	void bytes (@Null String name, byte[] value, int offset, int length) {
+		int node = add(BINARY, name);
+		if (byteCount + length > bytes.length) {
+			byte[] newBytes = new byte[Math.max(byteCount + length, bytes.length << 1)];
+			System.arraycopy(bytes, 0, newBytes, 0, byteCount);
+			bytes = newBytes;
+		}
+		System.arraycopy(value, offset, bytes, byteCount, length);
+		values[node] = byteCount;
+		sizes[node] = length;
+		byteCount += length;
+	}
+
+	private int add (byte type, @Null String name) {
+		int node = nodeCount;
+		if (node == types.length) resize(node << 1);
+		nodeCount++;
+		types[node] = type;
+		names[node] = name == null ? -1 : integerKey ? -2 - string(name) : string(name);
+		nexts[node] = -1;
+		if (depth > 0) {
+			sizes[parents[depth - 1]]++;
+			int last = lastChildren[depth - 1];
+			if (last != -1) nexts[last] = node;
+			lastChildren[depth - 1] = node;
+		}
+		return node;
+	}
+
+	private int string (String value) {
+		int index = stringIndices.get(value, -1);
+		if (index != -1) return index;
+		index = stringCount++;
+		if (index == strings.length) {
+			String[] newStrings = new String[index << 1];
+			System.arraycopy(strings, 0, newStrings, 0, index);
+			strings = newStrings;
+		}
+		strings[index] = value;
+		stringIndices.put(value, index);
+		return index;
+	}
+
+	private void resize (int capacity) {
+		byte[] newTypes = new byte[capacity];
+		System.arraycopy(types, 0, newTypes, 0, nodeCount);
+		types = newTypes;
+		int[] newNames = new int[capacity];
+		System.arraycopy(names, 0, newNames, 0, nodeCount);
+		names = newNames;
+		long[] newValues = new long[capacity];
+		System.arraycopy(values, 0, newValues, 0, nodeCount);
+		values = newValues;
+		int[] newSizes = new int[capacity];
+		System.arraycopy(sizes, 0, newSizes, 0, nodeCount);
+		sizes = newSizes;
+		int[] newNexts = new int[capacity];
+		System.arraycopy(nexts, 0, newNexts, 0, nodeCount);
+		nexts = newNexts;
+	}
+}
@@ -0,0 +1,466 @@
+package dev.simonit.gdx.cbor;
+
+import com.badlogic.gdx.utils.Array;
+import com.badlogic.gdx.utils.Bits;
+import com.badlogic.gdx.utils.Null;
+import com.badlogic.gdx.utils.SerializationException;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+
+import static dev.simonit.gdx.cbor.CborConstants.*;
+
+/** Decodes CBOR data items from a byte array or an input stream, one header at a time.
+ * <p>
+ * {@link #readHeader()} reads the initial byte and the argument of the next data item. Depending on the major type the content
+ * is then read with {@link #readString()} or {@link #readBytes()}, while arrays, maps and tags are followed by their items. Byte
+ * arrays and heap byte buffers are read in place, streams and direct byte buffers are read in chunks into an internal buffer. */
+public class CborInput {
+	private static final byte[] EMPTY = new byte[0];
+	/** Amount of bytes a stream's byte string is read with at first, before the array grows. */
+	private static final int CHUNK_SIZE = 1 << 16;
+
+	protected byte[] buffer = EMPTY;
+	protected int position, limit;
+	protected @Null InputStream input;
+	protected @Null ByteBuffer byteBuffer;
+
+	private byte[] streamBuffer;
+	private char[] chars = new char[64];
+	private int initialByte;
+	private long argument;
+
+	public CborInput () {
+	}
+
+	public CborInput (byte[] bytes) {
+		setInput(bytes, 0, bytes.length);
+	}
+
+	public CborInput (byte[] bytes, int offset, int length) {
+		setInput(bytes, offset, length);
+	}
+
+	public CborInput (InputStream input) {
+		setInput(input);
+	}
+
+	public CborInput (ByteBuffer buffer) {
+		setInput(buffer);
+	}
+
+	/** Reads from the bytes in place. The array must not be modified while it is read. */
+	public CborInput setInput (byte[] bytes, int offset, int length) {
+		if (offset < 0 || length < 0 || offset + length > bytes.length)
+			throw new IndexOutOfBoundsException("offset: " + offset + ", length: " + length + ", array length: " + bytes.length);
+		buffer = bytes;
+		position = offset;
+		limit = offset + length;
+		input = null;
+		byteBuffer = null;
+		return this;
+	}
+
+	/** Reads from the stream in chunks. The stream is not closed. */
+	public CborInput setInput (InputStream input) {
+		useStreamBuffer();
+		this.input = input;
+		byteBuffer = null;
+		return this;
+	}
+
+	/** Reads the remaining bytes of the buffer. The array of a heap buffer is read in place, a direct buffer is copied in chunks.
+	 * The position of the buffer is not changed. */
+	public CborInput setInput (ByteBuffer buffer) {
+		if (buffer.hasArray()) return setInput(buffer.array(), buffer.arrayOffset() + buffer.position(), buffer.remaining());
+		useStreamBuffer();
+		input = null;
+		byteBuffer = buffer.slice();
+		return this;
+	}
+
+	private void useStreamBuffer () {
+		if (streamBuffer == null) streamBuffer = new byte[4096];
+		buffer = streamBuffer;
+		position = 0;
+		limit = 0;
+	}
+
+	/** @return true if the input is a byte array, which is read in place. */
+	public boolean isArrayInput () {
+		return input == null && byteBuffer == null;
+	}
+
+	/** @return the array the input is read from. For a stream it is the internal buffer, whose content changes while reading. */
+	public byte[] getBuffer () {
+		return buffer;
+	}
+
+	/** @return the index in {@link #getBuffer()} of the next byte to read. */
+	public int getPosition () {
+		return position;
+	}
+
+	/** Moves to the index in the array, for example to read a data item again. Only for array input.
+	 * @throws IllegalStateException if the input is not read in place. */
+	public void setPosition (int position) {
+		if (!isArrayInput()) throw new IllegalStateException("The position can only be set for array input.");
+		if (position < 0 || position > limit) throw new IndexOutOfBoundsException("position: " + position + ", limit: " + limit);
+		this.position = position;
+	}
+
+	/** @return false if the input is known to end before the given amount of bytes. The length of a stream is unknown, so it is
+	 *         assumed to have them. Useful to check a length read from the data before allocating for it. */
+	public boolean hasRemaining (long count) {
+		if (input != null) return true;
+		return count <= limit - position + (byteBuffer != null ? byteBuffer.remaining() : 0);
+	}
+
+	/** @return true if there is at least one more byte to read. */
+	public boolean hasNext () {
+		return position < limit || fill(1);
+	}
+
+	/** @return the next byte without consuming it, or -1 if the end of the input is reached. */
+	public int peek () {
+		if (position == limit && !fill(1)) return -1;
+		return buffer[position] & 0xFF;
+	}
+
+	/** Consumes the next byte if it is the break stop code ending an indefinite length item.
+	 * @return true if the break was consumed. */
+	public boolean readBreak () {
+		if (peek() != BREAK) return false;
+		position++;
+		return true;
+	}
+
+	/** Reads the initial byte and the argument of the next data item. For major type 7 the argument holds the raw bits of floats.
+	 * @return the initial byte. */
+	public int readHeader () {
+		require(1);
+		int initialByte = buffer[position++] & 0xFF;
+		int additionalInformation = initialByte & 31;
+		long argument;
+		if (additionalInformation < ONE_BYTE) {
+			argument = additionalInformation;
+		} else if (additionalInformation == ONE_BYTE) {
+			require(1);
+			argument = buffer[position++] & 0xFF;
+		} else if (additionalInformation == TWO_BYTES) {
+			require(2);
+			argument = readUnsignedShort();
+		} else if (additionalInformation == FOUR_BYTES) {
+			require(4);
+			argument = readInt() & 0xFFFFFFFFL;
+		} else if (additionalInformation == EIGHT_BYTES) {
+			require(8);
+			argument = (long)readInt() << 32 | readInt() & 0xFFFFFFFFL;
+		} else if (additionalInformation == INDEFINITE && initialByte >>> 5 >= MAJOR_TYPE_BYTE_STRING
+			&& initialByte >>> 5 != MAJOR_TYPE_TAG) {
+			argument = -1;
+		} else {
+			throw new SerializationException("Invalid initial byte: 0x" + Integer.toHexString(initialByte));
+		}
+		this.initialByte = initialByte;
+		this.argument = argument;
+		return initialByte;
+	}
+
+	/** @return the major type of the last header. */
+	public int getMajorType () {
+		return initialByte >>> 5;
+	}
+
+	/** @return the argument of the last header, as unsigned value. */
+	public long getArgument () {
+		return argument;
+	}
+
+	/** @return true if the last header started an indefinite length item. */
+	public boolean isIndefinite () {
+		return (initialByte & 31) == INDEFINITE;
+	}
+
+	/** @return the argument of the last header as length of a string, array or map, or -1 if the length is indefinite. */
+	public int getLength () {
+		if (isIndefinite()) return -1;
+		if (argument < 0 || argument > Integer.MAX_VALUE) throw new SerializationException("Length is too large: " + argument);
+		return (int)argument;
+	}
+
+	/** Reads the content of the text string whose header was read last. */
+	public String readString () {
+		if (isIndefinite()) {
+			StringBuilder builder = new StringBuilder();
+			while (!readBreak()) {
+				if (readHeader() >>> 5 != MAJOR_TYPE_UNICODE_STRING || isIndefinite())
+					throw new SerializationException("Invalid chunk of an indefinite length text string.");
+				builder.append(readString());
+			}
+			return builder.toString();
+		}
+		int length = getLength();
+		if (length > buffer.length) return decodeUtf8(readContent(length), 0, length);
+		require(length);
+		String value = decodeUtf8(buffer, position, length);
+		position += length;
+		return value;
+	}
+
+	/** Reads the content of the byte string whose header was read last. */
+	public byte[] readBytes () {
+		if (isIndefinite()) {
+			Array<byte[]> chunks = new Array<>();
+			long total = 0;
+			while (!readBreak()) {
+				if (readHeader() >>> 5 != MAJOR_TYPE_BYTE_STRING || isIndefinite())
+					throw new SerializationException("Invalid chunk of an indefinite length byte string.");
+				byte[] chunk = readContent(getLength());
+				total += chunk.length;
+				if (total > Integer.MAX_VALUE) throw new SerializationException("Byte string is too large: " + total);
+				chunks.add(chunk);
+			}
+			if (chunks.size == 1) return chunks.first();
+			byte[] bytes = new byte[(int)total];
+			for (int i = 0, offset = 0; i < chunks.size; i++) {
+				byte[] chunk = chunks.get(i);
+				System.arraycopy(chunk, 0, bytes, offset, chunk.length);
+				offset += chunk.length;
+			}
+			return bytes;
+		}
+		return readContent(getLength());
+	}
+
+	/** Reads the given amount of bytes into a new array. The length comes from the data, so it is checked against the bytes
+	 * remaining before the array is allocated. The remaining bytes of a stream are unknown, so its array grows with the bytes
+	 * actually read. */
+	private byte[] readContent (int length) {
+		if (input == null) {
+			if (!hasRemaining(length)) throw endOfInput();
+			return readBytes(new byte[length], 0, length);
+		}
+		byte[] bytes = new byte[Math.min(length, CHUNK_SIZE)];
+		int count = 0;
+		while (count < length) {
+			if (count == bytes.length) {
+				byte[] newBytes = new byte[(int)Math.min(length, bytes.length * 2L)];
+				System.arraycopy(bytes, 0, newBytes, 0, count);
+				bytes = newBytes;
+			}
+			if (position == limit && !fill(1)) throw endOfInput();
+			int read = Math.min(bytes.length - count, limit - position);
+			System.arraycopy(buffer, position, bytes, count, read);
+			position += read;
+			count += read;
+		}
+		return bytes;
+	}
+
+	/** Reads the content of the byte string whose header was read last as bitset written by
+	 * {@link CborOutput#writeBits(boolean[], int, int)}.
+	 * @param length amount of values in the bitset. The byte string has to have exactly (length + 7) / 8 bytes.
+	 * @return the array. */
+	public boolean[] readBits (boolean[] values, int offset, int length) {
+		if (offset < 0 || length < 0 || offset + length > values.length)
+			throw new IndexOutOfBoundsException("offset: " + offset + ", length: " + length + ", array length: " + values.length);
+		checkBitsLength(length);
+		for (int i = 0; i < length; i += 8) {
+			if (position == limit && !fill(1)) throw endOfInput();
+			int bits = buffer[position++];
+			for (int bit = 0, n = Math.min(8, length - i); bit < n; bit++)
+				values[offset + i + bit] = (bits & 1 << bit) != 0;
+		}
+		return values;
+	}
+
+	/** Reads the content of the byte string whose header was read last like {@link #readBits(boolean[], int, int)}, setting or
+	 * clearing the first bits. Bits after them are not changed.
+	 * @return the bits. */
+	public Bits readBits (Bits bits, int length) {
+		if (length < 0) throw new IllegalArgumentException("length cannot be negative: " + length);
+		checkBitsLength(length);
+		for (int i = 0; i < length; i += 8) {
+			if (position == limit && !fill(1)) throw endOfInput();
+			int value = buffer[position++];
+			for (int bit = 0, n = Math.min(8, length - i); bit < n; bit++) {
+				if ((value & 1 << bit) != 0)
+					bits.set(i + bit);
+				else
+					bits.clear(i + bit);
+			}
+		}
+		return bits;
+	}
+
+	private void checkBitsLength (int length) {
+		if (getMajorType() != MAJOR_TYPE_BYTE_STRING || isIndefinite() || getLength() != (int)(length + 7L >>> 3))
+			throw new SerializationException("Expected a byte string of " + (length + 7L >>> 3) + " bytes for " + length + " bits.");
+	}
+
+	/** Reads the given amount of bytes into the array.
+	 * @return the array. */
+	public byte[] readBytes (byte[] bytes, int offset, int length) {
+		while (length > 0) {
+			if (position == limit && !fill(1)) throw endOfInput();
+			int count = Math.min(length, limit - position);
+			System.arraycopy(buffer, position, bytes, offset, count);
+			position += count;
+			offset += count;
+			length -= count;
+		}
+		return bytes;
+	}
+
+	/** Skips the given amount of bytes. */
+	public void skip (long count) {
+		while (count > 0) {
+			if (position == limit && !fill(1)) throw endOfInput();
+			int skipped = (int)Math.min(count, limit - position);
+			position += skipped;
+			count -= skipped;
+		}
+	}
+
+	/** Skips the next data item, including all items nested in it, without decoding their content. */
+	public void skipItem () {
+		long[] stack = null;
+		int depth = 0;
+		// The items left to skip at the current level, -1 until the break of an indefinite length array or map.
+		long count = 1;
+		while (true) {
+			if (count == 0 || count == -1 && readBreak()) {
+				if (depth == 0) return;
+				count = stack[--depth];
+				continue;
+			}
+			if (count > 0) count--;
+			int initialByte = readHeader();
+			switch (initialByte >>> 5) {
+			case MAJOR_TYPE_BYTE_STRING:
+			case MAJOR_TYPE_UNICODE_STRING:
+				if (isIndefinite()) {
+					while (!readBreak()) {
+						readHeader();
+						skip(getLength());
+					}
+				} else
+					skip(getLength());
+				continue;
+			case MAJOR_TYPE_ARRAY:
+			case MAJOR_TYPE_MAP:
+			case MAJOR_TYPE_TAG:
+				long items;
+				if (initialByte >>> 5 == MAJOR_TYPE_TAG)
+					items = 1;
+				else if (isIndefinite())
+					items = -1;
+				else
+					items = initialByte >>> 5 == MAJOR_TYPE_MAP ? getLength() * 2L : getLength();
+				if (items == 0) continue;
+				if (stack == null)
+					stack = new long[8];
+				else if (depth == stack.length) {
+					long[] newStack = new long[depth << 1];
+					System.arraycopy(stack, 0, newStack, 0, depth);
+					stack = newStack;
+				}
+				stack[depth++] = count;
+				count = items;
+				continue;
+			default:
+				if (initialByte == BREAK) throw new SerializationException("Unexpected break");
+			}
+		}
+	}
+
+	/** Converts the bits of a half precision float, as returned by {@link #getArgument()}, to a float. */
+	public static float halfToFloat (int bits) {
+		int exponent = bits >> 10 & 0x1F;
+		int mantissa = bits & 0x3FF;
+		float value;
+		if (exponent == 0)
+			value = mantissa * (1f / (1 << 24));
+		else if (exponent == 0x1F)
+			value = mantissa == 0 ? Float.POSITIVE_INFINITY : Float.NaN;
+		else
+			value = Float.intBitsToFloat(exponent + 112 << 23 | mantissa << 13);
+		return (bits & 0x8000) != 0 ? -value : value;
+	}
+
+	private int readUnsignedShort () {
+		return (buffer[position++] & 0xFF) << 8 | buffer[position++] & 0xFF;
+	}
+
+	private int readInt () {
+		return (buffer[position++] & 0xFF) << 24 | (buffer[position++] & 0xFF) << 16 | (buffer[position++] & 0xFF) << 8
+			| buffer[position++] & 0xFF;
+	}
+
+	private String decodeUtf8 (byte[] bytes, int offset, int length) {
+		char[] chars = this.chars;
+		if (chars.length < length) this.chars = chars = new char[Math.max(length, chars.length << 1)];
+		int count = 0;
+		for (int i = offset, n = offset + length; i < n;) {
+			int b = bytes[i++];
+			if (b >= 0) {
+				chars[count++] = (char)b;
+			} else if ((b & 0xE0) == 0xC0 && i < n) {
+				chars[count++] = (char)((b & 0x1F) << 6 | bytes[i++] & 0x3F);
+			} else if ((b & 0xF0) == 0xE0 && i + 1 < n) {
+				chars[count++] = (char)((b & 0x0F) << 12 | (bytes[i++] & 0x3F) << 6 | bytes[i++] & 0x3F);
+			} else if ((b & 0xF8) == 0xF0 && i + 2 < n) {
+				int codePoint = (b & 0x07) << 18 | (bytes[i++] & 0x3F) << 12 | (bytes[i++] & 0x3F) << 6 | bytes[i++] & 0x3F;
+				codePoint -= 0x10000;
+				chars[count++] = (char)(0xD800 | codePoint >> 10);
+				chars[count++] = (char)(0xDC00 | codePoint & 0x3FF);
+			} else {
+				chars[count++] = '\uFFFD';
+			}
+		}
+		return new String(chars, 0, count);
+	}
+
+	/** Makes sure the given amount of bytes is buffered. Fails if the input ends before. */
+	protected void require (int count) {
+		if (limit - position < count && !fill(count)) throw endOfInput();
+	}
+
+	/** Reads from the stream or direct buffer until at least the given amount of bytes is buffered.
+	 * @return false if the input ended before. */
+	protected boolean fill (int count) {
+		if (input == null && byteBuffer == null) return false;
+		if (position > 0) {
+			System.arraycopy(buffer, position, buffer, 0, limit - position);
+			limit -= position;
+			position = 0;
+		}
+		if (count > buffer.length) {
+			byte[] newBuffer = new byte[Math.max(count, buffer.length << 1)];
+			System.arraycopy(buffer, 0, newBuffer, 0, limit);
+			buffer = streamBuffer = newBuffer;
+		}
+		if (byteBuffer != null) {
+			int read = Math.min(byteBuffer.remaining(), buffer.length - limit);
+			byteBuffer.get(buffer, limit, read);
+			limit += read;
+			return limit >= count;
+		}
+		try {
+			while (limit < count) {
+				int read = input.read(buffer, limit, buffer.length - limit);
+				if (read == -1) return false;
+				limit += read;
+			}
+		} catch (IOException ex) {
+			throw new SerializationException("Error reading CBOR.", ex);
+		}
+		return true;
+	}
+
+	private SerializationException endOfInput () {
+		return new SerializationException("Unexpected end of CBOR data.");
+	}
+}
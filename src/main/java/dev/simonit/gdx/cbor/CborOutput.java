@@ -0,0 +1,751 @@
+package dev.simonit.gdx.cbor;
+
+import com.badlogic.gdx.utils.Bits;
+import com.badlogic.gdx.utils.SerializationException;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+
+import static dev.simonit.gdx.cbor.CborConstants.*;
+
+/** A growable byte buffer that CBOR data items are encoded into directly, without building an intermediate object tree.
+ * <p>
+ * Arrays and maps are written with definite lengths. Their headers are patched by {@link #end()} once the number of items is
+ * known, so apart from the buffer itself nothing is allocated while encoding.
+ * <p>
+ * Instead of the internal buffer, a slice of an array owned by the caller can be written to with
+ * {@link #setBuffer(byte[], int, int)}. Such an array is never grown. */
+public class CborOutput {
+	protected byte[] buffer;
+	protected int position;
+	/** Index in {@link #buffer} where the output starts and index up to which can be written. */
+	protected int start, limit;
+
+	private byte[] internalBuffer;
+	private boolean external;
+
+	private int[] containerPositions = new int[16];
+	private int[] containerCounts = new int[16];
+	private boolean[] containerMaps = new boolean[16];
+	/** Width of the length argument reserved for the container, or 0 for the shortest one. */
+	private int[] containerWidths = new int[16];
+	private int depth;
+	private boolean shortestFloats;
+
+	private boolean sortedKeys;
+	/** Positions of the entries of the open maps, if the keys are sorted. */
+	private int[] entryStarts = new int[16];
+	private int entryCount;
+	/** Index in {@link #entryStarts} of the first entry of each open container. */
+	private int[] containerEntries = new int[16];
+	/** Position of the tags written before the next key, or -1. */
+	private int tagStart = -1;
+
+	public CborOutput () {
+		this(256);
+	}
+
+	/** @param initialCapacity initial size of the buffer. It is grown as needed. */
+	public CborOutput (int initialCapacity) {
+		buffer = internalBuffer = new byte[Math.max(initialCapacity, 16)];
+		limit = buffer.length;
+	}
+
+	/** Writes into the slice of the array instead of the internal buffer, discarding anything written so far. The array is not
+	 * grown: if more than the given length is written, a {@link SerializationException} is thrown.
+	 * @see #useInternalBuffer() */
+	public CborOutput setBuffer (byte[] buffer, int offset, int length) {
+		if (offset < 0 || length < 0 || offset + length > buffer.length)
+			throw new IndexOutOfBoundsException("offset: " + offset + ", length: " + length + ", array length: " + buffer.length);
+		this.buffer = buffer;
+		start = position = offset;
+		limit = offset + length;
+		depth = 0;
+		entryCount = 0;
+		external = true;
+		return this;
+	}
+
+	/** Writes into the internal buffer again after {@link #setBuffer(byte[], int, int)}, discarding anything written so far. */
+	public CborOutput useInternalBuffer () {
+		buffer = internalBuffer;
+		start = position = 0;
+		limit = buffer.length;
+		depth = 0;
+		entryCount = 0;
+		external = false;
+		return this;
+	}
+
+	public boolean isShortestFloats () {
+		return shortestFloats;
+	}
+
+	/** If true, floats and doubles are written as half, single or double precision float, whichever is the shortest that keeps
+	 * the exact value, as recommended by the preferred serialization of RFC 8949. Values like 0, 1 or 0.5 then take 3 bytes and
+	 * doubles that are floats 5 bytes. The default is false, which writes floats with single and doubles with double precision.
+	 * A NaN keeps its payload, so only a NaN whose payload fits, like {@link Float#NaN} and {@link Double#NaN}, is written as
+	 * half precision NaN. Other NaNs are written with single precision, or with double precision for doubles. */
+	public CborOutput setShortestFloats (boolean shortestFloats) {
+		this.shortestFloats = shortestFloats;
+		return this;
+	}
+
+	public boolean isSortedKeys () {
+		return sortedKeys;
+	}
+
+	/** If true, the entries of maps are sorted by their keys when the map ends, in the canonical order of RFC 7049: shorter
+	 * encoded keys first, keys of the same length compared byte by byte. Equal data then gives equal bytes regardless of the
+	 * order the entries were written in, like the output of versions that encoded with cbor-java. Sorting allocates and the
+	 * default is false, which keeps the order the entries were written in. Only maps started while this is enabled are
+	 * sorted. */
+	public CborOutput setSortedKeys (boolean sortedKeys) {
+		this.sortedKeys = sortedKeys;
+		return this;
+	}
+
+	/** @return the buffer written to. The bytes written are from {@link #getStart()} to {@link #getPosition()}. */
+	public byte[] getBuffer () {
+		return buffer;
+	}
+
+	/** @return index of the first byte of the output in {@link #getBuffer()}. It is 0 unless an external buffer is used. */
+	public int getStart () {
+		return start;
+	}
+
+	/** @return index in {@link #getBuffer()} of the next byte to write. */
+	public int getPosition () {
+		return position;
+	}
+
+	/** @return amount of bytes written. */
+	public int size () {
+		return position - start;
+	}
+
+	/** @return amount of arrays and maps that were started but not ended yet. */
+	public int getDepth () {
+		return depth;
+	}
+
+	/** @return true if the innermost open container is a map. */
+	public boolean isMap () {
+		return depth > 0 && containerMaps[depth - 1];
+	}
+
+	/** @return amount of data items written to the innermost open container. Keys and values of maps are counted separately. */
+	public int getCount () {
+		return depth > 0 ? containerCounts[depth - 1] : 0;
+	}
+
+	/** Discards everything written so far, keeping the buffer. */
+	public void reset () {
+		position = start;
+		depth = 0;
+		entryCount = 0;
+	}
+
+	public byte[] toByteArray () {
+		byte[] bytes = new byte[position - start];
+		System.arraycopy(buffer, start, bytes, 0, bytes.length);
+		return bytes;
+	}
+
+	public void writeTo (OutputStream outputStream) throws IOException {
+		outputStream.write(buffer, start, position - start);
+	}
+
+	public CborOutput writeLong (long value) {
+		item();
+		if (value < 0)
+			writeHeader(MAJOR_TYPE_NEGATIVE_INTEGER, ~value);
+		else
+			writeHeader(MAJOR_TYPE_UNSIGNED_INTEGER, value);
+		return this;
+	}
+
+	/** Writes the integer with an argument of exactly the given width instead of the shortest one. Its position in the output
+	 * then only depends on what was written before, and it can be overwritten later with {@link #patchInteger(byte[], int, long)}
+	 * without moving the bytes after it.
+	 * @param byteCount width of the argument: 1, 2, 4 or 8.
+	 * @throws IllegalArgumentException if the value does not fit into the width. */
+	public CborOutput writeInteger (long value, int byteCount) {
+		int additionalInfo = additionalInfo(byteCount);
+		long argument = argument(value, byteCount);
+		item();
+		require(1 + byteCount);
+		buffer[position++] = (byte)((value < 0 ? MAJOR_TYPE_NEGATIVE_INTEGER : MAJOR_TYPE_UNSIGNED_INTEGER) << 5 | additionalInfo);
+		for (int shift = byteCount - 1 << 3; shift >= 0; shift -= 8)
+			buffer[position++] = (byte)(argument >>> shift);
+		return this;
+	}
+
+	/** Overwrites an integer with a 1, 2, 4 or 8 byte argument, as written by {@link #writeInteger(long, int)}, keeping its width.
+	 * @param offset Index of the initial byte of the integer.
+	 * @throws IllegalArgumentException if there is no such integer at the offset or the value does not fit into its width. */
+	public static void patchInteger (byte[] bytes, int offset, long value) {
+		int initialByte = bytes[offset] & 0xFF;
+		int additionalInfo = initialByte & 0x1F;
+		if (initialByte >>> 5 > MAJOR_TYPE_NEGATIVE_INTEGER || additionalInfo < ONE_BYTE || additionalInfo > EIGHT_BYTES) {
+			throw new IllegalArgumentException(
+				"No integer with a fixed width argument at " + offset + ": 0x" + Integer.toHexString(initialByte));
+		}
+		int byteCount = 1 << additionalInfo - ONE_BYTE;
+		long argument = argument(value, byteCount);
+		for (int i = byteCount; i > 0; i--) {
+			bytes[offset + i] = (byte)argument;
+			argument >>>= 8;
+		}
+		bytes[offset] = (byte)((value < 0 ? MAJOR_TYPE_NEGATIVE_INTEGER : MAJOR_TYPE_UNSIGNED_INTEGER) << 5 | additionalInfo);
+	}
+
+	private static int additionalInfo (int byteCount) {
+		switch (byteCount) {
+		case 1:
+			return ONE_BYTE;
+		case 2:
+			return TWO_BYTES;
+		case 4:
+			return FOUR_BYTES;
+		case 8:
+			return EIGHT_BYTES;
+		default:
+			throw new IllegalArgumentException("byteCount must be 1, 2, 4 or 8: " + byteCount);
+		}
+	}
+
+	/** @return the argument of the integer, which is -1 - value for negative integers. */
+	private static long argument (long value, int byteCount) {
+		long argument = value < 0 ? ~value : value;
+		if (byteCount < 8 && argument >>> (byteCount << 3) != 0)
+			throw new IllegalArgumentException("Integer does not fit into " + byteCount + " bytes: " + value);
+		return argument;
+	}
+
+	/** Writes integers that do not fit into a long as bignums (tag 2 or 3). */
+	public CborOutput writeBigInteger (BigInteger value) {
+		if (value.bitLength() < 64) return writeLong(value.longValue());
+		item();
+		boolean negative = value.signum() < 0;
+		// The argument of negative integers is -1 - value, which is the bitwise complement.
+		BigInteger argument = negative ? value.not() : value;
+		if (argument.bitLength() <= 64) {
+			writeHeader(negative ? MAJOR_TYPE_NEGATIVE_INTEGER : MAJOR_TYPE_UNSIGNED_INTEGER, argument.longValue());
+			return this;
+		}
+		writeHeader(MAJOR_TYPE_TAG, negative ? TAG_NEGATIVE_BIGNUM : TAG_POSITIVE_BIGNUM);
+		byte[] bytes = argument.toByteArray();
+		int offset = bytes[0] == 0 ? 1 : 0;
+		writeHeader(MAJOR_TYPE_BYTE_STRING, bytes.length - offset);
+		writeRaw(bytes, offset, bytes.length - offset);
+		return this;
+	}
+
+	public CborOutput writeFloat (float value) {
+		item();
+		if (shortestFloats) {
+			int half = floatToHalf(value);
+			if (half != -1) {
+				require(3);
+				buffer[position++] = (byte)HALF_PRECISION_FLOAT;
+				buffer[position++] = (byte)(half >>> 8);
+				buffer[position++] = (byte)half;
+				return this;
+			}
+		}
+		require(5);
+		buffer[position++] = (byte)SINGLE_PRECISION_FLOAT;
+		writeInt(Float.floatToRawIntBits(value));
+		return this;
+	}
+
+	public CborOutput writeDouble (double value) {
+		long bits = Double.doubleToRawLongBits(value);
+		// The cast keeps the sign of zero. Of the NaNs only Double.NaN is cast, as the cast may change the payload of others.
+		if (shortestFloats && ((float)value == value || bits == 0x7FF8000000000000L)) return writeFloat((float)value);
+		item();
+		require(9);
+		buffer[position++] = (byte)DOUBLE_PRECISION_FLOAT;
+		writeInt((int)(bits >>> 32));
+		writeInt((int)bits);
+		return this;
+	}
+
+	/** Writes the value as half precision float, regardless of {@link #setShortestFloats(boolean)}. Values that are not exactly
+	 * representable are rounded to the nearest half precision float, values too large become infinity. */
+	public CborOutput writeHalf (float value) {
+		item();
+		int half = floatToHalfRounded(value);
+		require(3);
+		buffer[position++] = (byte)HALF_PRECISION_FLOAT;
+		buffer[position++] = (byte)(half >>> 8);
+		buffer[position++] = (byte)half;
+		return this;
+	}
+
+	/** Converts the float to the bits of the nearest half precision float, rounding ties to even. */
+	static int floatToHalfRounded (float value) {
+		int bits = Float.floatToIntBits(value);
+		int sign = bits >>> 16 & 0x8000;
+		int exponent = (bits >>> 23 & 0xFF) - 127 + 15;
+		int mantissa = bits & 0x7FFFFF;
+		// Infinity and NaN, which stays a quiet NaN.
+		if (exponent == 0xFF - 127 + 15) return sign | 0x7C00 | (mantissa != 0 ? 0x200 : 0);
+		if (exponent >= 0x1F) return sign | 0x7C00;
+		int half, remainder, halfway;
+		if (exponent > 0) {
+			half = exponent << 10 | mantissa >>> 13;
+			remainder = mantissa & 0x1FFF;
+			halfway = 0x1000;
+		} else {
+			// Subnormal half precision, whose value is the mantissa times 2^-24.
+			int shift = 14 - exponent;
+			if (shift > 24) return sign;
+			int significand = mantissa | 0x800000;
+			half = significand >>> shift;
+			remainder = significand & (1 << shift) - 1;
+			halfway = 1 << shift - 1;
+		}
+		// A carry out of the mantissa increments the exponent, which is the correct result up to infinity.
+		if (remainder > halfway || remainder == halfway && (half & 1) != 0) half++;
+		return sign | half;
+	}
+
+	/** Converts the float to the bits of a half precision float, see {@link CborInput#halfToFloat(int)}.
+	 * @return the bits, or -1 if the value is not exactly representable with half precision. A NaN is only converted if its
+	 *         payload fits into the 10 bits of the half precision mantissa, like the payload of {@link Float#NaN}. */
+	public static int floatToHalf (float value) {
+		int bits = Float.floatToRawIntBits(value);
+		int sign = bits >>> 16 & 0x8000;
+		int exponent = bits >>> 23 & 0xFF;
+		int mantissa = bits & 0x7FFFFF;
+		// Infinity and NaN.
+		if (exponent == 0xFF) return (mantissa & 0x1FFF) != 0 ? -1 : sign | 0x7C00 | mantissa >>> 13;
+		// Zero. Subnormal floats are too small for half precision.
+		if (exponent == 0) return mantissa == 0 ? sign : -1;
+		exponent -= 127;
+		if (exponent > 15 || exponent < -24) return -1;
+		if (exponent >= -14) {
+			if ((mantissa & 0x1FFF) != 0) return -1;
+			return sign | exponent + 15 << 10 | mantissa >>> 13;
+		}
+		// Subnormal half precision, whose value is the mantissa times 2^-24.
+		int significand = mantissa | 0x800000, shift = -exponent - 1;
+		if ((significand & (1 << shift) - 1) != 0) return -1;
+		return sign | significand >>> shift;
+	}
+
+	public CborOutput writeBoolean (boolean value) {
+		return writeSimple(value ? TRUE : FALSE);
+	}
+
+	public CborOutput writeNull () {
+		return writeSimple(NULL);
+	}
+
+	/** Writes the string as UTF-8 encoded text string, or null if the string is null. */
+	public CborOutput writeString (String value) {
+		if (value == null) return writeNull();
+		item();
+		int length = value.length();
+		int utf8Length = utf8Length(value, length);
+		writeHeader(MAJOR_TYPE_UNICODE_STRING, utf8Length);
+		require(utf8Length);
+		byte[] buffer = this.buffer;
+		int position = this.position;
+		for (int i = 0; i < length; i++) {
+			char c = value.charAt(i);
+			if (c < 0x80) {
+				buffer[position++] = (byte)c;
+			} else if (c < 0x800) {
+				buffer[position++] = (byte)(0xC0 | c >> 6);
+				buffer[position++] = (byte)(0x80 | c & 0x3F);
+			} else if (c >= 0xD800 && c <= 0xDFFF) {
+				if (c <= 0xDBFF && i + 1 < length && isLowSurrogate(value.charAt(i + 1))) {
+					int codePoint = Character.toCodePoint(c, value.charAt(++i));
+					buffer[position++] = (byte)(0xF0 | codePoint >> 18);
+					buffer[position++] = (byte)(0x80 | codePoint >> 12 & 0x3F);
+					buffer[position++] = (byte)(0x80 | codePoint >> 6 & 0x3F);
+					buffer[position++] = (byte)(0x80 | codePoint & 0x3F);
+				} else {
+					// Unpaired surrogates are replaced like String#getBytes does.
+					buffer[position++] = '?';
+				}
+			} else {
+				buffer[position++] = (byte)(0xE0 | c >> 12);
+				buffer[position++] = (byte)(0x80 | c >> 6 & 0x3F);
+				buffer[position++] = (byte)(0x80 | c & 0x3F);
+			}
+		}
+		this.position = position;
+		return this;
+	}
+
+	/** Writes the bytes as byte string, or null if the array is null. */
+	public CborOutput writeBytes (byte[] value) {
+		if (value == null) return writeNull();
+		return writeBytes(value, 0, value.length);
+	}
+
+	public CborOutput writeBytes (byte[] value, int offset, int length) {
+		item();
+		writeHeader(MAJOR_TYPE_BYTE_STRING, length);
+		writeRaw(value, offset, length);
+		return this;
+	}
+
+	/** Writes the values as byte string bitset with 8 values per byte: value i is bit i % 8 of byte i / 8, so the first value is
+	 * the lowest bit. The bits after the last value are 0. The amount of values is not written, see
+	 * {@link CborInput#readBits(boolean[], int, int)}. */
+	public CborOutput writeBits (boolean[] values, int offset, int length) {
+		if (offset < 0 || length < 0 || offset + length > values.length)
+			throw new IndexOutOfBoundsException("offset: " + offset + ", length: " + length + ", array length: " + values.length);
+		item();
+		int byteLength = (int)(length + 7L >>> 3);
+		writeHeader(MAJOR_TYPE_BYTE_STRING, byteLength);
+		require(byteLength);
+		for (int i = 0; i < length; i += 8) {
+			int bits = 0;
+			for (int bit = 0, n = Math.min(8, length - i); bit < n; bit++)
+				if (values[offset + i + bit]) bits |= 1 << bit;
+			buffer[position++] = (byte)bits;
+		}
+		return this;
+	}
+
+	/** Writes the first bits like {@link #writeBits(boolean[], int, int)} writes booleans.
+	 * @param length amount of bits to write, for example {@link Bits#length()}. */
+	public CborOutput writeBits (Bits bits, int length) {
+		if (length < 0) throw new IllegalArgumentException("length cannot be negative: " + length);
+		item();
+		int byteLength = (int)(length + 7L >>> 3);
+		writeHeader(MAJOR_TYPE_BYTE_STRING, byteLength);
+		require(byteLength);
+		for (int i = 0; i < length; i += 8) {
+			int value = 0;
+			for (int bit = 0, n = Math.min(8, length - i); bit < n; bit++)
+				if (bits.get(i + bit)) value |= 1 << bit;
+			buffer[position++] = (byte)value;
+		}
+		return this;
+	}
+
+	/** Writes the values as <a href="https://www.rfc-editor.org/rfc/rfc8746.html">RFC 8746</a> typed array: a tag for the element
+	 * type followed by a byte string holding the elements in little endian order, which is copied in bulk. */
+	public CborOutput writeTypedArray (short[] values, int offset, int length) {
+		ByteBuffer content = startTypedArray(TAG_INT16_ARRAY, 2, values.length, offset, length);
+		content.asShortBuffer().put(values, offset, length);
+		return this;
+	}
+
+	/** @see #writeTypedArray(short[], int, int) */
+	public CborOutput writeTypedArray (int[] values, int offset, int length) {
+		ByteBuffer content = startTypedArray(TAG_INT32_ARRAY, 4, values.length, offset, length);
+		content.asIntBuffer().put(values, offset, length);
+		return this;
+	}
+
+	/** @see #writeTypedArray(short[], int, int) */
+	public CborOutput writeTypedArray (long[] values, int offset, int length) {
+		ByteBuffer content = startTypedArray(TAG_INT64_ARRAY, 8, values.length, offset, length);
+		content.asLongBuffer().put(values, offset, length);
+		return this;
+	}
+
+	/** @see #writeTypedArray(short[], int, int) */
+	public CborOutput writeTypedArray (float[] values, int offset, int length) {
+		ByteBuffer content = startTypedArray(TAG_FLOAT32_ARRAY, 4, values.length, offset, length);
+		content.asFloatBuffer().put(values, offset, length);
+		return this;
+	}
+
+	/** @see #writeTypedArray(short[], int, int) */
+	public CborOutput writeTypedArray (double[] values, int offset, int length) {
+		ByteBuffer content = startTypedArray(TAG_FLOAT64_ARRAY, 8, values.length, offset, length);
+		content.asDoubleBuffer().put(values, offset, length);
+		return this;
+	}
+
+	/** Writes the tag and the header of the byte string and reserves its content.
+	 * @param tag The big endian tag of the element type.
+	 * @return a little endian view of the reserved content. */
+	private ByteBuffer startTypedArray (int tag, int elementSize, int arrayLength, int offset, int length) {
+		if (offset < 0 || length < 0 || offset + length > arrayLength)
+			throw new IndexOutOfBoundsException("offset: " + offset + ", length: " + length + ", array length: " + arrayLength);
+		if (length > Integer.MAX_VALUE / elementSize) throw new SerializationException("Typed array is too large: " + length);
+		int byteLength = length * elementSize;
+		item();
+		writeHeader(MAJOR_TYPE_TAG, tag + TAG_LITTLE_ENDIAN);
+		writeHeader(MAJOR_TYPE_BYTE_STRING, byteLength);
+		require(byteLength);
+		ByteBuffer content = ByteBuffer.wrap(buffer, position, byteLength).order(ByteOrder.LITTLE_ENDIAN);
+		position += byteLength;
+		return content;
+	}
+
+	/** Writes a complete data item that is already encoded, as is. */
+	public CborOutput writeEncoded (byte[] item, int offset, int length) {
+		item();
+		writeRaw(item, offset, length);
+		return this;
+	}
+
+	/** Writes a tag. The tag belongs to the next data item and is not counted as an item of its own. */
+	public CborOutput writeTag (long tag) {
+		if (tagStart == -1 && sortedKeys && isMap() && (containerCounts[depth - 1] & 1) == 0) tagStart = position;
+		writeHeader(MAJOR_TYPE_TAG, tag);
+		return this;
+	}
+
+	/** Starts an array. Every data item written until the matching {@link #end()} becomes an element of it. */
+	public CborOutput startArray () {
+		return start(false, 0);
+	}
+
+	/** Starts a map. Data items written until the matching {@link #end()} are alternately used as keys and values. */
+	public CborOutput startMap () {
+		return start(true, 0);
+	}
+
+	/** Starts an array whose length is written with an argument of exactly the given width instead of the shortest one. The
+	 * header is reserved at once, so {@link #end()} does not move the elements and positions taken while writing them stay
+	 * valid, eg for {@link #patchInteger(byte[], int, long)}.
+	 * @param byteCount width of the argument: 1, 2, 4 or 8. {@link #end()} throws an {@link IllegalArgumentException} if the
+	 *           length does not fit. */
+	public CborOutput startArray (int byteCount) {
+		additionalInfo(byteCount);
+		return start(false, byteCount);
+	}
+
+	/** Starts a map whose length is written with an argument of exactly the given width, see {@link #startArray(int)}. */
+	public CborOutput startMap (int byteCount) {
+		additionalInfo(byteCount);
+		return start(true, byteCount);
+	}
+
+	/** Ends the innermost array or map, writing its length into its header. */
+	public CborOutput end () {
+		if (depth == 0) throw new IllegalStateException("No array or map to end.");
+		depth--;
+		int start = containerPositions[depth];
+		int count = containerCounts[depth];
+		boolean map = containerMaps[depth];
+		if (map) {
+			if (count % 2 != 0) throw new IllegalStateException("Map key is missing its value.");
+			count /= 2;
+			int firstEntry = containerEntries[depth];
+			if (firstEntry != -1) {
+				if (count > 1) sortEntries(firstEntry);
+				entryCount = firstEntry;
+			}
+		}
+		int initialByte = (map ? MAJOR_TYPE_MAP : MAJOR_TYPE_ARRAY) << 5;
+		int width = containerWidths[depth];
+		if (width != 0) {
+			long argument = argument(count, width);
+			buffer[start] = (byte)(initialByte | additionalInfo(width));
+			for (int i = width; i > 0; i--) {
+				buffer[start + i] = (byte)argument;
+				argument >>>= 8;
+			}
+			return this;
+		}
+		if (count < 24) {
+			buffer[start] = (byte)(initialByte | count);
+			return this;
+		}
+		// One byte was reserved for the header; the content has to move if the length needs more.
+		int extra = count <= 0xFF ? 1 : count <= 0xFFFF ? 2 : 4;
+		require(extra);
+		System.arraycopy(buffer, start + 1, buffer, start + 1 + extra, position - start - 1);
+		position += extra;
+		buffer[start] = (byte)(initialByte | (extra == 1 ? ONE_BYTE : extra == 2 ? TWO_BYTES : FOUR_BYTES));
+		for (int i = extra; i > 0; i--) {
+			buffer[start + i] = (byte)count;
+			count >>>= 8;
+		}
+		return this;
+	}
+
+	private CborOutput start (boolean map, int width) {
+		item();
+		if (depth == containerPositions.length) {
+			int[] positions = new int[depth << 1];
+			int[] counts = new int[depth << 1];
+			boolean[] maps = new boolean[depth << 1];
+			int[] widths = new int[depth << 1];
+			int[] entries = new int[depth << 1];
+			System.arraycopy(containerPositions, 0, positions, 0, depth);
+			System.arraycopy(containerCounts, 0, counts, 0, depth);
+			System.arraycopy(containerMaps, 0, maps, 0, depth);
+			System.arraycopy(containerWidths, 0, widths, 0, depth);
+			System.arraycopy(containerEntries, 0, entries, 0, depth);
+			containerPositions = positions;
+			containerCounts = counts;
+			containerMaps = maps;
+			containerWidths = widths;
+			containerEntries = entries;
+		}
+		containerPositions[depth] = position;
+		containerCounts[depth] = 0;
+		containerMaps[depth] = map;
+		containerWidths[depth] = width;
+		containerEntries[depth] = map && sortedKeys ? entryCount : -1;
+		depth++;
+		require(1 + width);
+		buffer[position] = 0; // Patched by end().
+		position += 1 + width;
+		return this;
+	}
+
+	private CborOutput writeSimple (int initialByte) {
+		item();
+		require(1);
+		buffer[position++] = (byte)initialByte;
+		return this;
+	}
+
+	/** Counts a data item for the innermost open container. */
+	private void item () {
+		if (depth > 0) {
+			int count = containerCounts[depth - 1]++;
+			// The start of a key is the start of an entry.
+			if ((count & 1) == 0 && containerEntries[depth - 1] != -1) {
+				if (entryCount == entryStarts.length) entryStarts = Arrays.copyOf(entryStarts, entryCount << 1);
+				entryStarts[entryCount++] = tagStart != -1 ? tagStart : position;
+			}
+		}
+		tagStart = -1;
+	}
+
+	/** Sorts the entries of the map that is ended, from the first entry to the position, by their encoded keys. */
+	private void sortEntries (int firstEntry) {
+		int count = entryCount - firstEntry, from = entryStarts[firstEntry];
+		int[] starts = new int[count], keyEnds = new int[count], ends = new int[count], order = new int[count];
+		CborInput input = new CborInput(buffer, from, position - from);
+		for (int i = 0; i < count; i++) {
+			starts[i] = entryStarts[firstEntry + i];
+			ends[i] = i + 1 < count ? entryStarts[firstEntry + i + 1] : position;
+			input.setPosition(starts[i]);
+			input.skipItem();
+			keyEnds[i] = input.getPosition();
+			// Binary insertion after equal keys, so entries with equal keys keep their order.
+			int low = 0, high = i;
+			while (low < high) {
+				int middle = (low + high) >>> 1;
+				if (compareKeys(starts[i], keyEnds[i], starts[order[middle]], keyEnds[order[middle]]) < 0)
+					high = middle;
+				else
+					low = middle + 1;
+			}
+			System.arraycopy(order, low, order, low + 1, i - low);
+			order[low] = i;
+		}
+		byte[] entries = Arrays.copyOfRange(buffer, from, position);
+		int target = from;
+		for (int index : order) {
+			int length = ends[index] - starts[index];
+			System.arraycopy(entries, starts[index] - from, buffer, target, length);
+			target += length;
+		}
+	}
+
+	/** Compares encoded keys like RFC 7049 canonical CBOR: the shorter key first, else the first differing byte, unsigned. */
+	private int compareKeys (int start, int end, int otherStart, int otherEnd) {
+		int length = end - start, otherLength = otherEnd - otherStart;
+		if (length != otherLength) return length - otherLength;
+		for (int i = 0; i < length; i++) {
+			int difference = (buffer[start + i] & 0xFF) - (buffer[otherStart + i] & 0xFF);
+			if (difference != 0) return difference;
+		}
+		return 0;
+	}
+
+	/** Writes the initial byte and the argument of a data item in its shortest form. The argument is treated as unsigned. */
+	protected void writeHeader (int majorType, long argument) {
+		int initialByte = majorType << 5;
+		if (argument >= 0 && argument < 24) {
+			require(1);
+			buffer[position++] = (byte)(initialByte | argument);
+		} else if (argument >= 0 && argument <= 0xFF) {
+			require(2);
+			buffer[position++] = (byte)(initialByte | ONE_BYTE);
+			buffer[position++] = (byte)argument;
+		} else if (argument >= 0 && argument <= 0xFFFF) {
+			require(3);
+			buffer[position++] = (byte)(initialByte | TWO_BYTES);
+			buffer[position++] = (byte)(argument >> 8);
+			buffer[position++] = (byte)argument;
+		} else if (argument >= 0 && argument <= 0xFFFFFFFFL) {
+			require(5);
+			buffer[position++] = (byte)(initialByte | FOUR_BYTES);
+			writeInt((int)argument);
+		} else {
+			require(9);
+			buffer[position++] = (byte)(initialByte | EIGHT_BYTES);
+			writeInt((int)(argument >>> 32));
+			writeInt((int)argument);
+		}
+	}
+
+	/** Writes bytes as they are, without a header. The caller has to make sure the result is valid CBOR. */
+	protected void writeRaw (byte[] bytes, int offset, int length) {
+		require(length);
+		System.arraycopy(bytes, offset, buffer, position, length);
+		position += length;
+	}
+
+	/** Writes 4 bytes in big endian order. Capacity has to be ensured by the caller. */
+	private void writeInt (int value) {
+		buffer[position++] = (byte)(value >> 24);
+		buffer[position++] = (byte)(value >> 16);
+		buffer[position++] = (byte)(value >> 8);
+		buffer[position++] = (byte)value;
+	}
+
+	/** Makes sure at least the given amount of bytes can be written. */
+	protected void require (int count) {
+		if (count > limit - position) grow(position + count);
+	}
+
+	/** Grows the internal buffer. Throws if an external buffer is used. */
+	protected void grow (int minimumCapacity) {
+		if (external) throw new SerializationException("The buffer is too small, " + (limit - start) + " bytes are available.");
+		int capacity = Math.max(buffer.length << 1, minimumCapacity);
+		if (capacity < 0) capacity = minimumCapacity;
+		byte[] newBuffer = new byte[capacity];
+		System.arraycopy(buffer, 0, newBuffer, 0, position);
+		buffer = internalBuffer = newBuffer;
+		limit = capacity;
+	}
+
+	private static boolean isLowSurrogate (char c) {
+		return c >= 0xDC00 && c <= 0xDFFF;
+	}
+
+	private static int utf8Length (String value, int length) {
+		int utf8Length = length;
+		for (int i = 0; i < length; i++) {
+			char c = value.charAt(i);
+			if (c < 0x80) continue;
+			if (c < 0x800) {
+				utf8Length++;
+			} else if (c >= 0xD800 && c <= 0xDFFF) {
+				// A valid surrogate pair takes 4 bytes for 2 chars, anything else is replaced by a single byte.
+				if (c <= 0xDBFF && i + 1 < length && isLowSurrogate(value.charAt(i + 1))) {
+					utf8Length += 2;
+					i++;
+				}
+			} else {
+				utf8Length += 2;
+			}
+		}
+		return utf8Length;
+	}
+}
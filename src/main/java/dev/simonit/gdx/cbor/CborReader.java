@@ -1,44 +1,89 @@
-
 package dev.simonit.gdx.cbor;
 
-import co.nstant.in.cbor.CborDecoder;
-import co.nstant.in.cbor.CborException;
-import co.nstant.in.cbor.model.*;
-import co.nstant.in.cbor.model.Array;
 import com.badlogic.gdx.files.FileHandle;
 import com.badlogic.gdx.utils.*;
 
 import java.io.*;
-import java.util.List;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+
+import static dev.simonit.gdx.cbor.CborConstants.*;
 
+/** Parses CBOR into a tree of {@link CborValue}s in a single pass over the encoded bytes. Like {@link JsonReader}, the tree is
+ * built by the protected callback methods, which can be overridden. */
 public class CborReader extends JsonReader {
+	private final Array<CborValue> elements = new Array<>(8);
+	private int[] remaining = new int[8];
+	private boolean[] objects = new boolean[8];
+	private @Null CborDocument document;
+	private CborValue root, current;
+	private boolean copyByteStrings = true;
+	private int indexThreshold;
+	private boolean lazy;
+	private boolean stopped;
+	/** Whether the last key read was an unsigned integer. */
+	private boolean integerKey;
+	private byte[] scratch = new byte[64];
+	static private final String[] idNames = new String[256];
+
+	/** @param copyByteStrings If false, byte strings parsed from a byte array reference the array instead of copying it. The
+	 *           array must then not be modified while the parsed values are in use. Default is true. */
+	public void setCopyByteStrings (boolean copyByteStrings) {
+		this.copyByteStrings = copyByteStrings;
+	}
+
+	/** @param indexThreshold Objects with at least this many children get a name index, see {@link CborValue#buildIndex()}. The
+	 *           index costs memory and time while parsing, so it pays off for large objects whose children are looked up by name.
+	 *           0 disables the index, which is the default. */
+	public void setIndexThreshold (int indexThreshold) {
+		if (indexThreshold < 0) throw new IllegalArgumentException("indexThreshold must be >= 0: " + indexThreshold);
+		this.indexThreshold = indexThreshold;
+	}
+
+	/** @param lazy If true, maps and arrays parsed from a byte array only record where they are and decode their items when they
+	 *           are first accessed, one level at a time. {@link CborValue#toCbor(JsonWriter.OutputType)} writes maps and arrays that
+	 *           were never accessed as they were read. The array must not be modified while the parsed values are in use, and the
+	 *           items are decoded with the settings of this reader at the time of the access. Streams are always parsed completely.
+	 *           Default is false. */
+	public void setLazy (boolean lazy) {
+		this.lazy = lazy;
+	}
 
-	/** Uses the provided base64 encoded string to parse a CBOR value.
+	/** Uses the provided base64 encoded string to parse a CBOR value. The text is decoded while it is parsed.
 	 * @param base64 The base64 encoded string to parse
 	 * @return The parsed CBOR value */
 	@Override
 	public CborValue parse (String base64) {
-		return parse(Base64Coder.decode(base64));
+		return parse(new Base64InputStream(base64));
 	}
 
+	/** Parses the base64 encoded text of the reader while it is read. The reader is closed. */
 	@Override
-	public CborValue parse (InputStream input) {
+	public CborValue parse (Reader reader) {
+		InputStream input = new Base64InputStream(reader);
 		try {
-			CborDecoder decoder = new CborDecoder(input);
-			List<DataItem> dataItems = decoder.decode();
-			if (dataItems.isEmpty()) {
-				return null;
-			} else {
-				return parseDataItem(dataItems.get(0));
-			}
-		} catch (CborException e) {
-			throw new SerializationException(e);
+			return parse(input);
+		} finally {
+			StreamUtils.closeQuietly(input);
 		}
 	}
 
+	/** Reads the stream in chunks. The stream is not closed. */
+	@Override
+	public CborValue parse (InputStream input) {
+		return parse(new CborInput(input));
+	}
+
 	@Override
 	public CborValue parse (FileHandle file) {
-		return parse(file.read());
+		InputStream input = file.read();
+		try {
+			return parse(input);
+		} catch (Exception ex) {
+			throw new SerializationException("Error parsing file: " + file, ex);
+		} finally {
+			StreamUtils.closeQuietly(input);
+		}
 	}
 
 	/** Parses the provided char array as Base64 encoded CBOR value.
@@ -48,96 +93,533 @@ public class CborReader extends JsonReader {
 	 * @return The parsed CBOR value */
 	@Override
 	public CborValue parse (char[] data, int offset, int length) {
-		return parse(new String(data, offset, length));
+		return parse(Base64Coder.decode(data, offset, length, Base64Coder.regularMap));
 	}
 
 	public CborValue parse (byte[] bytes) {
-		return parse(new ByteArrayInputStream(bytes));
+		return parse(bytes, 0, bytes.length);
+	}
+
+	public CborValue parse (byte[] bytes, int offset, int length) {
+		return parse(new CborInput(bytes, offset, length));
+	}
+
+	/** Parses the remaining bytes of the buffer without changing its position. Heap buffers are read in place. */
+	public CborValue parse (ByteBuffer buffer) {
+		return parse(new CborInput(buffer));
+	}
+
+	/** Parses the next data item of the input.
+	 * @return the parsed value or null if the input is empty. */
+	public CborValue parse (CborInput input) {
+		if (!input.hasNext()) return null;
+		try {
+			if (lazy && input.isArrayInput())
+				lazyValue(input, null);
+			else
+				read(input);
+			CborValue root = this.root;
+			this.root = null;
+			return root;
+		} finally {
+			elements.clear();
+			current = null;
+		}
+	}
+
+	public CborDocument parseDocument (byte[] bytes) {
+		return parseDocument(new CborInput(bytes, 0, bytes.length), new CborDocument());
+	}
+
+	public CborDocument parseDocument (byte[] bytes, int offset, int length) {
+		return parseDocument(new CborInput(bytes, offset, length), new CborDocument());
+	}
+
+	/** Reads the stream in chunks. The stream is not closed. */
+	public CborDocument parseDocument (InputStream input) {
+		return parseDocument(new CborInput(input), new CborDocument());
 	}
 
-	private CborValue parseDataItem (DataItem dataItem) {
-		switch (dataItem.getMajorType()) {
-		case ARRAY:
-			CborValue cborArray = new CborValue(JsonValue.ValueType.array);
-			Array array = (Array)dataItem;
-			for (DataItem item : array.getDataItems()) {
-				cborArray.addChild(parseDataItem(item));
+	/** Parses the next data item of the input into a document instead of a tree of {@link CborValue}s. The document takes a
+	 * fraction of the memory of the tree, which makes it the better choice for large data that is kept for a while.
+	 * @param document Is cleared first, so it can be reused.
+	 * @return the document, which is empty if the input is empty. */
+	public CborDocument parseDocument (CborInput input, CborDocument document) {
+		document.clear();
+		if (!input.hasNext()) return document;
+		this.document = document;
+		try {
+			read(input);
+			return document;
+		} finally {
+			this.document = null;
+			elements.clear();
+			current = null;
+			root = null;
+		}
+	}
+
+	/** Reads every data item of the stream and reports them to the visitor, see {@link #visit(CborInput, CborVisitor)}. The
+	 * stream is not closed. */
+	public void visit (InputStream input, CborVisitor visitor) {
+		CborInput cborInput = new CborInput(input);
+		while (visit(cborInput, visitor))
+			if (stopped) break;
+	}
+
+	/** Reads every data item of the file and reports them to the visitor, see {@link #visit(CborInput, CborVisitor)}. */
+	public void visit (FileHandle file, CborVisitor visitor) {
+		InputStream input = file.read();
+		try {
+			visit(input, visitor);
+		} catch (Exception ex) {
+			throw new SerializationException("Error parsing file: " + file, ex);
+		} finally {
+			StreamUtils.closeQuietly(input);
+		}
+	}
+
+	/** Reads the next data item of the input and reports it and all items nested in it to the visitor, without building a tree.
+	 * Streams are read in chunks, so the memory used only depends on the nesting depth and the largest string, not on the size
+	 * of the data. Like for the tree, the keys of maps must be text strings or unsigned integers, which are reported as their
+	 * decimal string.
+	 * @return false if the input is empty. */
+	public boolean visit (CborInput input, CborVisitor visitor) {
+		if (!input.hasNext()) return false;
+		stopped = false;
+		int depth = 0;
+		while (!stopped) {
+			if (depth > 0) {
+				int count = remaining[depth - 1];
+				if (count == 0 || count == -1 && input.readBreak()) {
+					visitor.end();
+					if (--depth == 0) break;
+					continue;
+				}
+				if (count > 0) remaining[depth - 1] = count - 1;
+				if (objects[depth - 1]) {
+					visitor.key(readName(input));
+					if (stopped) break;
+				}
 			}
-			return cborArray;
-		case MAP:
-			CborValue cborMap = new CborValue(JsonValue.ValueType.object);
-			Map map = (Map)dataItem;
-			for (DataItem key : map.getKeys()) {
-				CborValue cborKey = parseDataItem(key);
-				if (!cborKey.isString()) {
-					throw new SerializationException("Key must be a string");
-					// TODO Maybe allow other keys
+			if (visit(input, visitor, input.readHeader())) {
+				int length = input.getLength();
+				if (depth == remaining.length) {
+					int[] newRemaining = new int[depth << 1];
+					System.arraycopy(remaining, 0, newRemaining, 0, depth);
+					remaining = newRemaining;
+					boolean[] newObjects = new boolean[depth << 1];
+					System.arraycopy(objects, 0, newObjects, 0, depth);
+					objects = newObjects;
 				}
-				cborMap.addChild(cborKey.asString(), parseDataItem(map.get(key)));
+				objects[depth] = input.getMajorType() == MAJOR_TYPE_MAP;
+				remaining[depth++] = length;
+			} else if (depth == 0) {
+				break;
+			}
+		}
+		return true;
+	}
+
+	/** Causes {@link #visit(CborInput, CborVisitor)} to stop after the current item. */
+	@Override
+	public void stop () {
+		super.stop();
+		stopped = true;
+	}
+
+	/** Reports the data item whose header was read.
+	 * @return true if an array or map was started, whose items have to be read next. */
+	private boolean visit (CborInput input, CborVisitor visitor, int initialByte) {
+		while (initialByte >>> 5 == MAJOR_TYPE_TAG) {
+			long tag = input.getArgument();
+			if (tag == TAG_POSITIVE_BIGNUM || tag == TAG_NEGATIVE_BIGNUM) {
+				if (input.readHeader() >>> 5 != MAJOR_TYPE_BYTE_STRING)
+					throw new SerializationException("Bignum must be a byte string");
+				BigInteger value = new BigInteger(1, input.readBytes());
+				visitor.bigIntegerValue(tag == TAG_POSITIVE_BIGNUM ? value : value.not());
+				return false;
 			}
-			return cborMap;
-		case UNSIGNED_INTEGER:
-			CborValue cborUnsignedInteger = new CborValue(JsonValue.ValueType.longValue);
-			UnsignedInteger unsignedInteger = (UnsignedInteger)dataItem;
-			cborUnsignedInteger.set(unsignedInteger.getValue().longValueExact(), null);
-			return cborUnsignedInteger;
-		case NEGATIVE_INTEGER:
-			CborValue cborNegativeInteger = new CborValue(JsonValue.ValueType.longValue);
-			NegativeInteger negativeInteger = (NegativeInteger)dataItem;
-			cborNegativeInteger.set(negativeInteger.getValue().longValueExact(), null);
-			return cborNegativeInteger;
-		case BYTE_STRING:
-			CborValue cborBytes = new CborValue(JsonValue.ValueType.array);
-			ByteString byteString = (ByteString)dataItem;
-			for (byte b : byteString.getBytes()) {
-				CborValue cborByte = new CborValue(JsonValue.ValueType.longValue);
-				cborByte.set(b, null);
-				cborBytes.addChild(cborByte);
+			visitor.tag(tag);
+			initialByte = input.readHeader();
+		}
+		switch (initialByte >>> 5) {
+		case MAJOR_TYPE_UNSIGNED_INTEGER: {
+			long argument = input.getArgument();
+			if (argument >= 0)
+				visitor.longValue(argument);
+			else
+				visitor.bigIntegerValue(unsigned(argument));
+			return false;
+		}
+		case MAJOR_TYPE_NEGATIVE_INTEGER: {
+			long argument = input.getArgument();
+			if (argument >= 0)
+				visitor.longValue(~argument);
+			else
+				visitor.bigIntegerValue(unsigned(argument).not());
+			return false;
+		}
+		case MAJOR_TYPE_BYTE_STRING:
+			if (input.isIndefinite()) {
+				byte[] bytes = input.readBytes();
+				visitor.bytes(bytes, 0, bytes.length);
+			} else if (input.isArrayInput()) {
+				int offset = input.getPosition(), length = input.getLength();
+				input.skip(length);
+				visitor.bytes(input.getBuffer(), offset, length);
+			} else {
+				int length = input.getLength();
+				// A larger array grows with the bytes actually read, as the length might be bogus.
+				if (scratch.length < length)
+					scratch = input.readBytes();
+				else
+					input.readBytes(scratch, 0, length);
+				visitor.bytes(scratch, 0, length);
+			}
+			return false;
+		case MAJOR_TYPE_UNICODE_STRING:
+			visitor.string(input.readString());
+			return false;
+		case MAJOR_TYPE_ARRAY:
+			visitor.startArray(input.getLength());
+			return true;
+		case MAJOR_TYPE_MAP:
+			visitor.startMap(input.getLength());
+			return true;
+		default:
+			switch (initialByte) {
+			case FALSE:
+				visitor.booleanValue(false);
+				return false;
+			case TRUE:
+				visitor.booleanValue(true);
+				return false;
+			case NULL:
+			case UNDEFINED:
+				visitor.nullValue();
+				return false;
+			case HALF_PRECISION_FLOAT:
+				visitor.doubleValue(CborInput.halfToFloat((int)input.getArgument()));
+				return false;
+			case SINGLE_PRECISION_FLOAT:
+				visitor.doubleValue(Float.intBitsToFloat((int)input.getArgument()));
+				return false;
+			case DOUBLE_PRECISION_FLOAT:
+				visitor.doubleValue(Double.longBitsToDouble(input.getArgument()));
+				return false;
+			case BREAK:
+				throw new SerializationException("Unexpected break");
+			}
+			throw new SerializationException("Unsupported simple value: " + input.getArgument());
+		}
+	}
+
+	private void read (CborInput input) {
+		int depth = 0;
+		while (true) {
+			String name = null;
+			if (depth > 0) {
+				int count = remaining[depth - 1];
+				if (count == 0 || count == -1 && input.readBreak()) {
+					pop();
+					if (--depth == 0) break;
+					continue;
+				}
+				if (count > 0) remaining[depth - 1] = count - 1;
+				if (objects[depth - 1]) name = readName(input);
 			}
-			return cborBytes;
-		case SPECIAL:
-			Special special = (Special)dataItem;
-			switch (special.getSpecialType()) {
-			case IEEE_754_DOUBLE_PRECISION_FLOAT:
-				DoublePrecisionFloat doublePrecisionFloat = (DoublePrecisionFloat)dataItem;
-				CborValue cborDouble = new CborValue(JsonValue.ValueType.doubleValue);
-				cborDouble.set(doublePrecisionFloat.getValue(), null);
-				return cborDouble;
-			case IEEE_754_HALF_PRECISION_FLOAT:
-				HalfPrecisionFloat halfPrecisionFloat = (HalfPrecisionFloat)dataItem;
-				CborValue cborHalf = new CborValue(JsonValue.ValueType.doubleValue);
-				cborHalf.set(halfPrecisionFloat.getValue(), null);
-				return cborHalf;
-			case IEEE_754_SINGLE_PRECISION_FLOAT:
-				SinglePrecisionFloat singlePrecisionFloat = (SinglePrecisionFloat)dataItem;
-				CborValue cborFloat = new CborValue(JsonValue.ValueType.doubleValue);
-				cborFloat.set(singlePrecisionFloat.getValue(), null);
-				return cborFloat;
-			case SIMPLE_VALUE:
-				SimpleValue simpleValue = (SimpleValue)dataItem;
-				switch (simpleValue.getSimpleValueType()) {
-				case FALSE:
-					CborValue cborFalse = new CborValue(JsonValue.ValueType.booleanValue);
-					cborFalse.set(false);
-					return cborFalse;
-				case TRUE:
-					CborValue cborTrue = new CborValue(JsonValue.ValueType.booleanValue);
-					cborTrue.set(true);
-					return cborTrue;
-				case NULL:
-					CborValue cborNull = new CborValue(JsonValue.ValueType.nullValue);
-					cborNull.set((String)null); // For 1.14.0
-					return cborNull;
+			if (value(input, name)) {
+				int length = input.getLength();
+				if (depth == remaining.length) {
+					int[] newRemaining = new int[depth << 1];
+					System.arraycopy(remaining, 0, newRemaining, 0, depth);
+					remaining = newRemaining;
+					boolean[] newObjects = new boolean[depth << 1];
+					System.arraycopy(objects, 0, newObjects, 0, depth);
+					objects = newObjects;
 				}
+				objects[depth] = input.getMajorType() == MAJOR_TYPE_MAP;
+				remaining[depth++] = length;
+			} else if (depth == 0) {
 				break;
 			}
-			break;
-		case UNICODE_STRING:
-			CborValue cborString = new CborValue(JsonValue.ValueType.stringValue);
-			UnicodeString unicodeString = (UnicodeString)dataItem;
-			cborString.set(unicodeString.getString());
-			return cborString;
-		}
-		throw new SerializationException("Unknown major type: " + dataItem.getMajorType());
+		}
+	}
+
+	/** Reads the next data item. Maps and arrays are skipped, only their position and size is recorded. */
+	private void lazyValue (CborInput input, @Null String name) {
+		int start = input.getPosition();
+		int initialByte = input.readHeader();
+		while (initialByte >>> 5 == MAJOR_TYPE_TAG && input.getArgument() != TAG_POSITIVE_BIGNUM
+			&& input.getArgument() != TAG_NEGATIVE_BIGNUM)
+			initialByte = input.readHeader();
+		int majorType = initialByte >>> 5;
+		if (majorType != MAJOR_TYPE_ARRAY && majorType != MAJOR_TYPE_MAP) {
+			input.setPosition(start);
+			value(input, name);
+			return;
+		}
+		boolean object = majorType == MAJOR_TYPE_MAP;
+		int length = input.getLength(), content = input.getPosition(), count = 0;
+		for (; length == -1 ? !input.readBreak() : count < length; count++) {
+			if (object) input.skipItem();
+			input.skipItem();
+		}
+		addChild(name, new CborValue(this, input.getBuffer(), start, input.getPosition() - start, content,
+			object ? JsonValue.ValueType.object : JsonValue.ValueType.array, count));
+	}
+
+	/** Decodes the items of a lazy map or array into it. */
+	void expand (CborValue value, byte[] bytes, int content, int end, int count) {
+		CborValue current = this.current, root = this.root;
+		this.current = value;
+		try {
+			CborInput input = new CborInput(bytes, content, end - content);
+			boolean object = value.isObject();
+			for (int i = 0; i < count; i++)
+				lazyValue(input, object ? readName(input) : null);
+		} finally {
+			this.current = current;
+			this.root = root;
+		}
+		if (indexThreshold > 0 && value.size >= indexThreshold && value.isObject()) value.buildIndex();
+	}
+
+	/** Reads the key of a map entry. */
+	private String readName (CborInput input) {
+		int initialByte = input.readHeader();
+		while (initialByte >>> 5 == MAJOR_TYPE_TAG)
+			initialByte = input.readHeader();
+		integerKey = initialByte >>> 5 == MAJOR_TYPE_UNSIGNED_INTEGER;
+		if (document != null) document.integerKey = integerKey;
+		if (initialByte >>> 5 == MAJOR_TYPE_UNICODE_STRING) return input.readString();
+		if (integerKey && input.getArgument() >= 0) return idName(input.getArgument());
+		throw new SerializationException("Key must be a string or an unsigned integer");
+	}
+
+	/** @return the decimal string of an unsigned integer key, see {@link CborWriter#name(long)}. The strings of small ids are
+	 *         cached. */
+	static String idName (long id) {
+		if (id >= idNames.length) return Long.toString(id);
+		String name = idNames[(int)id];
+		if (name == null) idNames[(int)id] = name = Integer.toString((int)id);
+		return name;
+	}
+
+	/** Reads the next data item, calling the callback for it.
+	 * @return true if an array or map was started, whose items have to be read next. */
+	private boolean value (CborInput input, String name) {
+		int initialByte = input.readHeader();
+		// Consecutive tags are read in a loop, so a long run of them cannot overflow the stack.
+		while (initialByte >>> 5 == MAJOR_TYPE_TAG) {
+			long tag = input.getArgument();
+			if (tag == TAG_POSITIVE_BIGNUM || tag == TAG_NEGATIVE_BIGNUM) {
+				if (input.readHeader() >>> 5 != MAJOR_TYPE_BYTE_STRING)
+					throw new SerializationException("Bignum must be a byte string");
+				BigInteger value = new BigInteger(1, input.readBytes());
+				bigNumber(name, tag == TAG_POSITIVE_BIGNUM ? value : value.not());
+				return false;
+			}
+			if (TypedArrays.isSupported(tag) && input.peek() >>> 5 == MAJOR_TYPE_BYTE_STRING) {
+				input.readHeader();
+				if (!copyByteStrings && input.isArrayInput() && !input.isIndefinite()) {
+					int offset = input.getPosition(), length = input.getLength();
+					input.skip(length);
+					typedArray(name, (int)tag, input.getBuffer(), offset, length);
+				} else {
+					byte[] bytes = input.readBytes();
+					typedArray(name, (int)tag, bytes, 0, bytes.length);
+				}
+				return false;
+			}
+			// Other tags carry no meaning for the tree, so the tagged item is read as is.
+			initialByte = input.readHeader();
+		}
+		switch (initialByte >>> 5) {
+		case MAJOR_TYPE_UNSIGNED_INTEGER: {
+			long argument = input.getArgument();
+			if (argument >= 0)
+				number(name, argument, null);
+			else
+				bigNumber(name, unsigned(argument));
+			return false;
+		}
+		case MAJOR_TYPE_NEGATIVE_INTEGER: {
+			long argument = input.getArgument();
+			if (argument >= 0)
+				number(name, ~argument, null);
+			else
+				bigNumber(name, unsigned(argument).not());
+			return false;
+		}
+		case MAJOR_TYPE_BYTE_STRING:
+			if (!copyByteStrings && input.isArrayInput() && !input.isIndefinite()) {
+				int offset = input.getPosition(), length = input.getLength();
+				input.skip(length);
+				bytes(name, input.getBuffer(), offset, length);
+			} else {
+				byte[] bytes = input.readBytes();
+				bytes(name, bytes, 0, bytes.length);
+			}
+			return false;
+		case MAJOR_TYPE_UNICODE_STRING:
+			string(name, input.readString());
+			return false;
+		case MAJOR_TYPE_ARRAY:
+			startArray(name);
+			return true;
+		case MAJOR_TYPE_MAP:
+			startObject(name);
+			return true;
+		default:
+			switch (initialByte) {
+			case FALSE:
+				bool(name, false);
+				return false;
+			case TRUE:
+				bool(name, true);
+				return false;
+			case NULL:
+			case UNDEFINED:
+				string(name, null);
+				return false;
+			case HALF_PRECISION_FLOAT:
+				number(name, CborInput.halfToFloat((int)input.getArgument()), null);
+				return false;
+			case SINGLE_PRECISION_FLOAT:
+				number(name, Float.intBitsToFloat((int)input.getArgument()), null);
+				return false;
+			case DOUBLE_PRECISION_FLOAT:
+				number(name, Double.longBitsToDouble(input.getArgument()), null);
+				return false;
+			case BREAK:
+				throw new SerializationException("Unexpected break");
+			}
+			throw new SerializationException("Unsupported simple value: " + input.getArgument());
+		}
+	}
+
+	/** Integers that do not fit into a long are stored as double, with their exact value as string. */
+	private void bigNumber (String name, BigInteger value) {
+		number(name, value.doubleValue(), value.toString());
+	}
+
+	private static BigInteger unsigned (long value) {
+		return BigInteger.valueOf(value & Long.MAX_VALUE).setBit(63);
+	}
+
+	private void addChild (@Null String name, CborValue child) {
+		child.setName(name);
+		child.integerKey = name != null && integerKey;
+		if (current == null) {
+			current = child;
+			root = child;
+		} else
+			current.addChild(child);
+	}
+
+	/** Called when a map is encountered in the CBOR. */
+	@Override
+	protected void startObject (@Null String name) {
+		if (document != null) {
+			document.startObject(name);
+			return;
+		}
+		CborValue value = new CborValue(JsonValue.ValueType.object);
+		if (current != null) addChild(name, value);
+		elements.add(value);
+		current = value;
+	}
+
+	/** Called when an array is encountered in the CBOR. */
+	@Override
+	protected void startArray (@Null String name) {
+		if (document != null) {
+			document.startArray(name);
+			return;
+		}
+		CborValue value = new CborValue(JsonValue.ValueType.array);
+		if (current != null) addChild(name, value);
+		elements.add(value);
+		current = value;
+	}
+
+	/** Called when the end of a map or array is encountered in the CBOR. */
+	@Override
+	protected void pop () {
+		if (document != null) {
+			document.end();
+			return;
+		}
+		root = elements.pop();
+		if (indexThreshold > 0 && root.size >= indexThreshold && root.isObject()) root.buildIndex();
+		current = elements.size > 0 ? elements.peek() : null;
+	}
+
+	/** Called when a string or null value is encountered in the CBOR. */
+	@Override
+	protected void string (@Null String name, @Null String value) {
+		if (document != null)
+			document.string(name, value);
+		else
+			addChild(name, new CborValue(value));
+	}
+
+	/** Called when a double value is encountered in the CBOR. */
+	@Override
+	protected void number (@Null String name, double value, @Null String stringValue) {
+		if (document != null)
+			document.number(name, value, stringValue);
+		else
+			addChild(name, new CborValue(value, stringValue));
+	}
+
+	/** Called when a long value is encountered in the CBOR. */
+	@Override
+	protected void number (@Null String name, long value, @Null String stringValue) {
+		if (document != null)
+			document.number(name, value, stringValue);
+		else
+			addChild(name, new CborValue(value, stringValue));
+	}
+
+	/** Called when a boolean value is encountered in the CBOR. */
+	@Override
+	protected void bool (@Null String name, boolean value) {
+		if (document != null)
+			document.bool(name, value);
+		else
+			addChild(name, new CborValue(value));
+	}
+
+	/** Called when a byte string is encountered in the CBOR. The bytes are a slice of the array.
+	 * @see CborValue#isBinary() */
+	protected void bytes (@Null String name, byte[] value, int offset, int length) {
+		if (document != null)
+			document.bytes(name, value, offset, length);
+		else
+			addChild(name, new CborValue(value, offset, length));
+	}
+
+	/** Called when an <a href="https://www.rfc-editor.org/rfc/rfc8746.html">RFC 8746</a> typed array is encountered in the CBOR.
+	 * The bytes of the elements are a slice of the array. A {@link CborDocument} gets an array of numbers.
+	 * @see CborValue#isTypedArray() */
+	protected void typedArray (@Null String name, int tag, byte[] value, int offset, int length) {
+		if (document == null) {
+			addChild(name, new CborValue(tag, value, offset, length));
+			return;
+		}
+		int count = TypedArrays.count(tag, length);
+		ByteBuffer buffer = TypedArrays.wrap(tag, value, offset, length);
+		document.startArray(name);
+		if (TypedArrays.isFloat(tag)) {
+			for (int i = 0; i < count; i++)
+				document.number(null, TypedArrays.getDouble(tag, buffer, i), null);
+		} else {
+			for (int i = 0; i < count; i++)
+				document.number(null, TypedArrays.getLong(tag, buffer, i), null);
+		}
+		document.end();
 	}
 }
@@ -3,13 +3,38 @@ package dev.simonit.gdx.cbor;
 
 import com.badlogic.gdx.utils.JsonValue;
 import com.badlogic.gdx.utils.JsonWriter;
+import com.badlogic.gdx.utils.Null;
 import com.badlogic.gdx.utils.SerializationException;
 import com.badlogic.gdx.utils.StreamUtils;
 
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.Writer;
+import java.nio.ByteBuffer;
 
+/** A {@link JsonValue} that can also hold a CBOR byte string.
+ * <p>
+ * A byte string is an array whose {@link #size} is the number of bytes. The bytes are kept as a slice of a byte array and are
+ * only turned into child values if the children are accessed, so binary data takes a single node. The same applies to
+ * <a href="https://www.rfc-editor.org/rfc/rfc8746.html">RFC 8746</a> typed arrays, whose {@link #size} is the number of
+ * elements and whose elements are decoded straight into a primitive array by {@link #asFloatArray()} and the like.
+ * <p>
+ * Objects can have a name index, see {@link #buildIndex()}, which makes looking up children by name constant time.
+ * <p>
+ * A value can also be a view of a map or array of a {@link CborDocument}, whose children are created when they are first
+ * accessed. Like for byte strings, the public fields of the children are only set after a method of the value was used. The
+ * same applies to maps and arrays parsed by a lazy {@link CborReader}, see {@link CborReader#setLazy(boolean)}. */
 public class CborValue extends JsonValue {
+	private @Null byte[] binary;
+	private int binaryOffset, typedArrayTag;
+	private @Null JsonValue[] index;
+	private int indexShift, indexedSize;
+	private @Null CborDocument document;
+	private int node;
+	private @Null LazyItem lazy;
+	/** Whether the name was read from an unsigned integer key. */
+	boolean integerKey;
+
 	public CborValue (ValueType type) {
 		super(type);
 	}
@@ -38,11 +63,60 @@ public class CborValue extends JsonValue {
 		super(value);
 	}
 
+	/** Creates a byte string holding the array, which is not copied. */
+	public CborValue (byte[] value) {
+		this(value, 0, value.length);
+	}
+
+	/** Creates a byte string holding a slice of the array, which is not copied. */
+	public CborValue (byte[] value, int offset, int length) {
+		super(ValueType.array);
+		set(value, offset, length);
+	}
+
+	/** Creates a typed array whose elements are a slice of the array, which is not copied.
+	 * @param tag The tag of the typed array, which defines the type and byte order of the elements. */
+	public CborValue (int tag, byte[] value, int offset, int length) {
+		super(ValueType.array);
+		setTypedArray(tag, value, offset, length);
+	}
+
+	/** Creates a view of a map or array of the document. */
+	CborValue (CborDocument document, int node, ValueType type, int size) {
+		super(type);
+		this.document = document;
+		this.node = node;
+		this.size = size;
+	}
+
+	/** Creates a map or array whose items are decoded by the reader when they are first accessed.
+	 * @param offset The start of the encoded item.
+	 * @param content The start of the first item in the map or array. */
+	CborValue (CborReader reader, byte[] bytes, int offset, int length, int content, ValueType type, int size) {
+		super(type);
+		LazyItem lazy = new LazyItem();
+		lazy.reader = reader;
+		lazy.bytes = bytes;
+		lazy.offset = offset;
+		lazy.length = length;
+		lazy.content = content;
+		this.lazy = lazy;
+		this.size = size;
+	}
+
 	public CborValue (JsonValue value) {
 		super(value.type());
-		if (value.isObject()) {
+		if (value instanceof CborValue && ((CborValue)value).isBinary()) {
+			CborValue other = (CborValue)value;
+			set(other.binary, other.binaryOffset, other.size);
+		} else if (value instanceof CborValue && ((CborValue)value).isTypedArray()) {
+			CborValue other = (CborValue)value;
+			setTypedArray(other.typedArrayTag, other.binary, other.binaryOffset, other.getBinaryLength());
+		} else if (value.isObject()) {
 			for (JsonValue child = value.child(); child != null; child = child.next()) {
-				addChild(child.name(), new CborValue(child));
+				CborValue copy = new CborValue(child);
+				copy.integerKey = child instanceof CborValue && ((CborValue)child).integerKey;
+				addChild(child.name(), copy);
 			}
 		} else if (value.isArray()) {
 			for (JsonValue child = value.child(); child != null; child = child.next()) {
@@ -59,10 +133,435 @@ public class CborValue extends JsonValue {
 		}
 	}
 
+	/** Makes this value a byte string holding a slice of the array, which is not copied. */
+	public void set (byte[] value, int offset, int length) {
+		if (offset < 0 || length < 0 || offset + length > value.length)
+			throw new IndexOutOfBoundsException("offset: " + offset + ", length: " + length + ", array length: " + value.length);
+		setType(ValueType.array);
+		child = null;
+		last = null;
+		size = length;
+		binary = value;
+		binaryOffset = offset;
+		typedArrayTag = 0;
+	}
+
+	/** Makes this value a typed array whose elements are a slice of the array, which is not copied.
+	 * @param tag The tag of the typed array, which defines the type and byte order of the elements.
+	 * @param length The number of bytes, which has to be a multiple of the element size. */
+	public void setTypedArray (int tag, byte[] value, int offset, int length) {
+		if (!TypedArrays.isSupported(tag)) throw new IllegalArgumentException("Unsupported typed array tag: " + tag);
+		int count = TypedArrays.count(tag, length);
+		set(value, offset, length);
+		size = count;
+		typedArrayTag = tag;
+	}
+
+	/** @return true if this is a byte string whose bytes were not turned into child values. */
+	public boolean isBinary () {
+		return binary != null && typedArrayTag == 0;
+	}
+
+	/** @return true if this is a typed array whose elements were not turned into child values. */
+	public boolean isTypedArray () {
+		return binary != null && typedArrayTag != 0;
+	}
+
+	/** @return the tag of the typed array, or 0 if this is not a typed array. */
+	public int getTypedArrayTag () {
+		return binary != null ? typedArrayTag : 0;
+	}
+
+	/** @return the array holding the bytes of this byte string or typed array, without copying it. The bytes start at
+	 *         {@link #getBinaryOffset()} and {@link #getBinaryLength()} bytes belong to this value. Null if this is neither. */
+	public @Null byte[] getBinary () {
+		return binary;
+	}
+
+	public int getBinaryOffset () {
+		return binaryOffset;
+	}
+
+	/** @return the number of bytes of this byte string or typed array. For a byte string this is the {@link #size}. */
+	public int getBinaryLength () {
+		return typedArrayTag == 0 ? size : size * TypedArrays.elementSize(typedArrayTag);
+	}
+
+	/** Turns the bytes of a byte string into child values, so this value can be used like any other array. Creates the children
+	 * of a view of a {@link CborDocument} or decodes the items of a lazy map or array. Does nothing otherwise. */
+	protected void expand () {
+		LazyItem lazy = this.lazy;
+		if (lazy != null) {
+			this.lazy = null;
+			int count = size;
+			size = 0;
+			lazy.reader.expand(this, lazy.bytes, lazy.content, lazy.offset + lazy.length, count);
+			return;
+		}
+		CborDocument document = this.document;
+		if (document != null) {
+			this.document = null;
+			size = 0;
+			for (int child = document.getChild(node); child != -1; child = document.getNext(child))
+				addChild(document.getValue(child));
+			return;
+		}
+		byte[] binary = this.binary;
+		if (binary == null) return;
+		this.binary = null;
+		int count = size;
+		size = 0;
+		int tag = typedArrayTag;
+		if (tag != 0) {
+			ByteBuffer buffer = TypedArrays.wrap(tag, binary, binaryOffset, count * TypedArrays.elementSize(tag));
+			boolean isFloat = TypedArrays.isFloat(tag);
+			for (int i = 0; i < count; i++) {
+				addChild(isFloat ? new CborValue(TypedArrays.getDouble(tag, buffer, i))
+					: new CborValue(TypedArrays.getLong(tag, buffer, i)));
+			}
+			return;
+		}
+		for (int i = binaryOffset, n = binaryOffset + count; i < n; i++)
+			addChild(new CborValue(binary[i]));
+	}
+
+	/** @return true if this is a map or array whose items were not decoded yet. */
+	public boolean isLazy () {
+		return lazy != null;
+	}
+
+	/** Builds a hash index of the child names, so {@link #get(String)} and the methods using it, like {@link #has(String)} and
+	 * {@link #getString(String)}, don't have to walk the children. If several children have the same name, the first one is
+	 * found, like without the index.
+	 * <p>
+	 * The index is dropped when children are added or removed through this value and when a child is renamed, replaced or removed
+	 * through its own methods. Call {@link #clearIndex()} after changing the {@link #name}, {@link #next} or {@link #child} fields
+	 * directly.
+	 * @throws IllegalStateException if this is not an object. */
+	public void buildIndex () {
+		if (!isObject()) throw new IllegalStateException("Only objects can have a name index: " + type());
+		expand();
+		int bits = 32 - Integer.numberOfLeadingZeros(Math.max(size, 2) * 2 - 1);
+		JsonValue[] index = new JsonValue[1 << bits];
+		int shift = 64 - bits, mask = index.length - 1;
+		for (JsonValue child = this.child; child != null; child = child.next) {
+			if (child.name == null) continue;
+			for (int i = place(child.name, shift);; i = i + 1 & mask) {
+				JsonValue other = index[i];
+				if (other == null) {
+					index[i] = child;
+					break;
+				}
+				if (other.name.equals(child.name)) break;
+			}
+		}
+		this.index = index;
+		indexShift = shift;
+		indexedSize = size;
+	}
+
+	/** Drops the name index, if any. */
+	public void clearIndex () {
+		index = null;
+	}
+
+	/** @return true if this object has a name index. */
+	public boolean hasIndex () {
+		return index != null;
+	}
+
+	private static int place (String name, int shift) {
+		return (int)(name.hashCode() * 0x9E3779B97F4A7C15L >>> shift);
+	}
+
+	/** Uses the name index if there is one, else walks the children. */
+	@Override
+	public @Null JsonValue get (String name) {
+		expand();
+		JsonValue[] index = this.index;
+		// The index holds named children only.
+		if (index != null && name != null) {
+			if (indexedSize == size) {
+				int mask = index.length - 1;
+				for (int i = place(name, indexShift);; i = i + 1 & mask) {
+					JsonValue child = index[i];
+					if (child == null) return null;
+					if (name.equals(child.name)) {
+						if (child.parent == this) return child;
+						break;
+					}
+				}
+			}
+			// The children were changed without dropping the index.
+			this.index = null;
+		}
+		return super.get(name);
+	}
+
+	@Override
+	public @Null JsonValue getIgnoreCase (String name) {
+		expand();
+		return super.getIgnoreCase(name);
+	}
+
+	@Override
+	public @Null JsonValue getChild (String name) {
+		JsonValue child = get(name);
+		if (child instanceof CborValue) ((CborValue)child).expand();
+		return child == null ? null : child.child;
+	}
+
+	@Override
+	public @Null JsonValue remove (String name) {
+		expand();
+		index = null;
+		return super.remove(name);
+	}
+
+	@Override
+	public void setChild (JsonValue value) {
+		expand();
+		index = null;
+		super.setChild(value);
+	}
+
+	@Override
+	public void remove () {
+		clearParentIndex();
+		super.remove();
+	}
+
+	@Override
+	public void replace (JsonValue value) {
+		clearParentIndex();
+		super.replace(value);
+	}
+
+	@Override
+	public void setName (@Null String name) {
+		clearParentIndex();
+		super.setName(name);
+		integerKey = false;
+	}
+
+	/** @return true if the name is the decimal string of an unsigned integer key, as written by {@link CborWriter#name(long)}.
+	 *         {@link #toCbor(JsonWriter.OutputType)} writes such a name as integer again. */
+	public boolean isIntegerKey () {
+		return integerKey;
+	}
+
+	private void clearParentIndex () {
+		if (parent instanceof CborValue) ((CborValue)parent).index = null;
+	}
+
+	@Override
+	public byte[] asByteArray () {
+		if (binary == null || typedArrayTag != 0) {
+			expand();
+			return super.asByteArray();
+		}
+		byte[] array = new byte[size];
+		System.arraycopy(binary, binaryOffset, array, 0, size);
+		return array;
+	}
+
+	@Override
+	public short[] asShortArray () {
+		if (isTypedArray()) return TypedArrays.toShortArray(typedArrayTag, binary, binaryOffset, getBinaryLength());
+		expand();
+		return super.asShortArray();
+	}
+
+	@Override
+	public int[] asIntArray () {
+		if (isTypedArray()) return TypedArrays.toIntArray(typedArrayTag, binary, binaryOffset, getBinaryLength());
+		expand();
+		return super.asIntArray();
+	}
+
+	@Override
+	public long[] asLongArray () {
+		if (isTypedArray()) return TypedArrays.toLongArray(typedArrayTag, binary, binaryOffset, getBinaryLength());
+		expand();
+		return super.asLongArray();
+	}
+
+	@Override
+	public float[] asFloatArray () {
+		if (isTypedArray()) return TypedArrays.toFloatArray(typedArrayTag, binary, binaryOffset, getBinaryLength());
+		expand();
+		return super.asFloatArray();
+	}
+
+	@Override
+	public double[] asDoubleArray () {
+		if (isTypedArray()) return TypedArrays.toDoubleArray(typedArrayTag, binary, binaryOffset, getBinaryLength());
+		expand();
+		return super.asDoubleArray();
+	}
+
+	@Override
+	public boolean[] asBooleanArray () {
+		expand();
+		return super.asBooleanArray();
+	}
+
+	@Override
+	public char[] asCharArray () {
+		expand();
+		return super.asCharArray();
+	}
+
+	@Override
+	public String[] asStringArray () {
+		expand();
+		return super.asStringArray();
+	}
+
+	@Override
+	public @Null JsonValue get (int index) {
+		expand();
+		return super.get(index);
+	}
+
+	@Override
+	public @Null JsonValue remove (int index) {
+		expand();
+		this.index = null;
+		return super.remove(index);
+	}
+
+	@Override
+	public @Null JsonValue child () {
+		expand();
+		return super.child();
+	}
+
+	@Override
+	public @Null JsonValue last () {
+		expand();
+		return super.last();
+	}
+
+	@Override
+	public JsonIterator iterator () {
+		expand();
+		return super.iterator();
+	}
+
+	@Override
+	public void addChild (JsonValue value) {
+		expand();
+		index = null;
+		super.addChild(value);
+	}
+
+	@Override
+	public void addChildFirst (JsonValue value) {
+		expand();
+		index = null;
+		super.addChildFirst(value);
+	}
+
+	@Override
+	public void setType (ValueType type) {
+		binary = null;
+		document = null;
+		lazy = null;
+		index = null;
+		super.setType(type);
+	}
+
+	@Override
+	public void set (JsonValue value) {
+		binary = null;
+		document = null;
+		lazy = null;
+		index = null;
+		super.set(value);
+	}
+
+	@Override
+	public void set (@Null String value) {
+		binary = null;
+		document = null;
+		lazy = null;
+		index = null;
+		super.set(value);
+	}
+
+	@Override
+	public void setNull () {
+		binary = null;
+		document = null;
+		lazy = null;
+		index = null;
+		super.setNull();
+	}
+
+	@Override
+	public void set (double value, @Null String stringValue) {
+		binary = null;
+		document = null;
+		lazy = null;
+		index = null;
+		super.set(value, stringValue);
+	}
+
+	@Override
+	public void set (long value, @Null String stringValue) {
+		binary = null;
+		document = null;
+		lazy = null;
+		index = null;
+		super.set(value, stringValue);
+	}
+
+	@Override
+	public void set (boolean value) {
+		binary = null;
+		document = null;
+		lazy = null;
+		index = null;
+		super.set(value);
+	}
+
+	@Override
+	public void toJson (JsonWriter.OutputType outputType, Writer writer) throws IOException {
+		expandAll(this);
+		super.toJson(outputType, writer);
+	}
+
+	@Override
+	public String prettyPrint (PrettyPrintSettings settings) {
+		expandAll(this);
+		return super.prettyPrint(settings);
+	}
+
+	@Override
+	public void prettyPrint (JsonWriter.OutputType outputType, Writer writer) throws IOException {
+		expandAll(this);
+		super.prettyPrint(outputType, writer);
+	}
+
+	/** Expands the value and all its descendants, as {@link JsonValue} reads the fields of the descendants directly. */
+	static private void expandAll (JsonValue value) {
+		if (value instanceof CborValue) ((CborValue)value).expand();
+		for (JsonValue child = value.child; child != null; child = child.next)
+			expandAll(child);
+	}
+
 	public byte[] toCbor (JsonWriter.OutputType outputType) {
+		return toCbor(outputType, false);
+	}
+
+	/** @param shortestFloats if true, numbers with a fraction are written with the shortest precision that keeps their value,
+	 *           see {@link CborOutput#setShortestFloats(boolean)}. Otherwise they are written with double precision. */
+	public byte[] toCbor (JsonWriter.OutputType outputType, boolean shortestFloats) {
 		ByteArrayOutputStream outputStream = new ByteArrayOutputStream(512);
 		CborWriter writer = new CborWriter(outputStream);
 		writer.setOutputType(outputType);
+		writer.shortestFloats(shortestFloats);
 		cbor(this, writer);
 		StreamUtils.closeQuietly(writer);
 		return outputStream.toByteArray();
@@ -70,10 +569,25 @@ public class CborValue extends JsonValue {
 
 	private void cbor (CborValue object, CborWriter writer) {
 		try {
-			if (object.name() != null) {
-				writer.name(object.name());
+			String name = object.name();
+			if (name != null) {
+				long id = object.integerKey ? id(name) : -1;
+				if (id != -1)
+					writer.name(id);
+				else
+					writer.name(name);
 			}
-			if (object.isObject()) {
+			if (object.lazy != null) {
+				// Items that were never accessed are written as they were read.
+				LazyItem lazy = object.lazy;
+				writer.encoded(lazy.bytes, lazy.offset, lazy.length);
+			} else if (object.isBinary()) {
+				writer.value(object.binary, object.binaryOffset, object.size);
+			} else if (object.isTypedArray()) {
+				// Written with the tag it was read with, so the byte order is kept.
+				writer.getOutput().writeTag(object.typedArrayTag);
+				writer.value(object.binary, object.binaryOffset, object.getBinaryLength());
+			} else if (object.isObject()) {
 				writer.object();
 				for (CborValue child = (CborValue)object.child(); child != null; child = (CborValue)child.next()) {
 					cbor(child, writer);
@@ -101,4 +615,19 @@ public class CborValue extends JsonValue {
 			throw new SerializationException("Error writing CBOR.", e);
 		}
 	}
+
+	/** @return the id of an integer key, or -1 if the name was changed through the public field to something else. */
+	static private long id (String name) {
+		try {
+			return Long.parseLong(name);
+		} catch (NumberFormatException ex) {
+			return -1;
+		}
+	}
+
+	static private class LazyItem {
+		CborReader reader;
+		byte[] bytes;
+		int offset, length, content;
+	}
 }
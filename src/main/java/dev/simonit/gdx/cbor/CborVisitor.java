@@ -0,0 +1,56 @@
+package dev.simonit.gdx.cbor;
+
+import java.math.BigInteger;
+
+/** Receives the data items read by {@link CborReader#visit(CborInput, CborVisitor)} one at a time, without a tree being built.
+ * The methods do nothing by default, so only the ones of interest have to be overridden.
+ * <p>
+ * Maps and arrays are reported by {@link #startMap(int)} or {@link #startArray(int)}, followed by their items and
+ * {@link #end()}. The value of a map entry follows the {@link #key(String)} call of its key. Call {@link CborReader#stop()} from
+ * any method to stop reading. */
+public abstract class CborVisitor {
+	/** @param size The number of entries, or -1 if the map has an indefinite length. */
+	public void startMap (int size) {
+	}
+
+	/** Called for the key of a map entry, before its value. */
+	public void key (String name) {
+	}
+
+	/** @param size The number of items, or -1 if the array has an indefinite length. */
+	public void startArray (int size) {
+	}
+
+	/** Called after the last item of a map or array. */
+	public void end () {
+	}
+
+	public void longValue (long value) {
+	}
+
+	/** Called for integers that don't fit into a long, including bignums. */
+	public void bigIntegerValue (BigInteger value) {
+	}
+
+	/** Called for half, single and double precision floats. */
+	public void doubleValue (double value) {
+	}
+
+	public void booleanValue (boolean value) {
+	}
+
+	/** Called for null and undefined. */
+	public void nullValue () {
+	}
+
+	public void string (String value) {
+	}
+
+	/** The bytes of a byte string. The array is reused and only valid until this method returns. */
+	public void bytes (byte[] value, int offset, int length) {
+	}
+
+	/** Called for a tag, before the item it belongs to. Bignum tags are reported by {@link #bigIntegerValue(BigInteger)}. */
+	public void tag (long tag) {
+	}
+}
@@ -1,14 +1,5 @@
-
 package dev.simonit.gdx.cbor;
 
-import co.nstant.in.cbor.CborBuilder;
-import co.nstant.in.cbor.CborEncoder;
-import co.nstant.in.cbor.CborException;
-import co.nstant.in.cbor.builder.AbstractBuilder;
-import co.nstant.in.cbor.builder.ArrayBuilder;
-import co.nstant.in.cbor.builder.MapBuilder;
-import co.nstant.in.cbor.builder.MapEntryBuilder;
-import co.nstant.in.cbor.model.SimpleValue;
 import com.badlogic.gdx.utils.JsonWriter;
 import com.badlogic.gdx.utils.Null;
 import java.io.IOException;
@@ -16,24 +7,28 @@ import java.io.OutputStream;
 import java.io.OutputStreamWriter;
 import java.math.BigInteger;
 
+/** Writes CBOR as the {@link com.badlogic.gdx.utils.Json} methods are called. Every call is encoded straight into a
+ * {@link CborOutput}, which is written to the output stream when the writer is flushed at root level or closed. */
 public class CborWriter extends JsonWriter {
-	protected AbstractBuilder<?> builder;
-	protected CborEncoder encoder;
+	protected final OutputStream outputStream;
+	protected final CborOutput output;
 	/** If true, writes char values as strings, otherwise as integers. */
 	protected boolean writeCharAsString = true;
 
 	public CborWriter (OutputStream outputStream) {
-		super(new OutputStreamWriter(outputStream));
-		encoder = new CborEncoder(outputStream);
-		builder = new CborBuilder();
+		this(outputStream, new CborOutput());
 	}
 
-	public AbstractBuilder<?> getBuilder () {
-		return builder;
+	/** @param output buffer the data items are encoded into before they are written to the output stream. */
+	public CborWriter (OutputStream outputStream, CborOutput output) {
+		super(new OutputStreamWriter(outputStream));
+		this.outputStream = outputStream;
+		this.output = output;
 	}
 
-	public CborEncoder getEncoder () {
-		return encoder;
+	/** @return the buffer holding the data written since the last flush. */
+	public CborOutput getOutput () {
+		return output;
 	}
 
 	public boolean isWriteCharAsString () {
@@ -45,389 +40,254 @@ public class CborWriter extends JsonWriter {
 		return this;
 	}
 
+	public boolean isShortestFloats () {
+		return output.isShortestFloats();
+	}
+
+	/** Writes floats and doubles with the shortest precision that keeps their value, see
+	 * {@link CborOutput#setShortestFloats(boolean)}. NaNs keep their payload, so only NaNs like {@link Float#NaN} become half
+	 * precision. */
+	public CborWriter shortestFloats (boolean shortestFloats) {
+		output.setShortestFloats(shortestFloats);
+		return this;
+	}
+
+	public boolean isSortedKeys () {
+		return output.isSortedKeys();
+	}
+
+	/** Sorts the entries of maps by their keys, see {@link CborOutput#setSortedKeys(boolean)}. */
+	public CborWriter sortedKeys (boolean sortedKeys) {
+		output.setSortedKeys(sortedKeys);
+		return this;
+	}
+
 	@Override
 	public CborWriter name (String name) throws IOException {
-		if (builder instanceof MapBuilder) {
-			builder = ((MapBuilder<?>)builder).addKey(name);
-		} else if (builder instanceof CborBuilder) {
-			throw new IllegalStateException("Cannot set name \"" + name + "\" on root");
-		} else if (builder instanceof ArrayBuilder) {
-			throw new IllegalStateException("Cannot set name \"" + name + "\" on array");
-		} else {
-			throw new IllegalStateException("Unexpected builder: " + builder.getClass());
-		}
+		requireName(name);
+		output.writeString(name);
 		return this;
 	}
 
+	/** Writes the key of the next entry as unsigned integer, which takes one byte for ids up to 23 instead of the length and
+	 * characters of a name. {@link Cbor} writes the fields with an id this way, see {@link FieldId}. {@link CborReader} reads
+	 * the key as the decimal string of the id. */
+	public CborWriter name (long id) throws IOException {
+		if (id < 0) throw new IllegalArgumentException("id must be >= 0: " + id);
+		requireName(id);
+		output.writeLong(id);
+		return this;
+	}
+
+	private void requireName (Object name) {
+		if (output.getDepth() == 0) throw new IllegalStateException("Cannot set name \"" + name + "\" on root");
+		if (!output.isMap()) throw new IllegalStateException("Cannot set name \"" + name + "\" on array");
+		if (output.getCount() % 2 != 0) throw new IllegalStateException("Cannot set name \"" + name + "\" before a value");
+	}
+
 	@Override
 	public CborWriter object (String name) throws IOException {
-		if (builder instanceof MapBuilder) {
-			builder = ((MapBuilder<?>)builder).putMap(name);
-		} else if (builder instanceof CborBuilder) {
-			throw new IllegalStateException("Cannot set name \"" + name + "\" on root");
-		} else if (builder instanceof ArrayBuilder) {
-			throw new IllegalStateException("Cannot set name \"" + name + "\" on array");
-		} else {
-			throw new IllegalStateException("Unexpected builder: " + builder.getClass());
-		}
-		return this;
+		return name(name).object();
 	}
 
 	@Override
 	public CborWriter array (String name) throws IOException {
-		if (builder instanceof MapBuilder) {
-			builder = ((MapBuilder<?>)builder).putArray(name);
-		} else if (builder instanceof CborBuilder) {
-			throw new IllegalStateException("Cannot set name \"" + name + "\" on root");
-		} else if (builder instanceof ArrayBuilder) {
-			throw new IllegalStateException("Cannot set name \"" + name + "\" on array");
-		} else {
-			throw new IllegalStateException("Unexpected builder: " + builder.getClass());
-		}
-		return this;
+		return name(name).array();
 	}
 
 	@Override
 	public CborWriter object () throws IOException {
-		if (builder instanceof CborBuilder) {
-			builder = ((CborBuilder)builder).addMap();
-		} else if (builder instanceof ArrayBuilder) {
-			builder = ((ArrayBuilder<?>)builder).addMap();
-		} else if (builder instanceof MapEntryBuilder) {
-			builder = ((MapEntryBuilder<?>)builder).valueMap();
-		} else {
-			throw new IllegalStateException("Unexpected builder: " + builder.getClass());
-		}
+		requireValue();
+		output.startMap();
 		return this;
 	}
 
 	@Override
 	public CborWriter array () throws IOException {
-		if (builder instanceof CborBuilder) {
-			builder = ((CborBuilder)builder).addArray();
-		} else if (builder instanceof ArrayBuilder) {
-			builder = ((ArrayBuilder<?>)builder).addArray();
-		} else if (builder instanceof MapEntryBuilder) {
-			builder = ((MapEntryBuilder<?>)builder).valueArray();
-		} else {
-			throw new IllegalStateException("Unexpected builder: " + builder.getClass());
-		}
+		requireValue();
+		output.startArray();
 		return this;
 	}
 
 	@Override
 	public CborWriter value (@Null Object value) throws IOException {
-		if (builder instanceof CborBuilder) {
-			if (value == null) {
-				builder = ((CborBuilder)builder).add(SimpleValue.NULL);
-			} else if (value instanceof BigInteger) {
-				builder = ((CborBuilder)builder).add((BigInteger)value);
-			} else if (value instanceof Float) {
-				builder = ((CborBuilder)builder).add((float)value);
-			} else if (value instanceof Double) {
-				builder = ((CborBuilder)builder).add((double)value);
-			} else if (value instanceof Number) {
-				builder = ((CborBuilder)builder).add(((Number)value).longValue());
-			} else if (value instanceof Boolean) {
-				builder = ((CborBuilder)builder).add((boolean)value);
-			} else if (value instanceof String) {
-				builder = ((CborBuilder)builder).add((String)value);
-			} else if (value instanceof byte[]) {
-				builder = ((CborBuilder)builder).add((byte[])value);
-			} else if (value instanceof Character) {
-				if (writeCharAsString) {
-					builder = ((CborBuilder)builder).add(value.toString());
-				} else {
-					builder = ((CborBuilder)builder).add((char)value);
-				}
+		requireValue();
+		if (value == null) {
+			output.writeNull();
+		} else if (value instanceof String) {
+			output.writeString((String)value);
+		} else if (value instanceof Float) {
+			output.writeFloat((Float)value);
+		} else if (value instanceof Double) {
+			output.writeDouble((Double)value);
+		} else if (value instanceof BigInteger) {
+			output.writeBigInteger((BigInteger)value);
+		} else if (value instanceof Number) {
+			output.writeLong(((Number)value).longValue());
+		} else if (value instanceof Boolean) {
+			output.writeBoolean((Boolean)value);
+		} else if (value instanceof byte[]) {
+			output.writeBytes((byte[])value);
+		} else if (value instanceof Character) {
+			if (writeCharAsString) {
+				output.writeString(value.toString());
 			} else {
-				throw new IllegalArgumentException("Unsupported value type: " + value.getClass());
-			}
-		} else if (builder instanceof ArrayBuilder) {
-			if (value == null) {
-				builder = ((ArrayBuilder<?>)builder).add(SimpleValue.NULL);
-			} else if (value instanceof Float) {
-				builder = ((ArrayBuilder<?>)builder).add((float)value);
-			} else if (value instanceof Double) {
-				builder = ((ArrayBuilder<?>)builder).add((double)value);
-			} else if (value instanceof Number) {
-				builder = ((ArrayBuilder<?>)builder).add(((Number)value).longValue());
-			} else if (value instanceof Boolean) {
-				builder = ((ArrayBuilder<?>)builder).add((boolean)value);
-			} else if (value instanceof String) {
-				builder = ((ArrayBuilder<?>)builder).add((String)value);
-			} else if (value instanceof byte[]) {
-				builder = ((ArrayBuilder<?>)builder).add((byte[])value);
-			} else if (value instanceof Character) {
-				if (writeCharAsString) {
-					builder = ((ArrayBuilder<?>)builder).add(value.toString());
-				} else {
-					builder = ((ArrayBuilder<?>)builder).add((char)value);
-				}
-			} else {
-				throw new IllegalArgumentException("Unsupported value type: " + value.getClass());
-			}
-		} else if (builder instanceof MapEntryBuilder) {
-			if (value == null) {
-				builder = ((MapEntryBuilder<?>)builder).value(SimpleValue.NULL);
-			} else if (value instanceof Float) {
-				builder = ((MapEntryBuilder<?>)builder).value((float)value);
-			} else if (value instanceof Double) {
-				builder = ((MapEntryBuilder<?>)builder).value((double)value);
-			} else if (value instanceof Number) {
-				builder = ((MapEntryBuilder<?>)builder).value(((Number)value).longValue());
-			} else if (value instanceof Boolean) {
-				builder = ((MapEntryBuilder<?>)builder).value((boolean)value);
-			} else if (value instanceof String) {
-				builder = ((MapEntryBuilder<?>)builder).value((String)value);
-			} else if (value instanceof byte[]) {
-				builder = ((MapEntryBuilder<?>)builder).value((byte[])value);
-			} else if (value instanceof Character) {
-				if (writeCharAsString) {
-					builder = ((MapEntryBuilder<?>)builder).value(value.toString());
-				} else {
-					builder = ((MapEntryBuilder<?>)builder).value((char)value);
-				}
-			} else {
-				throw new IllegalArgumentException("Unsupported value type: " + value.getClass());
+				output.writeLong((Character)value);
 			}
 		} else {
-			throw new IllegalStateException("Unexpected builder: " + builder.getClass());
+			throw new IllegalArgumentException("Unsupported value type: " + value.getClass());
 		}
 		return this;
 	}
 
 	public CborWriter value (int value) throws IOException {
-		if (builder instanceof CborBuilder) {
-			builder = ((CborBuilder)builder).add(value);
-		} else if (builder instanceof ArrayBuilder) {
-			builder = ((ArrayBuilder<?>)builder).add(value);
-		} else if (builder instanceof MapEntryBuilder) {
-			builder = ((MapEntryBuilder<?>)builder).value(value);
-		} else {
-			throw new IllegalStateException("Unexpected builder: " + builder.getClass());
-		}
+		requireValue();
+		output.writeLong(value);
 		return this;
 	}
 
 	public CborWriter value (long value) throws IOException {
-		if (builder instanceof CborBuilder) {
-			builder = ((CborBuilder)builder).add(value);
-		} else if (builder instanceof ArrayBuilder) {
-			builder = ((ArrayBuilder<?>)builder).add(value);
-		} else if (builder instanceof MapEntryBuilder) {
-			builder = ((MapEntryBuilder<?>)builder).value(value);
-		} else {
-			throw new IllegalStateException("Unexpected builder: " + builder.getClass());
-		}
+		requireValue();
+		output.writeLong(value);
 		return this;
 	}
 
 	public CborWriter value (float value) throws IOException {
-		if (builder instanceof CborBuilder) {
-			builder = ((CborBuilder)builder).add(value);
-		} else if (builder instanceof ArrayBuilder) {
-			builder = ((ArrayBuilder<?>)builder).add(value);
-		} else if (builder instanceof MapEntryBuilder) {
-			builder = ((MapEntryBuilder<?>)builder).value(value);
-		} else {
-			throw new IllegalStateException("Unexpected builder: " + builder.getClass());
-		}
+		requireValue();
+		output.writeFloat(value);
 		return this;
 	}
 
 	public CborWriter value (double value) throws IOException {
-		if (builder instanceof CborBuilder) {
-			builder = ((CborBuilder)builder).add(value);
-		} else if (builder instanceof ArrayBuilder) {
-			builder = ((ArrayBuilder<?>)builder).add(value);
-		} else if (builder instanceof MapEntryBuilder) {
-			builder = ((MapEntryBuilder<?>)builder).value(value);
-		} else {
-			throw new IllegalStateException("Unexpected builder: " + builder.getClass());
-		}
+		requireValue();
+		output.writeDouble(value);
 		return this;
 	}
 
 	public CborWriter value (String value) throws IOException {
-		if (builder instanceof CborBuilder) {
-			builder = ((CborBuilder)builder).add(value);
-		} else if (builder instanceof ArrayBuilder) {
-			builder = ((ArrayBuilder<?>)builder).add(value);
-		} else if (builder instanceof MapEntryBuilder) {
-			builder = ((MapEntryBuilder<?>)builder).value(value);
-		} else {
-			throw new IllegalStateException("Unexpected builder: " + builder.getClass());
-		}
+		requireValue();
+		output.writeString(value);
 		return this;
 	}
 
 	public CborWriter value (boolean value) throws IOException {
-		if (builder instanceof CborBuilder) {
-			builder = ((CborBuilder)builder).add(value);
-		} else if (builder instanceof ArrayBuilder) {
-			builder = ((ArrayBuilder<?>)builder).add(value);
-		} else if (builder instanceof MapEntryBuilder) {
-			builder = ((MapEntryBuilder<?>)builder).value(value);
-		} else {
-			throw new IllegalStateException("Unexpected builder: " + builder.getClass());
-		}
+		requireValue();
+		output.writeBoolean(value);
+		return this;
+	}
+
+	/** Writes a slice of the array as byte string. */
+	public CborWriter value (byte[] value, int offset, int length) throws IOException {
+		requireValue();
+		output.writeBytes(value, offset, length);
+		return this;
+	}
+
+	/** Writes the values as typed array, see {@link CborOutput#writeTypedArray(short[], int, int)}. */
+	public CborWriter value (short[] values, int offset, int length) throws IOException {
+		requireValue();
+		output.writeTypedArray(values, offset, length);
+		return this;
+	}
+
+	/** Writes the values as typed array, see {@link CborOutput#writeTypedArray(int[], int, int)}. */
+	public CborWriter value (int[] values, int offset, int length) throws IOException {
+		requireValue();
+		output.writeTypedArray(values, offset, length);
+		return this;
+	}
+
+	/** Writes the values as typed array, see {@link CborOutput#writeTypedArray(long[], int, int)}. */
+	public CborWriter value (long[] values, int offset, int length) throws IOException {
+		requireValue();
+		output.writeTypedArray(values, offset, length);
+		return this;
+	}
+
+	/** Writes the values as typed array, see {@link CborOutput#writeTypedArray(float[], int, int)}. */
+	public CborWriter value (float[] values, int offset, int length) throws IOException {
+		requireValue();
+		output.writeTypedArray(values, offset, length);
+		return this;
+	}
+
+	/** Writes the values as typed array, see {@link CborOutput#writeTypedArray(double[], int, int)}. */
+	public CborWriter value (double[] values, int offset, int length) throws IOException {
+		requireValue();
+		output.writeTypedArray(values, offset, length);
+		return this;
+	}
+
+	/** Writes a complete data item that is already encoded, as is. */
+	public CborWriter encoded (byte[] item, int offset, int length) throws IOException {
+		requireValue();
+		output.writeEncoded(item, offset, length);
 		return this;
 	}
 
 	@Override
 	public CborWriter json (String json) throws IOException {
-		if (builder instanceof CborBuilder) {
-			builder = ((CborBuilder)builder).add(json);
-		} else if (builder instanceof ArrayBuilder) {
-			builder = ((ArrayBuilder<?>)builder).add(json);
-		} else if (builder instanceof MapEntryBuilder) {
-			builder = ((MapEntryBuilder<?>)builder).value(json);
-		} else {
-			throw new IllegalStateException("Unexpected builder: " + builder.getClass());
-		}
-		return this;
+		return value(json);
 	}
 
 	public CborWriter set (String name, int value) throws IOException {
-		if (builder instanceof MapBuilder) {
-			builder = ((MapBuilder<?>)builder).put(name, value);
-		} else if (builder instanceof CborBuilder) {
-			throw new IllegalStateException("Cannot set name \"" + name + "\" on root");
-		} else if (builder instanceof ArrayBuilder) {
-			throw new IllegalStateException("Cannot set name \"" + name + "\" on array");
-		} else {
-			throw new IllegalStateException("Unexpected builder: " + builder.getClass());
-		}
-		return this;
+		return name(name).value(value);
 	}
 
 	public CborWriter set (String name, long value) throws IOException {
-		if (builder instanceof MapBuilder) {
-			builder = ((MapBuilder<?>)builder).put(name, value);
-		} else if (builder instanceof CborBuilder) {
-			throw new IllegalStateException("Cannot set name \"" + name + "\" on root");
-		} else if (builder instanceof ArrayBuilder) {
-			throw new IllegalStateException("Cannot set name \"" + name + "\" on array");
-		} else {
-			throw new IllegalStateException("Unexpected builder: " + builder.getClass());
-		}
-		return this;
+		return name(name).value(value);
 	}
 
 	public CborWriter set (String name, float value) throws IOException {
-		if (builder instanceof MapBuilder) {
-			builder = ((MapBuilder<?>)builder).put(name, value);
-		} else if (builder instanceof CborBuilder) {
-			throw new IllegalStateException("Cannot set name \"" + name + "\" on root");
-		} else if (builder instanceof ArrayBuilder) {
-			throw new IllegalStateException("Cannot set name \"" + name + "\" on array");
-		} else {
-			throw new IllegalStateException("Unexpected builder: " + builder.getClass());
-		}
-		return this;
+		return name(name).value(value);
 	}
 
 	public CborWriter set (String name, double value) throws IOException {
-		if (builder instanceof MapBuilder) {
-			builder = ((MapBuilder<?>)builder).put(name, value);
-		} else if (builder instanceof CborBuilder) {
-			throw new IllegalStateException("Cannot set name \"" + name + "\" on root");
-		} else if (builder instanceof ArrayBuilder) {
-			throw new IllegalStateException("Cannot set name \"" + name + "\" on array");
-		} else {
-			throw new IllegalStateException("Unexpected builder: " + builder.getClass());
-		}
-		return this;
+		return name(name).value(value);
 	}
 
 	@Override
 	public CborWriter set (String name, Object value) throws IOException {
-		if (builder instanceof MapBuilder) {
-			builder = ((MapBuilder<?>)builder).addKey(name);
-			if (value == null) {
-				builder = ((MapEntryBuilder<?>)builder).value(SimpleValue.NULL);
-			} else if (value instanceof Float) {
-				builder = ((MapEntryBuilder<?>)builder).value((float)value);
-			} else if (value instanceof Double) {
-				builder = ((MapEntryBuilder<?>)builder).value((double)value);
-			} else if (value instanceof Number) {
-				builder = ((MapEntryBuilder<?>)builder).value(((Number)value).longValue());
-			} else if (value instanceof Boolean) {
-				builder = ((MapEntryBuilder<?>)builder).value((boolean)value);
-			} else if (value instanceof String) {
-				builder = ((MapEntryBuilder<?>)builder).value((String)value);
-			} else if (value instanceof byte[]) {
-				builder = ((MapEntryBuilder<?>)builder).value((byte[])value);
-			} else if (value instanceof Character) {
-				if (writeCharAsString) {
-					builder = ((MapEntryBuilder<?>)builder).value(value.toString());
-				} else {
-					builder = ((MapEntryBuilder<?>)builder).value((char)value);
-				}
-			} else {
-				throw new IllegalArgumentException("Unsupported value type: " + value.getClass());
-			}
-		} else if (builder instanceof CborBuilder) {
-			throw new IllegalStateException("Cannot set name \"" + name + "\" on root");
-		} else if (builder instanceof ArrayBuilder) {
-			throw new IllegalStateException("Cannot set name \"" + name + "\" on array");
-		} else {
-			throw new IllegalStateException("Unexpected builder: " + builder.getClass());
-		}
-		return this;
+		return name(name).value(value);
 	}
 
 	public CborWriter set (String name, String value) throws IOException {
-		if (builder instanceof MapBuilder) {
-			builder = ((MapBuilder<?>)builder).put(name, value);
-		} else if (builder instanceof CborBuilder) {
-			throw new IllegalStateException("Cannot set name \"" + name + "\" on root");
-		} else if (builder instanceof ArrayBuilder) {
-			throw new IllegalStateException("Cannot set name \"" + name + "\" on array");
-		} else {
-			throw new IllegalStateException("Unexpected builder: " + builder.getClass());
-		}
-		return this;
+		return name(name).value(value);
 	}
 
 	public CborWriter set (String name, boolean value) throws IOException {
-		if (builder instanceof MapBuilder) {
-			builder = ((MapBuilder<?>)builder).put(name, value);
-		} else if (builder instanceof CborBuilder) {
-			throw new IllegalStateException("Cannot set name \"" + name + "\" on root");
-		} else if (builder instanceof ArrayBuilder) {
-			throw new IllegalStateException("Cannot set name \"" + name + "\" on array");
-		} else {
-			throw new IllegalStateException("Unexpected builder: " + builder.getClass());
-		}
-		return this;
+		return name(name).value(value);
 	}
 
 	@Override
 	public CborWriter pop () throws IOException {
-		if (builder instanceof CborBuilder) {
-			throw new IllegalStateException("Cannot pop root builder");
-		} else if (builder instanceof ArrayBuilder) {
-			builder = ((ArrayBuilder<?>)builder).end();
-		} else if (builder instanceof MapBuilder) {
-			builder = ((MapBuilder<?>)builder).end();
-		} else {
-			throw new IllegalStateException("Unexpected builder: " + builder.getClass());
-		}
+		if (output.getDepth() == 0) throw new IllegalStateException("Cannot pop root");
+		output.end();
 		return this;
 	}
 
+	/** Writes the buffered data to the output stream if no array or map is open. */
+	@Override
+	public void flush () throws IOException {
+		if (output.getDepth() == 0) {
+			output.writeTo(outputStream);
+			output.reset();
+		}
+		outputStream.flush();
+	}
+
 	@Override
 	public void close () throws IOException {
-		while (!(builder instanceof CborBuilder))
+		while (output.getDepth() > 0)
 			pop();
-		try {
-			encoder.encode(((CborBuilder)builder).build());
-		} catch (CborException e) {
-			throw new IOException(e);
-		}
-		((CborBuilder)builder).reset();
+		output.writeTo(outputStream);
+		output.reset();
 		super.close();
 	}
+
+	/** Throws if the next data item would be a key of a map, as keys have to be written with {@link #name(String)}. */
+	private void requireValue () {
+		if (output.isMap() && output.getCount() % 2 == 0)
+			throw new IllegalStateException("Cannot write a value in an object without setting a name first");
+	}
 }
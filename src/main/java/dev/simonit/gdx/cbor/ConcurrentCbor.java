@@ -0,0 +1,84 @@
+package dev.simonit.gdx.cbor;
+
+import com.badlogic.gdx.utils.Null;
+
+import java.nio.ByteBuffer;
+import java.util.function.Supplier;
+
+/** Serializes and deserializes CBOR from any number of threads at once.
+ * <p>
+ * {@link Cbor} keeps its output buffer, writer and reflection cache in the instance, so it must not be shared between threads.
+ * This class gives every thread its own {@link Cbor}, created by the factory on first use and kept for the lifetime of the
+ * thread. The threads never wait for each other, and the reflection metadata of a class is scanned once per thread instead of
+ * once per call. The factory is the shared configuration: it has to configure every instance the same way.
+ * <p>
+ * Not available on GWT. */
+public class ConcurrentCbor {
+	private final ThreadLocal<Cbor> cbor;
+
+	/** Uses a default configured {@link Cbor} per thread. */
+	public ConcurrentCbor () {
+		this(Cbor::new);
+	}
+
+	/** @param factory Creates the {@link Cbor} of each thread. It is called from the thread that uses the instance. */
+	public ConcurrentCbor (Supplier<Cbor> factory) {
+		cbor = ThreadLocal.withInitial(factory);
+	}
+
+	/** @return the {@link Cbor} of the current thread. It must not be passed to other threads. */
+	public Cbor get () {
+		return cbor.get();
+	}
+
+	public byte[] toCbor (@Null Object object) {
+		return cbor.get().toCbor(object);
+	}
+
+	/** @param knownType May be null if the type is unknown. */
+	public byte[] toCbor (@Null Object object, @Null Class knownType) {
+		return cbor.get().toCbor(object, knownType);
+	}
+
+	/** @param knownType May be null if the type is unknown.
+	 * @param elementType May be null if the type is unknown. */
+	public byte[] toCbor (@Null Object object, @Null Class knownType, @Null Class elementType) {
+		return cbor.get().toCbor(object, knownType, elementType);
+	}
+
+	/** @see Cbor#toCbor(Object, byte[], int) */
+	public int toCbor (@Null Object object, byte[] buffer, int offset) {
+		return cbor.get().toCbor(object, buffer, offset);
+	}
+
+	/** @see Cbor#toCbor(Object, Class, Class, byte[], int) */
+	public int toCbor (@Null Object object, @Null Class knownType, @Null Class elementType, byte[] buffer, int offset) {
+		return cbor.get().toCbor(object, knownType, elementType, buffer, offset);
+	}
+
+	/** @see Cbor#toCbor(Object, ByteBuffer) */
+	public int toCbor (@Null Object object, ByteBuffer buffer) {
+		return cbor.get().toCbor(object, buffer);
+	}
+
+	/** @see Cbor#toCbor(Object, Class, Class, ByteBuffer) */
+	public int toCbor (@Null Object object, @Null Class knownType, @Null Class elementType, ByteBuffer buffer) {
+		return cbor.get().toCbor(object, knownType, elementType, buffer);
+	}
+
+	/** @param type May be null if the type is unknown.
+	 * @return May be null. */
+	public @Null <T> T fromCbor (Class<T> type, byte[] cbor) {
+		return this.cbor.get().fromCbor(type, cbor);
+	}
+
+	/** @see Cbor#fromCbor(Class, byte[], int, int) */
+	public @Null <T> T fromCbor (Class<T> type, byte[] cbor, int offset, int length) {
+		return this.cbor.get().fromCbor(type, cbor, offset, length);
+	}
+
+	/** @see Cbor#fromCbor(Class, ByteBuffer) */
+	public @Null <T> T fromCbor (Class<T> type, ByteBuffer cbor) {
+		return this.cbor.get().fromCbor(type, cbor);
+	}
+}
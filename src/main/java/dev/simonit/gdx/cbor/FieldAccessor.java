@@ -0,0 +1,106 @@
+package dev.simonit.gdx.cbor;
+
+import com.badlogic.gdx.utils.Null;
+import com.badlogic.gdx.utils.SerializationException;
+import com.badlogic.gdx.utils.reflect.ClassReflection;
+import com.badlogic.gdx.utils.reflect.Constructor;
+import com.badlogic.gdx.utils.reflect.Field;
+import com.badlogic.gdx.utils.reflect.ReflectionException;
+
+/** Gets and sets the value of a field for {@link Cbor}. This implementation uses libGDX reflection, which boxes primitives.
+ * {@link #create(Field)} returns a {@link MethodHandleAccessor} instead where method handles are available, whose typed methods
+ * don't box. */
+class FieldAccessor {
+	static private @Null Constructor methodHandleConstructor;
+	static private boolean methodHandlesChecked;
+
+	final Field field;
+
+	FieldAccessor (Field field) {
+		this.field = field;
+	}
+
+	Object get (Object object) {
+		try {
+			return field.get(object);
+		} catch (ReflectionException ex) {
+			throw accessException(ex);
+		}
+	}
+
+	void set (Object object, @Null Object value) {
+		try {
+			field.set(object, value);
+		} catch (ReflectionException ex) {
+			throw accessException(ex);
+		}
+	}
+
+	/** Also for byte and short fields. */
+	int getInt (Object object) {
+		return ((Number)get(object)).intValue();
+	}
+
+	long getLong (Object object) {
+		return (Long)get(object);
+	}
+
+	float getFloat (Object object) {
+		return (Float)get(object);
+	}
+
+	double getDouble (Object object) {
+		return (Double)get(object);
+	}
+
+	boolean getBoolean (Object object) {
+		return (Boolean)get(object);
+	}
+
+	void setInt (Object object, int value) {
+		set(object, value);
+	}
+
+	void setLong (Object object, long value) {
+		set(object, value);
+	}
+
+	void setFloat (Object object, float value) {
+		set(object, value);
+	}
+
+	void setDouble (Object object, double value) {
+		set(object, value);
+	}
+
+	void setBoolean (Object object, boolean value) {
+		set(object, value);
+	}
+
+	SerializationException accessException (Throwable cause) {
+		return new SerializationException(
+			"Error accessing field: " + field.getName() + " (" + field.getDeclaringClass().getName() + ")", cause);
+	}
+
+	/** @return an accessor using method handles if possible, else one using libGDX reflection. */
+	static FieldAccessor create (Field field) {
+		if (!methodHandlesChecked) {
+			try {
+				methodHandleConstructor = ClassReflection
+					.getDeclaredConstructor(ClassReflection.forName("dev.simonit.gdx.cbor.MethodHandleAccessor"), Field.class);
+				methodHandleConstructor.setAccessible(true);
+			} catch (Throwable ignored) {
+				// Not available on GWT and on Android before API level 26.
+			}
+			methodHandlesChecked = true;
+		}
+		if (methodHandleConstructor != null) {
+			try {
+				return (FieldAccessor)methodHandleConstructor.newInstance(field);
+			} catch (ReflectionException ignored) {
+				// For example a field the method handles cannot access.
+			}
+		}
+		return new FieldAccessor(field);
+	}
+}
@@ -0,0 +1,21 @@
+package dev.simonit.gdx.cbor;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/** Gives a field a small integer id, which {@link Cbor} writes as the key of the map in place of the field name, see
+ * {@link CborWriter#name(long)}. Ids up to 23 take a single byte. Data written with ids can only be read by a {@link Cbor} that
+ * knows the same ids, so an id must not be changed or reused once data was written with it.
+ * <p>
+ * The ids of the fields of a class and its super classes must be unique. Ids can also be set without the annotation with
+ * {@link Cbor#setFieldId(Class, String, int)}. Generated codecs only use the ids of the annotation. */
+@Documented
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.FIELD)
+public @interface FieldId {
+	/** @return the id, which must be >= 0. */
+	int value ();
+}
@@ -0,0 +1,19 @@
+package dev.simonit.gdx.cbor;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/** Marks a class for the annotation processor of gdx-cbor-processor, which generates a {@link CborCodec} for it at build time.
+ * The codec is named like the class with the suffix {@code _CborCodec} and is found by {@link Cbor#getCodec(Class)} without
+ * registering it.
+ * <p>
+ * The fields that {@link com.badlogic.gdx.utils.Json} would read and write must not be private or final, because the codec
+ * accesses them directly. The class has to be top level or a static nested class that is not private. */
+@Documented
+@Retention(RetentionPolicy.CLASS)
+@Target(ElementType.TYPE)
+public @interface GenerateCodec {
+}
@@ -0,0 +1,145 @@
+package dev.simonit.gdx.cbor;
+
+import com.badlogic.gdx.utils.Null;
+import com.badlogic.gdx.utils.reflect.Field;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+
+/** Accesses a field through method handles, which are created once per field. The typed methods read and write primitives
+ * without boxing them. Byte and short fields are widened to int by {@link #getInt(Object)}.
+ * <p>
+ * Not available on GWT. */
+final class MethodHandleAccessor extends FieldAccessor {
+	private final MethodHandle getter, setter, typedGetter, typedSetter;
+
+	MethodHandleAccessor (Field field) throws ReflectiveOperationException {
+		super(field);
+		java.lang.reflect.Field javaField = field.getDeclaringClass().getDeclaredField(field.getName());
+		javaField.setAccessible(true);
+		MethodHandles.Lookup lookup = MethodHandles.lookup();
+		MethodHandle getter = lookup.unreflectGetter(javaField), setter = lookup.unreflectSetter(javaField);
+		Class type = javaField.getType();
+		Class typedType = type == byte.class || type == short.class ? int.class : type;
+		this.getter = getter.asType(MethodType.methodType(Object.class, Object.class));
+		this.setter = setter.asType(MethodType.methodType(void.class, Object.class, Object.class));
+		typedGetter = getter.asType(MethodType.methodType(typedType, Object.class));
+		typedSetter = setter.asType(MethodType.methodType(void.class, Object.class, type));
+	}
+
+	@Override
+	Object get (Object object) {
+		try {
+			return getter.invokeExact(object);
+		} catch (Throwable ex) {
+			throw rethrow(ex);
+		}
+	}
+
+	@Override
+	void set (Object object, @Null Object value) {
+		try {
+			setter.invokeExact(object, value);
+		} catch (Throwable ex) {
+			throw rethrow(ex);
+		}
+	}
+
+	@Override
+	int getInt (Object object) {
+		try {
+			return (int)typedGetter.invokeExact(object);
+		} catch (Throwable ex) {
+			throw rethrow(ex);
+		}
+	}
+
+	@Override
+	long getLong (Object object) {
+		try {
+			return (long)typedGetter.invokeExact(object);
+		} catch (Throwable ex) {
+			throw rethrow(ex);
+		}
+	}
+
+	@Override
+	float getFloat (Object object) {
+		try {
+			return (float)typedGetter.invokeExact(object);
+		} catch (Throwable ex) {
+			throw rethrow(ex);
+		}
+	}
+
+	@Override
+	double getDouble (Object object) {
+		try {
+			return (double)typedGetter.invokeExact(object);
+		} catch (Throwable ex) {
+			throw rethrow(ex);
+		}
+	}
+
+	@Override
+	boolean getBoolean (Object object) {
+		try {
+			return (boolean)typedGetter.invokeExact(object);
+		} catch (Throwable ex) {
+			throw rethrow(ex);
+		}
+	}
+
+	@Override
+	void setInt (Object object, int value) {
+		try {
+			typedSetter.invokeExact(object, value);
+		} catch (Throwable ex) {
+			throw rethrow(ex);
+		}
+	}
+
+	@Override
+	void setLong (Object object, long value) {
+		try {
+			typedSetter.invokeExact(object, value);
+		} catch (Throwable ex) {
+			throw rethrow(ex);
+		}
+	}
+
+	@Override
+	void setFloat (Object object, float value) {
+		try {
+			typedSetter.invokeExact(object, value);
+		} catch (Throwable ex) {
+			throw rethrow(ex);
+		}
+	}
+
+	@Override
+	void setDouble (Object object, double value) {
+		try {
+			typedSetter.invokeExact(object, value);
+		} catch (Throwable ex) {
+			throw rethrow(ex);
+		}
+	}
+
+	@Override
+	void setBoolean (Object object, boolean value) {
+		try {
+			typedSetter.invokeExact(object, value);
+		} catch (Throwable ex) {
+			throw rethrow(ex);
+		}
+	}
+
+	/** Unchecked exceptions, like a {@link ClassCastException} for a value of the wrong type, are thrown as they are. */
+	private RuntimeException rethrow (Throwable ex) {
+		if (ex instanceof RuntimeException) return (RuntimeException)ex;
+		if (ex instanceof Error) throw (Error)ex;
+		return accessException(ex);
+	}
+}
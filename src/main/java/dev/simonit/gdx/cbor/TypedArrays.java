@@ -0,0 +1,159 @@
+package dev.simonit.gdx.cbor;
+
+import com.badlogic.gdx.utils.SerializationException;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+import static dev.simonit.gdx.cbor.CborConstants.*;
+
+/** Decodes the elements of <a href="https://www.rfc-editor.org/rfc/rfc8746.html">RFC 8746</a> typed arrays. The tag of a typed
+ * array encodes the element type: 64 + float · 16 + signed · 8 + little endian · 4 + log2 of the element width, where floats
+ * start at 16 bits. Arrays of 8 bit integers and of 128 bit floats are not supported, the former are read like any byte
+ * string.
+ * <p>
+ * Elements are converted like {@link com.badlogic.gdx.utils.JsonValue} converts numbers if the array type differs from the
+ * element type. Arrays whose type matches the element type are copied in bulk. */
+final class TypedArrays {
+	private TypedArrays () {
+	}
+
+	/** @return true if the tag is a typed array that can be decoded. */
+	static boolean isSupported (long tag) {
+		if (tag < 64 || tag > 86) return false;
+		int bits = (int)tag - 64;
+		return (bits & 0x10) == 0 ? (bits & 3) != 0 : (bits & 3) != 3;
+	}
+
+	/** @return the number of bytes of one element. */
+	static int elementSize (int tag) {
+		int bits = tag - 64;
+		return (bits & 0x10) == 0 ? 1 << (bits & 3) : 2 << (bits & 3);
+	}
+
+	/** @return the number of elements of the byte string, which has to hold whole elements. */
+	static int count (int tag, int length) {
+		int elementSize = elementSize(tag);
+		if (length % elementSize != 0)
+			throw new SerializationException("Typed array " + tag + " must have a multiple of " + elementSize + " bytes: " + length);
+		return length / elementSize;
+	}
+
+	static boolean isFloat (int tag) {
+		return (tag - 64 & 0x10) != 0;
+	}
+
+	/** @return the bytes as buffer in the byte order of the tag. The position is the start of the elements. */
+	static ByteBuffer wrap (int tag, byte[] bytes, int offset, int length) {
+		return ByteBuffer.wrap(bytes, offset, length)
+			.order((tag & TAG_LITTLE_ENDIAN) != 0 ? ByteOrder.LITTLE_ENDIAN : ByteOrder.BIG_ENDIAN);
+	}
+
+	/** @param index The index of the element, relative to the position of the buffer. */
+	static long getLong (int tag, ByteBuffer buffer, int index) {
+		if (isFloat(tag)) return (long)getDouble(tag, buffer, index);
+		int bits = tag - 64, position = buffer.position() + (index << (bits & 3));
+		boolean signed = (bits & 8) != 0;
+		switch (bits & 3) {
+		case 1:
+			short shortValue = buffer.getShort(position);
+			return signed ? shortValue : shortValue & 0xFFFF;
+		case 2:
+			int intValue = buffer.getInt(position);
+			return signed ? intValue : intValue & 0xFFFFFFFFL;
+		default:
+			return buffer.getLong(position);
+		}
+	}
+
+	/** @param index The index of the element, relative to the position of the buffer. */
+	static double getDouble (int tag, ByteBuffer buffer, int index) {
+		if (!isFloat(tag)) return getLong(tag, buffer, index);
+		int position = buffer.position() + (index << (tag - 64 & 3) + 1);
+		switch (tag - 64 & 3) {
+		case 0:
+			return CborInput.halfToFloat(buffer.getShort(position) & 0xFFFF);
+		case 1:
+			return buffer.getFloat(position);
+		default:
+			return buffer.getDouble(position);
+		}
+	}
+
+	static short[] toShortArray (int tag, byte[] bytes, int offset, int length) {
+		ByteBuffer buffer = wrap(tag, bytes, offset, length);
+		short[] array = new short[count(tag, length)];
+		if ((tag & ~TAG_LITTLE_ENDIAN) == TAG_INT16_ARRAY)
+			buffer.asShortBuffer().get(array);
+		else {
+			for (int i = 0; i < array.length; i++)
+				array[i] = (short)getLong(tag, buffer, i);
+		}
+		return array;
+	}
+
+	static int[] toIntArray (int tag, byte[] bytes, int offset, int length) {
+		ByteBuffer buffer = wrap(tag, bytes, offset, length);
+		int[] array = new int[count(tag, length)];
+		if ((tag & ~TAG_LITTLE_ENDIAN) == TAG_INT32_ARRAY)
+			buffer.asIntBuffer().get(array);
+		else {
+			for (int i = 0; i < array.length; i++)
+				array[i] = (int)getLong(tag, buffer, i);
+		}
+		return array;
+	}
+
+	static long[] toLongArray (int tag, byte[] bytes, int offset, int length) {
+		ByteBuffer buffer = wrap(tag, bytes, offset, length);
+		long[] array = new long[count(tag, length)];
+		if ((tag & ~TAG_LITTLE_ENDIAN) == TAG_INT64_ARRAY)
+			buffer.asLongBuffer().get(array);
+		else {
+			for (int i = 0; i < array.length; i++)
+				array[i] = getLong(tag, buffer, i);
+		}
+		return array;
+	}
+
+	static float[] toFloatArray (int tag, byte[] bytes, int offset, int length) {
+		ByteBuffer buffer = wrap(tag, bytes, offset, length);
+		float[] array = new float[count(tag, length)];
+		if ((tag & ~TAG_LITTLE_ENDIAN) == TAG_FLOAT32_ARRAY)
+			buffer.asFloatBuffer().get(array);
+		else {
+			for (int i = 0; i < array.length; i++)
+				array[i] = (float)getDouble(tag, buffer, i);
+		}
+		return array;
+	}
+
+	static double[] toDoubleArray (int tag, byte[] bytes, int offset, int length) {
+		ByteBuffer buffer = wrap(tag, bytes, offset, length);
+		double[] array = new double[count(tag, length)];
+		if ((tag & ~TAG_LITTLE_ENDIAN) == TAG_FLOAT64_ARRAY)
+			buffer.asDoubleBuffer().get(array);
+		else {
+			for (int i = 0; i < array.length; i++)
+				array[i] = getDouble(tag, buffer, i);
+		}
+		return array;
+	}
+
+	/** @return the elements in the smallest primitive array holding them without loss: short[], int[] or long[] for integers,
+	 *         float[] for half and single precision floats and double[] for double precision floats. */
+	static Object toArray (int tag, byte[] bytes, int offset, int length) {
+		int bits = tag - 64;
+		if ((bits & 0x10) != 0)
+			return (bits & 3) == 2 ? toDoubleArray(tag, bytes, offset, length) : toFloatArray(tag, bytes, offset, length);
+		boolean signed = (bits & 8) != 0;
+		switch (bits & 3) {
+		case 1:
+			return signed ? toShortArray(tag, bytes, offset, length) : toIntArray(tag, bytes, offset, length);
+		case 2:
+			return signed ? toIntArray(tag, bytes, offset, length) : toLongArray(tag, bytes, offset, length);
+		default:
+			return toLongArray(tag, bytes, offset, length);
+		}
+	}
+}
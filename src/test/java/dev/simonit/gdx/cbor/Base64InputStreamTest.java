@@ -0,0 +1,48 @@
+package dev.simonit.gdx.cbor;
+
+import com.badlogic.gdx.utils.Base64Coder;
+import com.badlogic.gdx.utils.StreamUtils;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.StringReader;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class Base64InputStreamTest {
+	@Test
+	void testDecode () throws IOException {
+		byte[] bytes = new byte[3000];
+		for (int i = 0; i < bytes.length; i++)
+			bytes[i] = (byte)(i * 31);
+		for (int length = 0; length < 8; length++) {
+			byte[] expected = new byte[length];
+			System.arraycopy(bytes, 0, expected, 0, length);
+			String base64 = new String(Base64Coder.encode(bytes, length));
+			assertArrayEquals(expected, StreamUtils.copyStreamToByteArray(new Base64InputStream(base64)));
+		}
+		String base64 = Base64Coder.encodeLines(bytes);
+		assertArrayEquals(bytes, StreamUtils.copyStreamToByteArray(new Base64InputStream(new StringReader(base64))));
+	}
+
+	@Test
+	void testSingleBytes () throws IOException {
+		InputStream input = new Base64InputStream(Base64Coder.encodeString("ab"));
+		assertEquals('a', input.read());
+		assertEquals('b', input.read());
+		assertEquals(-1, input.read());
+		assertEquals(-1, input.read());
+	}
+
+	@Test
+	void testUrlSafe () throws IOException {
+		byte[] bytes = {(byte)0xFB, (byte)0xFF};
+		assertArrayEquals(bytes, StreamUtils.copyStreamToByteArray(new Base64InputStream("-_8")));
+	}
+
+	@Test
+	void testIllegalCharacter () {
+		assertThrows(IOException.class, () -> StreamUtils.copyStreamToByteArray(new Base64InputStream("ab!c")));
+	}
+}
@@ -0,0 +1,40 @@
+package dev.simonit.gdx.cbor;
+
+import com.badlogic.gdx.utils.Base64Coder;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.StringWriter;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class Base64OutputStreamTest {
+	@Test
+	void testEncode () throws IOException {
+		byte[] bytes = new byte[3000];
+		for (int i = 0; i < bytes.length; i++)
+			bytes[i] = (byte)(i * 31);
+		for (int length = 0; length < 8; length++)
+			assertEquals(new String(Base64Coder.encode(bytes, length)), encode(bytes, length));
+		assertEquals(new String(Base64Coder.encode(bytes)), encode(bytes, bytes.length));
+	}
+
+	@Test
+	void testSingleBytes () throws IOException {
+		StringWriter writer = new StringWriter();
+		Base64OutputStream output = new Base64OutputStream(writer);
+		output.write('a');
+		output.write(new byte[] {'b', 'c', 'd'}, 0, 3);
+		output.write('e');
+		output.close();
+		assertEquals(Base64Coder.encodeString("abcde"), writer.toString());
+	}
+
+	private String encode (byte[] bytes, int length) throws IOException {
+		StringWriter writer = new StringWriter();
+		Base64OutputStream output = new Base64OutputStream(writer);
+		output.write(bytes, 0, length);
+		output.finish();
+		return writer.toString();
+	}
+}
@@ -0,0 +1,179 @@
+package dev.simonit.gdx.cbor;
+
+import com.badlogic.gdx.utils.Array;
+import com.badlogic.gdx.utils.ObjectMap;
+import com.badlogic.gdx.utils.SerializationException;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Objects;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class CborCodecTest {
+	Cbor cbor, reflection;
+	Entity entity;
+
+	@BeforeEach
+	public void create () {
+		cbor = new Cbor();
+		reflection = new Cbor();
+		reflection.setCodec(Entity.class, null);
+		reflection.setCodec(Vector.class, null);
+
+		entity = new Entity();
+		entity.id = 42;
+		entity.name = "orc";
+		entity.path = Array.with(new Vector(1, 2), new Vector(-0.5f, 3));
+		entity.stats = new ObjectMap<>();
+		entity.stats.put("strength", 7);
+		entity.flags = new long[] {1, Long.MIN_VALUE};
+		entity.old = 5;
+		entity.letter = 'z';
+		entity.b = -3;
+		entity.s = 300;
+		entity.d = Math.PI;
+		entity.alive = true;
+		entity.boxed = 12;
+		entity.baseValue = 9;
+	}
+
+	@Test
+	public void testGenerated () {
+		assertEquals("dev.simonit.gdx.cbor.CborCodecTest_Entity_CborCodec", cbor.getCodec(Entity.class).getClass().getName());
+		assertNull(cbor.getCodec(Base.class));
+		assertNull(reflection.getCodec(Entity.class));
+		assertInstanceOf(Entity.class, cbor.getCodec(Entity.class).newInstance());
+	}
+
+	@Test
+	public void testSameAsReflection () {
+		byte[] bytes = reflection.toCbor(entity);
+		assertArrayEquals(bytes, cbor.toCbor(entity));
+		assertEquals(entity, cbor.fromCbor(Entity.class, bytes));
+		cbor.setDirectBinding(false);
+		assertEquals(entity, cbor.fromCbor(Entity.class, bytes));
+
+		// Only the fields that differ from the prototype were written.
+		Entity defaults = new Entity();
+		assertArrayEquals(reflection.toCbor(defaults), cbor.toCbor(defaults));
+		cbor.setUsePrototypes(false);
+		reflection.setUsePrototypes(false);
+		assertArrayEquals(reflection.toCbor(entity), cbor.toCbor(entity));
+		assertArrayEquals(reflection.toCbor(defaults), cbor.toCbor(defaults));
+	}
+
+	@Test
+	public void testFieldIds () {
+		CborValue tree = new CborReader().parse(cbor.toCbor(new Vector(3, 4)));
+		assertEquals(3, tree.getFloat("0"));
+		assertEquals(4, tree.getFloat("1"));
+		assertEquals(new Vector(3, 4), cbor.fromCbor(Vector.class, reflection.toCbor(new Vector(3, 4))));
+	}
+
+	@Test
+	public void testRuntimeConfiguration () {
+		cbor.setFieldId(Entity.class, "name", 5);
+		reflection.setFieldId(Entity.class, "name", 5);
+		assertNull(cbor.getCodec(Entity.class));
+		byte[] bytes = reflection.toCbor(entity);
+		assertArrayEquals(bytes, cbor.toCbor(entity));
+		assertEquals("orc", new CborReader().parse(bytes).getString("5"));
+		assertEquals(entity, cbor.fromCbor(Entity.class, bytes));
+
+		assertNotNull(cbor.getCodec(Vector.class));
+		cbor.setSortFields(true);
+		assertNull(cbor.getCodec(Vector.class));
+	}
+
+	@Test
+	public void testDeprecated () {
+		byte[] bytes = cbor.toCbor(entity);
+		cbor.setIgnoreDeprecated(true);
+		reflection.setIgnoreDeprecated(true);
+		assertArrayEquals(reflection.toCbor(entity), cbor.toCbor(entity));
+		assertEquals(0, cbor.fromCbor(Entity.class, bytes).old);
+		cbor.setReadDeprecated(true);
+		assertEquals(5, cbor.fromCbor(Entity.class, bytes).old);
+	}
+
+	@Test
+	public void testUnknownField () throws IOException {
+		ByteArrayOutputStream output = new ByteArrayOutputStream();
+		CborWriter writer = new CborWriter(output);
+		writer.object().set("id", 1).set("unknown", "value").set("letter", "q").pop();
+		writer.close();
+		byte[] bytes = output.toByteArray();
+		for (boolean directBinding : new boolean[] {true, false}) {
+			cbor.setDirectBinding(directBinding);
+			cbor.setIgnoreUnknownFields(false);
+			assertThrows(SerializationException.class, () -> cbor.fromCbor(Entity.class, bytes));
+			cbor.setIgnoreUnknownFields(true);
+			Entity read = cbor.fromCbor(Entity.class, bytes);
+			assertEquals(1, read.id);
+			assertEquals('q', read.letter);
+		}
+	}
+
+	static public class Base {
+		public int baseValue = 3;
+	}
+
+	@GenerateCodec
+	static public class Entity extends Base {
+		int id;
+		String name;
+		Array<Vector> path;
+		ObjectMap<String, Integer> stats;
+		long[] flags;
+		@Deprecated int old;
+		char letter = 'a';
+		byte b;
+		short s;
+		double d;
+		boolean alive;
+		Integer boxed;
+
+		@Override
+		public boolean equals (Object o) {
+			if (!(o instanceof Entity)) return false;
+			Entity other = (Entity)o;
+			return baseValue == other.baseValue && id == other.id && Objects.equals(name, other.name)
+				&& Objects.equals(path, other.path) && Objects.equals(stats, other.stats) && Arrays.equals(flags, other.flags)
+				&& old == other.old && letter == other.letter && b == other.b && s == other.s && d == other.d
+				&& alive == other.alive && Objects.equals(boxed, other.boxed);
+		}
+
+		@Override
+		public int hashCode () {
+			return id;
+		}
+	}
+
+	@GenerateCodec
+	static public class Vector {
+		@FieldId(0) float x;
+		@FieldId(1) float y;
+
+		public Vector () {
+		}
+
+		public Vector (float x, float y) {
+			this.x = x;
+			this.y = y;
+		}
+
+		@Override
+		public boolean equals (Object o) {
+			return o instanceof Vector && x == ((Vector)o).x && y == ((Vector)o).y;
+		}
+
+		@Override
+		public int hashCode () {
+			return Float.floatToIntBits(x) * 31 + Float.floatToIntBits(y);
+		}
+	}
+}
@@ -0,0 +1,118 @@
+package dev.simonit.gdx.cbor;
+
+import com.badlogic.gdx.utils.JsonValue;
+import com.badlogic.gdx.utils.JsonWriter;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.math.BigInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CborDocumentTest {
+	private final CborReader reader = new CborReader();
+
+	private byte[] sample () {
+		CborOutput output = new CborOutput();
+		output.startMap();
+		output.writeString("name").writeString("player");
+		output.writeString("level").writeLong(12);
+		output.writeString("speed").writeDouble(1.5);
+		output.writeString("alive").writeBoolean(true);
+		output.writeString("guild").writeNull();
+		output.writeString("data").writeBytes(new byte[] {1, 2, 3});
+		output.writeString("big").writeBigInteger(BigInteger.ONE.shiftLeft(70));
+		output.writeString("items").startArray();
+		output.startMap().writeString("name").writeString("sword").end();
+		output.startMap().writeString("name").writeString("shield").end();
+		output.end();
+		output.writeString("empty").startArray().end();
+		output.end();
+		return output.toByteArray();
+	}
+
+	@Test
+	void testNavigate () {
+		CborDocument document = reader.parseDocument(sample());
+		int root = document.getRoot();
+		assertTrue(document.isObject(root));
+		assertEquals(9, document.getSize(root));
+		assertEquals("player", document.asString(document.get(root, "name")));
+		assertEquals(12, document.asInt(document.get(root, "level")));
+		assertEquals(1.5, document.asDouble(document.get(root, "speed")));
+		assertTrue(document.asBoolean(document.get(root, "alive")));
+		assertTrue(document.isNull(document.get(root, "guild")));
+		int data = document.get(root, "data");
+		assertTrue(document.isBinary(data));
+		assertEquals(-1, document.getChild(data));
+		assertArrayEquals(new byte[] {1, 2, 3}, document.asByteArray(data));
+		assertEquals(BigInteger.ONE.shiftLeft(70).toString(), document.asString(document.get(root, "big")));
+		int items = document.get(root, "items");
+		assertEquals(2, document.getSize(items));
+		assertEquals("shield", document.asString(document.get(document.get(items, 1), "name")));
+		assertEquals(-1, document.get(items, 2));
+		assertEquals(-1, document.getChild(document.get(root, "empty")));
+		assertEquals(-1, document.getNext(document.get(root, "empty")));
+		assertEquals(-1, document.get(root, "missing"));
+		assertThrows(IllegalStateException.class, () -> document.asLong(items));
+	}
+
+	@Test
+	void testView () {
+		byte[] bytes = sample();
+		CborDocument document = reader.parseDocument(new ByteArrayInputStream(bytes));
+		CborValue value = document.getValue();
+		assertEquals(9, value.size);
+		assertNull(value.child);
+		assertEquals("sword", value.get("items").get(0).getString("name"));
+		assertNotNull(value.child);
+		assertEquals(reader.parse(bytes).prettyPrint(JsonWriter.OutputType.json, 0),
+			document.getValue().prettyPrint(JsonWriter.OutputType.json, 0));
+		assertArrayEquals(reader.parse(bytes).toCbor(JsonWriter.OutputType.json),
+			document.getValue().toCbor(JsonWriter.OutputType.json));
+		assertEquals("shield", document.getValue().getChild("items").next.getString("name"));
+	}
+
+	@Test
+	void testReadValue () {
+		CborTest setup = new CborTest();
+		setup.create();
+		Cbor cbor = new Cbor();
+		CborDocument document = reader.parseDocument(cbor.toCbor(setup.test));
+		assertEquals(setup.test, cbor.readValue(CborTest.Test1.class, document));
+		// Views are created on demand, so the document can be read again.
+		assertEquals(setup.test, cbor.readValue(CborTest.Test1.class, document));
+	}
+
+	@Test
+	void testGrow () {
+		// Nodes 16, 32 and 64 are added when the arrays grow.
+		CborOutput output = new CborOutput();
+		output.startArray();
+		for (int i = 0; i < 40; i++)
+			output.writeString("s" + i).writeBoolean(i % 3 == 0);
+		output.end();
+		CborDocument document = reader.parseDocument(output.toByteArray());
+		assertEquals(81, document.getNodeCount());
+		for (int i = 0; i < 40; i++) {
+			assertEquals("s" + i, document.asString(document.get(0, i * 2)));
+			assertEquals(i % 3 == 0, document.asBoolean(document.get(0, i * 2 + 1)));
+		}
+	}
+
+	@Test
+	void testReuse () {
+		CborDocument document = new CborDocument();
+		reader.parseDocument(new CborInput(sample()), document);
+		int nodes = document.getNodeCount();
+		reader.parseDocument(new CborInput(new byte[] {0x63, 'a', 'b', 'c'}), document);
+		assertEquals(1, document.getNodeCount());
+		assertEquals("abc", document.asString(document.getRoot()));
+		assertEquals(JsonValue.ValueType.stringValue, document.getValue().type());
+		reader.parseDocument(new CborInput(sample()), document);
+		assertEquals(nodes, document.getNodeCount());
+		reader.parseDocument(new CborInput(new byte[0]), document);
+		assertEquals(-1, document.getRoot());
+		assertNull(document.getValue());
+	}
+}
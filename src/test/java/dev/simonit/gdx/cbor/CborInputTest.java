@@ -0,0 +1,187 @@
+package dev.simonit.gdx.cbor;
+
+import com.badlogic.gdx.utils.Bits;
+import com.badlogic.gdx.utils.SerializationException;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.nio.ByteBuffer;
+
+import static dev.simonit.gdx.cbor.CborConstants.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+class CborInputTest {
+	@Test
+	void testHeaders () {
+		CborInput input = new CborInput(new byte[] {0x17, 0x18, 0x18, 0x19, 0x01, 0x00, 0x3A, 0x00, 0x01, 0x00, 0x00, 0x1B,
+			(byte)0xFF, (byte)0xFF, (byte)0xFF, (byte)0xFF, (byte)0xFF, (byte)0xFF, (byte)0xFF, (byte)0xFF});
+		input.readHeader();
+		assertEquals(23, input.getArgument());
+		input.readHeader();
+		assertEquals(24, input.getArgument());
+		input.readHeader();
+		assertEquals(256, input.getArgument());
+		assertEquals(MAJOR_TYPE_NEGATIVE_INTEGER, input.readHeader() >>> 5);
+		assertEquals(65536, input.getArgument());
+		input.readHeader();
+		assertEquals(-1, input.getArgument());
+		assertFalse(input.hasNext());
+	}
+
+	@Test
+	void testIndefiniteHeader () {
+		CborInput input = new CborInput(new byte[] {(byte)0x9F, (byte)0xFF});
+		assertEquals(MAJOR_TYPE_ARRAY, input.readHeader() >>> 5);
+		assertTrue(input.isIndefinite());
+		assertEquals(-1, input.getLength());
+		assertTrue(input.readBreak());
+	}
+
+	@Test
+	void testInvalidHeader () {
+		assertThrows(SerializationException.class, () -> new CborInput(new byte[] {0x1C}).readHeader());
+		assertThrows(SerializationException.class, () -> new CborInput(new byte[] {0x1F}).readHeader());
+	}
+
+	@Test
+	void testStringFromStream () {
+		CborOutput output = new CborOutput();
+		StringBuilder builder = new StringBuilder();
+		for (int i = 0; i < 1000; i++)
+			builder.append("aü€😀");
+		String value = builder.toString();
+		output.writeString(value).writeString("end");
+		CborInput input = new CborInput(new ByteArrayInputStream(output.toByteArray()));
+		input.readHeader();
+		assertEquals(value, input.readString());
+		input.readHeader();
+		assertEquals("end", input.readString());
+		assertFalse(input.hasNext());
+	}
+
+	@Test
+	void testBits () {
+		boolean[] values = new boolean[1000];
+		for (int i = 0; i < values.length; i += 3)
+			values[i] = true;
+		byte[] encoded = new CborOutput().writeBits(values, 0, values.length).writeBits(values, 0, 3).toByteArray();
+		CborInput input = new CborInput(new ByteArrayInputStream(encoded));
+		input.readHeader();
+		assertArrayEquals(values, input.readBits(new boolean[values.length], 0, values.length));
+		input.readHeader();
+		Bits bits = new Bits();
+		bits.set(5);
+		input.readBits(bits, 3);
+		assertTrue(bits.get(0));
+		assertFalse(bits.get(1));
+		assertTrue(bits.get(5));
+		assertFalse(input.hasNext());
+
+		CborInput wrongLength = new CborInput(encoded);
+		wrongLength.readHeader();
+		assertThrows(SerializationException.class, () -> wrongLength.readBits(new boolean[8], 0, 8));
+	}
+
+	@Test
+	void testBogusLength () {
+		byte[] frame = {0x5A, 0x7F, (byte)0xFF, (byte)0xFF, (byte)0xFF, 0x00};
+		CborInput array = new CborInput(frame);
+		array.readHeader();
+		assertThrows(SerializationException.class, array::readBytes);
+		ByteBuffer direct = ByteBuffer.allocateDirect(frame.length);
+		direct.put(frame).flip();
+		CborInput buffer = new CborInput(direct);
+		buffer.readHeader();
+		assertThrows(SerializationException.class, buffer::readBytes);
+		CborInput stream = new CborInput(new ByteArrayInputStream(frame));
+		stream.readHeader();
+		assertThrows(SerializationException.class, stream::readBytes);
+		frame[0] = 0x7A;
+		CborInput string = new CborInput(frame);
+		string.readHeader();
+		assertThrows(SerializationException.class, string::readString);
+		assertFalse(new CborInput(frame).hasRemaining(6 + 1));
+	}
+
+	@Test
+	void testIndefiniteBytes () {
+		byte[] frame = {0x5F, 0x42, 0x01, 0x02, 0x40, 0x41, 0x03, (byte)0xFF};
+		for (CborInput input : new CborInput[] {new CborInput(frame), new CborInput(new ByteArrayInputStream(frame))}) {
+			input.readHeader();
+			assertArrayEquals(new byte[] {1, 2, 3}, input.readBytes());
+			assertFalse(input.hasNext());
+		}
+	}
+
+	@Test
+	void testLargeBytesFromStream () {
+		byte[] bytes = new byte[200000];
+		for (int i = 0; i < bytes.length; i++)
+			bytes[i] = (byte)i;
+		CborInput input = new CborInput(new ByteArrayInputStream(new CborOutput().writeBytes(bytes).toByteArray()));
+		input.readHeader();
+		assertArrayEquals(bytes, input.readBytes());
+	}
+
+	@Test
+	void testDirectByteBuffer () {
+		CborOutput output = new CborOutput();
+		byte[] bytes = new byte[5000];
+		for (int i = 0; i < bytes.length; i++)
+			bytes[i] = (byte)i;
+		output.writeBytes(bytes).writeString("end");
+		byte[] encoded = output.toByteArray();
+		ByteBuffer buffer = ByteBuffer.allocateDirect(encoded.length + 2);
+		buffer.put((byte)0).put(encoded).put((byte)0);
+		buffer.position(1);
+		buffer.limit(encoded.length + 1);
+		CborInput input = new CborInput(buffer);
+		assertFalse(input.isArrayInput());
+		input.readHeader();
+		assertArrayEquals(bytes, input.readBytes());
+		input.readHeader();
+		assertEquals("end", input.readString());
+		assertFalse(input.hasNext());
+		assertEquals(1, buffer.position());
+	}
+
+	@Test
+	void testHeapByteBuffer () {
+		ByteBuffer buffer = ByteBuffer.wrap(new byte[] {0, 0x63, 'a', 'b', 'c', 0}, 1, 4);
+		CborInput input = new CborInput(buffer.slice());
+		assertTrue(input.isArrayInput());
+		assertEquals(1, input.getPosition());
+		input.readHeader();
+		assertEquals("abc", input.readString());
+		assertFalse(input.hasNext());
+	}
+
+	@Test
+	void testSkipItem () {
+		CborOutput output = new CborOutput();
+		output.startMap().writeString("a").startArray().writeTag(2).writeBytes(new byte[] {1, 2}).writeDouble(1.5).end()
+			.writeString("b").writeString("text").end();
+		output.writeLong(7);
+		byte[] bytes = output.toByteArray();
+		// Indefinite length map with an indefinite length string and an empty array.
+		byte[] indefinite = {(byte)0xBF, 0x7F, 0x61, 'a', (byte)0xFF, (byte)0x80, (byte)0xFF, 0x07};
+		for (byte[] data : new byte[][] {bytes, indefinite}) {
+			CborInput input = new CborInput(data);
+			input.skipItem();
+			input.readHeader();
+			assertEquals(7, input.getArgument());
+			assertFalse(input.hasNext());
+		}
+		assertThrows(SerializationException.class, () -> new CborInput(new byte[] {(byte)0x82, 0x01}).skipItem());
+	}
+
+	@Test
+	void testHalfToFloat () {
+		assertEquals(1f, CborInput.halfToFloat(0x3C00));
+		assertEquals(-2f, CborInput.halfToFloat(0xC000));
+		assertEquals(65504f, CborInput.halfToFloat(0x7BFF));
+		assertEquals(5.9604645E-8f, CborInput.halfToFloat(0x0001));
+		assertEquals(Float.NEGATIVE_INFINITY, CborInput.halfToFloat(0xFC00));
+		assertTrue(Float.isNaN(CborInput.halfToFloat(0x7E00)));
+	}
+}
@@ -0,0 +1,265 @@
+package dev.simonit.gdx.cbor;
+
+import com.badlogic.gdx.utils.Bits;
+import com.badlogic.gdx.utils.SerializationException;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CborOutputTest {
+	CborOutput output = new CborOutput(16);
+
+	@Test
+	void testIntegers () {
+		output.writeLong(0).writeLong(23).writeLong(24).writeLong(-1).writeLong(-25).writeLong(65536);
+		assertArrayEquals(new byte[] {0x00, 0x17, 0x18, 0x18, 0x20, 0x38, 0x18, 0x1A, 0x00, 0x01, 0x00, 0x00}, output.toByteArray());
+	}
+
+	@Test
+	void testLongLimits () {
+		output.writeLong(Long.MAX_VALUE).writeLong(Long.MIN_VALUE);
+		assertArrayEquals(new byte[] {0x1B, 0x7F, (byte)0xFF, (byte)0xFF, (byte)0xFF, (byte)0xFF, (byte)0xFF, (byte)0xFF,
+			(byte)0xFF, 0x3B, 0x7F, (byte)0xFF, (byte)0xFF, (byte)0xFF, (byte)0xFF, (byte)0xFF, (byte)0xFF, (byte)0xFF},
+			output.toByteArray());
+	}
+
+	@Test
+	void testShortestFloats () {
+		output.setShortestFloats(true);
+		output.writeFloat(1).writeFloat(-0f).writeFloat(100000).writeFloat(1.1f).writeDouble(0.5).writeDouble(1.1f)
+			.writeDouble(Math.PI).writeDouble(Double.NaN).writeFloat(Float.NEGATIVE_INFINITY).writeFloat(5.9604645E-8f);
+		assertArrayEquals(new byte[] {(byte)0xF9, 0x3C, 0x00, (byte)0xF9, (byte)0x80, 0x00, (byte)0xFA, 0x47, (byte)0xC3, 0x50,
+			0x00, (byte)0xFA, 0x3F, (byte)0x8C, (byte)0xCC, (byte)0xCD, (byte)0xF9, 0x38, 0x00, (byte)0xFA, 0x3F, (byte)0x8C,
+			(byte)0xCC, (byte)0xCD, (byte)0xFB, 0x40, 0x09, 0x21, (byte)0xFB, 0x54, 0x44, 0x2D, 0x18, (byte)0xF9, 0x7E, 0x00,
+			(byte)0xF9, (byte)0xFC, 0x00, (byte)0xF9, 0x00, 0x01}, output.toByteArray());
+	}
+
+	@Test
+	void testShortestNaN () {
+		output.setShortestFloats(true);
+		output.writeFloat(Float.intBitsToFloat(0x7FC00001)).writeDouble(Double.longBitsToDouble(0x7FF8000000000001L))
+			.writeFloat(Float.NaN).writeDouble(Double.NaN);
+		assertArrayEquals(new byte[] {(byte)0xFA, 0x7F, (byte)0xC0, 0x00, 0x01, (byte)0xFB, 0x7F, (byte)0xF8, 0x00, 0x00, 0x00,
+			0x00, 0x00, 0x01, (byte)0xF9, 0x7E, 0x00, (byte)0xF9, 0x7E, 0x00}, output.toByteArray());
+	}
+
+	@Test
+	void testFloatToHalf () {
+		for (int bits = 0; bits <= 0xFFFF; bits++) {
+			float value = CborInput.halfToFloat(bits);
+			if (Float.isNaN(value)) continue;
+			assertEquals(bits, CborOutput.floatToHalf(value), Float.toString(value));
+		}
+		assertEquals(0x7E00, CborOutput.floatToHalf(Float.NaN));
+		assertEquals(0x7E01, CborOutput.floatToHalf(Float.intBitsToFloat(0x7FC02000)));
+		assertEquals(-1, CborOutput.floatToHalf(Float.intBitsToFloat(0x7FC00001)));
+		assertEquals(-1, CborOutput.floatToHalf(65520));
+		assertEquals(-1, CborOutput.floatToHalf(1.0009766f * 1.5f));
+		assertEquals(-1, CborOutput.floatToHalf(Float.MIN_VALUE));
+		assertEquals(-1, CborOutput.floatToHalf(2.9802322E-8f));
+		assertEquals(-1, CborOutput.floatToHalf(1.1f));
+	}
+
+	@Test
+	void testFixedWidthInteger () {
+		output.writeInteger(1, 1).writeInteger(-1, 2).writeInteger(300, 4).writeInteger(Long.MIN_VALUE, 8);
+		byte[] bytes = output.toByteArray();
+		assertArrayEquals(new byte[] {0x18, 0x01, 0x39, 0x00, 0x00, 0x1A, 0x00, 0x00, 0x01, 0x2C, 0x3B, 0x7F, (byte)0xFF,
+			(byte)0xFF, (byte)0xFF, (byte)0xFF, (byte)0xFF, (byte)0xFF, (byte)0xFF}, bytes);
+		assertThrows(IllegalArgumentException.class, () -> output.writeInteger(256, 1));
+		assertThrows(IllegalArgumentException.class, () -> output.writeInteger(-257, 1));
+		assertThrows(IllegalArgumentException.class, () -> output.writeInteger(1, 3));
+		assertEquals(bytes.length, output.size());
+
+		CborOutput.patchInteger(bytes, 0, -256);
+		CborOutput.patchInteger(bytes, 2, 65535);
+		CborOutput.patchInteger(bytes, 5, -5);
+		assertArrayEquals(new byte[] {0x38, (byte)0xFF, 0x19, (byte)0xFF, (byte)0xFF, 0x3A, 0x00, 0x00, 0x00, 0x04},
+			Arrays.copyOf(bytes, 10));
+		CborInput input = new CborInput(bytes);
+		for (long expected : new long[] {-256, 65535, -5, Long.MIN_VALUE}) {
+			input.readHeader();
+			assertEquals(expected, input.getMajorType() == CborConstants.MAJOR_TYPE_NEGATIVE_INTEGER ? ~input.getArgument()
+				: input.getArgument());
+		}
+		assertThrows(IllegalArgumentException.class, () -> CborOutput.patchInteger(bytes, 0, 256));
+		assertThrows(IllegalArgumentException.class, () -> CborOutput.patchInteger(new byte[] {0x01}, 0, 1));
+		assertThrows(IllegalArgumentException.class, () -> CborOutput.patchInteger(new byte[] {0x41, 0x00}, 0, 1));
+	}
+
+	@Test
+	void testHalf () {
+		for (int bits = 0; bits <= 0xFFFF; bits++) {
+			float value = CborInput.halfToFloat(bits);
+			if (Float.isNaN(value)) continue;
+			assertEquals(bits, CborOutput.floatToHalfRounded(value), Float.toString(value));
+		}
+		assertEquals(0x7E00, CborOutput.floatToHalfRounded(Float.NaN));
+		assertEquals(0x7C00, CborOutput.floatToHalfRounded(65520));
+		assertEquals(0xFC00, CborOutput.floatToHalfRounded(-1e10f));
+		assertEquals(0x3C66, CborOutput.floatToHalfRounded(1.1f));
+		assertEquals(0x3C02, CborOutput.floatToHalfRounded(1.0014648f));
+		assertEquals(0, CborOutput.floatToHalfRounded(Float.MIN_VALUE));
+		assertEquals(0, CborOutput.floatToHalfRounded(2.9802322E-8f));
+		assertEquals(1, CborOutput.floatToHalfRounded(2.9802322E-8f * 1.5f));
+		assertEquals(0x0400, CborOutput.floatToHalfRounded(6.1035156E-5f * 0.99999f));
+
+		output.writeHalf(1).writeHalf(1.1f);
+		assertArrayEquals(new byte[] {(byte)0xF9, 0x3C, 0x00, (byte)0xF9, 0x3C, 0x66}, output.toByteArray());
+	}
+
+	@Test
+	void testBits () {
+		boolean[] values = {true, false, true, true, false, false, false, false, false, true, true};
+		Bits bits = new Bits();
+		bits.set(0);
+		bits.set(9);
+		output.writeBits(values, 1, 10).writeBits(new boolean[0], 0, 0).writeBits(bits, bits.length());
+		assertArrayEquals(new byte[] {0x42, 0x06, 0x03, 0x40, 0x42, 0x01, 0x02}, output.toByteArray());
+		assertThrows(IndexOutOfBoundsException.class, () -> output.writeBits(values, 2, 10));
+	}
+
+	@Test
+	void testTypedArray () {
+		output.writeTypedArray(new float[] {0, 1, -2}, 1, 2).writeTypedArray(new short[] {1, -1}, 0, 2);
+		assertArrayEquals(new byte[] {(byte)0xD8, 0x55, 0x48, 0x00, 0x00, (byte)0x80, 0x3F, 0x00, 0x00, 0x00, (byte)0xC0,
+			(byte)0xD8, 0x4D, 0x44, 0x01, 0x00, (byte)0xFF, (byte)0xFF}, output.toByteArray());
+		assertThrows(IndexOutOfBoundsException.class, () -> output.writeTypedArray(new int[2], 1, 2));
+	}
+
+	@Test
+	void testBigInteger () {
+		output.writeBigInteger(new BigInteger("18446744073709551615"));
+		output.writeBigInteger(new BigInteger("18446744073709551616"));
+		assertArrayEquals(new byte[] {0x1B, (byte)0xFF, (byte)0xFF, (byte)0xFF, (byte)0xFF, (byte)0xFF, (byte)0xFF, (byte)0xFF,
+			(byte)0xFF, (byte)0xC2, 0x49, 0x01, 0x00, 0x00, 0x00, 0x00, 0x00, 0x00, 0x00, 0x00}, output.toByteArray());
+	}
+
+	@Test
+	void testString () {
+		String value = "aü€😀";
+		output.writeString(value);
+		byte[] utf8 = value.getBytes(StandardCharsets.UTF_8);
+		byte[] expected = new byte[utf8.length + 1];
+		expected[0] = (byte)(0x60 | utf8.length);
+		System.arraycopy(utf8, 0, expected, 1, utf8.length);
+		assertArrayEquals(expected, output.toByteArray());
+	}
+
+	@Test
+	void testUnpairedSurrogate () {
+		output.writeString("\uD83D");
+		assertArrayEquals(new byte[] {0x61, '?'}, output.toByteArray());
+	}
+
+	@Test
+	void testNestedContainers () {
+		output.startMap().writeString("a").startArray().writeLong(1).writeNull().end().end();
+		assertArrayEquals(new byte[] {(byte)0xA1, 0x61, 0x61, (byte)0x82, 0x01, (byte)0xF6}, output.toByteArray());
+	}
+
+	@Test
+	void testLongArrayHeaderIsPatched () {
+		output.startArray();
+		for (int i = 0; i < 300; i++)
+			output.writeBoolean(true);
+		output.end();
+		byte[] bytes = output.toByteArray();
+		assertEquals(303, bytes.length);
+		assertEquals((byte)0x99, bytes[0]);
+		assertEquals(0x01, bytes[1]);
+		assertEquals(0x2C, bytes[2]);
+		assertEquals((byte)0xF5, bytes[302]);
+	}
+
+	@Test
+	void testLongMapInsideArray () {
+		output.startArray().startMap();
+		for (int i = 0; i < 24; i++)
+			output.writeLong(i).writeLong(i);
+		output.end().writeNull().end();
+		byte[] bytes = output.toByteArray();
+		assertEquals((byte)0x82, bytes[0]);
+		assertEquals((byte)0xB8, bytes[1]);
+		assertEquals(24, bytes[2]);
+		assertEquals((byte)0xF6, bytes[bytes.length - 1]);
+	}
+
+	@Test
+	void testFixedWidthLength () {
+		output.startArray(2).startMap(1).writeLong(1).writeLong(2).end();
+		int offset = output.size();
+		for (int i = 0; i < 30; i++)
+			output.writeInteger(i, 4);
+		output.end();
+		byte[] bytes = output.toByteArray();
+		assertEquals(7 + 30 * 5, bytes.length);
+		assertArrayEquals(new byte[] {(byte)0x99, 0x00, 0x1F, (byte)0xB8, 0x01, 0x01, 0x02}, Arrays.copyOf(bytes, 7));
+		CborOutput.patchInteger(bytes, offset, 1000);
+		assertArrayEquals(new byte[] {0x1A, 0x00, 0x00, 0x03, (byte)0xE8}, Arrays.copyOfRange(bytes, offset, offset + 5));
+
+		output.reset();
+		output.startArray(1);
+		for (int i = 0; i < 256; i++)
+			output.writeNull();
+		assertThrows(IllegalArgumentException.class, () -> output.end());
+		assertThrows(IllegalArgumentException.class, () -> output.startMap(3));
+	}
+
+	@Test
+	void testSortedKeys () {
+		output.setSortedKeys(true).startMap().writeString("bb").writeLong(1).writeString("a").startMap().writeLong(2).writeLong(0)
+			.writeLong(1).writeLong(0).end().writeTag(1).writeString("c").writeLong(3).writeLong(10).startArray().writeString("z")
+			.end().end();
+		assertArrayEquals(new byte[] {(byte)0xA4, 0x0A, (byte)0x81, 0x61, 'z', 0x61, 'a', (byte)0xA2, 0x01, 0x00, 0x02, 0x00,
+			0x62, 'b', 'b', 0x01, (byte)0xC1, 0x61, 'c', 0x03}, output.toByteArray());
+
+		// The header is widened after sorting.
+		output.reset();
+		output.startMap();
+		for (int i = 29; i >= 0; i--)
+			output.writeLong(i).writeNull();
+		output.end();
+		byte[] bytes = output.toByteArray();
+		assertEquals(2 + 24 * 2 + 6 * 3, bytes.length);
+		assertArrayEquals(new byte[] {(byte)0xB8, 30, 0x00, (byte)0xF6, 0x01, (byte)0xF6}, Arrays.copyOf(bytes, 6));
+		assertArrayEquals(new byte[] {0x18, 29, (byte)0xF6}, Arrays.copyOfRange(bytes, bytes.length - 3, bytes.length));
+	}
+
+	@Test
+	void testTagIsNotCounted () {
+		output.startArray().writeTag(1).writeLong(0).end();
+		assertArrayEquals(new byte[] {(byte)0x81, (byte)0xC1, 0x00}, output.toByteArray());
+	}
+
+	@Test
+	void testUnbalanced () {
+		assertThrows(IllegalStateException.class, () -> output.end());
+		output.startMap().writeString("key");
+		assertThrows(IllegalStateException.class, () -> output.end());
+	}
+
+	@Test
+	void testReset () {
+		output.startArray().writeLong(1);
+		output.reset();
+		assertEquals(0, output.size());
+		assertEquals(0, output.getDepth());
+	}
+
+	@Test
+	void testExternalBuffer () {
+		byte[] buffer = new byte[8];
+		output.setBuffer(buffer, 2, 4).startArray().writeLong(1).writeLong(2).end();
+		assertEquals(3, output.size());
+		assertArrayEquals(new byte[] {0, 0, (byte)0x82, 0x01, 0x02, 0, 0, 0}, buffer);
+		assertArrayEquals(new byte[] {(byte)0x82, 0x01, 0x02}, output.toByteArray());
+		assertThrows(SerializationException.class, () -> output.writeString("ab"));
+		output.useInternalBuffer().writeString("ab");
+		assertArrayEquals(new byte[] {0x62, 'a', 'b'}, output.toByteArray());
+	}
+}
@@ -7,6 +7,8 @@ import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
 import java.io.*;
+import java.math.BigInteger;
+import java.util.Arrays;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -40,6 +42,25 @@ class CborReaderTest {
 		assertEquals("value", cborValue.get("key"));
 	}
 
+	@Test
+	public void testIntegerKeys () {
+		// {1: "a", 300: {0: true}}
+		byte[] bytes = {(byte)0xA2, 0x01, 0x61, 'a', 0x19, 0x01, 0x2C, (byte)0xA1, 0x00, (byte)0xF5};
+		CborReader reader = new CborReader();
+		CborValue value = reader.parse(bytes);
+		assertEquals("a", value.getString("1"));
+		assertTrue(value.get("300").getBoolean("0"));
+		reader.setLazy(true);
+		assertTrue(reader.parse(bytes).get("300").getBoolean("0"));
+		CborDocument document = reader.parseDocument(bytes);
+		assertEquals("a", document.asString(document.get(0, "1")));
+
+		// Negative integers and other types are no keys.
+		reader.setLazy(false);
+		assertThrows(SerializationException.class, () -> reader.parse(new byte[] {(byte)0xA1, 0x20, 0x00}));
+		assertThrows(SerializationException.class, () -> reader.parse(new byte[] {(byte)0xA1, (byte)0xF5, 0x00}));
+	}
+
 	@Test
 	public void testEmptyArray () {
 		ByteArrayInputStream inputStream = new ByteArrayInputStream(new byte[] {(byte)0x80});
@@ -112,6 +133,36 @@ class CborReaderTest {
 		assertArrayEquals(new byte[] {0x53, 0x74, 0x72, 0x69, 0x6E, 0x67}, cborValue);
 	}
 
+	@Test
+	public void testByteStringIsSingleNode () {
+		CborReader reader = new CborReader();
+		byte[] bytes = {0x43, 0x01, 0x02, 0x03};
+		CborValue value = reader.parse(bytes);
+		assertTrue(value.isBinary());
+		assertEquals(3, value.size);
+		assertNotSame(bytes, value.getBinary());
+		assertEquals(2, value.getInt(1));
+		assertFalse(value.isBinary());
+	}
+
+	@Test
+	public void testByteStringSlice () {
+		CborReader reader = new CborReader();
+		reader.setCopyByteStrings(false);
+		byte[] bytes = {(byte)0x81, 0x43, 0x01, 0x02, 0x03};
+		CborValue value = (CborValue)reader.parse(bytes).get(0);
+		assertSame(bytes, value.getBinary());
+		assertEquals(2, value.getBinaryOffset());
+		assertArrayEquals(new byte[] {1, 2, 3}, json.readValue(byte[].class, value));
+	}
+
+	@Test
+	public void testByteStringAsIntArray () {
+		ByteArrayInputStream inputStream = new ByteArrayInputStream(new byte[] {0x42, 0x01, (byte)0xFF});
+		int[] cborValue = json.fromJson(int[].class, inputStream);
+		assertArrayEquals(new int[] {1, -1}, cborValue);
+	}
+
 	@Test
 	public void testBooleanTrue () {
 		ByteArrayInputStream inputStream = new ByteArrayInputStream(new byte[] {(byte)0xF5});
@@ -186,4 +237,281 @@ class CborReaderTest {
 		assertEquals(2, cborValue.get(1));
 		assertEquals(3, cborValue.get(2));
 	}
+
+	@Test
+	public void testIndefiniteLength () {
+		CborReader reader = new CborReader();
+		// {_ "a": [_ 1, (_ "b", "c")], "d": h'0102'}
+		CborValue value = reader.parse(new byte[] {(byte)0xBF, 0x61, 0x61, (byte)0x9F, 0x01, 0x7F, 0x61, 0x62, 0x61, 0x63,
+			(byte)0xFF, (byte)0xFF, 0x61, 0x64, 0x5F, 0x41, 0x01, 0x41, 0x02, (byte)0xFF, (byte)0xFF});
+		assertEquals(2, value.size);
+		assertEquals(1, value.get("a").getInt(0));
+		assertEquals("bc", value.get("a").getString(1));
+		assertArrayEquals(new byte[] {1, 2}, value.get("d").asByteArray());
+	}
+
+	@Test
+	public void testTagIsSkipped () {
+		CborReader reader = new CborReader();
+		// 1(1363896240)
+		CborValue value = reader.parse(new byte[] {(byte)0xC1, 0x1A, 0x51, 0x4B, 0x67, (byte)0xB0});
+		assertEquals(1363896240L, value.asLong());
+	}
+
+	@Test
+	public void testManyTags () {
+		// 6(6(...6(1))), deeper than the stack would allow if every tag was a call.
+		byte[] bytes = new byte[100001];
+		Arrays.fill(bytes, (byte)0xC6);
+		bytes[bytes.length - 1] = 0x01;
+		assertEquals(1, new CborReader().parse(bytes).asInt());
+		assertEquals(1, new CborReader().parse(new ByteArrayInputStream(bytes)).asInt());
+		assertEquals(1, new Cbor().fromCbor(Integer.class, bytes));
+
+		EventRecorder recorder = new EventRecorder();
+		new CborReader().visit(new CborInput(bytes), recorder);
+		assertEquals(100000 * 3 + 2, recorder.events.length());
+	}
+
+	@Test
+	public void testTypedArray () {
+		CborReader reader = new CborReader();
+		// 81(h'3F800000C0000000'), big endian floats.
+		byte[] bytes = {(byte)0xD8, 0x51, 0x48, 0x3F, (byte)0x80, 0x00, 0x00, (byte)0xC0, 0x00, 0x00, 0x00};
+		CborValue value = reader.parse(bytes);
+		assertTrue(value.isTypedArray());
+		assertFalse(value.isBinary());
+		assertEquals(2, value.size);
+		assertArrayEquals(new float[] {1, -2}, value.asFloatArray());
+		assertArrayEquals(new int[] {1, -2}, value.asIntArray());
+		assertEquals(-2, value.getFloat(1));
+		assertFalse(value.isTypedArray());
+		assertArrayEquals(new float[] {1, -2}, json.fromCbor(float[].class, bytes));
+
+		// 84(h'003C00C0'), little endian half floats.
+		value = reader.parse(new byte[] {(byte)0xD8, 0x54, 0x44, 0x00, 0x3C, 0x00, (byte)0xC0});
+		assertArrayEquals(new double[] {1, -2}, value.asDoubleArray());
+
+		CborDocument document = reader.parseDocument(bytes);
+		assertTrue(document.isArray(document.getRoot()));
+		assertEquals(-2, document.asFloat(document.get(document.getRoot(), 1)));
+
+		assertThrows(SerializationException.class, () -> reader.parse(new byte[] {(byte)0xD8, 0x51, 0x43, 0x00, 0x00, 0x00}));
+	}
+
+	@Test
+	public void testBigNumbers () {
+		CborReader reader = new CborReader();
+		CborValue max = reader.parse(new byte[] {0x1B, (byte)0xFF, (byte)0xFF, (byte)0xFF, (byte)0xFF, (byte)0xFF, (byte)0xFF,
+			(byte)0xFF, (byte)0xFF});
+		assertEquals("18446744073709551615", max.asString());
+		CborValue bignum = reader.parse(new byte[] {(byte)0xC3, 0x49, 0x01, 0x00, 0x00, 0x00, 0x00, 0x00, 0x00, 0x00, 0x00});
+		assertEquals("-18446744073709551617", bignum.asString());
+	}
+
+	@Test
+	public void testOffset () {
+		CborReader reader = new CborReader();
+		CborValue value = reader.parse(new byte[] {0x01, (byte)0x82, 0x02, 0x03, 0x04}, 1, 3);
+		assertEquals(2, value.size);
+		assertEquals(3, value.getInt(1));
+	}
+
+	@Test
+	public void testChunkedStream () {
+		TestMap map = new TestMap();
+		for (int i = 0; i < 1000; i++)
+			map.values.put("key " + i, "value ü " + i);
+		byte[] bytes = json.toCbor(map);
+		// Returns a single byte per read, so every data item crosses a chunk boundary.
+		InputStream input = new ByteArrayInputStream(bytes) {
+			@Override
+			public synchronized int read (byte[] b, int off, int len) {
+				return super.read(b, off, Math.min(len, 1));
+			}
+		};
+		assertEquals(map.values, json.fromJson(TestMap.class, input).values);
+	}
+
+	@Test
+	public void testTruncated () {
+		CborReader reader = new CborReader();
+		assertThrows(SerializationException.class, () -> reader.parse(new byte[] {(byte)0x82, 0x01}));
+		assertThrows(SerializationException.class, () -> reader.parse(new byte[] {0x65, 0x76, 0x61}));
+		// The length of a byte string is checked before an array is allocated for it.
+		byte[] bogusLength = {0x5A, 0x7F, (byte)0xFF, (byte)0xFF, (byte)0xFF};
+		assertThrows(SerializationException.class, () -> reader.parse(bogusLength));
+		assertThrows(SerializationException.class, () -> reader.parse(new ByteArrayInputStream(bogusLength)));
+		assertThrows(SerializationException.class, () -> new Cbor().fromCbor(byte[].class, bogusLength));
+	}
+
+	@Test
+	public void testIndexThreshold () {
+		TestMap map = new TestMap();
+		for (int i = 0; i < 20; i++)
+			map.values.put("key " + i, "value " + i);
+		CborReader reader = new CborReader();
+		reader.setIndexThreshold(20);
+		CborValue root = reader.parse(json.toCbor(map));
+		CborValue values = (CborValue)root.get("values");
+		assertFalse(root.hasIndex());
+		assertTrue(values.hasIndex());
+		assertEquals("value 13", values.getString("key 13"));
+		assertEquals(map.values, json.readValue(TestMap.class, root).values);
+	}
+
+	@Test
+	public void testLazy () {
+		// {"type": "move", "state": {_ "x": 1 (non-shortest), "tags": tag 100 [_ "a"]}, "list": [1, [2]]}
+		byte[] state = {(byte)0xBF, 0x61, 'x', 0x19, 0x00, 0x01, 0x64, 't', 'a', 'g', 's', (byte)0xD8, 0x64, (byte)0x9F, 0x61, 'a',
+			(byte)0xFF, (byte)0xFF};
+		CborOutput output = new CborOutput();
+		output.startMap().writeString("type").writeString("move").writeString("state").writeEncoded(state, 0, state.length)
+			.writeString("list").startArray().writeLong(1).startArray().writeLong(2).end().end().end();
+		byte[] bytes = output.toByteArray();
+
+		CborReader reader = new CborReader();
+		reader.setLazy(true);
+		CborValue root = reader.parse(bytes);
+		assertTrue(root.isLazy());
+		assertEquals(3, root.size);
+		assertEquals("move", root.getString("type"));
+		assertFalse(root.isLazy());
+		CborValue stateValue = (CborValue)root.get("state");
+		assertTrue(stateValue.isLazy());
+		assertEquals(2, stateValue.size);
+		// The unvisited map keeps its encoding.
+		assertArrayEquals(bytes, root.toCbor(JsonWriter.OutputType.json));
+
+		assertEquals(1, stateValue.getInt("x"));
+		assertEquals("a", stateValue.get("tags").getString(0));
+		assertEquals(2, root.get("list").get(1).getInt(0));
+		assertEquals(new CborReader().parse(bytes).toJson(JsonWriter.OutputType.json), root.toJson(JsonWriter.OutputType.json));
+	}
+
+	@Test
+	public void testLazyReadValue () {
+		TestMap map = new TestMap();
+		for (int i = 0; i < 10; i++)
+			map.values.put("key " + i, "value " + i);
+		CborReader reader = new CborReader();
+		reader.setLazy(true);
+		json.setReader(reader);
+		assertEquals(map.values, json.fromCbor(TestMap.class, json.toCbor(map)).values);
+		// Streams are parsed completely.
+		assertFalse(reader.parse(new ByteArrayInputStream(json.toCbor(map))).isLazy());
+	}
+
+	@Test
+	public void testVisit () {
+		CborOutput output = new CborOutput();
+		output.startMap().writeString("id").writeLong(-3).writeString("pos").startArray().writeFloat(1.5f).writeDouble(2.5).end()
+			.writeString("data").writeBytes(new byte[] {1, 2}).writeString("tagged").writeTag(100).writeString("x")
+			.writeString("big").writeBigInteger(BigInteger.ONE.shiftLeft(64)).writeString("flags").startArray().writeBoolean(true)
+			.writeNull().end().end();
+		output.writeLong(7);
+		byte[] bytes = output.toByteArray();
+		String expected = "{id:-3 pos:[1.5 2.5 ] data:<1,2> tagged:#100 x big:18446744073709551616 flags:[true null ] } 7 ";
+		EventRecorder recorder = new EventRecorder();
+		new CborReader().visit(new ByteArrayInputStream(bytes), recorder);
+		assertEquals(expected, recorder.events.toString());
+
+		// Reads one item at a time from arrays.
+		recorder = new EventRecorder();
+		CborReader reader = new CborReader();
+		CborInput input = new CborInput(bytes);
+		assertTrue(reader.visit(input, recorder));
+		assertTrue(reader.visit(input, recorder));
+		assertFalse(reader.visit(input, recorder));
+		assertEquals(expected, recorder.events.toString());
+	}
+
+	@Test
+	public void testVisitStop () {
+		CborReader reader = new CborReader();
+		StringBuilder keys = new StringBuilder();
+		reader.visit(new FileHandle(CborReaderTest.class.getResource("toCborObjectComplex.cbor").getFile()), new CborVisitor() {
+			@Override
+			public void key (String name) {
+				keys.append(name).append(' ');
+				if (keys.length() > 5) reader.stop();
+			}
+		});
+		assertTrue(keys.length() > 5);
+		assertTrue(keys.toString().split(" ").length < 3);
+	}
+
+	static class EventRecorder extends CborVisitor {
+		final StringBuilder events = new StringBuilder(), open = new StringBuilder();
+
+		@Override
+		public void startMap (int size) {
+			events.append('{');
+			open.append('{');
+		}
+
+		@Override
+		public void key (String name) {
+			events.append(name).append(':');
+		}
+
+		@Override
+		public void startArray (int size) {
+			events.append('[');
+			open.append('[');
+		}
+
+		@Override
+		public void end () {
+			events.append(open.charAt(open.length() - 1) == '{' ? "} " : "] ");
+			open.setLength(open.length() - 1);
+		}
+
+		@Override
+		public void longValue (long value) {
+			events.append(value).append(' ');
+		}
+
+		@Override
+		public void bigIntegerValue (BigInteger value) {
+			events.append(value).append(' ');
+		}
+
+		@Override
+		public void doubleValue (double value) {
+			events.append(value).append(' ');
+		}
+
+		@Override
+		public void booleanValue (boolean value) {
+			events.append(value).append(' ');
+		}
+
+		@Override
+		public void nullValue () {
+			events.append("null ");
+		}
+
+		@Override
+		public void string (String value) {
+			events.append(value).append(' ');
+		}
+
+		@Override
+		public void bytes (byte[] value, int offset, int length) {
+			events.append('<');
+			for (int i = 0; i < length; i++)
+				events.append(i > 0 ? "," : "").append(value[offset + i]);
+			events.append("> ");
+		}
+
+		@Override
+		public void tag (long tag) {
+			events.append('#').append(tag).append(' ');
+		}
+	}
+
+	static public class TestMap {
+		public ObjectMap<String, String> values = new ObjectMap<>();
+	}
 }
@@ -2,18 +2,24 @@
 package dev.simonit.gdx.cbor;
 
 import com.badlogic.gdx.utils.*;
+import com.badlogic.gdx.utils.Json.ReadOnlySerializer;
 import com.badlogic.gdx.utils.JsonWriter.OutputType;
 import com.badlogic.gdx.utils.reflect.ArrayReflection;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
 import java.io.*;
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.Objects;
 
 import static org.junit.jupiter.api.Assertions.assertArrayEquals;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 public class CborTest {
 	Cbor json;
@@ -143,7 +149,9 @@ public class CborTest {
 		test.map.put("\r\nst\r\nuff\r\n", 9);
 		roundTrip(test);
 
-		equals(Array.with(1, 2, 3), readBytesFromResource("array1.cbor"));
+		equals(Array.with(1, 2, 3), readBytesFromResource("array1Streamed.cbor"));
+		// Written by the cbor-java encoder, with the integers as doubles.
+		assertEquals(Array.with(1, 2, 3), json.fromCbor(Array.class, readBytesFromResource("array1.cbor")));
 		equals(Array.with("1", "2", "3"), readBytesFromResource("array2.cbor"));
 		equals(Array.with(" 1", "2 ", " 3 "), readBytesFromResource("array3.cbor"));
 		equals(Array.with("1", "", "3"), readBytesFromResource("array4.cbor"));
@@ -225,6 +233,263 @@ public class CborTest {
 		if (!values.equals(Array.with("704643328", 0.543f, "704643584", 432.435f))) throw new RuntimeException();
 	}
 
+	@Test
+	public void testToCborIntoArray () {
+		byte[] expected = json.toCbor(test);
+		byte[] buffer = new byte[expected.length + 10];
+		int length = json.toCbor(test, buffer, 4);
+		assertEquals(expected.length, length);
+		assertArrayEquals(expected, Arrays.copyOfRange(buffer, 4, 4 + length));
+		assertEquals(test, json.fromCbor(Test1.class, Arrays.copyOfRange(buffer, 4, 4 + length)));
+		assertThrows(SerializationException.class, () -> json.toCbor(test, new byte[expected.length - 1], 0));
+		// The internal buffer is used again after a failure.
+		assertArrayEquals(expected, json.toCbor(test));
+	}
+
+	@Test
+	public void testBase64 () {
+		String base64 = json.toJson(test);
+		assertEquals(new String(Base64Coder.encode(json.toCbor(test))), base64);
+		assertEquals(test, json.fromJson(Test1.class, base64));
+		assertEquals(test, json.fromJson(Test1.class, base64.toCharArray(), 0, base64.length()));
+		StringWriter writer = new StringWriter();
+		json.toJson(test, writer);
+		assertEquals(base64, writer.toString());
+		assertEquals(test, json.fromJson(Test1.class, new StringReader(base64)));
+	}
+
+	@Test
+	public void testToCborWriter () {
+		ByteArrayOutputStream output = new ByteArrayOutputStream();
+		json.toJson(test, new CborWriter(output));
+		assertArrayEquals(json.toCbor(test), output.toByteArray());
+	}
+
+	@Test
+	public void testFromCborSlice () {
+		byte[] encoded = json.toCbor(test);
+		byte[] frame = new byte[encoded.length + 8];
+		System.arraycopy(encoded, 0, frame, 5, encoded.length);
+		assertEquals(test, json.fromCbor(Test1.class, frame, 5, encoded.length));
+		for (ByteBuffer buffer : new ByteBuffer[] {ByteBuffer.wrap(frame), ByteBuffer.allocateDirect(frame.length).put(frame)}) {
+			buffer.position(5);
+			buffer.limit(5 + encoded.length);
+			assertEquals(test, json.fromCbor(Test1.class, buffer));
+			assertEquals(5, buffer.position());
+		}
+	}
+
+	@Test
+	public void testToCborIntoByteBuffer () {
+		byte[] expected = json.toCbor(test);
+		for (ByteBuffer buffer : new ByteBuffer[] {ByteBuffer.allocate(expected.length + 3),
+			ByteBuffer.allocateDirect(expected.length + 3)}) {
+			buffer.put((byte)1);
+			assertEquals(expected.length, json.toCbor(test, buffer));
+			assertEquals(expected.length + 1, buffer.position());
+			byte[] bytes = new byte[expected.length];
+			buffer.position(1);
+			buffer.get(bytes);
+			assertArrayEquals(expected, bytes);
+			assertThrows(SerializationException.class, () -> json.toCbor(test, buffer));
+			assertEquals(expected.length + 1, buffer.position());
+		}
+	}
+
+	@Test
+	public void testDirectBinding () throws IOException {
+		byte[] encoded = json.toCbor(test);
+		json.setDirectBinding(false);
+		Test1 tree = json.fromCbor(Test1.class, encoded);
+		json.setDirectBinding(true);
+		assertEquals(tree, json.fromCbor(Test1.class, encoded));
+		assertEquals(test, tree);
+
+		// The class name after another entry.
+		ByteArrayOutputStream output = new ByteArrayOutputStream();
+		CborWriter writer = new CborWriter(output);
+		writer.object().set("intField", 5).set("class", Test1.class.getName()).set("unknown", 1).pop();
+		writer.close();
+		byte[] unknown = output.toByteArray();
+		assertThrows(SerializationException.class, () -> json.fromCbor(Object.class, unknown));
+		json.setIgnoreUnknownFields(true);
+		assertEquals(5, ((Test1)json.fromCbor(Object.class, unknown)).intField);
+
+		json.setDeprecated(Test1.class, "intField", true);
+		json.setIgnoreDeprecated(true);
+		assertEquals(0, json.fromCbor(Test1.class, unknown).intField);
+
+		// Sorted keys put the fields of the subclass before its class name.
+		json.setIgnoreUnknownFields(false);
+		json.setSortedKeys(true);
+		Holder holder = new Holder();
+		Position position = new Position();
+		position.x = 3;
+		position.name = "orc";
+		holder.any = position;
+		assertEquals(position, json.fromCbor(Holder.class, json.toCbor(holder)).any);
+		json.setSortedKeys(false);
+
+		json.setSerializer(StringBuilder.class, new ReadOnlySerializer<StringBuilder>() {
+			@Override
+			public StringBuilder read (Json json, JsonValue jsonData, Class type) {
+				return new StringBuilder(jsonData.getString("value"));
+			}
+		});
+		output.reset();
+		writer = new CborWriter(output);
+		writer.object().set("value", 7).pop();
+		writer.close();
+		assertEquals("7", json.fromCbor(StringBuilder.class, output.toByteArray()).toString());
+	}
+
+	@Test
+	public void testFieldIds () {
+		Position position = new Position();
+		position.x = 1.5f;
+		position.y = -2;
+		position.name = "orc";
+		position.health = 80;
+		byte[] encoded = json.toCbor(position);
+		CborValue tree = new CborReader().parse(encoded);
+		assertEquals(1.5f, tree.getFloat("0"));
+		assertEquals("orc", tree.getString("2"));
+		assertEquals(80, tree.getInt("health"));
+
+		Cbor names = new Cbor();
+		names.setFieldId(Position.class, "x", -1);
+		names.setFieldId(Position.class, "y", -1);
+		names.setFieldId(Position.class, "name", -1);
+		assertTrue(encoded.length < names.toCbor(position).length);
+
+		assertEquals(position, json.fromCbor(Position.class, encoded));
+		json.setDirectBinding(false);
+		assertEquals(position, json.fromCbor(Position.class, encoded));
+		json.setDirectBinding(true);
+
+		// Registered ids are read like annotated ones, and names are still read.
+		json.setFieldId(Position.class, "health", 3);
+		assertEquals(80, new CborReader().parse(json.toCbor(position)).getInt("3"));
+		assertEquals(position, json.fromCbor(Position.class, json.toCbor(position)));
+		assertEquals(position, json.fromCbor(Position.class, names.toCbor(position)));
+
+		assertThrows(IllegalArgumentException.class, () -> json.setFieldId(Position.class, "health", 0));
+		assertThrows(SerializationException.class, () -> json.setFieldId(Position.class, "missing", 4));
+		assertThrows(SerializationException.class, () -> json.toCbor(new DuplicateIds()));
+	}
+
+	@Test
+	public void testPositional () throws IOException {
+		Position position = new Position();
+		position.x = 1.5f;
+		position.name = "orc";
+		position.health = 80;
+		byte[] map = json.toCbor(position);
+		json.setPositional(Position.class, true);
+		byte[] encoded = json.toCbor(position);
+		CborValue tree = new CborReader().parse(encoded);
+		assertTrue(tree.isArray());
+		assertEquals(4, tree.size);
+		assertEquals(1.5f, tree.getFloat(0));
+		assertEquals(80, tree.getInt(3));
+		assertTrue(encoded.length < map.length);
+
+		assertEquals(position, json.fromCbor(Position.class, encoded));
+		json.setDirectBinding(false);
+		assertEquals(position, json.fromCbor(Position.class, encoded));
+		json.setDirectBinding(true);
+		// Maps are still read.
+		assertEquals(position, json.fromCbor(Position.class, map));
+
+		// Elements of a known type are arrays, other objects keep their class name.
+		Array<Object> objects = Array.with(position);
+		tree = new CborReader().parse(json.toCbor(objects));
+		assertTrue(tree.get(0).isObject());
+		Array<Position> positions = Array.with(position, new Position());
+		byte[] array = json.toCbor(positions, Array.class, Position.class);
+		assertTrue(new CborReader().parse(array).get(1).isArray());
+		assertEquals(positions, json.readValue(Array.class, Position.class, new CborInput(array)));
+		assertEquals(positions, json.readValue(Array.class, Position.class, new CborReader().parse(array)));
+
+		// Missing values keep their default, extra values are unknown fields.
+		ByteArrayOutputStream output = new ByteArrayOutputStream();
+		CborWriter writer = new CborWriter(output);
+		writer.array().value(2.5f).pop();
+		writer.array().value(1f).value(2f).value("a").value(3).value(4).pop();
+		writer.close();
+		CborInput input = new CborInput(output.toByteArray());
+		Position read = json.readValue(Position.class, null, input);
+		assertEquals(2.5f, read.x);
+		assertEquals(0, read.health);
+		int start = input.getPosition();
+		assertThrows(SerializationException.class, () -> json.readValue(Position.class, null, input));
+		json.setIgnoreUnknownFields(true);
+		input.setPosition(start);
+		assertEquals(3, json.readValue(Position.class, null, input).health);
+
+		json.setPositional(Position.class, false);
+		assertArrayEquals(map, json.toCbor(position));
+	}
+
+	@Test
+	public void testClassIds () {
+		Position position = new Position();
+		position.health = 5;
+		Array<Object> objects = Array.with(position, new Test1());
+		byte[] names = json.toCbor(objects);
+		json.addClassId(0, Position.class);
+		json.addClassId(1, Test1.class);
+		assertEquals(Position.class, json.getClass(0));
+		assertEquals(1, json.getClassId(Test1.class));
+		assertEquals(-1, json.getClassId(String.class));
+		byte[] ids = json.toCbor(objects);
+		assertTrue(ids.length < names.length - 40);
+		assertEquals(1, new CborReader().parse(ids).get(1).getInt("class"));
+
+		assertEquals(objects, json.fromCbor(Array.class, ids));
+		json.setDirectBinding(false);
+		assertEquals(objects, json.fromCbor(Array.class, ids));
+		json.setDirectBinding(true);
+		// Class names are still read.
+		assertEquals(objects, json.fromCbor(Array.class, names));
+		// Other writers write the id as class tag.
+		assertEquals(position, json.fromJson(Object.class, json.toJson(position, Object.class)));
+
+		json.addClassId(0, Test1.class);
+		assertEquals(-1, json.getClassId(Position.class));
+		assertThrows(SerializationException.class, () -> new Cbor().fromCbor(Array.class, ids));
+		assertThrows(IllegalArgumentException.class, () -> json.addClassId(-1, Position.class));
+	}
+
+	@Test
+	public void testTypedArrays () {
+		Mesh mesh = new Mesh();
+		mesh.vertices = new float[] {0.5f, -1, Float.NaN, 100000};
+		mesh.indices = new int[] {0, 1, Integer.MIN_VALUE};
+		mesh.shorts = new short[] {Short.MAX_VALUE, -1};
+		mesh.longs = new long[] {Long.MIN_VALUE, 2};
+		mesh.doubles = new double[] {Math.PI, -0.0};
+		mesh.floatArray = FloatArray.with(1, 2, 3);
+		mesh.intArray = IntArray.with(4, 5);
+		byte[] items = json.toCbor(mesh);
+		json.setTypedArrays(true);
+		byte[] typed = json.toCbor(mesh);
+		assertTrue(typed.length < items.length);
+		CborValue tree = new CborReader().parse(typed);
+		assertTrue(((CborValue)tree.get("vertices")).isTypedArray());
+		assertTrue(((CborValue)tree.get("floatArray")).isTypedArray());
+
+		for (boolean directBinding : new boolean[] {true, false}) {
+			json.setDirectBinding(directBinding);
+			assertEquals(mesh, json.fromCbor(Mesh.class, typed));
+			assertEquals(mesh, json.fromCbor(Mesh.class, items));
+		}
+		// Without a type the elements are read into the primitive array of their type.
+		assertArrayEquals(new int[] {4, 5}, (int[])json.fromCbor(Object.class, json.toCbor(new int[] {4, 5})));
+		// Element types are converted.
+		assertArrayEquals(new double[] {0, 1, Integer.MIN_VALUE}, json.fromCbor(double[].class, json.toCbor(mesh.indices)));
+	}
+
 	private byte[] roundTrip (Object object) {
 		byte[] cbor = json.toCbor(object);
 
@@ -393,6 +658,58 @@ public class CborTest {
 		}
 	}
 
+	static public class Position {
+		@FieldId(0) float x;
+		@FieldId(1) float y;
+		@FieldId(2) String name;
+		int health;
+
+		@Override
+		public boolean equals (Object o) {
+			if (!(o instanceof Position)) return false;
+			Position other = (Position)o;
+			return x == other.x && y == other.y && Objects.equals(name, other.name) && health == other.health;
+		}
+
+		@Override
+		public int hashCode () {
+			return Objects.hash(x, y, name, health);
+		}
+	}
+
+	static public class Holder {
+		Object any;
+	}
+
+	static public class DuplicateIds {
+		@FieldId(1) int a;
+		@FieldId(1) int b;
+	}
+
+	static public class Mesh {
+		float[] vertices;
+		int[] indices;
+		short[] shorts;
+		long[] longs;
+		double[] doubles;
+		FloatArray floatArray;
+		IntArray intArray;
+
+		@Override
+		public boolean equals (Object o) {
+			if (!(o instanceof Mesh)) return false;
+			Mesh other = (Mesh)o;
+			return Arrays.equals(vertices, other.vertices) && Arrays.equals(indices, other.indices)
+				&& Arrays.equals(shorts, other.shorts) && Arrays.equals(longs, other.longs) && Arrays.equals(doubles, other.doubles)
+				&& Objects.equals(floatArray, other.floatArray) && Objects.equals(intArray, other.intArray);
+		}
+
+		@Override
+		public int hashCode () {
+			return Arrays.hashCode(vertices);
+		}
+	}
+
 	public static class TestMapGraph {
 		public Map<String, String> map = new HashMap<>();
 		public ObjectMap<String, String> objectMap = new ObjectMap<>();
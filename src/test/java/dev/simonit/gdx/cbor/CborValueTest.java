@@ -6,7 +6,7 @@ import com.badlogic.gdx.utils.JsonWriter;
 import org.junit.jupiter.api.Test;
 
 import static dev.simonit.gdx.cbor.CborTest.readBytesFromResource;
-import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.*;
 
 class CborValueTest {
 
@@ -24,6 +24,24 @@ class CborValueTest {
 		assertArrayEquals(original.toCbor(JsonWriter.OutputType.json), copy.toCbor(JsonWriter.OutputType.json));
 	}
 
+	@Test
+	void testIntegerKeys () {
+		// {1: "x", "2": {300: true}}
+		byte[] bytes = {(byte)0xA2, 0x01, 0x61, 'x', 0x61, '2', (byte)0xA1, 0x19, 0x01, 0x2C, (byte)0xF5};
+		CborReader reader = new CborReader();
+		CborValue value = reader.parse(bytes);
+		assertTrue(((CborValue)value.get("1")).isIntegerKey());
+		assertFalse(((CborValue)value.get("2")).isIntegerKey());
+		assertArrayEquals(bytes, value.toCbor(JsonWriter.OutputType.json));
+		assertArrayEquals(bytes, new CborValue(value).toCbor(JsonWriter.OutputType.json));
+		CborDocument document = reader.parseDocument(bytes);
+		assertArrayEquals(bytes, document.getValue(document.getRoot()).toCbor(JsonWriter.OutputType.json));
+
+		// A renamed value is written with its new name as text.
+		value.get("1").setName("1");
+		assertEquals(0x61, value.toCbor(JsonWriter.OutputType.json)[1]);
+	}
+
 	@Test
 	void toCborString () {
 		CborValue cborValue = new CborValue("value");
@@ -126,7 +144,7 @@ class CborValueTest {
 
 		value.addChild("family", family);
 		byte[] bytes = value.toCbor(JsonWriter.OutputType.json);
-		assertArrayEquals(readBytesFromResource("toCborObjectComplex.cbor"), bytes);
+		assertArrayEquals(readBytesFromResource("toCborObjectComplexStreamed.cbor"), bytes);
 	}
 
 	@Test
@@ -141,4 +159,82 @@ class CborValueTest {
 		byte[] bytes = value.toCbor(JsonWriter.OutputType.json);
 		assertArrayEquals(readBytesFromResource("testWriteArrayComplex.cbor"), bytes);
 	}
+
+	@Test
+	void testToCborShortestFloats () {
+		CborValue value = new CborValue(JsonValue.ValueType.array);
+		value.addChild(new CborValue(0.25));
+		value.addChild(new CborValue(0.1));
+		assertArrayEquals(new byte[] {(byte)0x82, (byte)0xF9, 0x34, 0x00, (byte)0xFB, 0x3F, (byte)0xB9, (byte)0x99, (byte)0x99,
+			(byte)0x99, (byte)0x99, (byte)0x99, (byte)0x9A}, value.toCbor(JsonWriter.OutputType.json, true));
+		assertEquals(19, value.toCbor(JsonWriter.OutputType.json).length);
+	}
+
+	@Test
+	void toCborBinary () {
+		CborValue value = new CborValue(JsonValue.ValueType.object);
+		value.addChild("data", new CborValue(new byte[] {9, 1, 2, 9}, 1, 2));
+		byte[] bytes = value.toCbor(JsonWriter.OutputType.json);
+		assertArrayEquals(new byte[] {(byte)0xA1, 0x64, 0x64, 0x61, 0x74, 0x61, 0x42, 0x01, 0x02}, bytes);
+	}
+
+	@Test
+	void testBinaryExpand () {
+		CborValue value = new CborValue(new byte[] {1, 2, 3});
+		assertArrayEquals(new byte[] {1, 2, 3}, value.asByteArray());
+		value.addChild(new CborValue(4));
+		assertFalse(value.isBinary());
+		assertEquals(4, value.size);
+		assertArrayEquals(new long[] {1, 2, 3, 4}, value.asLongArray());
+	}
+
+	@Test
+	void testTypedArray () {
+		CborValue value = new CborValue(CborConstants.TAG_INT32_ARRAY, new byte[] {0, 0, 0, 0, 1, 0, 0, 0, 2}, 1, 8);
+		assertEquals(2, value.size);
+		assertEquals(8, value.getBinaryLength());
+		CborValue copy = new CborValue(value);
+		assertTrue(copy.isTypedArray());
+		assertArrayEquals(new long[] {1, 2}, copy.asLongArray());
+		assertArrayEquals(new byte[] {(byte)0xD8, 0x4A, 0x48, 0, 0, 0, 1, 0, 0, 0, 2}, value.toCbor(JsonWriter.OutputType.json));
+		assertThrows(IllegalArgumentException.class, () -> value.setTypedArray(64, new byte[1], 0, 1));
+	}
+
+	@Test
+	void testIndex () {
+		CborValue object = new CborValue(JsonValue.ValueType.object);
+		for (int i = 0; i < 100; i++)
+			object.addChild("key" + i, new CborValue(i));
+		object.addChild("key5", new CborValue("duplicate"));
+		object.buildIndex();
+		assertTrue(object.hasIndex());
+		for (int i = 0; i < 100; i++)
+			assertEquals(i, object.getInt("key" + i));
+		assertNull(object.get("missing"));
+		assertNull(object.get(null));
+		assertFalse(object.has("key100"));
+		assertTrue(object.hasIndex());
+
+		object.get("key7").setName("renamed");
+		assertFalse(object.hasIndex());
+		assertEquals(7, object.getInt("renamed"));
+		assertNull(object.get("key7"));
+
+		object.buildIndex();
+		object.addChild("key100", new CborValue(100));
+		assertFalse(object.hasIndex());
+		assertEquals(100, object.getInt("key100"));
+
+		object.buildIndex();
+		object.get("key1").remove();
+		assertNull(object.get("key1"));
+		object.buildIndex();
+		// Changes of the fields are detected if the size changes.
+		object.child = object.child.next;
+		object.size--;
+		assertNull(object.get("key0"));
+		assertFalse(object.hasIndex());
+
+		assertThrows(IllegalStateException.class, () -> new CborValue(JsonValue.ValueType.array).buildIndex());
+	}
 }
@@ -2,9 +2,14 @@
 package dev.simonit.gdx.cbor;
 
 import com.badlogic.gdx.utils.JsonWriter;
+import com.badlogic.gdx.utils.ObjectMap;
 import org.junit.jupiter.api.Test;
 
+import java.io.ByteArrayOutputStream;
+
 import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 
 public class CborWriterTest {
 	Cbor json = new Cbor();
@@ -89,6 +94,16 @@ public class CborWriterTest {
 		assertArrayEquals(new byte[] {(byte)0x81, (byte)0xF5}, bytes);
 	}
 
+	@Test
+	public void testWriteByteArray () {
+		json.getWriter().setOutputType(JsonWriter.OutputType.json);
+		json.writeObjectStart();
+		json.writeValue("bytes", new byte[] {1, -1});
+		json.writeObjectEnd();
+		byte[] bytes = json.toCbor();
+		assertArrayEquals(new byte[] {(byte)0xA1, 0x65, 0x62, 0x79, 0x74, 0x65, 0x73, 0x42, 0x01, (byte)0xFF}, bytes);
+	}
+
 	@Test
 	public void testWriteCharArray () {
 		json.getWriter().setOutputType(JsonWriter.OutputType.json);
@@ -191,4 +206,109 @@ public class CborWriterTest {
 		byte[] bytes = json.toCbor();
 		assertArrayEquals(new byte[] {(byte)0xA1, 0x63, 0x6B, 0x65, 0x79, 0x65, 0x76, 0x61, 0x6C, 0x75, 0x65}, bytes);
 	}
+
+	@Test
+	public void testWriteLargeObject () {
+		json.getWriter().setOutputType(JsonWriter.OutputType.json);
+		json.writeObjectStart();
+		for (int i = 0; i < 30; i++)
+			json.writeValue("k" + (char)('A' + i), i);
+		json.writeObjectEnd();
+		byte[] bytes = json.toCbor();
+		assertEquals((byte)0xB8, bytes[0]);
+		assertEquals(30, bytes[1]);
+		assertEquals(0x62, bytes[2]);
+		CborValue value = new CborReader().parse(bytes);
+		assertEquals(30, value.size);
+		assertEquals(29, value.getInt("k" + (char)('A' + 29)));
+	}
+
+	@Test
+	public void testNameOutsideObject () throws Exception {
+		CborWriter writer = new CborWriter(new ByteArrayOutputStream());
+		assertThrows(IllegalStateException.class, () -> writer.name("root"));
+		writer.array();
+		assertThrows(IllegalStateException.class, () -> writer.name("array"));
+	}
+
+	@Test
+	public void testValueWithoutName () throws Exception {
+		CborWriter writer = new CborWriter(new ByteArrayOutputStream());
+		writer.object();
+		assertThrows(IllegalStateException.class, () -> writer.value(1));
+		writer.name("key");
+		assertThrows(IllegalStateException.class, () -> writer.name("key"));
+	}
+
+	@Test
+	public void testIntegerName () throws Exception {
+		ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+		CborWriter writer = new CborWriter(outputStream);
+		writer.object().name(1).value(true).name(300).value("a").pop();
+		writer.close();
+		assertArrayEquals(new byte[] {(byte)0xa2, 0x01, (byte)0xf5, 0x19, 0x01, 0x2c, 0x61, 'a'}, outputStream.toByteArray());
+
+		CborWriter other = new CborWriter(new ByteArrayOutputStream());
+		assertThrows(IllegalStateException.class, () -> other.name(0));
+		other.object();
+		assertThrows(IllegalArgumentException.class, () -> other.name(-1));
+		other.name(0);
+		assertThrows(IllegalStateException.class, () -> other.name(1));
+	}
+
+	@Test
+	public void testShortestFloats () throws Exception {
+		ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+		CborWriter writer = new CborWriter(outputStream).shortestFloats(true);
+		writer.array().value(1.5f).value(0.0).value((Object)2.0).pop();
+		writer.close();
+		assertArrayEquals(new byte[] {(byte)0x83, (byte)0xF9, 0x3E, 0x00, (byte)0xF9, 0x00, 0x00, (byte)0xF9, 0x40, 0x00},
+			outputStream.toByteArray());
+
+		Cbor cbor = new Cbor();
+		cbor.setShortestFloats(true);
+		assertArrayEquals(new byte[] {(byte)0xF9, 0x3C, 0x00}, cbor.toCbor(1.0));
+		assertEquals(1.0, cbor.fromCbor(Double.class, cbor.toCbor(1.0)));
+	}
+
+	@Test
+	public void testSortedKeys () throws Exception {
+		// Sorted like the fixture written by the cbor-java encoder, which wrote integers in maps as doubles.
+		ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+		CborWriter writer = new CborWriter(outputStream).sortedKeys(true);
+		writer.object().object("family").set("surname", "Smith").array("members");
+		writer.object().set("name", "John").set("age", 40.0).pop();
+		writer.object().set("name", "Jane").set("age", 38.0).pop();
+		writer.object().set("name", "Alice").set("age", 15.0).pop();
+		writer.pop().array("pets");
+		writer.object().set("type", "Dog").set("name", "Buddy").pop();
+		writer.object().set("type", "Cat").set("name", "Whiskers").pop();
+		writer.pop().object("contactInfo").set("email", "smithfamily@example.com").set("phone", "123-456-7890")
+			.set("address", (String)null).pop();
+		writer.pop().pop();
+		writer.close();
+		assertArrayEquals(CborTest.readBytesFromResource("toCborObjectComplex.cbor"), outputStream.toByteArray());
+
+		Cbor cbor = new Cbor();
+		ObjectMap<String, Integer> map = new ObjectMap<>();
+		map.put("two", 2);
+		map.put("one", 1);
+		ObjectMap<String, Integer> reversed = new ObjectMap<>();
+		reversed.put("one", 1);
+		reversed.put("two", 2);
+		cbor.setSortedKeys(true);
+		assertArrayEquals(cbor.toCbor(map), cbor.toCbor(reversed));
+	}
+
+	@Test
+	public void testFlushAtRoot () throws Exception {
+		ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+		CborWriter writer = new CborWriter(outputStream);
+		writer.value(1).array();
+		writer.flush();
+		assertEquals(0, outputStream.size());
+		writer.pop();
+		writer.flush();
+		assertArrayEquals(new byte[] {0x01, (byte)0x80}, outputStream.toByteArray());
+	}
 }
@@ -0,0 +1,60 @@
+package dev.simonit.gdx.cbor;
+
+import com.badlogic.gdx.utils.Array;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ConcurrentCborTest {
+	@Test
+	void testInstancePerThread () throws Exception {
+		ConcurrentCbor cbor = new ConcurrentCbor();
+		Cbor own = cbor.get();
+		assertSame(own, cbor.get());
+		ExecutorService executor = Executors.newSingleThreadExecutor();
+		try {
+			assertNotSame(own, executor.submit(cbor::get).get());
+		} finally {
+			executor.shutdown();
+		}
+	}
+
+	@Test
+	void testFactory () {
+		ConcurrentCbor cbor = new ConcurrentCbor( () -> {
+			Cbor instance = new Cbor();
+			instance.setTypeName(null);
+			return instance;
+		});
+		assertArrayEquals(new byte[] {(byte)0x81, (byte)0xA1, 0x65, 0x76, 0x61, 0x6C, 0x75, 0x65, 0x01},
+			cbor.toCbor(Array.with(1)));
+	}
+
+	@Test
+	void testParallel () throws Exception {
+		ConcurrentCbor cbor = new ConcurrentCbor();
+		ExecutorService executor = Executors.newFixedThreadPool(8);
+		try {
+			Array<Future<Boolean>> results = new Array<>();
+			for (int i = 0; i < 64; i++) {
+				int seed = i;
+				results.add(executor.submit( () -> {
+					for (int j = 0; j < 200; j++) {
+						CborTest.TestMapGraph value = new CborTest.TestMapGraph();
+						value.map.put("key", "value " + seed + " " + j);
+						byte[] bytes = cbor.toCbor(value);
+						CborTest.TestMapGraph read = cbor.fromCbor(CborTest.TestMapGraph.class, bytes);
+						if (!read.map.get("key").equals("value " + seed + " " + j)) return false;
+					}
+					return true;
+				}));
+			}
+			for (Future<Boolean> result : results)
+				assertTrue(result.get(30, TimeUnit.SECONDS));
+		} finally {
+			executor.shutdown();
+		}
+	}
+}
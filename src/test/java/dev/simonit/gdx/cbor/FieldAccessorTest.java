@@ -0,0 +1,105 @@
+package dev.simonit.gdx.cbor;
+
+import com.badlogic.gdx.utils.Json;
+import com.badlogic.gdx.utils.SerializationException;
+import com.badlogic.gdx.utils.reflect.ClassReflection;
+import com.badlogic.gdx.utils.reflect.Field;
+import com.badlogic.gdx.utils.reflect.ReflectionException;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class FieldAccessorTest {
+	@Test
+	public void testMethodHandles () throws ReflectionException {
+		Primitives object = new Primitives();
+		FieldAccessor accessor = FieldAccessor.create(field("i"));
+		assertInstanceOf(MethodHandleAccessor.class, accessor);
+		accessor.setInt(object, 5);
+		assertEquals(5, accessor.getInt(object));
+		assertEquals(5, accessor.get(object));
+		accessor.set(object, 6);
+		assertEquals(6, object.i);
+
+		accessor = FieldAccessor.create(field("s"));
+		object.s = -2;
+		assertEquals(-2, accessor.getInt(object));
+
+		accessor = FieldAccessor.create(field("l"));
+		accessor.setLong(object, Long.MAX_VALUE);
+		assertEquals(Long.MAX_VALUE, accessor.getLong(object));
+		accessor = FieldAccessor.create(field("f"));
+		accessor.setFloat(object, 1.5f);
+		assertEquals(1.5f, accessor.getFloat(object));
+		accessor = FieldAccessor.create(field("d"));
+		accessor.setDouble(object, -0.25);
+		assertEquals(-0.25, accessor.getDouble(object));
+		accessor = FieldAccessor.create(field("z"));
+		accessor.setBoolean(object, true);
+		assertTrue(accessor.getBoolean(object));
+
+		accessor = FieldAccessor.create(field("text"));
+		accessor.set(object, "abc");
+		assertEquals("abc", accessor.get(object));
+		assertThrows(ClassCastException.class, () -> FieldAccessor.create(field("text")).set(object, 1));
+	}
+
+	@Test
+	public void testFallback () throws ReflectionException {
+		Primitives object = new Primitives();
+		FieldAccessor accessor = new FieldAccessor(field("s"));
+		object.s = 7;
+		assertEquals(7, accessor.getInt(object));
+		accessor = new FieldAccessor(field("f"));
+		accessor.setFloat(object, 2.5f);
+		assertEquals(2.5f, accessor.getFloat(object));
+		assertThrows(SerializationException.class, () -> new FieldAccessor(field("text")).set(object, 1));
+	}
+
+	@Test
+	public void testSameAsJson () {
+		Primitives object = new Primitives();
+		object.i = 1;
+		object.s = 2;
+		object.l = 3;
+		object.f = Float.NaN;
+		object.d = 0.5;
+		object.z = true;
+		object.c = 'x';
+		object.text = "text";
+
+		// The prototype has the same values, so nothing is written.
+		Cbor cbor = new Cbor();
+		Primitives defaults = new Primitives();
+		assertEquals(0, new CborReader().parse(cbor.toCbor(defaults)).size);
+		// -0.0 differs from the prototype by its bits.
+		defaults.d = -0.0;
+		assertEquals(1, new CborReader().parse(cbor.toCbor(defaults)).size);
+		defaults.d = 0;
+
+		Json json = new Json();
+		String expected = json.toJson(object);
+		assertEquals(expected, json.toJson(cbor.fromCbor(Primitives.class, cbor.toCbor(object))));
+		assertEquals(json.toJson(json.fromJson(Primitives.class, expected)),
+			json.toJson(cbor.readValue(Primitives.class, null, new CborReader().parse(cbor.toCbor(object)))));
+		cbor.setUsePrototypes(false);
+		assertEquals(8, new CborReader().parse(cbor.toCbor(defaults)).size);
+	}
+
+	private Field field (String name) throws ReflectionException {
+		Field field = ClassReflection.getDeclaredField(Primitives.class, name);
+		field.setAccessible(true);
+		return field;
+	}
+
+	static public class Primitives {
+		int i;
+		short s;
+		long l;
+		float f;
+		double d;
+		boolean z;
+		char c;
+		String text;
+	}
+}